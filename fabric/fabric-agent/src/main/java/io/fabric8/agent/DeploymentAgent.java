@@ -50,6 +50,7 @@ import io.fabric8.agent.internal.Macro;
 import io.fabric8.agent.service.Agent;
 import io.fabric8.agent.service.Constants;
 import io.fabric8.agent.service.FeatureConfigInstaller;
+import io.fabric8.agent.service.MetadataCache;
 import io.fabric8.agent.service.State;
 import io.fabric8.api.Container;
 import io.fabric8.api.CuratorComplete;
@@ -109,6 +110,7 @@ public class DeploymentAgent implements ManagedService {
     private static final String LIB_ENDORSED_PATH = LIB_PATH + File.separator + "endorsed";
 
     private static final String STATE_FILE = "state.json";
+    private static final String METADATA_CACHE_FILE = "metadata.cache";
 
     private ServiceTracker<FabricService, FabricService> fabricService;
     private ServiceTracker<CuratorComplete, CuratorComplete> curatorCompleteService;
@@ -146,6 +148,7 @@ public class DeploymentAgent implements ManagedService {
     private CountDownLatch fabricServiceAvailable = new CountDownLatch(1);
 
     private final State state = new State();
+    private final MetadataCache metadataCache;
 
     private final String deploymentAgentId;
 
@@ -162,6 +165,7 @@ public class DeploymentAgent implements ManagedService {
         this.managedEndorsedLibs  = new Properties(bundleContext.getDataFile("endorsed.properties"));
         this.managedExtensionLibs  = new Properties(bundleContext.getDataFile("extension.properties"));
         this.managedEtcs = new Properties(bundleContext.getDataFile("etc.properties"));
+        this.metadataCache = new MetadataCache(bundleContext.getDataFile(METADATA_CACHE_FILE));
         String revision = bundleContext.getBundle().adapt(BundleRevision.class).toString();
         deploymentAgentId = String.format("fabric-agent-%s.%s", revision, agentCounter++);
         this.executor = Executors.newSingleThreadExecutor(new NamedThreadFactory(deploymentAgentId));
@@ -667,6 +671,15 @@ public class DeploymentAgent implements ManagedService {
         }catch(Exception e){
             LOGGER.warn("Failed to set {} value: [{}], applying default value: {}", Constants.BUNDLE_START_TIMEOUT_PID_KEY, overriddenTimeout, Constants.BUNDLE_START_TIMEOUT);
         }
+        int deploymentThreads = Constants.DEPLOYMENT_THREADS;
+        String overriddenThreads = properties.get(Constants.DEPLOYMENT_THREADS_PID_KEY);
+        try {
+            if (overriddenThreads != null) {
+                deploymentThreads = Integer.parseInt(overriddenThreads);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to set {} value: [{}], applying default value: {}", Constants.DEPLOYMENT_THREADS_PID_KEY, overriddenThreads, Constants.DEPLOYMENT_THREADS);
+        }
         Agent agent = new Agent(
                 bundleContext.getBundle(),
                 systemBundleContext,
@@ -750,6 +763,8 @@ public class DeploymentAgent implements ManagedService {
             }
         };
         agent.setDeploymentAgentId(deploymentAgentId);
+        agent.setMetadataCache(metadataCache);
+        agent.setDeploymentThreads(deploymentThreads);
         agent.provision(
                 getPrefixedProperties(properties, "repository."),
                 getPrefixedProperties(properties, "feature."),
@@ -27,8 +27,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
 import org.osgi.resource.Capability;
 
 public class CapabilitySet
@@ -182,15 +185,50 @@ public void dump()
         }
         else if (sf.getOperation() == SimpleFilter.AND)
         {
-            // Evaluate each subfilter against the remaining capabilities.
-            // For AND we calculate the intersection of each subfilter.
-            // We can short-circuit the AND operation if there are no
-            // remaining capabilities.
             List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
-            for (int i = 0; (caps.size() > 0) && (i < sfs.size()); i++)
+            int indexed = findIndexedFilter(sfs);
+            if (indexed >= 0)
+            {
+                // Use the index to select the candidates and evaluate the
+                // other subfilters against each candidate, which avoids
+                // scanning and copying the remaining capabilities for each
+                // subfilter.
+                SimpleFilter isf = sfs.get(indexed);
+                Set<Capability> candidates = m_indices.get(isf.getName()).get(isf.getValue());
+                if (candidates != null)
+                {
+                    for (Capability cap : candidates)
+                    {
+                        if (caps != m_capSet && !caps.contains(cap))
+                        {
+                            continue;
+                        }
+                        boolean matched = true;
+                        for (int i = 0; matched && (i < sfs.size()); i++)
+                        {
+                            if (i != indexed)
+                            {
+                                matched = matchesInternal(cap, sfs.get(i));
+                            }
+                        }
+                        if (matched)
+                        {
+                            matches.add(cap);
+                        }
+                    }
+                }
+            }
+            else
             {
-                matches = match(caps, sfs.get(i));
-                caps = matches;
+                // Evaluate each subfilter against the remaining capabilities.
+                // For AND we calculate the intersection of each subfilter.
+                // We can short-circuit the AND operation if there are no
+                // remaining capabilities.
+                for (int i = 0; (caps.size() > 0) && (i < sfs.size()); i++)
+                {
+                    matches = match(caps, sfs.get(i));
+                    caps = matches;
+                }
             }
         }
         else if (sf.getOperation() == SimpleFilter.OR)
@@ -246,6 +284,23 @@ public void dump()
         return matches;
     }
 
+    /**
+     * Returns the position of the first equality subfilter on an indexed
+     * attribute, or -1 if none of the subfilters can use an index.
+     */
+    private int findIndexedFilter(List<SimpleFilter> sfs)
+    {
+        for (int i = 0; i < sfs.size(); i++)
+        {
+            SimpleFilter sf = sfs.get(i);
+            if ((sf.getOperation() == SimpleFilter.EQ) && m_indices.containsKey(sf.getName()))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public static boolean matches(Capability cap, SimpleFilter sf)
     {
         return matchesInternal(cap, sf) && matchMandatory(cap, sf);
@@ -372,6 +427,16 @@ public void dump()
 
     private static final Class<?>[] STRING_CLASS = new Class[] { String.class };
 
+    private static final int MAX_VERSIONS = 1024;
+
+    /**
+     * Versions parsed from filters; the same few version strings are compared
+     * against every candidate capability so avoid parsing them each time.
+     * The cache is emptied once it holds {@link #MAX_VERSIONS} entries so that
+     * it does not grow with every version string seen by a long running agent.
+     */
+    private static final ConcurrentMap<String, Version> VERSIONS = new ConcurrentHashMap<String, Version>();
+
     private static boolean compare(Object lhs, Object rhsUnknown, int op)
     {
         if (lhs == null)
@@ -555,6 +620,32 @@ public void dump()
             return rhsString;
         }
 
+        if (lhs.getClass() == Version.class)
+        {
+            Version version = VERSIONS.get(rhsString);
+            if (version == null)
+            {
+                try
+                {
+                    version = new Version(rhsString);
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    throw new Exception(
+                        "Could not instantiate class "
+                            + Version.class.getName()
+                            + " from string constructor with argument '"
+                            + rhsString + "' because " + ex);
+                }
+                if (VERSIONS.size() >= MAX_VERSIONS)
+                {
+                    VERSIONS.clear();
+                }
+                VERSIONS.putIfAbsent(rhsString, version);
+            }
+            return version;
+        }
+
         // Try to convert the RHS type to the LHS type by using
         // the string constructor of the LHS class, if it has one.
         Object rhs = null;
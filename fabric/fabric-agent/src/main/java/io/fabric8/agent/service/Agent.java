@@ -120,6 +120,10 @@ public class Agent {
 
     private String deploymentAgentId;
 
+    private MetadataCache metadataCache;
+
+    private int deploymentThreads = Constants.DEPLOYMENT_THREADS;
+
     public Agent(Bundle serviceBundle, BundleContext systemBundleContext, DownloadManager manager) {
         this(serviceBundle, systemBundleContext, manager, null, null, DEFAULT_FEATURE_RESOLUTION_RANGE, DEFAULT_BUNDLE_UPDATE_RANGE, UPDATE_SNAPSHOTS_CRC, null, Constants.BUNDLE_START_TIMEOUT);
     }
@@ -209,7 +213,7 @@ public class Agent {
     ) throws Exception {
 
 
-        Callable<Map<String, Resource>> res = loadResources(manager, metadata, optionals);
+        Callable<Map<String, Resource>> res = loadResources(manager, metadata, metadataCache, optionals);
 
         // TODO: requirements should be able to be assigned to a region
         Map<String, Set<String>> requirements = new HashMap<>();
@@ -233,7 +237,9 @@ public class Agent {
         request.stateChanges = Collections.emptyMap();
         request.options = options;
         request.metadata = metadata;
+        request.metadataCache = metadataCache;
         request.bundleStartTimeout = bundleStartTimeout;
+        request.deploymentThreads = deploymentThreads;
 
         Deployer.DeploymentState dstate = new Deployer.DeploymentState();
         // Service bundle
@@ -363,7 +369,13 @@ public class Agent {
 
                 Deployer deployer = new Deployer(manager, callback);
                 deployer.setDeploymentAgentId(deploymentAgentId);
-                deployer.deploy(dstate, request);
+                try {
+                    deployer.deploy(dstate, request);
+                } finally {
+                    if (metadataCache != null) {
+                        metadataCache.save();
+                    }
+                }
                 break;
             } catch (Deployer.PartialDeploymentException e) {
                 if (!prereqs.containsAll(e.getMissing())) {
@@ -395,6 +407,17 @@ public class Agent {
         return true;
     }
 
+    /**
+     * Sets the number of threads used to compute checksums and to start bundles which are not wired to each other
+     */
+    public void setDeploymentThreads(int deploymentThreads) {
+        this.deploymentThreads = deploymentThreads;
+    }
+
+    public void setMetadataCache(MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     public void setOptions(EnumSet<Option> options) {
         this.options = options;
     }
@@ -622,9 +645,18 @@ public class Agent {
                 Map<String, Map<VersionRange, Map<String, String>>> metadata,
                 Set<String> uris)
             throws MultiException, InterruptedException, MalformedURLException {
+        return loadResources(manager, metadata, null, uris);
+    }
+
+    public static Callable<Map<String, Resource>> loadResources(
+                DownloadManager manager,
+                Map<String, Map<VersionRange, Map<String, String>>> metadata,
+                MetadataCache metadataCache,
+                Set<String> uris)
+            throws MultiException, InterruptedException, MalformedURLException {
         final Map<String, Resource> resources = new HashMap<>();
         final Downloader downloader = manager.createDownloader();
-        final MetadataBuilder builder = new MetadataBuilder(metadata);
+        final MetadataBuilder builder = new MetadataBuilder(metadata, metadataCache);
         final DownloadCallback callback = new DownloadCallback() {
             @Override
             public void downloaded(StreamProvider provider) throws Exception {
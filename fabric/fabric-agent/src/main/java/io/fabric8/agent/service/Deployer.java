@@ -18,9 +18,11 @@ package io.fabric8.agent.service;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.concurrent.*;
 
+import io.fabric8.agent.download.DownloadCallback;
 import io.fabric8.agent.download.DownloadManager;
 import io.fabric8.agent.download.Downloader;
 import io.fabric8.agent.download.StreamProvider;
@@ -153,6 +155,8 @@ public class Deployer {
         String updateSnaphots;
         Repository globalRepository;
         Map<String, Map<VersionRange, Map<String, String>>> metadata;
+        MetadataCache metadataCache;
+        int deploymentThreads;
 
         Map<String, Set<String>> requirements;
         Map<String, Map<String, Constants.RequestedState>> stateChanges;
@@ -195,9 +199,26 @@ public class Deployer {
      * @throws Exception
      */
     public void deploy(DeploymentState dstate, final DeploymentRequest request) throws Exception {
-
         String threadFactoryName = deploymentAgentId != null ? String.format("%s-deployer", deploymentAgentId) : "deployer";
-        ExecutorService deploymentsExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory(threadFactoryName));
+        int threads = Math.max(1, request.deploymentThreads);
+        ExecutorService deploymentsExecutor = Executors.newFixedThreadPool(threads, new NamedThreadFactory(threadFactoryName));
+        PhaseTimings timings = new PhaseTimings();
+        try {
+            deploy(dstate, request, deploymentsExecutor, threads, timings);
+        } finally {
+            deploymentsExecutor.shutdown();
+            timings.stop();
+            if (!timings.isEmpty()) {
+                LOGGER.info("Deployment phases: {}", timings);
+            }
+        }
+    }
+
+    private void deploy(DeploymentState dstate,
+                        final DeploymentRequest request,
+                        ExecutorService deploymentsExecutor,
+                        int threads,
+                        PhaseTimings timings) throws Exception {
 
         boolean noRefreshUnmanaged = request.options.contains(Constants.Option.NoAutoRefreshUnmanagedBundles);
         boolean noRefreshManaged = request.options.contains(Constants.Option.NoAutoRefreshManagedBundles);
@@ -217,6 +238,20 @@ public class Deployer {
         Map<String, Set<Bundle>> unmanagedBundles = apply(diff(dstate.bundlesPerRegion, dstate.state.managedBundles),
                 map(dstate.bundles));
 
+        //
+        // Skip the resolution if nothing it depends on has changed since the last successful deployment
+        //
+        String resolutionKey = ResolutionKey.compute(dstate, request, unmanagedBundles);
+        if (!simulate && request.stateChanges.isEmpty()
+                && resolutionKey.equals(dstate.state.resolutionKey.get())
+                && isDeploymentCurrent(dstate, request)) {
+            print("No changes to deploy", display);
+            if (callback.done(false, getStartupBundleUrls(dstate))) {
+                print("Done.", display);
+            }
+            return;
+        }
+
         // Resolve
         SubsystemResolver resolver = new SubsystemResolver(manager);
         resolver.prepare(
@@ -258,6 +293,8 @@ public class Deployer {
             newRequest.globalRepository = request.globalRepository;
             newRequest.options = request.options;
             newRequest.overrides = request.overrides;
+            newRequest.metadataCache = request.metadataCache;
+            newRequest.deploymentThreads = request.deploymentThreads;
             newRequest.requirements = copy(dstate.state.requirements);
             for (String prereq : prereqs) {
                 addToMapSet(newRequest.requirements, Constants.ROOT_REGION, prereq);
@@ -268,10 +305,10 @@ public class Deployer {
             throw new PartialDeploymentException(prereqs);
         }
 
-        callback.phase("resolving");
+        timings.phase("resolving");
 
         resolver.resolve(
-                new MetadataBuilder(request.metadata),
+                new MetadataBuilder(request.metadata, request.metadataCache),
                 request.overrides,
                 request.featureResolutionRange,
                 request.globalRepository);
@@ -324,7 +361,7 @@ public class Deployer {
         //
         // Compute deployment
         //
-        Deployer.Deployment deployment = computeDeployment(dstate, request, resolver);
+        Deployer.Deployment deployment = computeDeployment(dstate, request, resolver, deploymentsExecutor);
 
         //
         // Compute the set of bundles to refresh
@@ -550,7 +587,7 @@ public class Deployer {
             return;
         }
 
-        callback.phase("installing");
+        timings.phase("installing");
 
         //
         // Execute deployment
@@ -592,7 +629,7 @@ public class Deployer {
         //  - exit
         // When restarting, the resolution will be attempted again
         if (rootRegionDeployment != null && rootRegionDeployment.toUpdate.containsKey(dstate.serviceBundle)) {
-            callback.phase("updating agent");
+            timings.phase("updating agent");
             callback.persistResolveRequest(request);
             // If the bundle is updated because of a different checksum,
             // save the new checksum persistently
@@ -652,7 +689,7 @@ public class Deployer {
         }
         removeFragmentsAndBundlesInState(toStop, UNINSTALLED | RESOLVED | STOPPING);
         if (!toStop.isEmpty()) {
-            callback.phase("updating (stopping bundles)");
+            timings.phase("updating (stopping bundles)");
             print("Stopping bundles:", display);
             while (!toStop.isEmpty()) {
                 List<Bundle> bs = getBundlesToStop(toStop);
@@ -698,7 +735,7 @@ public class Deployer {
             }
         }
         if (hasToDelete) {
-            callback.phase("updating (uninstalling bundles)");
+            timings.phase("updating (uninstalling bundles)");
             print("Uninstalling bundles:", display);
             for (Map.Entry<String, RegionDeployment> entry : deployment.regions.entrySet()) {
                 String name = entry.getKey();
@@ -763,7 +800,7 @@ public class Deployer {
             }
         }
         if (hasToUpdate) {
-            callback.phase("updating (updating bundles)");
+            timings.phase("updating (updating bundles)");
             print("Updating bundles:", display);
             for (Map.Entry<String, RegionDeployment> rde : deployment.regions.entrySet()) {
                 for (Map.Entry<Bundle, Resource> entry : rde.getValue().toUpdate.entrySet()) {
@@ -798,7 +835,7 @@ public class Deployer {
             }
         }
         if (hasToInstall) {
-            callback.phase("updating (installing bundles)");
+            timings.phase("updating (installing bundles)");
             print("Installing bundles:", display);
             for (Map.Entry<String, RegionDeployment> entry : deployment.regions.entrySet()) {
                 String name = entry.getKey();
@@ -853,6 +890,11 @@ public class Deployer {
         newState.installedFeatures.putAll(installedFeatures);
         newState.stateFeatures.putAll(stateFeatures);
         newState.managedBundles.putAll(managedBundles);
+        for (Bundle bundle : toStart) {
+            if (bundle.getHeaders().get(org.osgi.framework.Constants.FRAGMENT_HOST) == null) {
+                newState.startedBundles.add(bundle.getBundleId());
+            }
+        }
         callback.saveState(newState);
 
         //
@@ -861,7 +903,7 @@ public class Deployer {
         if (!newFeatures.isEmpty()) {
 
             // check if configadmin is started
-            callback.phase("updating (installing configurations)");
+            timings.phase("updating (installing configurations)");
             Set<Feature> set = apply(flatten(newFeatures), map(dstate.features));
             callback.restoreConfigAdminIfNeeded();
             for (Feature feature : set) {
@@ -869,14 +911,14 @@ public class Deployer {
             }
         }
 
-        callback.phase("finalizing");
+        timings.phase("finalizing");
 
         if (!noRefresh) {
             toStop = new HashSet<>();
             toStop.addAll(toRefresh.keySet());
             removeFragmentsAndBundlesInState(toStop, UNINSTALLED | RESOLVED | STOPPING);
             if (!toStop.isEmpty()) {
-                callback.phase("finalizing (stopping bundles)");
+                timings.phase("finalizing (stopping bundles)");
                 print("Stopping bundles:", display);
                 while (!toStop.isEmpty()) {
                     List<Bundle> bs = getBundlesToStop(toStop);
@@ -920,7 +962,7 @@ public class Deployer {
                         LOGGER.debug("{} is refreshed because of [{}]", entry.getKey(), entry.getValue());
                     }
                 }
-                callback.phase("finalizing (refreshing bundles)");
+                timings.phase("finalizing (refreshing bundles)");
                 print("Refreshing bundles:", display);
                 for (Map.Entry<Bundle, String> entry : toRefresh.entrySet()) {
                     Bundle bundle = entry.getKey();
@@ -933,7 +975,7 @@ public class Deployer {
         }
 
         // Resolve bundles
-        callback.phase("finalizing (resolving bundles)");
+        timings.phase("finalizing (resolving bundles)");
         toResolve.addAll(toStart);
         toResolve.addAll(toRefresh.keySet());
         removeBundlesInState(toResolve, UNINSTALLED);
@@ -945,59 +987,75 @@ public class Deployer {
         removeFragmentsAndBundlesInState(toStart, UNINSTALLED | ACTIVE | STARTING);
         if (!toStart.isEmpty()) {
             // Compute correct start order
-            final List<Throwable> exceptions = new ArrayList<>();
-            callback.phase("finalizing (starting bundles)");
+            final List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<Throwable>());
+            timings.phase("finalizing (starting bundles)");
             print("Starting bundles:", display);
 
             while (!toStart.isEmpty()) {
                 List<Bundle> bs = getBundlesToStart(toStart, dstate.serviceBundle);
 
-                for (final Bundle bundle : bs) {
-                    print("  " + bundle.getSymbolicName() + " / " + bundle.getVersion(), display);
+                // bundles of a batch do not depend on each other and are started concurrently
+                for (final List<Bundle> batch : getStartBatches(bs, threads)) {
+                    List<Callable<Void>> tasks = new ArrayList<>();
+                    for (final Bundle bundle : batch) {
+                        print("  " + bundle.getSymbolicName() + " / " + bundle.getVersion(), display);
 
-                    if ("io.fabric8.fabric-agent".equals(bundle.getSymbolicName())) {
-                        agentStarted[0] = true;
+                        if ("io.fabric8.fabric-agent".equals(bundle.getSymbolicName())) {
+                            agentStarted[0] = true;
+                        }
+                        tasks.add(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                try {
+                                    LOGGER.info("Scheduled start for bundle:" + bundle.getSymbolicName() + " with a timeout limit of " + request.bundleStartTimeout + " seconds");
+                                    callback.startBundle(bundle);
+
+                                } catch (BundleException e) {
+                                    exceptions.add(e);
+                                }
+                                return null;
+                            }
+                        });
                     }
-                    List<Future<Void>> futures = deploymentsExecutor.invokeAll(
-                            Arrays.asList(
-                                    new Callable<Void>() {
-                                        @Override
-                                        public Void call() throws Exception {
-                                            try {
-                                                LOGGER.info("Scheduled start for bundle:" + bundle.getSymbolicName() + " with a timeout limit of " + request.bundleStartTimeout + " seconds");
-                                                callback.startBundle(bundle);
-
-                                            } catch (BundleException e) {
-                                                exceptions.add(e);
-                                            }
-                                            return null;
-                                        }
-                                    }
-                            ), request.bundleStartTimeout, TimeUnit.SECONDS);
+                    // each thread gets the full timeout for each of the bundles it has to start
+                    int rounds = (batch.size() + threads - 1) / threads;
+                    List<Future<Void>> futures = deploymentsExecutor.invokeAll(tasks, (long) request.bundleStartTimeout * rounds, TimeUnit.SECONDS);
                     // synch on Future's output, limited by the TimeUnit above
-                    for (Future<Void> f : futures) {
+                    for (int i = 0; i < futures.size(); i++) {
                         try {
-                            f.get();
+                            futures.get(i).get();
                         } catch (CancellationException e) {
-                            exceptions.add(new BundleException("Unable to start bundle [" + bundle.getSymbolicName() + "] within " + request.bundleStartTimeout + " seconds"));
+                            exceptions.add(new BundleException("Unable to start bundle [" + batch.get(i).getSymbolicName() + "] within " + request.bundleStartTimeout + " seconds"));
                         }
                     }
 
-                    toStart.remove(bundle);
+                    toStart.removeAll(batch);
                 }
 
             }
-            deploymentsExecutor.shutdown();
 
             if (!exceptions.isEmpty()) {
                 throw new MultiException("Error restarting bundles", exceptions);
             }
         }
 
+        // Remember the resolution so that an identical request can skip it
+        State resolvedState = newState.copy();
+        resolvedState.resolutionKey.set(resolutionKey);
+        callback.saveState(resolvedState);
+
         // Info about final list of deployed bundles
         callback.provisionList(deployment.resToBnd.keySet());
 
-        // list of bundles in special "fabric-startup" feature
+        if (callback.done(agentStarted[0], getStartupBundleUrls(dstate))) {
+            print("Done.", display);
+        }
+    }
+
+    /**
+     * List of bundles in the special "fabric-startup" feature
+     */
+    private List<String> getStartupBundleUrls(DeploymentState dstate) {
         List<String> urls = new LinkedList<>();
         for (Feature ft : dstate.features.values()) {
             if (ft.getName().equals("fabric-startup") && ft.getBundles() != null) {
@@ -1012,10 +1070,76 @@ public class Deployer {
                 }
             }
         }
+        return urls;
+    }
 
-        if (callback.done(agentStarted[0], urls)) {
-            print("Done.", display);
+    /**
+     * Checks that the bundles managed by the last deployment are still installed, that the ones it started
+     * are still active and that none of the snapshot bundles has changed, in which case the result of the
+     * last resolution still applies.
+     */
+    boolean isDeploymentCurrent(DeploymentState dstate, DeploymentRequest request) {
+        Map<String, Bundle> updateables = new HashMap<>();
+        for (Set<Long> ids : dstate.state.managedBundles.values()) {
+            for (long id : ids) {
+                Bundle bundle = dstate.bundles.get(id);
+                if (bundle == null || bundle.getState() == UNINSTALLED) {
+                    return false;
+                }
+                if (bundle.getLocation().matches(Constants.UPDATEABLE_URIS)) {
+                    updateables.put(bundle.getLocation(), bundle);
+                }
+            }
+        }
+        for (long id : dstate.state.startedBundles) {
+            Bundle bundle = dstate.bundles.get(id);
+            if (bundle == null || !isStarted(bundle)) {
+                LOGGER.debug("Bundle {} is not started, resolving again", id);
+                return false;
+            }
+        }
+        if (updateables.isEmpty() || Constants.UPDATE_SNAPSHOTS_NONE.equalsIgnoreCase(request.updateSnaphots)) {
+            return true;
+        }
+        if (!Constants.UPDATE_SNAPSHOTS_CRC.equalsIgnoreCase(request.updateSnaphots)) {
+            return false;
         }
+        final Map<String, Long> checksums = new ConcurrentHashMap<>();
+        try {
+            Downloader downloader = manager.createDownloader();
+            for (String location : updateables.keySet()) {
+                downloader.download(location, new DownloadCallback() {
+                    @Override
+                    public void downloaded(StreamProvider provider) throws Exception {
+                        checksums.put(provider.getUrl(), ChecksumUtils.checksum(new FileInputStream(provider.getFile())));
+                    }
+                });
+            }
+            downloader.await();
+        } catch (Exception e) {
+            LOGGER.debug("Unable to verify snapshot bundles, resolving again", e);
+            return false;
+        }
+        for (Map.Entry<String, Bundle> entry : updateables.entrySet()) {
+            Long checksum = checksums.get(entry.getKey());
+            if (checksum == null || !checksum.equals(dstate.state.bundleChecksums.get(entry.getValue().getBundleId()))) {
+                LOGGER.debug("Snapshot bundle {} has changed, resolving again", entry.getKey());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the bundle is active, or waiting for its first class load with a lazy activation policy
+     */
+    private static boolean isStarted(Bundle bundle) {
+        if (bundle.getState() == ACTIVE) {
+            return true;
+        }
+        String policy = bundle.getHeaders().get(org.osgi.framework.Constants.BUNDLE_ACTIVATIONPOLICY);
+        return bundle.getState() == STARTING && policy != null
+                && policy.trim().startsWith(org.osgi.framework.Constants.ACTIVATION_LAZY);
     }
 
     private void propagateState(Map<Resource, Constants.RequestedState> states, Resource resource, Constants.RequestedState state, SubsystemResolver resolver) {
@@ -1227,7 +1351,8 @@ public class Deployer {
     protected Deployment computeDeployment(
                     DeploymentState dstate,
                     DeploymentRequest request,
-                    SubsystemResolver resolver) throws IOException {
+                    SubsystemResolver resolver,
+                    ExecutorService executor) throws IOException {
 
         Deployment result = new Deployment();
 
@@ -1253,6 +1378,9 @@ public class Deployer {
             List<Resource> toDeploy = bundlesInRegion != null
                     ? new ArrayList<>(bundlesInRegion) : new ArrayList<Resource>();
 
+            // Snapshot bundles which need their checksum to be computed
+            Map<Bundle, Resource> snapshots = new LinkedHashMap<>();
+
             // First pass: go through all installed bundles and mark them
             // as either to ignore or delete
             for (long bundleId : managed) {
@@ -1279,19 +1407,8 @@ public class Deployer {
                                 LOGGER.debug("Update snapshot for " + bundle.getLocation());
                                 deployment.toUpdate.put(bundle, resource);
                             } else if (Constants.UPDATE_SNAPSHOTS_CRC.equalsIgnoreCase(request.updateSnaphots)) {
-                                // if the checksum are different
-                                try (
-                                        InputStream is = getBundleInputStream(resource, resolver.getProviders())
-                                ) {
-                                    long newCrc = ChecksumUtils.checksum(is);
-                                    long oldCrc = dstate.state.bundleChecksums.containsKey(bundle.getBundleId())
-                                                    ? dstate.state.bundleChecksums.get(bundle.getBundleId()) : 0L;
-                                    if (newCrc != oldCrc) {
-                                        LOGGER.debug("New snapshot available for " + bundle.getLocation());
-                                        deployment.toUpdate.put(bundle, resource);
-                                    }
-                                    result.bundleChecksums.put(bundle.getBundleId(), newCrc);
-                                }
+                                // check the checksum once the first pass is done
+                                snapshots.put(bundle, resource);
                             }
                         }
                         // We're done for this resource
@@ -1305,6 +1422,20 @@ public class Deployer {
                 }
             }
 
+            // Compute the checksums in parallel and update the snapshots if they are different
+            Map<Bundle, Long> checksums = computeChecksums(snapshots, resolver.getProviders(), executor);
+            for (Map.Entry<Bundle, Long> entry : checksums.entrySet()) {
+                Bundle bundle = entry.getKey();
+                long newCrc = entry.getValue();
+                long oldCrc = dstate.state.bundleChecksums.containsKey(bundle.getBundleId())
+                                ? dstate.state.bundleChecksums.get(bundle.getBundleId()) : 0L;
+                if (newCrc != oldCrc) {
+                    LOGGER.debug("New snapshot available for " + bundle.getLocation());
+                    deployment.toUpdate.put(bundle, snapshots.get(bundle));
+                }
+                result.bundleChecksums.put(bundle.getBundleId(), newCrc);
+            }
+
             // Second pass on remaining resources
             for (Resource resource : toDeploy) {
                 TreeMap<Version, Bundle> matching = new TreeMap<>();
@@ -1336,6 +1467,35 @@ public class Deployer {
         return result;
     }
 
+    private Map<Bundle, Long> computeChecksums(Map<Bundle, Resource> bundles,
+                                               final Map<String, StreamProvider> providers,
+                                               ExecutorService executor) throws IOException {
+        Map<Bundle, Future<Long>> futures = new LinkedHashMap<>();
+        for (Map.Entry<Bundle, Resource> entry : bundles.entrySet()) {
+            final Resource resource = entry.getValue();
+            futures.put(entry.getKey(), executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return ChecksumUtils.checksum(getBundleInputStream(resource, providers));
+                }
+            }));
+        }
+        Map<Bundle, Long> checksums = new LinkedHashMap<>();
+        for (Map.Entry<Bundle, Future<Long>> entry : futures.entrySet()) {
+            try {
+                checksums.put(entry.getKey(), entry.getValue().get());
+            } catch (InterruptedException e) {
+                throw (IOException) new InterruptedIOException("Interrupted while computing checksums").initCause(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Unable to compute checksum of " + entry.getKey().getLocation(), e.getCause());
+            }
+        }
+        return checksums;
+    }
+
     protected <T> MapUtils.Function<Bundle, T> adapt(final Class<T> clazz) {
         return new MapUtils.Function<Bundle, T>() {
             @Override
@@ -1402,6 +1562,45 @@ public class Deployer {
         return sorted;
     }
 
+    /**
+     * Splits the bundles to start, sorted by {@link #getBundlesToStart(Collection, Bundle)}, into batches
+     * of bundles which are not wired to each other so that the bundles of a batch can be started concurrently.
+     * When only one thread is used, each bundle is its own batch so the start order is preserved.
+     */
+    protected List<List<Bundle>> getStartBatches(List<Bundle> bundles, int threads) {
+        List<List<Bundle>> batches = new ArrayList<>();
+        if (threads <= 1) {
+            for (Bundle bundle : bundles) {
+                batches.add(Collections.singletonList(bundle));
+            }
+            return batches;
+        }
+        Map<Bundle, Integer> levels = new HashMap<>();
+        int maxLevel = -1;
+        for (Bundle bundle : bundles) {
+            int level = 0;
+            BundleWiring wiring = bundle.adapt(BundleWiring.class);
+            if (wiring == null) {
+                // not resolved, so we can't tell what it depends on
+                level = maxLevel + 1;
+            } else {
+                for (BundleWire wire : wiring.getRequiredWires(null)) {
+                    Integer providerLevel = levels.get(wire.getProviderWiring().getBundle());
+                    if (providerLevel != null && wire.getProviderWiring().getBundle() != bundle) {
+                        level = Math.max(level, providerLevel + 1);
+                    }
+                }
+            }
+            levels.put(bundle, level);
+            maxLevel = Math.max(maxLevel, level);
+            while (batches.size() <= level) {
+                batches.add(new ArrayList<Bundle>());
+            }
+            batches.get(level).add(bundle);
+        }
+        return batches;
+    }
+
     protected List<Bundle> getBundlesToStop(Collection<Bundle> bundles) {
         SortedMap<Integer, Set<Bundle>> bundlesPerStartLevel = new TreeMap<>();
         for (Bundle bundle : bundles) {
@@ -1466,6 +1665,47 @@ public class Deployer {
         return nb;
     }
 
+    /**
+     * Records the time spent in each phase of a deployment, while reporting the phases to the callback
+     */
+    class PhaseTimings {
+        private final Map<String, Long> durations = new LinkedHashMap<>();
+        private String phase;
+        private long start;
+
+        void phase(String name) {
+            stop();
+            callback.phase(name);
+            phase = name;
+            start = System.nanoTime();
+        }
+
+        void stop() {
+            if (phase != null) {
+                long elapsed = System.nanoTime() - start;
+                Long previous = durations.get(phase);
+                durations.put(phase, previous != null ? previous + elapsed : elapsed);
+                phase = null;
+            }
+        }
+
+        boolean isEmpty() {
+            return durations.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Long> entry : durations.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(entry.getKey()).append(": ").append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append(" ms");
+            }
+            return sb.toString();
+        }
+    }
+
     protected InputStream getBundleInputStream(Resource resource, Map<String, StreamProvider> providers) throws IOException {
         String uri = getUri(resource);
         if (uri == null) {
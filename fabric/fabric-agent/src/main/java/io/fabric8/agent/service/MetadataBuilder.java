@@ -25,6 +25,8 @@ import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import org.apache.felix.utils.version.VersionRange;
@@ -37,12 +39,51 @@ import static java.util.jar.JarFile.MANIFEST_NAME;
 public class MetadataBuilder {
 
     private final Map<String, Map<VersionRange, Map<String, String>>> metadata;
+    private final MetadataCache cache;
 
     public MetadataBuilder(Map<String, Map<VersionRange, Map<String, String>>> metadata) {
+        this(metadata, null);
+    }
+
+    public MetadataBuilder(Map<String, Map<VersionRange, Map<String, String>>> metadata, MetadataCache cache) {
         this.metadata = metadata;
+        this.cache = cache;
     }
 
     public Map<String, String> getMetadata(String url, File file) throws IOException {
+        Map<String, String> headers = cache != null ? cache.get(file) : null;
+        if (headers == null) {
+            headers = readManifest(url, file);
+            if (cache != null) {
+                cache.put(file, headers);
+            }
+        }
+        return overrideHeaders(new HashMap<String, String>(headers));
+    }
+
+    /**
+     * Reads the main attributes of the manifest using the central directory of the jar,
+     * falling back to scanning the entries for jars with a broken central directory.
+     */
+    protected Map<String, String> readManifest(String url, File file) throws IOException {
+        try (
+                ZipFile zip = new ZipFile(file)
+        ) {
+            ZipEntry entry = zip.getEntry(MANIFEST_NAME);
+            if (entry == null) {
+                throw new IllegalArgumentException("Resource " + url + " does not contain a manifest");
+            }
+            try (
+                    InputStream is = zip.getInputStream(entry)
+            ) {
+                return toHeaders(new Manifest(is).getMainAttributes());
+            }
+        } catch (ZipException e) {
+            return scanManifest(url, file);
+        }
+    }
+
+    private Map<String, String> scanManifest(String url, File file) throws IOException {
         try (
                 InputStream is = new BufferedInputStream(new FileInputStream(file))
         ) {
@@ -50,18 +91,21 @@ public class MetadataBuilder {
             ZipEntry entry;
             while ((entry = zis.getNextEntry()) != null) {
                 if (MANIFEST_NAME.equals(entry.getName())) {
-                    Attributes attributes = new Manifest(zis).getMainAttributes();
-                    Map<String, String> headers = new HashMap<String, String>();
-                    for (Map.Entry attr : attributes.entrySet()) {
-                        headers.put(attr.getKey().toString(), attr.getValue().toString());
-                    }
-                    return overrideHeaders(headers);
+                    return toHeaders(new Manifest(zis).getMainAttributes());
                 }
             }
         }
         throw new IllegalArgumentException("Resource " + url + " does not contain a manifest");
     }
 
+    private static Map<String, String> toHeaders(Attributes attributes) {
+        Map<String, String> headers = new HashMap<String, String>();
+        for (Map.Entry attr : attributes.entrySet()) {
+            headers.put(attr.getKey().toString(), attr.getValue().toString());
+        }
+        return headers;
+    }
+
     public Map<String, String> overrideHeaders(Map<String, String> headers) {
         String bsn = headers.get(Constants.BUNDLE_SYMBOLICNAME);
         String vstr = headers.get(Constants.BUNDLE_VERSION);
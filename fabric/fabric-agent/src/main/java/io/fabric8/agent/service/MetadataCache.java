@@ -0,0 +1,220 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent index of the manifest headers of downloaded bundles, so that each deployment
+ * does not have to open every jar again to read its manifest.
+ * <p/>
+ * Entries are keyed by the canonical path of the artifact and are only used while the size and
+ * last modification time of the file are unchanged. The headers are stored before any metadata
+ * overrides are applied, as those may change between deployments.
+ */
+public class MetadataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataCache.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File file;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    /**
+     * @param file the file used to persist the cache, or null to only keep it in memory
+     */
+    public MetadataCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the cached headers of the given artifact or null if they are unknown or the artifact has changed
+     */
+    public Map<String, String> get(File artifact) {
+        load();
+        Entry entry = entries.get(getKey(artifact));
+        if (entry != null && entry.size == artifact.length() && entry.lastModified == artifact.lastModified()) {
+            hits.incrementAndGet();
+            return entry.headers;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(File artifact, Map<String, String> headers) {
+        load();
+        entries.put(getKey(artifact), new Entry(artifact.length(), artifact.lastModified(),
+                Collections.unmodifiableMap(new HashMap<>(headers))));
+        dirty = true;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the cache to disk if it changed since it was loaded or last saved,
+     * dropping the entries of artifacts which no longer exist.
+     */
+    public synchronized void save() {
+        if (file == null || !dirty) {
+            return;
+        }
+        dirty = false;
+        for (Iterator<String> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+            if (!new File(iterator.next()).isFile()) {
+                iterator.remove();
+            }
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (
+                DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))
+        ) {
+            dos.writeInt(FORMAT_VERSION);
+            Map<String, Entry> snapshot = new HashMap<>(entries);
+            dos.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                writeString(dos, entry.getKey());
+                dos.writeLong(entry.getValue().size);
+                dos.writeLong(entry.getValue().lastModified);
+                dos.writeInt(entry.getValue().headers.size());
+                for (Map.Entry<String, String> header : entry.getValue().headers.entrySet()) {
+                    writeString(dos, header.getKey());
+                    writeString(dos, header.getValue());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error storing bundle metadata cache to " + file, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                LOGGER.warn("Unable to rename " + tmp + " to " + file);
+                tmp.delete();
+            }
+        }
+    }
+
+    protected void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (file != null && file.isFile()) {
+                try (
+                        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+                ) {
+                    if (dis.readInt() == FORMAT_VERSION) {
+                        int count = dis.readInt();
+                        for (int i = 0; i < count; i++) {
+                            String key = readString(dis);
+                            long size = dis.readLong();
+                            long lastModified = dis.readLong();
+                            int headerCount = dis.readInt();
+                            Map<String, String> headers = new HashMap<>();
+                            for (int j = 0; j < headerCount; j++) {
+                                headers.put(readString(dis), readString(dis));
+                            }
+                            entries.putIfAbsent(key, new Entry(size, lastModified, Collections.unmodifiableMap(headers)));
+                        }
+                    }
+                } catch (EOFException e) {
+                    LOGGER.warn("Bundle metadata cache " + file + " is truncated, ignoring the remaining entries");
+                } catch (IOException | RuntimeException e) {
+                    // the file is corrupt, start over with an empty cache
+                    LOGGER.warn("Error loading bundle metadata cache from " + file + ", discarding it", e);
+                    entries.clear();
+                    file.delete();
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private static String getKey(File artifact) {
+        try {
+            return artifact.getCanonicalPath();
+        } catch (IOException e) {
+            return artifact.getAbsolutePath();
+        }
+    }
+
+    // DataOutputStream.writeUTF is limited to 64k which some Export-Package headers exceed
+    private static void writeString(DataOutputStream dos, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    private static String readString(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        // the length comes from the file, do not trust it with an allocation larger than what is left to read
+        if (length < 0 || length > dis.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        dis.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class Entry {
+        final long size;
+        final long lastModified;
+        final Map<String, String> headers;
+
+        Entry(long size, long lastModified, Map<String, String> headers) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.headers = headers;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.fabric8.agent.model.BundleInfo;
+import io.fabric8.agent.model.Capability;
+import io.fabric8.agent.model.Conditional;
+import io.fabric8.agent.model.Config;
+import io.fabric8.agent.model.ConfigFile;
+import io.fabric8.agent.model.Content;
+import io.fabric8.agent.model.Dependency;
+import io.fabric8.agent.model.Feature;
+import io.fabric8.agent.model.Requirement;
+import io.fabric8.agent.model.ScopeFilter;
+import io.fabric8.agent.model.Scoping;
+import io.fabric8.agent.repository.BaseRepository;
+import org.apache.felix.utils.version.VersionRange;
+import org.osgi.framework.Bundle;
+import org.osgi.resource.Resource;
+
+import static io.fabric8.agent.resolver.ResourceUtils.getUri;
+
+/**
+ * Computes a stable digest of everything the outcome of a resolution depends on: the requirements,
+ * overrides, options and metadata of the request, the available features and the unmanaged bundles.
+ * <p/>
+ * When the digest of a request matches the one stored in the {@link State} by the last successful
+ * deployment, the resolution would produce the same result and can be skipped.
+ */
+final class ResolutionKey {
+
+    private final MessageDigest digest;
+
+    private ResolutionKey() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String compute(Deployer.DeploymentState dstate,
+                          Deployer.DeploymentRequest request,
+                          Map<String, Set<Bundle>> unmanagedBundles) {
+        ResolutionKey key = new ResolutionKey();
+        key.add("requirements");
+        for (Map.Entry<String, Set<String>> entry : new TreeMap<>(request.requirements).entrySet()) {
+            key.add(entry.getKey());
+            key.addAll(entry.getValue());
+        }
+        key.add("overrides");
+        key.addAll(request.overrides);
+        key.add("options");
+        key.add(request.options != null ? request.options.toString() : null);
+        key.add(request.featureResolutionRange);
+        key.add(request.bundleUpdateRange);
+        key.add(request.updateSnaphots);
+        key.add("metadata");
+        if (request.metadata != null) {
+            for (Map.Entry<String, Map<VersionRange, Map<String, String>>> entry : new TreeMap<>(request.metadata).entrySet()) {
+                key.add(entry.getKey());
+                Map<String, String> ranges = new TreeMap<>();
+                for (Map.Entry<VersionRange, Map<String, String>> range : entry.getValue().entrySet()) {
+                    ranges.put(range.getKey().toString(), new TreeMap<>(range.getValue()).toString());
+                }
+                key.add(ranges.toString());
+            }
+        }
+        key.add("repository");
+        if (request.globalRepository instanceof BaseRepository) {
+            Set<String> uris = new TreeSet<>();
+            for (Resource resource : ((BaseRepository) request.globalRepository).getResources()) {
+                uris.add(getUri(resource));
+            }
+            key.addAll(uris);
+        } else if (request.globalRepository != null) {
+            // we can't tell what an arbitrary repository provides so never reuse its resolution
+            key.add(request.globalRepository.getClass().getName() + "@" + System.identityHashCode(request.globalRepository));
+        }
+        key.add("features");
+        for (Feature feature : new TreeMap<>(dstate.features).values()) {
+            key.addFeature(feature);
+        }
+        key.add("unmanaged");
+        for (Map.Entry<String, Set<Bundle>> entry : new TreeMap<>(unmanagedBundles).entrySet()) {
+            key.add(entry.getKey());
+            Set<String> bundles = new TreeSet<>();
+            for (Bundle bundle : entry.getValue()) {
+                bundles.add(bundle.getBundleId() + "|" + bundle.getSymbolicName() + "|" + bundle.getVersion() + "|" + bundle.getLastModified());
+            }
+            key.addAll(bundles);
+        }
+        return key.toHex();
+    }
+
+    private void addFeature(Feature feature) {
+        add(feature.getId());
+        add(feature.getResolver());
+        add(feature.getInstall());
+        add(Integer.toString(feature.getStartLevel()));
+        addContent(feature);
+        for (Conditional conditional : feature.getConditional()) {
+            add("conditional");
+            addAll(conditional.getCondition());
+            addContent(conditional);
+        }
+        for (Capability capability : feature.getCapabilities()) {
+            add(capability.getValue());
+        }
+        for (Requirement requirement : feature.getRequirements()) {
+            add(requirement.getValue());
+        }
+        Scoping scoping = feature.getScoping();
+        if (scoping != null) {
+            add("scoping|" + scoping.acceptDependencies());
+            addScopeFilters(scoping.getImports());
+            add("exports");
+            addScopeFilters(scoping.getExports());
+        }
+    }
+
+    private void addContent(Content content) {
+        for (BundleInfo bundle : content.getBundles()) {
+            add(bundle.getLocation() + "|" + bundle.getStartLevel() + "|" + bundle.isStart() + "|" + bundle.isDependency());
+        }
+        for (Dependency dependency : content.getDependencies()) {
+            add(dependency.toString() + "|" + dependency.isPrerequisite() + "|" + dependency.isDependency());
+        }
+        for (Config config : content.getConfigurations()) {
+            add(config.getName() + "|" + config.isAppend() + "|" + config.getValue());
+        }
+        for (ConfigFile configFile : content.getConfigurationFiles()) {
+            add(configFile.getLocation() + "|" + configFile.getFinalname() + "|" + configFile.isOverride());
+        }
+    }
+
+    private void addScopeFilters(List<ScopeFilter> filters) {
+        if (filters != null) {
+            for (ScopeFilter filter : filters) {
+                add(filter.getNamespace() + "|" + filter.getValue() + "|" + filter.getFilter());
+            }
+        }
+    }
+
+    private void addAll(Collection<String> values) {
+        if (values != null) {
+            // sets may iterate in any order, so sort the values for equal inputs to give the same digest
+            Set<String> sorted = new TreeSet<>();
+            for (String value : values) {
+                if (value != null) {
+                    sorted.add(value);
+                }
+            }
+            for (String value : sorted) {
+                add(value);
+            }
+        }
+    }
+
+    private void add(String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private String toHex() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import io.fabric8.agent.internal.MapUtils;
 
@@ -32,6 +33,14 @@ public class State {
     public final Map<String, Map<String, String>> stateFeatures = new HashMap<>();
     public final Map<String, Set<Long>> managedBundles = new HashMap<>();
     public final Map<Long, Long> bundleChecksums = new HashMap<>();
+    /**
+     * Ids of the managed bundles which the last deployment requested to be started
+     */
+    public final Set<Long> startedBundles = new TreeSet<>();
+    /**
+     * Digest of the inputs of the last successful resolution, see {@link ResolutionKey}
+     */
+    public final AtomicReference<String> resolutionKey = new AtomicReference<>();
 
     public State copy() {
         State state = new State();
@@ -51,14 +60,17 @@ public class State {
             to.stateFeatures.clear();
             to.managedBundles.clear();
             to.bundleChecksums.clear();
+            to.startedBundles.clear();
         }
         to.bootDone.set(from.bootDone.get());
+        to.resolutionKey.set(from.resolutionKey.get());
         MapUtils.copy(from.repositories, to.repositories);
         MapUtils.copy(from.requirements, to.requirements);
         MapUtils.copy(from.installedFeatures, to.installedFeatures);
         MapUtils.copy(from.stateFeatures, to.stateFeatures);
         MapUtils.copy(from.managedBundles, to.managedBundles);
         MapUtils.copy(from.bundleChecksums, to.bundleChecksums);
+        to.startedBundles.addAll(from.startedBundles);
     }
 
 }
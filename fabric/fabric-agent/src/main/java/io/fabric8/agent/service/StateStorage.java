@@ -34,6 +34,7 @@ public abstract class StateStorage {
         state.requirements.clear();
         state.installedFeatures.clear();
         state.managedBundles.clear();
+        state.startedBundles.clear();
         try (
                 InputStream is = getInputStream()
         ) {
@@ -46,6 +47,10 @@ public abstract class StateStorage {
                 state.stateFeatures.putAll(toStringStringStringMapMap((Map) json.get("state")));
                 state.managedBundles.putAll(toStringLongSetMap((Map) json.get("managed")));
                 state.bundleChecksums.putAll(toLongLongMap((Map) json.get("checksums")));
+                state.resolutionKey.set((String) json.get("resolution"));
+                if (json.get("started") != null) {
+                    state.startedBundles.addAll(toLongSet((Collection) json.get("started")));
+                }
             }
         }
     }
@@ -63,6 +68,10 @@ public abstract class StateStorage {
                 json.put("state", state.stateFeatures);
                 json.put("managed", state.managedBundles);
                 json.put("checksums", toStringLongMap(state.bundleChecksums));
+                json.put("started", state.startedBundles);
+                if (state.resolutionKey.get() != null) {
+                    json.put("resolution", state.resolutionKey.get());
+                }
                 JsonWriter.write(os, json);
             }
         }
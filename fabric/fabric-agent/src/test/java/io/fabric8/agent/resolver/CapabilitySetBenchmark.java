@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.resolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+
+/**
+ * A micro benchmark of {@link CapabilitySet#match(SimpleFilter, boolean)} over a repository shaped like
+ * a Karaf feature repository: a few hundred bundles exporting versioned packages and importing packages
+ * of other bundles with version ranges. The indexed lookup is compared against evaluating the filter
+ * against every capability of the namespace.
+ * <p/>
+ * This is not run as part of the test suite; run the {@link #main(String[])} method by hand.
+ */
+public class CapabilitySetBenchmark {
+
+    private static final int BUNDLES = 400;
+    private static final int EXPORTS_PER_BUNDLE = 12;
+    private static final int IMPORTS_PER_BUNDLE = 25;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) throws Exception {
+        List<Resource> resources = createResources();
+
+        CapabilitySet capSet = new CapabilitySet(Collections.singletonList(BundleRevision.PACKAGE_NAMESPACE));
+        List<Capability> capabilities = new ArrayList<Capability>();
+        List<SimpleFilter> filters = new ArrayList<SimpleFilter>();
+        for (Resource resource : resources) {
+            for (Capability cap : resource.getCapabilities(BundleRevision.PACKAGE_NAMESPACE)) {
+                capSet.addCapability(cap);
+                capabilities.add(cap);
+            }
+            for (Requirement req : resource.getRequirements(BundleRevision.PACKAGE_NAMESPACE)) {
+                filters.add(((RequirementImpl) req).getFilter());
+            }
+        }
+
+        // warm up
+        runIndexed(capSet, filters, ITERATIONS / 4);
+        runScan(capabilities, filters, ITERATIONS / 4);
+
+        long start = System.nanoTime();
+        int scanMatches = runScan(capabilities, filters, ITERATIONS);
+        long scanNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int indexedMatches = runIndexed(capSet, filters, ITERATIONS);
+        long indexedNanos = System.nanoTime() - start;
+
+        long lookups = (long) ITERATIONS * filters.size();
+        System.out.println("capabilities: " + capabilities.size() + " requirements: " + filters.size()
+                + " scan: " + (scanNanos / lookups) + " ns/requirement (" + scanMatches + " matches)"
+                + " indexed: " + (indexedNanos / lookups) + " ns/requirement (" + indexedMatches + " matches)");
+    }
+
+    protected static int runIndexed(CapabilitySet capSet, List<SimpleFilter> filters, int iterations) {
+        int matches = 0;
+        for (int n = 0; n < iterations; n++) {
+            for (SimpleFilter filter : filters) {
+                Set<Capability> result = capSet.match(filter, true);
+                matches += result.size();
+            }
+        }
+        return matches;
+    }
+
+    protected static int runScan(List<Capability> capabilities, List<SimpleFilter> filters, int iterations) {
+        int matches = 0;
+        for (int n = 0; n < iterations; n++) {
+            for (SimpleFilter filter : filters) {
+                for (Capability cap : capabilities) {
+                    if (CapabilitySet.matches(cap, filter)) {
+                        matches++;
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the bundles of the benchmark repository, also used by {@link CapabilitySetTest}
+     */
+    static List<Resource> createResources() throws Exception {
+        List<Resource> resources = new ArrayList<Resource>();
+        for (int i = 0; i < BUNDLES; i++) {
+            resources.add(ResourceBuilder.build("mvn:org.example/bundle" + i + "/1.0.0", headers(i)));
+        }
+        return resources;
+    }
+
+    private static Map<String, String> headers(int bundle) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Bundle-ManifestVersion", "2");
+        headers.put("Bundle-SymbolicName", "org.example.bundle" + bundle);
+        headers.put("Bundle-Version", "1.0.0");
+        StringBuilder exports = new StringBuilder();
+        for (int i = 0; i < EXPORTS_PER_BUNDLE; i++) {
+            if (i > 0) {
+                exports.append(",");
+            }
+            // a few packages are exported in two versions by different bundles
+            int version = (bundle % 10 == 0 && i == 0) ? 2 : 1;
+            exports.append("org.example.b").append(bundle).append(".p").append(i)
+                    .append(";version=\"").append(version).append(".").append(bundle % 7).append(".0\"");
+        }
+        headers.put("Export-Package", exports.toString());
+        StringBuilder imports = new StringBuilder();
+        for (int i = 0; i < IMPORTS_PER_BUNDLE; i++) {
+            if (i > 0) {
+                imports.append(",");
+            }
+            int other = (bundle * 31 + i * 17) % BUNDLES;
+            imports.append("org.example.b").append(other).append(".p").append(i % EXPORTS_PER_BUNDLE)
+                    .append(";version=\"[1.0,3)\"");
+        }
+        headers.put("Import-Package", imports.toString());
+        return headers;
+    }
+}
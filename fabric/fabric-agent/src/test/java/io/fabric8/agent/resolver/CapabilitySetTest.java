@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.resolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CapabilitySetTest {
+
+    @Test
+    public void testIndexedMatchesAreTheSameAsScanning() throws Exception {
+        CapabilitySet capSet = new CapabilitySet(Collections.singletonList(BundleRevision.PACKAGE_NAMESPACE));
+        List<Capability> capabilities = new ArrayList<Capability>();
+        List<SimpleFilter> filters = new ArrayList<SimpleFilter>();
+        for (Resource resource : CapabilitySetBenchmark.createResources()) {
+            for (Capability cap : resource.getCapabilities(BundleRevision.PACKAGE_NAMESPACE)) {
+                capSet.addCapability(cap);
+                capabilities.add(cap);
+            }
+            for (Requirement req : resource.getRequirements(BundleRevision.PACKAGE_NAMESPACE)) {
+                filters.add(((RequirementImpl) req).getFilter());
+            }
+        }
+        // the indexed attribute after other subfilters, and no indexed attribute at all
+        filters.add(SimpleFilter.parse("(&(version>=2.0.0)(osgi.wiring.package=org.example.b10.p0))"));
+        filters.add(SimpleFilter.parse("(&(version>=2.0.0)(!(version>=2.3.0)))"));
+        filters.add(SimpleFilter.parse("(&(osgi.wiring.package=org.example.b1.p1)(|(version=1.1.0)(version=2.1.0)))"));
+
+        int matches = 0;
+        for (SimpleFilter filter : filters) {
+            Set<Capability> scanned = new HashSet<Capability>();
+            for (Capability cap : capabilities) {
+                if (CapabilitySet.matches(cap, filter)) {
+                    scanned.add(cap);
+                }
+            }
+            assertEquals(filter.toString(), scanned, capSet.match(filter, true));
+            matches += scanned.size();
+        }
+        assertTrue(matches > 0);
+    }
+}
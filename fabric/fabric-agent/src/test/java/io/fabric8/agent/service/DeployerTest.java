@@ -0,0 +1,210 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeployerTest {
+
+    @Test
+    public void testDeploymentIsCurrentOnlyWhileStartedBundlesAreActive() throws Exception {
+        TestBundle first = createBundle(2, "first", Bundle.ACTIVE, false);
+        TestBundle second = createBundle(3, "second", Bundle.ACTIVE, false);
+        TestBundle lazy = createBundle(4, "lazy", Bundle.STARTING, true);
+        Deployer.DeploymentState dstate = createDeploymentState(first, second, lazy);
+        Deployer.DeploymentRequest request = new Deployer.DeploymentRequest();
+        request.updateSnaphots = Constants.UPDATE_SNAPSHOTS_NONE;
+        Deployer deployer = new Deployer(null, null);
+
+        assertTrue(deployer.isDeploymentCurrent(dstate, request));
+
+        second.state = Bundle.RESOLVED;
+        assertFalse("a stopped bundle must be started again", deployer.isDeploymentCurrent(dstate, request));
+
+        second.state = Bundle.STARTING;
+        assertFalse("an eager bundle stuck in STARTING is not started", deployer.isDeploymentCurrent(dstate, request));
+
+        second.state = Bundle.ACTIVE;
+        lazy.state = Bundle.ACTIVE;
+        assertTrue(deployer.isDeploymentCurrent(dstate, request));
+
+        // bundles which were not requested to be started may be in any state
+        dstate.state.startedBundles.remove(second.getBundleId());
+        second.state = Bundle.RESOLVED;
+        assertTrue(deployer.isDeploymentCurrent(dstate, request));
+    }
+
+    @Test
+    public void testBundlesAreStartedByStartLevelThenDependencies() throws Exception {
+        WiredBundle api = new WiredBundle(2, "api", 50, "Export-Package", "org.test.api");
+        WiredBundle impl = new WiredBundle(3, "impl", 50, "Import-Package", "org.test.api");
+        WiredBundle other = new WiredBundle(4, "other", 50, null, null);
+        WiredBundle early = new WiredBundle(5, "early", 10, null, null);
+        WiredBundle late = new WiredBundle(6, "late", 80, "Import-Package", "org.test.api");
+        impl.wireTo(api);
+        late.wireTo(api);
+        Deployer deployer = new Deployer(null, null);
+
+        // one start level at a time, lowest first, the same way deploy() consumes them
+        List<Bundle> toStart = new ArrayList<Bundle>(Arrays.asList(late, impl, other, api, early));
+        List<List<Bundle>> levels = new ArrayList<>();
+        while (!toStart.isEmpty()) {
+            List<Bundle> bundles = deployer.getBundlesToStart(toStart, null);
+            levels.add(bundles);
+            toStart.removeAll(bundles);
+        }
+        assertEquals(3, levels.size());
+        assertEquals(Collections.<Bundle>singletonList(early), levels.get(0));
+        assertEquals(new HashSet<Bundle>(Arrays.asList(api, impl, other)), new HashSet<>(levels.get(1)));
+        assertTrue("providers are sorted before the bundles wired to them",
+                levels.get(1).indexOf(api) < levels.get(1).indexOf(impl));
+        assertEquals(Collections.<Bundle>singletonList(late), levels.get(2));
+
+        // bundles which are not wired to each other share a batch, dependent bundles come in a later one
+        List<List<Bundle>> batches = deployer.getStartBatches(levels.get(1), 4);
+        assertEquals(2, batches.size());
+        assertEquals(new HashSet<Bundle>(Arrays.asList(api, other)), new HashSet<>(batches.get(0)));
+        assertEquals(Collections.<Bundle>singletonList(impl), batches.get(1));
+
+        // a single thread keeps the sorted order, one bundle per batch
+        batches = deployer.getStartBatches(levels.get(1), 1);
+        assertEquals(3, batches.size());
+        for (int i = 0; i < batches.size(); i++) {
+            assertEquals(Collections.singletonList(levels.get(1).get(i)), batches.get(i));
+        }
+    }
+
+    @Test
+    public void testPhaseTimingsAccumulatePerPhase() throws Exception {
+        Deployer.DeployCallback callback = createNiceMock(Deployer.DeployCallback.class);
+        callback.phase("resolving");
+        callback.phase("installing");
+        callback.phase("resolving");
+        replay(callback);
+
+        Deployer.PhaseTimings timings = new Deployer(null, callback).new PhaseTimings();
+        assertTrue(timings.isEmpty());
+        timings.phase("resolving");
+        timings.phase("installing");
+        timings.phase("resolving");
+        timings.stop();
+        assertFalse(timings.isEmpty());
+        String text = timings.toString();
+        assertTrue(text, text.matches("resolving: \\d+ ms, installing: \\d+ ms"));
+        verify(callback);
+    }
+
+    private Deployer.DeploymentState createDeploymentState(TestBundle... bundles) {
+        Deployer.DeploymentState dstate = new Deployer.DeploymentState();
+        dstate.state = new State();
+        dstate.bundles = new HashMap<>();
+        for (TestBundle bundle : bundles) {
+            dstate.bundles.put(bundle.getBundleId(), bundle);
+            dstate.state.startedBundles.add(bundle.getBundleId());
+        }
+        dstate.state.managedBundles.put("root", new TreeSet<>(dstate.bundles.keySet()));
+        return dstate;
+    }
+
+    private TestBundle createBundle(long id, String name, int state, boolean lazy) throws BundleException {
+        Hashtable<String, String> headers = new Hashtable<>();
+        headers.put("Bundle-ManifestVersion", "2");
+        headers.put("Bundle-SymbolicName", name);
+        headers.put("Bundle-Version", "1.0.0");
+        if (lazy) {
+            headers.put("Bundle-ActivationPolicy", "lazy");
+        }
+        return new TestBundle(id, "mvn:test/" + name + "/1.0.0", state, headers);
+    }
+
+    /**
+     * A resolved bundle with a start level, wired to the bundles it imports from
+     */
+    private static class WiredBundle extends TestBundle {
+
+        private final int startLevel;
+        private final List<BundleWire> wires = new ArrayList<>();
+        private BundleWiring wiring;
+
+        WiredBundle(long id, String name, int startLevel, String header, String packageName) throws BundleException {
+            super(id, "mvn:test/" + name + "/1.0.0", Bundle.RESOLVED, headers(name, header, packageName));
+            this.startLevel = startLevel;
+        }
+
+        private static Hashtable<String, String> headers(String name, String header, String packageName) {
+            Hashtable<String, String> headers = new Hashtable<>();
+            headers.put("Bundle-ManifestVersion", "2");
+            headers.put("Bundle-SymbolicName", name);
+            headers.put("Bundle-Version", "1.0.0");
+            if (header != null) {
+                headers.put(header, packageName);
+            }
+            return headers;
+        }
+
+        void wireTo(WiredBundle provider) {
+            BundleWire wire = createMock(BundleWire.class);
+            expect(wire.getProviderWiring()).andReturn(provider.getBundleWiring()).anyTimes();
+            replay(wire);
+            wires.add(wire);
+        }
+
+        BundleWiring getBundleWiring() {
+            if (wiring == null) {
+                wiring = createMock(BundleWiring.class);
+                expect(wiring.getBundle()).andReturn(this).anyTimes();
+                expect(wiring.getRequiredWires(null)).andReturn(wires).anyTimes();
+                replay(wiring);
+            }
+            return wiring;
+        }
+
+        @Override
+        public <A> A adapt(Class<A> type) {
+            if (type == BundleWiring.class) {
+                return type.cast(getBundleWiring());
+            }
+            return super.adapt(type);
+        }
+
+        @Override
+        public int getStartLevel() {
+            return startLevel;
+        }
+    }
+}
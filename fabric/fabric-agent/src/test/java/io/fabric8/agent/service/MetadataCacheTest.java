@@ -0,0 +1,135 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.service;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import io.fabric8.common.util.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class MetadataCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File("target/metadata-cache");
+        Files.recursiveDelete(dir);
+        dir.mkdirs();
+    }
+
+    @Test
+    public void testHeadersArePersisted() throws Exception {
+        File jar = createJar("test.jar", "1.0.0");
+        File cacheFile = new File(dir, "metadata.cache");
+
+        MetadataCache cache = new MetadataCache(cacheFile);
+        assertNull(cache.get(jar));
+        cache.put(jar, headers("1.0.0"));
+        cache.save();
+        assertEquals(1, cache.getMisses());
+
+        MetadataCache reloaded = new MetadataCache(cacheFile);
+        Map<String, String> headers = reloaded.get(jar);
+        assertNotNull(headers);
+        assertEquals("1.0.0", headers.get("Bundle-Version"));
+        assertEquals(1, reloaded.getHits());
+    }
+
+    @Test
+    public void testChangedArtifactsAreNotServed() throws Exception {
+        File jar = createJar("test.jar", "1.0.0");
+        MetadataCache cache = new MetadataCache(null);
+        cache.put(jar, headers("1.0.0"));
+        assertNotNull(cache.get(jar));
+
+        createJar("test.jar", "1.0.0.SNAPSHOT-with-a-longer-version");
+        assertNull(cache.get(jar));
+    }
+
+    @Test
+    public void testDeletedArtifactsAreDropped() throws Exception {
+        File jar = createJar("test.jar", "1.0.0");
+        File cacheFile = new File(dir, "metadata.cache");
+        MetadataCache cache = new MetadataCache(cacheFile);
+        cache.put(jar, headers("1.0.0"));
+        jar.delete();
+        cache.save();
+        assertEquals(0, cache.size());
+        assertEquals(0, new MetadataCache(cacheFile).size());
+    }
+
+    @Test
+    public void testCorruptFileIsDiscarded() throws Exception {
+        File jar = createJar("test.jar", "1.0.0");
+        File cacheFile = new File(dir, "metadata.cache");
+        for (int length : new int[]{Integer.MAX_VALUE, -5}) {
+            try (
+                    DataOutputStream dos = new DataOutputStream(new FileOutputStream(cacheFile))
+            ) {
+                dos.writeInt(1);
+                dos.writeInt(1);
+                dos.writeInt(length);
+                dos.writeBytes("garbage");
+            }
+
+            MetadataCache cache = new MetadataCache(cacheFile);
+            assertNull(cache.get(jar));
+            assertEquals(0, cache.size());
+            assertFalse(cacheFile.exists());
+
+            // the cache is still usable afterwards
+            cache.put(jar, headers("1.0.0"));
+            cache.save();
+            assertNotNull(new MetadataCache(cacheFile).get(jar));
+        }
+    }
+
+    private Map<String, String> headers(String version) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Bundle-SymbolicName", "test");
+        headers.put("Bundle-Version", version);
+        return headers;
+    }
+
+    private File createJar(String name, String version) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Bundle-SymbolicName", "test");
+        manifest.getMainAttributes().putValue("Bundle-Version", version);
+        File file = new File(dir, name);
+        try (
+                JarOutputStream jos = new JarOutputStream(new FileOutputStream(file), manifest)
+        ) {
+            jos.flush();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.service;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.fabric8.agent.model.BundleInfo;
+import io.fabric8.agent.model.Feature;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+import static io.fabric8.agent.internal.MapUtils.addToMapSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ResolutionKeyTest {
+
+    @Test
+    public void testKeyIsStable() {
+        assertEquals(key(request("feature:foo"), state(feature("1.0.0"))),
+                key(request("feature:foo"), state(feature("1.0.0"))));
+    }
+
+    @Test
+    public void testKeyChangesWithRequirements() {
+        assertNotEquals(key(request("feature:foo"), state(feature("1.0.0"))),
+                key(request("feature:bar"), state(feature("1.0.0"))));
+    }
+
+    @Test
+    public void testKeyChangesWithFeatureContent() {
+        Feature changed = feature("1.0.0");
+        changed.getBundle().add(new BundleInfo("mvn:org.foo/bar/1.0.1"));
+        assertNotEquals(key(request("feature:foo"), state(feature("1.0.0"))),
+                key(request("feature:foo"), state(changed)));
+    }
+
+    private String key(Deployer.DeploymentRequest request, Deployer.DeploymentState dstate) {
+        return ResolutionKey.compute(dstate, request, Collections.<String, Set<Bundle>>emptyMap());
+    }
+
+    private Deployer.DeploymentRequest request(String requirement) {
+        Deployer.DeploymentRequest request = new Deployer.DeploymentRequest();
+        request.requirements = new HashMap<>();
+        addToMapSet(request.requirements, Constants.ROOT_REGION, requirement);
+        request.overrides = new HashSet<>();
+        request.options = EnumSet.noneOf(Constants.Option.class);
+        request.featureResolutionRange = Constants.DEFAULT_FEATURE_RESOLUTION_RANGE;
+        request.bundleUpdateRange = Constants.DEFAULT_BUNDLE_UPDATE_RANGE;
+        request.updateSnaphots = Constants.DEFAULT_UPDATE_SNAPSHOTS;
+        return request;
+    }
+
+    private Deployer.DeploymentState state(Feature feature) {
+        Deployer.DeploymentState dstate = new Deployer.DeploymentState();
+        Map<String, Feature> features = new HashMap<>();
+        features.put(feature.getId(), feature);
+        dstate.features = features;
+        return dstate;
+    }
+
+    private Feature feature(String version) {
+        Feature feature = new Feature("foo", version);
+        feature.getBundle().add(new BundleInfo("mvn:org.foo/bar/1.0.0"));
+        return feature;
+    }
+}
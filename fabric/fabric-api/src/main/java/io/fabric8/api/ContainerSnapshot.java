@@ -0,0 +1,189 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable view of the registration of every container in the fabric which is read from the {@link DataStore}
+ * in one pass, so that listing containers or finding the containers of a profile does not need a round trip
+ * to the registry per container and attribute.
+ * <p/>
+ * Only the {@link #ATTRIBUTES} which describe where and how to reach a container are part of the snapshot; the
+ * liveness, provisioning and extender status, jmx domains and process id change while a container runs and the
+ * provisioning lists can be large, so these are left to be read when they are asked for.
+ */
+public final class ContainerSnapshot {
+
+    /**
+     * The container attributes which are read into a snapshot
+     */
+    public static final Set<DataStore.ContainerAttribute> ATTRIBUTES = Collections.unmodifiableSet(EnumSet.of(
+            DataStore.ContainerAttribute.Location,
+            DataStore.ContainerAttribute.GeoLocation,
+            DataStore.ContainerAttribute.Resolver,
+            DataStore.ContainerAttribute.Ip,
+            DataStore.ContainerAttribute.LocalIp,
+            DataStore.ContainerAttribute.LocalHostName,
+            DataStore.ContainerAttribute.PublicIp,
+            DataStore.ContainerAttribute.PublicHostName,
+            DataStore.ContainerAttribute.ManualIp,
+            DataStore.ContainerAttribute.BindAddress,
+            DataStore.ContainerAttribute.SshUrl,
+            DataStore.ContainerAttribute.JmxUrl,
+            DataStore.ContainerAttribute.JolokiaUrl,
+            DataStore.ContainerAttribute.HttpUrl,
+            DataStore.ContainerAttribute.PortMin,
+            DataStore.ContainerAttribute.PortMax,
+            DataStore.ContainerAttribute.OpenShift));
+
+    private final Map<String, ContainerData> containers;
+    private final Map<String, Map<String, List<String>>> profileContainers;
+
+    public ContainerSnapshot(List<ContainerData> containers) {
+        Map<String, ContainerData> byId = new LinkedHashMap<>();
+        Map<String, Map<String, List<String>>> byProfile = new HashMap<>();
+        for (ContainerData container : containers) {
+            byId.put(container.getId(), container);
+            String versionId = container.getVersionId();
+            if (versionId == null) {
+                continue;
+            }
+            Map<String, List<String>> versionProfiles = byProfile.get(versionId);
+            if (versionProfiles == null) {
+                byProfile.put(versionId, versionProfiles = new HashMap<>());
+            }
+            List<String> profileIds = container.getProfileIds();
+            // containers without profiles use the default profile
+            for (String profileId : profileIds.isEmpty() ? Collections.singletonList(ZkDefs.DEFAULT_PROFILE) : profileIds) {
+                List<String> containerIds = versionProfiles.get(profileId);
+                if (containerIds == null) {
+                    versionProfiles.put(profileId, containerIds = new ArrayList<>());
+                }
+                containerIds.add(container.getId());
+            }
+        }
+        this.containers = Collections.unmodifiableMap(byId);
+        this.profileContainers = byProfile;
+    }
+
+    public Set<String> getContainerIds() {
+        return containers.keySet();
+    }
+
+    /**
+     * Returns the data of the given container or null if there is no such container
+     */
+    public ContainerData getContainer(String containerId) {
+        return containers.get(containerId);
+    }
+
+    public Map<String, ContainerData> getContainers() {
+        return containers;
+    }
+
+    /**
+     * Returns the ids of the containers whose parent is the given container
+     */
+    public List<String> getChildIds(String containerId) {
+        List<String> answer = new ArrayList<>();
+        for (ContainerData container : containers.values()) {
+            if (container.getParentId().equals(containerId)) {
+                answer.add(container.getId());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the ids of the containers which the given profile of the given version is assigned to
+     */
+    public List<String> getContainerIds(String versionId, String profileId) {
+        Map<String, List<String>> versionProfiles = profileContainers.get(versionId);
+        List<String> containerIds = versionProfiles != null ? versionProfiles.get(profileId) : null;
+        return containerIds != null ? Collections.unmodifiableList(containerIds) : Collections.<String>emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return "ContainerSnapshot" + containers.keySet();
+    }
+
+    /**
+     * The registration of a single container
+     */
+    public static final class ContainerData {
+
+        private final String id;
+        private final String parentId;
+        private final String versionId;
+        private final List<String> profileIds;
+        private final Map<DataStore.ContainerAttribute, String> attributes;
+
+        /**
+         * @param parentId   the id of the parent container or an empty string for a root container
+         * @param attributes the raw values of the {@link ContainerSnapshot#ATTRIBUTES} which are set, before any substitution
+         */
+        public ContainerData(String id, String parentId, String versionId, List<String> profileIds, Map<DataStore.ContainerAttribute, String> attributes) {
+            this.id = id;
+            this.parentId = parentId != null ? parentId : "";
+            this.versionId = versionId;
+            this.profileIds = Collections.unmodifiableList(new ArrayList<>(profileIds));
+            Map<DataStore.ContainerAttribute, String> values = new HashMap<>(attributes);
+            values.keySet().retainAll(ATTRIBUTES);
+            this.attributes = Collections.unmodifiableMap(values);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getParentId() {
+            return parentId;
+        }
+
+        public String getVersionId() {
+            return versionId;
+        }
+
+        public List<String> getProfileIds() {
+            return profileIds;
+        }
+
+        public Map<DataStore.ContainerAttribute, String> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * Returns the raw value of the given attribute or null if it is not set or not one of the {@link ContainerSnapshot#ATTRIBUTES}
+         */
+        public String getAttribute(DataStore.ContainerAttribute attribute) {
+            return attributes.get(attribute);
+        }
+
+        @Override
+        public String toString() {
+            return "ContainerData[id=" + id + ",version=" + versionId + ",profiles=" + profileIds + "]";
+        }
+    }
+}
@@ -70,6 +70,11 @@ public interface DataStore {
 
     void setContainerAlive(String id, boolean flag);
 
+    /**
+     * Reads the parent, version, profiles and registration attributes of all containers in one pass
+     */
+    ContainerSnapshot getContainerSnapshot();
+
 
 
     public enum ContainerAttribute {
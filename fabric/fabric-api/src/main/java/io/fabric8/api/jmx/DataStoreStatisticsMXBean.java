@@ -0,0 +1,60 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api.jmx;
+
+/**
+ * Statistics of the ZooKeeper data store: how container reads are served and how tree cache events
+ * are coalesced into notifications of the configuration callbacks
+ */
+public interface DataStoreStatisticsMXBean {
+
+    /**
+     * The number of container reads served from the local caches
+     */
+    long getCacheReadCount();
+
+    /**
+     * The number of container reads which went to the ensemble
+     */
+    long getZooKeeperReadCount();
+
+    /**
+     * The number of cache reads which found no node
+     */
+    long getCacheMissCount();
+
+    /**
+     * The number of tree cache events received
+     */
+    long getEventCount();
+
+    /**
+     * The number of changes which required the callbacks to be notified
+     */
+    long getChangeCount();
+
+    /**
+     * The number of times the callbacks were run
+     */
+    long getNotificationCount();
+
+    /**
+     * Whether container reads go to the ensemble rather than the local caches
+     */
+    boolean isSyncReads();
+
+    void setSyncReads(boolean syncReads);
+}
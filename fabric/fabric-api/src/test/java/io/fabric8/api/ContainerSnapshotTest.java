@@ -0,0 +1,60 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContainerSnapshotTest {
+
+    @Test
+    public void testProfileIndex() {
+        Map<DataStore.ContainerAttribute, String> attributes = new HashMap<>();
+        attributes.put(DataStore.ContainerAttribute.SshUrl, "10.0.0.1:8101");
+        List<ContainerSnapshot.ContainerData> containers = Arrays.asList(
+                new ContainerSnapshot.ContainerData("root", "", "1.0", Arrays.asList("fabric", "jboss-fuse-full"), attributes),
+                new ContainerSnapshot.ContainerData("child1", "root", "1.0", Arrays.asList("feature-camel"), attributes),
+                new ContainerSnapshot.ContainerData("child2", "root", "1.1", Arrays.asList("feature-camel"), attributes),
+                new ContainerSnapshot.ContainerData("child3", null, "1.0", Collections.<String>emptyList(), attributes));
+        ContainerSnapshot snapshot = new ContainerSnapshot(containers);
+
+        assertEquals(4, snapshot.getContainerIds().size());
+        assertEquals(Arrays.asList("child1"), snapshot.getContainerIds("1.0", "feature-camel"));
+        assertEquals(Arrays.asList("child2"), snapshot.getContainerIds("1.1", "feature-camel"));
+        assertEquals(Arrays.asList("root"), snapshot.getContainerIds("1.0", "fabric"));
+        // containers without profiles are associated with the default profile
+        assertEquals(Arrays.asList("child3"), snapshot.getContainerIds("1.0", ZkDefs.DEFAULT_PROFILE));
+        assertTrue(snapshot.getContainerIds("1.2", "fabric").isEmpty());
+
+        ContainerSnapshot.ContainerData child = snapshot.getContainer("child1");
+        assertEquals("root", child.getParentId());
+        assertEquals("", snapshot.getContainer("child3").getParentId());
+        assertEquals("10.0.0.1:8101", child.getAttribute(DataStore.ContainerAttribute.SshUrl));
+        assertNull(child.getAttribute(DataStore.ContainerAttribute.JmxUrl));
+        assertNull(snapshot.getContainer("unknown"));
+        assertEquals(Arrays.asList("child1", "child2"), snapshot.getChildIds("root"));
+        assertTrue(snapshot.getChildIds("child1").isEmpty());
+    }
+}
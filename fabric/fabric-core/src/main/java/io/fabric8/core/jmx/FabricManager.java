@@ -465,7 +465,7 @@ public final class FabricManager implements FabricManagerMBean {
     @Override
     public List<Map<String, Object>> containers(List<String> fields) {
         List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
+        for (Container c : fabricService.getContainersSnapshot()) {
             answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
         }
         return answer;
@@ -474,7 +474,7 @@ public final class FabricManager implements FabricManagerMBean {
     @Override
     public List<Map<String, Object>> containers(List<String> fields, List<String> profileFields) {
         List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
+        for (Container c : fabricService.getContainersSnapshot()) {
             Map<String, Object> map = BeanUtils.convertContainerToMap(fabricService, c, fields);
             List<Map<String, Object>> profiles = new ArrayList<Map<String, Object>>();
             for (Profile p : c.getProfiles()) {
@@ -666,7 +666,7 @@ public final class FabricManager implements FabricManagerMBean {
     @Override
     public String[] containerIds() {
         List<String> answer = new ArrayList<String>();
-        for (Container container : fabricService.getContainers()) {
+        for (Container container : fabricService.getContainersSnapshot()) {
             answer.add(container.getId());
         }
         return answer.toArray(new String[answer.size()]);
@@ -710,7 +710,7 @@ public final class FabricManager implements FabricManagerMBean {
         Profile profile = version != null ? version.getRequiredProfile(profileId) : null;
         Set<Map<String, Object>> answer = new LinkedHashSet<Map<String, Object>>();
         if (profile != null) {
-            for (Container c : fabricService.getContainers()) {
+            for (Container c : fabricService.getContainersSnapshot()) {
                 for (Profile p : c.getProfiles()) {
                     if (p.equals(profile)) {
                         answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
@@ -764,7 +764,7 @@ public final class FabricManager implements FabricManagerMBean {
         Version version = profileService.getVersion(versionId);
         List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
         if (version != null) {
-            for (Container c : fabricService.getContainers()) {
+            for (Container c : fabricService.getContainersSnapshot()) {
                 if (c.getVersion().equals(version)) {
                     answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
                 }
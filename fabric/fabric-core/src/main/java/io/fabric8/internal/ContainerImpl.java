@@ -17,6 +17,7 @@ package io.fabric8.internal;
 
 import io.fabric8.api.Constants;
 import io.fabric8.api.Container;
+import io.fabric8.api.ContainerSnapshot;
 import io.fabric8.api.CreateContainerMetadata;
 import io.fabric8.api.DataStore;
 import io.fabric8.api.FabricException;
@@ -67,12 +68,23 @@ public class ContainerImpl implements Container {
     private final DataStore dataStore;
 
     private CreateContainerMetadata<?> metadata;
+    // the registrations read in bulk by the fabric service, dropped once this container is modified
+    private volatile ContainerSnapshot snapshot;
 
     public ContainerImpl(Container parent, String id, FabricService fabricService) {
+        this(parent, id, fabricService, null);
+    }
+
+    /**
+     * Creates a container which answers its parent, version, profiles, children and the
+     * {@link ContainerSnapshot#ATTRIBUTES} from the given snapshot until it is modified through this instance
+     */
+    public ContainerImpl(Container parent, String id, FabricService fabricService, ContainerSnapshot snapshot) {
         this.parent = parent;
         this.id = id;
         this.fabricService = fabricService;
         this.dataStore = fabricService.adapt(DataStore.class);
+        this.snapshot = snapshot;
     }
 
     public FabricService getFabricService() {
@@ -183,7 +195,8 @@ public class ContainerImpl implements Container {
 
     @Override
     public String getVersionId() {
-        return dataStore.getContainerVersion(id);
+        ContainerSnapshot.ContainerData data = getSnapshotData();
+        return data != null ? data.getVersionId() : dataStore.getContainerVersion(id);
     }
 
     @Override
@@ -198,7 +211,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public Version getVersion() {
-        String versionId = dataStore.getContainerVersion(id);
+        String versionId = getVersionId();
         ProfileService profileService = fabricService.adapt(ProfileService.class);
         return versionId != null ? profileService.getVersion(versionId) : null;
     }
@@ -210,15 +223,16 @@ public class ContainerImpl implements Container {
         if (compareResult != 0) {
             if (requiresUpgrade(version) && isManaged()) {
                 String status = compareResult > 0 ? "upgrading" : "downgrading";
-                dataStore.setContainerAttribute(id, DataStore.ContainerAttribute.ProvisionStatus, status);
+                setAttribute(DataStore.ContainerAttribute.ProvisionStatus, status);
             }
+            snapshot = null;
             dataStore.setContainerVersion(id, version.getId());
         }
     }
 
     @Override
     public Long getProcessId() {
-        String pid = dataStore.getContainerAttribute(id, DataStore.ContainerAttribute.ProcessId, null, false, false);
+        String pid = getOptionalAttribute(DataStore.ContainerAttribute.ProcessId, null);
         if( pid == null )
             return null;
         return Long.valueOf(pid);
@@ -227,13 +241,14 @@ public class ContainerImpl implements Container {
     
     @Override
     public List<String> getProfileIds() {
-        return dataStore.getContainerProfiles(id);
+        ContainerSnapshot.ContainerData data = getSnapshotData();
+        return data != null ? data.getProfileIds() : dataStore.getContainerProfiles(id);
     }
 
     @Override
     public Profile[] getProfiles() {
         Version version = getVersion();
-        List<String> profileIds = dataStore.getContainerProfiles(id);
+        List<String> profileIds = getProfileIds();
         List<Profile> profiles = new ArrayList<Profile>();
         for (String profileId : profileIds) {
             profiles.add(version.getRequiredProfile(profileId));
@@ -262,6 +277,7 @@ public class ContainerImpl implements Container {
         if (profileIds.isEmpty()) {
             profileIds.add(ZkDefs.DEFAULT_PROFILE);
         }
+        snapshot = null;
         dataStore.setContainerProfiles(id, profileIds);
     }
 
@@ -533,6 +549,14 @@ public class ContainerImpl implements Container {
 
     public Container[] getChildren() {
         List<Container> children = new ArrayList<Container>();
+        ContainerSnapshot containers = snapshot;
+        if (containers != null) {
+            // reuse the snapshot this container was listed from rather than reading all containers again
+            for (String childId : containers.getChildIds(id)) {
+                children.add(new ContainerImpl(this, childId, fabricService, containers));
+            }
+            return children.toArray(new Container[children.size()]);
+        }
         for (Container container : fabricService.getContainers()) {
             if (container.getParent() != null && getId().equals(container.getParent().getId())) {
                 children.add(container);
@@ -722,19 +746,56 @@ public class ContainerImpl implements Container {
         return answer;
     }
 
+    /**
+     * Returns the data of this container in the snapshot it was created with or null if it is to be read live
+     */
+    private ContainerSnapshot.ContainerData getSnapshotData() {
+        ContainerSnapshot containers = snapshot;
+        return containers != null ? containers.getContainer(id) : null;
+    }
+
+    /**
+     * Returns the data of this container in the snapshot if it holds the given attribute or null if the attribute is to be read live
+     */
+    private ContainerSnapshot.ContainerData getSnapshotData(DataStore.ContainerAttribute attribute) {
+        return ContainerSnapshot.ATTRIBUTES.contains(attribute) ? getSnapshotData() : null;
+    }
+
     private String getOptionalAttribute(DataStore.ContainerAttribute attribute, String def) {
+        ContainerSnapshot.ContainerData data = getSnapshotData(attribute);
+        if (data != null) {
+            String value = data.getAttribute(attribute);
+            return value != null ? value : def;
+        }
         return dataStore.getContainerAttribute(id, attribute, def, false, false);
     }
 
     private String getNullableSubstitutedAttribute(DataStore.ContainerAttribute attribute) {
+        ContainerSnapshot.ContainerData data = getSnapshotData(attribute);
+        if (data != null) {
+            String value = data.getAttribute(attribute);
+            if (value == null || value.isEmpty()) {
+                return null;
+            } else if (!value.contains("${")) {
+                return value;
+            }
+        }
         return dataStore.getContainerAttribute(id, attribute, null, false, true);
     }
 
     private String getMandatorySubstitutedAttribute(DataStore.ContainerAttribute attribute) {
+        ContainerSnapshot.ContainerData data = getSnapshotData(attribute);
+        if (data != null) {
+            String value = data.getAttribute(attribute);
+            if (value != null && !value.isEmpty() && !value.contains("${")) {
+                return value;
+            }
+        }
         return dataStore.getContainerAttribute(id, attribute, null, true, true);
     }
 
     private void setAttribute(DataStore.ContainerAttribute attribute, String value) {
+        snapshot = null;
         dataStore.setContainerAttribute(id, attribute, value);
     }
 
@@ -27,6 +27,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import io.fabric8.api.Constants;
 import io.fabric8.api.FabricException;
@@ -44,7 +46,9 @@ final class ProfileImpl implements Profile {
     private final Map<String, String> attributes = new HashMap<>();
     private final List<String> parents = new ArrayList<>();
     private final Map<String, byte[]> fileConfigurations = new HashMap<>();
-    private final Map<String, Map<String, String>> configurations = new HashMap<>();
+    // configurations are parsed from the file configurations per pid on first use
+    private final ConcurrentMap<String, Map<String, String>> configurations = new ConcurrentHashMap<>();
+    private volatile Map<String, Map<String, String>> allConfigurations;
     private final boolean isOverlay;
     private final String lastModified;
 
@@ -58,19 +62,11 @@ final class ProfileImpl implements Profile {
         // Parents
         this.parents.addAll(parents);
         
-        // File configurations and derived configurations
-        for (Entry<String, byte[]> entry : fileConfigs.entrySet()) {
-            String fileKey = entry.getKey();
-            byte[] bytes = entry.getValue();
-            fileConfigurations.put(fileKey, bytes);
-            if (fileKey.endsWith(Profile.PROPERTIES_SUFFIX)) {
-                String pid = fileKey.substring(0, fileKey.indexOf(Profile.PROPERTIES_SUFFIX));
-                configurations.put(pid, Collections.unmodifiableMap(DataStoreUtils.toMap(bytes)));
-            }
-        }
+        // File configurations
+        fileConfigurations.putAll(fileConfigs);
         
         // Attributes are agent configuration with prefix 'attribute.'  
-        Map<String, String> agentConfig = configurations.get(Constants.AGENT_PID);
+        Map<String, String> agentConfig = getConfigurationInternal(Constants.AGENT_PID);
         if (agentConfig != null) {
             int prefixLength = Profile.ATTRIBUTE_PREFIX.length();
             for (Entry<String, String> entry : agentConfig.entrySet()) {
@@ -181,16 +177,40 @@ final class ProfileImpl implements Profile {
     }
 
     public Map<String, Map<String, String>> getConfigurations() {
-        return Collections.unmodifiableMap(configurations);
+        Map<String, Map<String, String>> result = allConfigurations;
+        if (result == null) {
+            Map<String, Map<String, String>> configs = new HashMap<>();
+            for (String fileKey : fileConfigurations.keySet()) {
+                if (fileKey.endsWith(Profile.PROPERTIES_SUFFIX)) {
+                    String pid = fileKey.substring(0, fileKey.indexOf(Profile.PROPERTIES_SUFFIX));
+                    configs.put(pid, getConfigurationInternal(pid));
+                }
+            }
+            allConfigurations = result = Collections.unmodifiableMap(configs);
+        }
+        return result;
     }
 
     @Override
     public Map<String, String> getConfiguration(String pid) {
-        Map<String, String> config = configurations.get(pid);
+        Map<String, String> config = getConfigurationInternal(pid);
         config = config != null ? config : Collections.<String, String> emptyMap();
         return Collections.unmodifiableMap(config);
     }
 
+    private Map<String, String> getConfigurationInternal(String pid) {
+        Map<String, String> config = configurations.get(pid);
+        if (config == null) {
+            byte[] bytes = fileConfigurations.get(pid + Profile.PROPERTIES_SUFFIX);
+            if (bytes != null) {
+                config = Collections.unmodifiableMap(DataStoreUtils.toMap(bytes));
+                Map<String, String> existing = configurations.putIfAbsent(pid, config);
+                config = existing != null ? existing : config;
+            }
+        }
+        return config;
+    }
+
     @Override
     public String getProfileHash() {
         StringBuilder answer = new StringBuilder();
@@ -324,7 +344,6 @@ final class ProfileImpl implements Profile {
         int result = profileId.hashCode();
         result = 31 * result + versionId.hashCode();
         result = 31 * result + parents.hashCode();
-        result = 31 * result + configurations.hashCode();
         result = 31 * result + fileConfigurations.hashCode();
         return result;
     }
@@ -346,9 +365,7 @@ final class ProfileImpl implements Profile {
         if (!parents.equals(other.parents))
             return false;
 
-        if (!configurations.equals(other.configurations))
-            return false;
-
+        // the configurations are derived from the file configurations
         if (!fileConfigurations.equals(other.fileConfigurations))
             return false;
 
@@ -39,6 +39,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import io.fabric8.utils.FabricValidations;
 import org.apache.felix.scr.annotations.Activate;
@@ -64,6 +66,9 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
     @Reference(referenceInterface = RuntimeProperties.class)
     private final ValidatingReference<RuntimeProperties> runtimeProperties = new ValidatingReference<>();
 
+    // overlays are reused until one of the profiles they were computed from changes
+    private final ConcurrentMap<OverlayKey, OverlayEntry> overlayCache = new ConcurrentHashMap<>();
+
     static class OverlayAudit {
         Map<String, Profile> overlayProfiles = new HashMap<String, Profile>();
     }
@@ -176,42 +181,49 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         assertValid();
         LOGGER.info("deleteVersion: {}", versionId);
         profileRegistry.get().deleteVersion(versionId);
+        evictOverlays(versionId, null);
     }
 
     @Override
     public Profile getOverlayProfile(Profile profile) {
         assertValid();
-        Profile overlayProfile;
-        synchronized (this) {
-            if (profile.isOverlay()) {
-                LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
-                overlayProfile = profile;
-            } else {
-                String profileId = profile.getId();
-                String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
-                if (environment == null) {
-                    // lets default to the environment from the current active
-                    // set of profiles (e.g. docker or openshift)
-                    environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
-                }
-                Version version = getRequiredVersion(profile.getVersion());
-                ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
-                builder.addOptions(new OverlayOptionsProvider(version, profile, environment));
-                overlayProfile = builder.getProfile();
-
-                // Log the overlay profile difference
-                if (LOGGER.isDebugEnabled()) {
-                    OverlayAudit audit = getOverlayAudit();
-                    synchronized (audit) {
-                        Profile lastOverlay = audit.overlayProfiles.get(profileId);
-                        if (lastOverlay == null) {
-                            LOGGER.debug("Overlay" + Profiles.getProfileInfo(overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        } else if (!lastOverlay.equals(overlayProfile)) {
-                            LOGGER.debug("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        }
-                    }
+        if (profile.isOverlay()) {
+            LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
+            return profile;
+        }
+        String profileId = profile.getId();
+        String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
+        if (environment == null) {
+            // lets default to the environment from the current active
+            // set of profiles (e.g. docker or openshift)
+            environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
+        }
+        Version version = getRequiredVersion(profile.getVersion());
+        OverlayOptionsProvider optionsProvider = new OverlayOptionsProvider(version, profile, environment);
+        List<Profile> inheritedProfiles = optionsProvider.getInheritedProfiles();
+
+        OverlayKey key = new OverlayKey(profile.getVersion(), profileId, environment);
+        OverlayEntry entry = overlayCache.get(key);
+        if (entry != null && entry.isValid(inheritedProfiles)) {
+            return entry.overlayProfile;
+        }
+
+        ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
+        builder.addOptions(optionsProvider);
+        Profile overlayProfile = builder.getProfile();
+        overlayCache.put(key, new OverlayEntry(overlayProfile, inheritedProfiles));
+
+        // Log the overlay profile difference
+        if (LOGGER.isDebugEnabled()) {
+            OverlayAudit audit = getOverlayAudit();
+            synchronized (audit) {
+                Profile lastOverlay = audit.overlayProfiles.get(profileId);
+                if (lastOverlay == null) {
+                    LOGGER.debug("Overlay" + Profiles.getProfileInfo(overlayProfile));
+                    audit.overlayProfiles.put(profileId, overlayProfile);
+                } else if (!lastOverlay.equals(overlayProfile)) {
+                    LOGGER.debug("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
+                    audit.overlayProfiles.put(profileId, overlayProfile);
                 }
             }
         }
@@ -249,6 +261,7 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
             sb.append(". Use force option to also remove the profile from the containers.");
             throw new FabricException(sb.toString());
         }
+        evictOverlays(versionId, profileId);
 
         // lets remove any pending requirements on this profile
         FabricRequirements requirements = fabricService != null ? fabricService.getRequirements() : null;
@@ -261,11 +274,24 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         }
     }
 
+    /**
+     * Removes the cached overlays of the given profile in all environments, or of all the profiles of the version
+     * if the profile id is null
+     */
+    private void evictOverlays(String versionId, String profileId) {
+        for (OverlayKey key : overlayCache.keySet()) {
+            if (key.versionId.equals(versionId) && (profileId == null || key.profileId.equals(profileId))) {
+                overlayCache.remove(key);
+            }
+        }
+    }
+
     static class OverlayOptionsProvider implements OptionsProvider<ProfileBuilder> {
 
         private final Version version;
         private final Profile self;
         private final String environment;
+        private List<Profile> inheritedProfiles;
 
         private static class SupplementControl {
             byte[] data;
@@ -282,7 +308,6 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         public ProfileBuilder addOptions(ProfileBuilder builder) {
             builder.setAttributes(self.getAttributes());
             builder.setFileConfigurations(getFileConfigurations());
-            builder.setConfigurations(getConfigurations());
             builder.setLastModified(getLastModified());
             builder.setOverlay(true);
             return builder;
@@ -309,36 +334,19 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
             }
         }
 
-        private Map<String, Map<String, String>> getConfigurations() {
-            try {
-                Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
-                for (Profile profile : getInheritedProfiles()) {
-                    supplement(profile, aggregate);
-                }
-
-                Map<String, Map<String, String>> rc = new HashMap<String, Map<String, String>>();
-                for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
-                    SupplementControl ctrl = entry.getValue();
-                    if (ctrl.props != null) {
-                        rc.put(DataStoreUtils.stripSuffix(entry.getKey(), ".properties"), ctrl.props);
+        List<Profile> getInheritedProfiles() {
+            if (inheritedProfiles == null) {
+                List<Profile> profiles = new ArrayList<>();
+                fillParentProfiles(self, profiles);
+                // always prepend "default" as first profile
+                if(profiles.size() > 0){
+                    if(!"default".equals(profiles.get(0).getId())){
+                        profiles.add(0, version.getProfile("default"));
                     }
                 }
-                return rc;
-            } catch (Exception e) {
-                throw FabricException.launderThrowable(e);
+                inheritedProfiles = profiles;
             }
-        }
-
-        private List<Profile> getInheritedProfiles() {
-            List<Profile> profiles = new ArrayList<>();
-            fillParentProfiles(self, profiles);
-            // always prepend "default" as first profile
-            if(profiles.size() > 0){
-                if(!"default".equals(profiles.get(0).getId())){
-                    profiles.add(0, version.getProfile("default"));
-                }
-            }
-            return profiles;
+            return inheritedProfiles;
         }
 
         private void fillParentProfiles(Profile profile, List<Profile> profiles) {
@@ -427,4 +435,61 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
     void unbindRuntimeProperties(RuntimeProperties service) {
         this.runtimeProperties.unbind(service);
     }
+
+    static final class OverlayKey {
+        private final String versionId;
+        private final String profileId;
+        private final String environment;
+
+        OverlayKey(String versionId, String profileId, String environment) {
+            this.versionId = versionId;
+            this.profileId = profileId;
+            this.environment = environment;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = versionId.hashCode();
+            result = 31 * result + profileId.hashCode();
+            result = 31 * result + (environment != null ? environment.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof OverlayKey)) return false;
+            OverlayKey other = (OverlayKey) obj;
+            return versionId.equals(other.versionId) && profileId.equals(other.profileId)
+                    && (environment != null ? environment.equals(other.environment) : other.environment == null);
+        }
+    }
+
+    static final class OverlayEntry {
+        private final Profile overlayProfile;
+        private final List<Profile> inheritedProfiles;
+
+        OverlayEntry(Profile overlayProfile, List<Profile> inheritedProfiles) {
+            this.overlayProfile = overlayProfile;
+            this.inheritedProfiles = inheritedProfiles;
+        }
+
+        /**
+         * The overlay is still valid if the profile and each of its ancestors are the same as when it was computed.
+         * Unchanged profiles are usually the same instances so the content comparison is rarely needed.
+         */
+        boolean isValid(List<Profile> profiles) {
+            if (profiles.size() != inheritedProfiles.size()) {
+                return false;
+            }
+            for (int i = 0; i < profiles.size(); i++) {
+                Profile profile = profiles.get(i);
+                Profile cached = inheritedProfiles.get(i);
+                if (profile != cached && (profile == null || !profile.equals(cached))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
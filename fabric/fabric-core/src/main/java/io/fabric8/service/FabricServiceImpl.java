@@ -18,7 +18,6 @@ package io.fabric8.service;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -42,6 +41,7 @@ import com.google.common.base.Strings;
 import io.fabric8.api.AutoScaleStatus;
 import io.fabric8.api.Constants;
 import io.fabric8.api.Container;
+import io.fabric8.api.ContainerSnapshot;
 import io.fabric8.api.ContainerAutoScaler;
 import io.fabric8.api.ContainerAutoScalerFactory;
 import io.fabric8.api.ContainerProvider;
@@ -277,38 +277,62 @@ public final class FabricServiceImpl extends AbstractComponent implements Fabric
     @Override
     public Container[] getContainers() {
         assertValid();
+        Map<String, Container> containers = getContainers(dataStore.get().getContainerSnapshot(), false);
+        return containers.values().toArray(new Container[containers.size()]);
+    }
+
+    /**
+     * Returns the containers as they were registered when this method was called. Unlike the containers returned
+     * by {@link #getContainers()}, these answer their version, profiles, children and registration attributes from
+     * a single read of all registrations, so use these to list many containers at once; their liveness and
+     * provisioning status are still read live.
+     */
+    public Container[] getContainersSnapshot() {
+        assertValid();
+        Map<String, Container> containers = getContainers(dataStore.get().getContainerSnapshot(), true);
+        return containers.values().toArray(new Container[containers.size()]);
+    }
+
+    /**
+     * Returns the containers of the given snapshot by id, the parents are always taken from the snapshot
+     *
+     * @param cached whether the containers answer the rest of their registration from the snapshot too
+     */
+    private Map<String, Container> getContainers(ContainerSnapshot snapshot, boolean cached) {
+        ContainerSnapshot containerSnapshot = cached ? snapshot : null;
         Map<String, Container> containers = new HashMap<String, Container>();
-        List<String> containerIds = dataStore.get().getContainers();
-        for (String containerId : containerIds) {
-            String parentId = dataStore.get().getContainerParent(containerId);
+        for (ContainerSnapshot.ContainerData data : snapshot.getContainers().values()) {
+            String containerId = data.getId();
+            String parentId = data.getParentId();
             if (parentId.isEmpty()) {
                 if (!containers.containsKey(containerId)) {
-                    Container container = new ContainerImpl(null, containerId, this);
+                    Container container = new ContainerImpl(null, containerId, this, containerSnapshot);
                     containers.put(containerId, container);
                 }
             } else {
                 Container parent = containers.get(parentId);
                 if (parent == null) {
-                    parent = new ContainerImpl(null, parentId, this);
+                    parent = new ContainerImpl(null, parentId, this, containerSnapshot);
                     containers.put(parentId, parent);
                 }
-                Container container = new ContainerImpl(parent, containerId, this);
+                Container container = new ContainerImpl(parent, containerId, this, containerSnapshot);
                 containers.put(containerId, container);
             }
         }
-        return containers.values().toArray(new Container[containers.size()]);
+        return containers;
     }
 
 	@Override
 	public Container[] getAssociatedContainers(String versionId, String profileId) {
 		assertValid();
+        ContainerSnapshot snapshot = dataStore.get().getContainerSnapshot();
+        Map<String, Container> allContainers = getContainers(snapshot, false);
         List<Container> containers = new ArrayList<>();
-        for (Container container : getContainers()) {
-        	for (Profile profile : Arrays.asList(container.getProfiles())) {
-                if (profile.getId().equals(profileId) && profile.getVersion().equals(versionId)) {
-                    containers.add(container);
-            	}
-        	}
+        for (String containerId : snapshot.getContainerIds(versionId, profileId)) {
+            Container container = allContainers.get(containerId);
+            if (container != null) {
+                containers.add(container);
+            }
         }
         return containers.toArray(new Container[containers.size()]);
 	}
@@ -24,6 +24,7 @@ import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getStringData;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getSubstitutedPath;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.setData;
 import io.fabric8.api.AutoScaleStatus;
+import io.fabric8.api.ContainerSnapshot;
 import io.fabric8.api.CreateContainerMetadata;
 import io.fabric8.api.CreateContainerOptions;
 import io.fabric8.api.DataStore;
@@ -34,9 +35,11 @@ import io.fabric8.api.ProfileService;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.ZkDefs;
 import io.fabric8.api.jcip.ThreadSafe;
+import io.fabric8.api.jmx.DataStoreStatisticsMXBean;
 import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.api.scr.ValidatingReference;
 import io.fabric8.common.util.Closeables;
+import io.fabric8.common.util.JMXUtils;
 import io.fabric8.common.util.ObjectUtils;
 import io.fabric8.common.util.Strings;
 import io.fabric8.internal.RequirementsJson;
@@ -44,33 +47,51 @@ import io.fabric8.utils.Base64Encoder;
 import io.fabric8.utils.FabricVersionUtils;
 import io.fabric8.utils.NamedThreadFactory;
 import io.fabric8.zookeeper.ZkPath;
+import io.fabric8.zookeeper.utils.InterpolationHelper;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectStreamClass;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeData;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.zookeeper.KeeperException;
 import io.fabric8.api.gravia.IllegalArgumentAssertion;
@@ -83,23 +104,81 @@ import org.slf4j.LoggerFactory;
 @ThreadSafe
 @Component(label = "Fabric8 DataStore", policy = ConfigurationPolicy.IGNORE, immediate = true, metatype = true)
 @Service({ DataStore.class })
-public class ZkDataStoreImpl extends AbstractComponent implements DataStore, PathChildrenCacheListener {
+public class ZkDataStoreImpl extends AbstractComponent implements DataStore, PathChildrenCacheListener, DataStoreStatisticsMXBean {
     
     private static final transient Logger LOGGER = LoggerFactory.getLogger(ZkDataStoreImpl.class);
     
     private static final String JVM_OPTIONS_PATH = "/fabric/configs/io.fabric8.containers.jvmOptions";
     private static final String REQUIREMENTS_JSON_PATH = "/fabric/configs/io.fabric8.requirements.json";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The runtime property which makes container reads go to the ensemble rather than the local caches
+     */
+    public static final String SYNC_READS_PROPERTY = "fabric.datastore.syncReads";
+
+    /**
+     * The runtime property with the number of milliseconds without further changes to wait before notifying the callbacks
+     */
+    public static final String NOTIFICATION_QUIET_PERIOD_PROPERTY = "fabric.datastore.notificationQuietPeriod";
+
+    /**
+     * The runtime property with the maximum number of milliseconds a change notification is held back by further changes
+     */
+    public static final String NOTIFICATION_MAX_DELAY_PROPERTY = "fabric.datastore.notificationMaxDelay";
+
+    private static final long SNAPSHOT_TIMEOUT = 60 * 1000L;
+    private static final String STATISTICS_OBJECT_NAME = "io.fabric8:type=DataStoreStatistics";
     
     @Reference(referenceInterface = CuratorFramework.class)
     private final ValidatingReference<CuratorFramework> curator = new ValidatingReference<CuratorFramework>();
     @Reference(referenceInterface = RuntimeProperties.class)
     private final ValidatingReference<RuntimeProperties> runtimeProperties = new ValidatingReference<RuntimeProperties>();
+    @Reference(referenceInterface = MBeanServer.class, cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC, bind = "bindMBeanServer", unbind = "unbindMBeanServer")
+    private volatile MBeanServer mbeanServer;
     
     private final CopyOnWriteArrayList<Runnable> callbacks = new CopyOnWriteArrayList<Runnable>();
     private final ExecutorService cacheExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("zk-cache"));
-    private final ExecutorService callbacksExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("zk-datastore"));
+    private final ScheduledExecutorService callbacksExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("zk-datastore"));
     private TreeCache configCache;
     private TreeCache containerCache;
+    private volatile boolean syncReads;
+    private final AtomicLong cacheReads = new AtomicLong();
+    private final AtomicLong zooKeeperReads = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    // the local container and its version are cached for filtering events
+    private String runtimeIdentity;
+    private volatile String runtimeVersion;
+
+    // change notifications are coalesced until there is a quiet period or the maximum delay passes
+    private long notificationQuietPeriod = 100L;
+    private long notificationMaxDelay = 1000L;
+    private final Object notificationLock = new Object();
+    private ScheduledFuture<?> pendingNotification;
+    private long firstPendingChange;
+    private long lastPendingChange;
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong changeCount = new AtomicLong();
+    private final AtomicLong notificationCount = new AtomicLong();
+    private final Runnable notifier = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (notificationLock) {
+                long now = System.nanoTime();
+                long deadline = Math.min(lastPendingChange + TimeUnit.MILLISECONDS.toNanos(notificationQuietPeriod),
+                        firstPendingChange + TimeUnit.MILLISECONDS.toNanos(notificationMaxDelay));
+                if (now - deadline < 0) {
+                    pendingNotification = callbacksExecutor.schedule(this, deadline - now, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                // changes from now on need another notification
+                pendingNotification = null;
+            }
+            notificationCount.incrementAndGet();
+            doRunCallbacks();
+        }
+    };
 
     @Activate
     void activate() throws Exception {
@@ -114,6 +193,12 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     }
     
     private void activateInternal() throws Exception {
+        RuntimeProperties sysprops = runtimeProperties.get();
+        syncReads = Boolean.parseBoolean(sysprops.getProperty(SYNC_READS_PROPERTY, "false"));
+        notificationQuietPeriod = getDelayProperty(sysprops, NOTIFICATION_QUIET_PERIOD_PROPERTY, notificationQuietPeriod);
+        notificationMaxDelay = getDelayProperty(sysprops, NOTIFICATION_MAX_DELAY_PROPERTY, notificationMaxDelay);
+        runtimeIdentity = sysprops.getRuntimeIdentity();
+
         configCache = new TreeCache(curator.get(), ZkPath.CONFIGS.getPath(), true, false, true, cacheExecutor);
         configCache.start(TreeCache.StartMode.NORMAL);
         configCache.getListenable().addListener(this);
@@ -124,6 +209,23 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
 
     }
 
+    /**
+     * Returns the number of milliseconds in the given property, or the default if it is not a valid delay
+     */
+    private static long getDelayProperty(RuntimeProperties sysprops, String key, long def) {
+        String value = sysprops.getProperty(key, String.valueOf(def));
+        try {
+            long delay = value != null ? Long.parseLong(value.trim()) : def;
+            if (delay >= 0) {
+                return delay;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the default
+        }
+        LOGGER.warn("Invalid value {} of {}, using the default of {} ms", value, key, def);
+        return def;
+    }
+
     private void deactivateInternal() {
         configCache.getListenable().removeListener(this);
         Closeables.closeQuietly(configCache);
@@ -138,6 +240,7 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     @Override
     public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
         if (isValid()) {
+            eventCount.incrementAndGet();
 
             // guard against events with null data or path
             String path;
@@ -154,6 +257,9 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
             }
 
             PathChildrenCacheEvent.Type type = event.getType();
+            if (path != null && path.equals(ZkPath.CONFIG_CONTAINER.getPath(runtimeIdentity))) {
+                runtimeVersion = type == PathChildrenCacheEvent.Type.CHILD_REMOVED || data == null ? null : new String(data, UTF_8);
+            }
             switch (type) {
                 case CHILD_ADDED:
                 case CHILD_REMOVED:
@@ -177,8 +283,10 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
             return false;
         }
 
-        String runtimeIdentity = runtimeProperties.get().getRuntimeIdentity();
-        String currentVersion = getContainerVersion(runtimeIdentity);
+        String currentVersion = runtimeVersion;
+        if (currentVersion == null) {
+            runtimeVersion = currentVersion = getContainerVersion(runtimeIdentity);
+        }
         return (path.startsWith(ZkPath.CONTAINERS.getPath()) && type.equals(PathChildrenCacheEvent.Type.CHILD_UPDATED)) ||
                         path.equals(ZkPath.CONFIG_ENSEMBLES.getPath()) ||
                         path.equals(ZkPath.CONFIG_ENSEMBLE_URL.getPath()) ||
@@ -192,13 +300,44 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         runCallbacks();
     }
     
+    /**
+     * Schedules a run of the callbacks which also covers any further changes until there is a quiet period
+     * or the maximum delay since the first of these changes has passed.
+     */
     private void runCallbacks() {
-        callbacksExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                doRunCallbacks();
+        changeCount.incrementAndGet();
+        synchronized (notificationLock) {
+            long now = System.nanoTime();
+            lastPendingChange = now;
+            if (pendingNotification == null) {
+                firstPendingChange = now;
+                pendingNotification = callbacksExecutor.schedule(notifier, notificationQuietPeriod, TimeUnit.MILLISECONDS);
             }
-        });
+        }
+    }
+
+    /**
+     * Returns the number of tree cache events received
+     */
+    @Override
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Returns the number of changes which required the callbacks to be notified
+     */
+    @Override
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Returns the number of times the callbacks were run, which is lower than the number of changes when changes are coalesced
+     */
+    @Override
+    public long getNotificationCount() {
+        return notificationCount.get();
     }
     
     private void doRunCallbacks() {
@@ -236,22 +375,41 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     public List<String> getContainers() {
         assertValid();
         try {
-            return getChildrenSafe(curator.get(), ZkPath.CONFIGS_CONTAINERS.getPath());
+            String path = ZkPath.CONFIGS_CONTAINERS.getPath();
+            if (syncReads) {
+                zooKeeperReads.incrementAndGet();
+                return getChildrenSafe(curator.get(), path);
+            }
+            cacheReads.incrementAndGet();
+            return configCache.getChildrenNames(path);
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         }
     }
 
+    /**
+     * Always asks ZooKeeper, as this is used to check for duplicates before creating a container and to look up a
+     * container right after creating it, when the caches may not have seen the change yet.
+     */
     @Override
     public boolean hasContainer(String containerId) {
         assertValid();
-        return getContainers().contains(containerId);
+        try {
+            zooKeeperReads.incrementAndGet();
+            return exists(curator.get(), ZkPath.CONFIG_CONTAINER.getPath(containerId)) != null;
+        } catch (Exception e) {
+            throw FabricException.launderThrowable(e);
+        }
     }
 
+    /**
+     * Always asks ZooKeeper for the same reason as {@link #hasContainer(String)}.
+     */
     @Override
     public String getContainerParent(String containerId) {
         assertValid();
         try {
+            zooKeeperReads.incrementAndGet();
             String parentName = getStringData(curator.get(), ZkPath.CONTAINER_PARENT.getPath(containerId));
             return parentName != null ? parentName.trim() : "";
         } catch (KeeperException.NoNodeException e) {
@@ -407,7 +565,7 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     public String getContainerVersion(String containerId) {
         assertValid();
         try {
-            return getStringData(configCache, ZkPath.CONFIG_CONTAINER.getPath(containerId));
+            return readStringData(configCache, ZkPath.CONFIG_CONTAINER.getPath(containerId));
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         }
@@ -433,9 +591,9 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         try {
             String str = null;
             if (Strings.isNotBlank(containerId)) {
-                String versionId = getStringData(configCache, ZkPath.CONFIG_CONTAINER.getPath(containerId));
+                String versionId = readStringData(configCache, ZkPath.CONFIG_CONTAINER.getPath(containerId));
                 if (Strings.isNotBlank(versionId)) {
-                    str = getStringData(configCache, ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId));
+                    str = readStringData(configCache, ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId));
                 }
             }
             return str == null || str.isEmpty() ? Collections.<String> emptyList() : Arrays.asList(str.trim().split(" +"));
@@ -467,6 +625,154 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         }
     }
 
+    @Override
+    public ContainerSnapshot getContainerSnapshot() {
+        assertValid();
+        try {
+            List<String> containerIds = getContainers();
+
+            // first pass: the parent, version and registration attributes of every container, which all live
+            // in the cached trees; the status and provisioning nodes are left to be read when asked for
+            List<String> paths = new ArrayList<String>();
+            for (String containerId : containerIds) {
+                // entries of the container node which are not set are skipped using its cached children
+                String containerPath = ZkPath.CONTAINER.getPath(containerId);
+                Set<String> entries = syncReads ? null : new HashSet<String>(containerCache.getChildrenNames(containerPath));
+                paths.add(ZkPath.CONFIG_CONTAINER.getPath(containerId));
+                for (ContainerAttribute attribute : ContainerSnapshot.ATTRIBUTES) {
+                    addIfSet(paths, entries, containerPath, getAttributePath(containerId, attribute));
+                }
+                addIfSet(paths, entries, containerPath, ZkPath.CONTAINER_PARENT.getPath(containerId));
+            }
+            Map<String, String> data = readAll(paths);
+
+            // second pass: the profiles of every container which depend on its version
+            paths.clear();
+            for (String containerId : containerIds) {
+                String versionId = data.get(ZkPath.CONFIG_CONTAINER.getPath(containerId));
+                if (Strings.isNotBlank(versionId)) {
+                    paths.add(ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId));
+                }
+            }
+            data.putAll(readAll(paths));
+
+            List<ContainerSnapshot.ContainerData> containers = new ArrayList<ContainerSnapshot.ContainerData>(containerIds.size());
+            for (String containerId : containerIds) {
+                String parentId = data.get(ZkPath.CONTAINER_PARENT.getPath(containerId));
+                String versionId = data.get(ZkPath.CONFIG_CONTAINER.getPath(containerId));
+                String profiles = Strings.isNotBlank(versionId) ? data.get(ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId)) : null;
+                List<String> profileIds = profiles == null || profiles.trim().isEmpty() ? Collections.<String> emptyList() : Arrays.asList(profiles.trim().split(" +"));
+                Map<ContainerAttribute, String> attributes = new HashMap<ContainerAttribute, String>();
+                for (ContainerAttribute attribute : ContainerSnapshot.ATTRIBUTES) {
+                    String value = data.get(getAttributePath(containerId, attribute));
+                    if (value != null) {
+                        attributes.put(attribute, value);
+                    }
+                }
+                containers.add(new ContainerSnapshot.ContainerData(containerId, parentId != null ? parentId.trim() : "", versionId,
+                        profileIds, attributes));
+            }
+            return new ContainerSnapshot(containers);
+        } catch (Exception e) {
+            throw FabricException.launderThrowable(e);
+        }
+    }
+
+    /**
+     * Adds the given path unless it is an entry of the container node which is known not to be set.
+     */
+    private static void addIfSet(List<String> paths, Set<String> entries, String containerPath, String path) {
+        if (entries == null || !path.startsWith(containerPath + "/") || entries.contains(path.substring(containerPath.length() + 1))) {
+            paths.add(path);
+        }
+    }
+
+    /**
+     * Reads the data of the given nodes, skipping nodes which do not exist. Nodes in the cached trees are read
+     * from the caches unless sync reads are enabled; all other nodes are read with pipelined asynchronous
+     * requests so that the whole batch costs about one round trip.
+     */
+    private Map<String, String> readAll(List<String> paths) throws Exception {
+        Map<String, String> result = new HashMap<String, String>();
+        List<String> remote = new ArrayList<String>();
+        for (String path : paths) {
+            TreeCache cache = null;
+            if (!syncReads) {
+                if (path.startsWith(ZkPath.CONFIGS.getPath() + "/")) {
+                    cache = configCache;
+                } else if (path.startsWith(ZkPath.CONTAINERS.getPath() + "/")) {
+                    cache = containerCache;
+                }
+            }
+            if (cache != null) {
+                cacheReads.incrementAndGet();
+                String value = getStringData(cache, path);
+                if (value != null) {
+                    result.put(path, value);
+                } else {
+                    cacheMisses.incrementAndGet();
+                }
+            } else {
+                remote.add(path);
+            }
+        }
+        result.putAll(readRemote(remote));
+        return result;
+    }
+
+    /**
+     * Reads the data of the given nodes with pipelined asynchronous requests, skipping nodes which do not exist.
+     */
+    private Map<String, String> readRemote(List<String> paths) throws Exception {
+        if (paths.isEmpty()) {
+            return new HashMap<String, String>();
+        }
+
+        final Map<String, String> remoteResult = new ConcurrentHashMap<String, String>();
+        final AtomicReference<KeeperException> failure = new AtomicReference<KeeperException>();
+        final CountDownLatch latch = new CountDownLatch(paths.size());
+        BackgroundCallback callback = new BackgroundCallback() {
+            @Override
+            public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+                try {
+                    int rc = event.getResultCode();
+                    if (rc == KeeperException.Code.OK.intValue()) {
+                        byte[] bytes = event.getData();
+                        remoteResult.put(event.getPath(), bytes != null ? new String(bytes, UTF_8) : "");
+                    } else if (rc != KeeperException.Code.NONODE.intValue()) {
+                        failure.compareAndSet(null, KeeperException.create(KeeperException.Code.get(rc), event.getPath()));
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        for (String path : paths) {
+            zooKeeperReads.incrementAndGet();
+            curator.get().getData().inBackground(callback).forPath(path);
+        }
+        if (!latch.await(SNAPSHOT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            throw new FabricException("Timed out reading " + latch.getCount() + " of " + paths.size() + " nodes from ZooKeeper");
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return remoteResult;
+    }
+
+    private static String joinChildren(List<String> children) {
+        List<String> list = new ArrayList<String>(children);
+        Collections.sort(list);
+        StringBuilder sb = new StringBuilder();
+        for (String l : list) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(l);
+        }
+        return sb.toString();
+    }
+
     @Override
     public boolean isContainerAlive(String id) {
         assertValid();
@@ -500,25 +806,36 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         assertValid();
         if (attribute == ContainerAttribute.Domains) {
             try {
-                List<String> list = curator.get().getChildren().forPath(ZkPath.CONTAINER_DOMAINS.getPath(containerId));
-                Collections.sort(list);
-                StringBuilder sb = new StringBuilder();
-                for (String l : list) {
-                    if (sb.length() > 0) {
-                        sb.append("\n");
-                    }
-                    sb.append(l);
-                }
-                return sb.toString();
+                zooKeeperReads.incrementAndGet();
+                return joinChildren(curator.get().getChildren().forPath(ZkPath.CONTAINER_DOMAINS.getPath(containerId)));
             } catch (Exception e) {
                 return "";
             }
         } else {
             try {
+                String path = getAttributePath(containerId, attribute);
+                if (!syncReads && path.startsWith(ZkPath.CONTAINERS.getPath())) {
+                    // the container configuration is kept up to date by the container cache
+                    cacheReads.incrementAndGet();
+                    TreeData node = containerCache.getCurrentData(path);
+                    if (node == null) {
+                        cacheMisses.incrementAndGet();
+                        if (substituted) {
+                            return null;
+                        }
+                        throw new KeeperException.NoNodeException(path);
+                    }
+                    byte[] data = node.getData();
+                    if (substituted) {
+                        return data != null && data.length > 0 ? getSubstitutedData(new String(data, UTF_8)) : null;
+                    }
+                    return data != null ? new String(data, UTF_8) : null;
+                }
+                zooKeeperReads.incrementAndGet();
                 if (substituted) {
-                    return getSubstitutedPath(curator.get(), getAttributePath(containerId, attribute));
+                    return getSubstitutedPath(curator.get(), path);
                 } else {
-                    return getStringData(curator.get(), getAttributePath(containerId, attribute));
+                    return getStringData(curator.get(), path);
                 }
             } catch (KeeperException.NoNodeException e) {
                 if (mandatory) {
@@ -579,6 +896,102 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         }
     }
 
+    /**
+     * Returns the data of the given node or null if it does not exist, read from the given cache
+     * unless sync reads are enabled.
+     */
+    private String readStringData(TreeCache cache, String path) throws Exception {
+        if (syncReads) {
+            zooKeeperReads.incrementAndGet();
+            try {
+                return getStringData(curator.get(), path);
+            } catch (KeeperException.NoNodeException e) {
+                return null;
+            }
+        }
+        cacheReads.incrementAndGet();
+        String value = getStringData(cache, path);
+        if (value == null) {
+            cacheMisses.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Substitutes the ${zk:...} references in the given data, reading plain references to the
+     * container configuration from the container cache.
+     */
+    private String getSubstitutedData(String data) {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("data", data);
+        InterpolationHelper.performSubstitution(props, new InterpolationHelper.SubstitutionCallback() {
+            @Override
+            public String getValue(String key) {
+                if (key.startsWith("zk:")) {
+                    try {
+                        String path = key.substring(3).trim();
+                        if (!path.startsWith("/")) {
+                            path = ZkPath.CONTAINER.getPath(path);
+                        }
+                        if (!key.contains("#") && path.startsWith(ZkPath.CONTAINERS.getPath())) {
+                            cacheReads.incrementAndGet();
+                            byte[] bytes = getByteData(containerCache, path);
+                            if (bytes == null) {
+                                cacheMisses.incrementAndGet();
+                                return null;
+                            }
+                            return new String(bytes, UTF_8);
+                        }
+                        zooKeeperReads.incrementAndGet();
+                        return new String(ZkPath.loadURL(curator.get(), key), UTF_8);
+                    } catch (Exception e) {
+                        //ignore and just return null.
+                    }
+                }
+                return null;
+            }
+        });
+        return props.get("data");
+    }
+
+    @Override
+    public boolean isSyncReads() {
+        return syncReads;
+    }
+
+    /**
+     * Whether container reads should go to the ensemble rather than the local caches
+     */
+    @Override
+    public void setSyncReads(boolean syncReads) {
+        this.syncReads = syncReads;
+    }
+
+    /**
+     * Returns the number of container reads served from the local caches
+     */
+    @Override
+    public long getCacheReadCount() {
+        return cacheReads.get();
+    }
+
+    /**
+     * Returns the number of container reads which went to the ensemble
+     */
+    @Override
+    public long getZooKeeperReadCount() {
+        return zooKeeperReads.get();
+    }
+
+    /**
+     * Returns the number of cache reads which found no node, these are answered from the cached
+     * children of the parent node rather than by the ensemble
+     */
+    @Override
+    public long getCacheMissCount() {
+        return cacheMisses.get();
+    }
+
     private String getAttributePath(String containerId, ContainerAttribute attribute) {
         switch (attribute) {
         case BlueprintStatus:
@@ -779,4 +1192,23 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     void unbindRuntimeProperties(RuntimeProperties service) {
         this.runtimeProperties.unbind(service);
     }
+
+    void bindMBeanServer(MBeanServer mbeanServer) {
+        try {
+            JMXUtils.registerMBean(this, mbeanServer, new ObjectName(STATISTICS_OBJECT_NAME));
+            this.mbeanServer = mbeanServer;
+        } catch (Exception ex) {
+            LOGGER.warn("Cannot register the data store statistics MBean: " + ex, ex);
+        }
+    }
+    void unbindMBeanServer(MBeanServer mbeanServer) {
+        if (this.mbeanServer == mbeanServer) {
+            this.mbeanServer = null;
+            try {
+                JMXUtils.unregisterMBean(mbeanServer, new ObjectName(STATISTICS_OBJECT_NAME));
+            } catch (Exception ex) {
+                LOGGER.warn("Cannot unregister the data store statistics MBean: " + ex, ex);
+            }
+        }
+    }
 }
@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileRegistry;
+import io.fabric8.api.RuntimeProperties;
+import io.fabric8.api.Version;
+import io.fabric8.api.VersionBuilder;
+import io.fabric8.service.PermitManagerImpl;
+
+import java.util.Arrays;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProfileServiceImplTest {
+
+    private static final String VERSION = "1.0";
+
+    private ProfileServiceImpl profileService;
+    private Version version;
+
+    @Before
+    public void setUp() throws Exception {
+        version = createVersion("one");
+
+        ProfileRegistry profileRegistry = createMock(ProfileRegistry.class);
+        expect(profileRegistry.getRequiredVersion(VERSION)).andAnswer(new IAnswer<Version>() {
+            @Override
+            public Version answer() throws Throwable {
+                return version;
+            }
+        }).anyTimes();
+        expect(profileRegistry.getRequiredProfile(VERSION, "child")).andAnswer(new IAnswer<Profile>() {
+            @Override
+            public Profile answer() throws Throwable {
+                return version.getRequiredProfile("child");
+            }
+        }).anyTimes();
+        profileRegistry.deleteProfile(VERSION, "child");
+        expectLastCall().anyTimes();
+        replay(profileRegistry);
+
+        RuntimeProperties runtimeProperties = createNiceMock(RuntimeProperties.class);
+        replay(runtimeProperties);
+
+        PermitManagerImpl permitManager = new PermitManagerImpl();
+        permitManager.activate();
+
+        profileService = new ProfileServiceImpl();
+        profileService.bindPermitManager(permitManager);
+        profileService.bindProfileRegistry(profileRegistry);
+        profileService.bindRuntimeProperties(runtimeProperties);
+        profileService.activate();
+    }
+
+    @Test
+    public void testOverlayIsCached() throws Exception {
+        Profile overlay = profileService.getOverlayProfile(version.getRequiredProfile("child"));
+        assertEquals("one", overlay.getConfiguration("my.pid").get("key"));
+        assertEquals("true", overlay.getConfiguration("my.pid").get("child"));
+
+        // an equal but newly loaded version should still hit the cache
+        version = createVersion("one");
+        assertSame(overlay, profileService.getOverlayProfile(version.getRequiredProfile("child")));
+    }
+
+    @Test
+    public void testOverlayIsRecomputedWhenParentChanges() throws Exception {
+        Profile overlay = profileService.getOverlayProfile(version.getRequiredProfile("child"));
+
+        version = createVersion("two");
+        Profile updated = profileService.getOverlayProfile(version.getRequiredProfile("child"));
+        assertNotSame(overlay, updated);
+        assertEquals("two", updated.getConfiguration("my.pid").get("key"));
+    }
+
+    @Test
+    public void testOverlayIsEvictedWhenProfileIsDeleted() throws Exception {
+        Profile overlay = profileService.getOverlayProfile(version.getRequiredProfile("child"));
+
+        profileService.deleteProfile(VERSION, "child", false);
+
+        // recreating the profile with the same content and parents must not return the old overlay
+        version = createVersion("one");
+        assertNotSame(overlay, profileService.getOverlayProfile(version.getRequiredProfile("child")));
+    }
+
+    private Version createVersion(String parentValue) {
+        Profile defaultProfile = ProfileBuilder.Factory.create(VERSION, "default").getProfile();
+        Profile parent = ProfileBuilder.Factory.create(VERSION, "parent")
+                .addConfiguration("my.pid", "key", parentValue)
+                .getProfile();
+        Profile child = ProfileBuilder.Factory.create(VERSION, "child")
+                .addParent("parent")
+                .addConfiguration("my.pid", "child", "true")
+                .getProfile();
+        return VersionBuilder.Factory.create(VERSION).addProfiles(Arrays.asList(defaultProfile, parent, child)).getVersion();
+    }
+}
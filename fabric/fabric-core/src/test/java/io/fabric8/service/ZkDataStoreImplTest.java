@@ -0,0 +1,289 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.service;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.api.Container;
+import io.fabric8.api.ContainerSnapshot;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.DataStore.ContainerAttribute;
+import io.fabric8.api.FabricService;
+import io.fabric8.api.scr.AbstractRuntimeProperties;
+import io.fabric8.internal.ContainerImpl;
+import io.fabric8.zookeeper.ZkPath;
+import org.apache.commons.io.FileUtils;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ServerConfig;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZkDataStoreImplTest {
+
+    private NIOServerCnxnFactory cnxnFactory;
+    private ZooKeeperServer zkServer;
+    private CuratorFramework curator;
+    private ZkDataStoreImpl dataStore;
+    private final Map<String, String> properties = new HashMap<String, String>();
+
+    @Before
+    public void init() throws Exception {
+        int port = findFreePort();
+        cnxnFactory = startZooKeeper(port);
+
+        curator = CuratorFrameworkFactory.builder()
+                .connectString("localhost:" + port)
+                .retryPolicy(new RetryOneTime(1000))
+                .build();
+        curator.start();
+        curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+
+        curator.create().creatingParentsIfNeeded().forPath(ZkPath.CONFIG_CONTAINER.getPath("root"), "1.0".getBytes("UTF-8"));
+        curator.create().creatingParentsIfNeeded().forPath(ZkPath.CONTAINER_IP.getPath("root"), "10.0.0.1".getBytes("UTF-8"));
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        if (dataStore != null) {
+            dataStore.deactivate();
+        }
+        curator.close();
+        cnxnFactory.shutdown();
+    }
+
+    @Test
+    public void repeatedReadsOfMissingAttributeStayLocal() throws Exception {
+        activateDataStore();
+        assertEquals("10.0.0.1", dataStore.getContainerAttribute("root", ContainerAttribute.Ip, null, false, false));
+
+        // wait for the container node to be cached, after which a missing child is known from its children
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (true) {
+            long packets = zkServer.serverStats().getPacketsReceived();
+            for (int i = 0; i < 10; i++) {
+                dataStore.getContainerAttribute("root", ContainerAttribute.PortMin, "0", false, false);
+            }
+            if (zkServer.serverStats().getPacketsReceived() == packets || System.currentTimeMillis() > deadline) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+
+        long packets = zkServer.serverStats().getPacketsReceived();
+        long misses = dataStore.getCacheMissCount();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("0", dataStore.getContainerAttribute("root", ContainerAttribute.PortMin, "0", false, false));
+        }
+        assertTrue("missing attribute reads went to ZooKeeper", zkServer.serverStats().getPacketsReceived() - packets < 10);
+        assertEquals(misses + 100, dataStore.getCacheMissCount());
+
+        // the negative result goes away as soon as the node is created
+        curator.create().forPath(ZkPath.CONTAINER_PORT_MIN.getPath("root"), "31000".getBytes("UTF-8"));
+        deadline = System.currentTimeMillis() + 10000L;
+        String value = null;
+        while (System.currentTimeMillis() < deadline) {
+            value = dataStore.getContainerAttribute("root", ContainerAttribute.PortMin, "0", false, false);
+            if ("31000".equals(value)) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        assertEquals("31000", value);
+    }
+
+    @Test
+    public void snapshotMatchesLiveContainer() throws Exception {
+        createNode(ZkPath.CONFIG_CONTAINER.getPath("child"), "1.0");
+        createNode(ZkPath.CONFIG_VERSIONS_CONTAINER.getPath("1.0", "child"), "default mq");
+        createNode(ZkPath.CONTAINER_PARENT.getPath("child"), "root");
+        createNode(ZkPath.CONTAINER_RESOLVER.getPath("child"), "localip");
+        createNode(ZkPath.CONTAINER_LOCAL_IP.getPath("child"), "10.0.0.2");
+        createNode(ZkPath.CONTAINER_IP.getPath("child"), "${zk:child/localip}");
+        createNode(ZkPath.CONTAINER_SSH.getPath("child"), "10.0.0.2:8101");
+        createNode(ZkPath.CONTAINER_JMX.getPath("child"), "service:jmx:rmi://10.0.0.2:44444/jndi/rmi://10.0.0.2:1099/karaf-child");
+        createNode(ZkPath.CONTAINER_HTTP.getPath("child"), "http://10.0.0.2:8181");
+        createNode(ZkPath.CONTAINER_JOLOKIA.getPath("child"), "http://10.0.0.2:8181/jolokia");
+        createNode(ZkPath.CONTAINER_LOCATION.getPath("child"), "rack1");
+        createNode(ZkPath.CONTAINER_PORT_MIN.getPath("child"), "31000");
+        createNode(ZkPath.CONTAINER_DOMAIN.getPath("child", "org.apache.karaf"), "");
+        createNode(ZkPath.CONTAINER_DOMAIN.getPath("child", "io.fabric8"), "");
+        createNode(ZkPath.CONTAINER_PROVISION_RESULT.getPath("child"), "success");
+        createNode(ZkPath.CONTAINER_PROVISION_LIST.getPath("child"), "mvn:a/b/1\nmvn:c/d/2");
+        createNode(ZkPath.CONTAINER_PROCESS_ID.getPath("child"), "1234");
+        createNode(ZkPath.CONTAINER_ALIVE.getPath("child"), "alive");
+        activateDataStore();
+
+        FabricService fabricService = Mockito.mock(FabricService.class);
+        Mockito.when(fabricService.adapt(DataStore.class)).thenReturn(dataStore);
+        ContainerSnapshot snapshot = dataStore.getContainerSnapshot();
+        for (String containerId : new String[]{"root", "child"}) {
+            Container live = new ContainerImpl(null, containerId, fabricService);
+            Container cached = new ContainerImpl(null, containerId, fabricService, snapshot);
+            assertEquals(describe(live), describe(cached));
+        }
+        Container root = new ContainerImpl(null, "root", fabricService, snapshot);
+        Container[] children = root.getChildren();
+        assertEquals(1, children.length);
+        assertEquals("child", children[0].getId());
+        assertEquals(Arrays.asList("io.fabric8", "org.apache.karaf"), children[0].getJmxDomains());
+
+        // the status of a listed container keeps changing while it runs
+        curator.setData().forPath(ZkPath.CONTAINER_PROVISION_RESULT.getPath("child"), "error".getBytes("UTF-8"));
+        curator.delete().forPath(ZkPath.CONTAINER_ALIVE.getPath("child"));
+        assertEquals("error", children[0].getProvisionResult());
+        assertFalse(children[0].isAlive());
+    }
+
+    @Test
+    public void burstOfChangesRunsCallbacksOnce() throws Exception {
+        properties.put(ZkDataStoreImpl.NOTIFICATION_QUIET_PERIOD_PROPERTY, "200");
+        properties.put(ZkDataStoreImpl.NOTIFICATION_MAX_DELAY_PROPERTY, "5000");
+        activateDataStore();
+        assertEquals(1, countCallbacksForBurst(20, 200L));
+    }
+
+    @Test
+    public void invalidDelaysFallBackToDefaults() throws Exception {
+        properties.put(ZkDataStoreImpl.NOTIFICATION_QUIET_PERIOD_PROPERTY, "soon");
+        properties.put(ZkDataStoreImpl.NOTIFICATION_MAX_DELAY_PROPERTY, "-1");
+        activateDataStore();
+        assertEquals(1, countCallbacksForBurst(5, 100L));
+    }
+
+    /**
+     * Fires the given number of changes in quick succession and returns how often the callbacks ran for them
+     */
+    private int countCallbacksForBurst(int changes, long quietPeriod) throws Exception {
+        // let the notifications for the initial load of the caches go out first
+        long notifications = -1;
+        while (notifications != dataStore.getNotificationCount()) {
+            notifications = dataStore.getNotificationCount();
+            Thread.sleep(quietPeriod * 3);
+        }
+
+        final AtomicInteger count = new AtomicInteger();
+        dataStore.trackConfiguration(new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < changes; i++) {
+            dataStore.fireChangeNotifications();
+            Thread.sleep(5);
+        }
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (count.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(quietPeriod * 3);
+        return count.get();
+    }
+
+    /**
+     * Returns the value of every attribute getter of the container, or the type of exception it threw
+     */
+    private Map<String, Object> describe(Container container) throws Exception {
+        Map<String, Object> answer = new HashMap<String, Object>();
+        for (String getter : new String[]{"isAlive", "getVersionId", "getProfileIds", "getSshUrl", "getJmxUrl", "getJolokiaUrl",
+                "getHttpUrl", "getDebugPort", "getProcessId", "getLocation", "getGeoLocation", "getResolver", "getIp", "getLocalIp",
+                "getLocalHostname", "getPublicIp", "getPublicHostname", "getManualIp", "getMinimumPort", "getMaximumPort",
+                "getJmxDomains", "getProvisionStatus", "getProvisionException", "getProvisionList"}) {
+            Method method = Container.class.getMethod(getter);
+            try {
+                answer.put(getter, method.invoke(container));
+            } catch (InvocationTargetException e) {
+                answer.put(getter, e.getCause().getClass());
+            }
+        }
+        return answer;
+    }
+
+    private void createNode(String path, String data) throws Exception {
+        curator.create().creatingParentsIfNeeded().forPath(path, data.getBytes("UTF-8"));
+    }
+
+    private void activateDataStore() throws Exception {
+        dataStore = new ZkDataStoreImpl();
+        dataStore.bindCurator(curator);
+        dataStore.bindRuntimeProperties(new MockRuntimeProperties());
+        dataStore.activate();
+    }
+
+    private int findFreePort() throws Exception {
+        ServerSocket ss = new ServerSocket(0);
+        int port = ss.getLocalPort();
+        ss.close();
+        return port;
+    }
+
+    private NIOServerCnxnFactory startZooKeeper(int port) throws Exception {
+        String testDirectory = "target/zk-datastore/data" + System.currentTimeMillis();
+        FileUtils.deleteDirectory(new File(testDirectory));
+        ServerConfig cfg = new ServerConfig();
+        cfg.parse(new String[]{Integer.toString(port), testDirectory});
+
+        zkServer = new ZooKeeperServer();
+        FileTxnSnapLog ftxn = new FileTxnSnapLog(new File(cfg.getDataLogDir()), new File(cfg.getDataDir()));
+        zkServer.setTxnLogFactory(ftxn);
+        zkServer.setTickTime(cfg.getTickTime());
+        zkServer.setMinSessionTimeout(cfg.getMinSessionTimeout());
+        zkServer.setMaxSessionTimeout(cfg.getMaxSessionTimeout());
+        NIOServerCnxnFactory cnxnFactory = new NIOServerCnxnFactory();
+        cnxnFactory.configure(cfg.getClientPortAddress(), cfg.getMaxClientCnxns());
+        cnxnFactory.startup(zkServer);
+        return cnxnFactory;
+    }
+
+    private class MockRuntimeProperties extends AbstractRuntimeProperties {
+
+        @Override
+        public String getRuntimeIdentity() {
+            return "root";
+        }
+
+        @Override
+        public Path getDataPath() {
+            return Paths.get("target/tmp");
+        }
+
+        @Override
+        protected String getPropertyInternal(String key, String defaultValue) {
+            String value = properties.get(key);
+            return value != null ? value : defaultValue;
+        }
+    }
+}
@@ -22,6 +22,8 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
 import io.fabric8.dosgi.impl.Manager;
+import io.fabric8.dosgi.tcp.ServerInvokerImpl;
+import io.fabric8.dosgi.tcp.TransportPool;
 import org.osgi.framework.BundleContext;
 
 public class Activator implements ConnectionStateListener {
@@ -31,6 +33,10 @@ public class Activator implements ConnectionStateListener {
     private String uri;
     private String exportedAddress;
     private long timeout = TimeUnit.MINUTES.toMillis(5);
+    private int threads = ServerInvokerImpl.DEFAULT_THREADS;
+    private int queueSize = ServerInvokerImpl.DEFAULT_QUEUE_SIZE;
+    private int poolSize = TransportPool.DEFAULT_POOL_SIZE;
+    private int maxPoolSize = TransportPool.DEFAULT_MAX_POOL_SIZE;
     private CuratorFramework curator;
 
     public void setBundleContext(BundleContext bundleContext) {
@@ -49,6 +55,22 @@ public class Activator implements ConnectionStateListener {
         this.timeout = timeout;
     }
 
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
     public void destroy() {
         destroyManager();
         curator = null;
@@ -83,6 +105,10 @@ public class Activator implements ConnectionStateListener {
         destroyManager();
         try {
             manager = new Manager(this.bundleContext, curator, uri, exportedAddress, timeout);
+            manager.setServerThreads(threads);
+            manager.setServerQueueSize(queueSize);
+            manager.setPoolSize(poolSize);
+            manager.setMaxPoolSize(maxPoolSize);
             manager.init();
         } catch (Exception e) {
             throw new RuntimeException("Unable to start DOSGi service: " + e.getMessage(), e);
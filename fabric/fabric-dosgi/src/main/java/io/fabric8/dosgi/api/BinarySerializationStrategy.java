@@ -0,0 +1,382 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi.api;
+
+import io.fabric8.dosgi.util.ClassLoaderObjectInputStream;
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A compact serialization strategy selected with <code>@Serialization("binary")</code>.
+ * </p>
+ * <p>
+ * Nulls, primitive wrappers, strings, arrays of primitives and strings, and {@link ArrayList}s and {@link HashMap}s
+ * of those values are written as a one byte type tag followed by their value, using variable length encoding for
+ * integral values, so no class descriptors are sent for them. Any other value is written with Java serialization
+ * using a single object stream shared by all the values of the message, which is appended after the tagged values
+ * so its class descriptors are only sent once per message.
+ * </p>
+ */
+public class BinarySerializationStrategy implements SerializationStrategy {
+
+    public static final BinarySerializationStrategy INSTANCE = new BinarySerializationStrategy();
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte BYTE = 3;
+    static final byte SHORT = 4;
+    static final byte CHAR = 5;
+    static final byte INT = 6;
+    static final byte LONG = 7;
+    static final byte FLOAT = 8;
+    static final byte DOUBLE = 9;
+    static final byte STRING = 10;
+    static final byte BYTE_ARRAY = 11;
+    static final byte INT_ARRAY = 12;
+    static final byte LONG_ARRAY = 13;
+    static final byte STRING_ARRAY = 14;
+    static final byte LIST = 15;
+    static final byte MAP = 16;
+    static final byte OBJECT = 17;
+    static final byte ERROR = 18;
+
+    /**
+     * Marks a decoded value which is read from the trailing object stream.
+     */
+    private static final Object DEFERRED = new Object();
+
+    public String name() {
+        return "binary";
+    }
+
+    public void encodeRequest(ClassLoader loader, Class<?>[] types, Object[] args, DataByteArrayOutputStream target) throws IOException {
+        List<Object> objects = null;
+        for (int i = 0; i < types.length; i++) {
+            objects = writeValue(args[i], target, objects);
+        }
+        writeObjects(objects, target);
+    }
+
+    public void decodeRequest(ClassLoader loader, Class<?>[] types, DataByteArrayInputStream source, Object[] target) throws IOException, ClassNotFoundException {
+        boolean deferred = false;
+        for (int i = 0; i < types.length; i++) {
+            target[i] = readValue(source);
+            deferred |= target[i] == DEFERRED;
+        }
+        if (deferred) {
+            ClassLoaderObjectInputStream ois = createObjectInputStream(loader, source);
+            for (int i = 0; i < types.length; i++) {
+                if (target[i] == DEFERRED) {
+                    target[i] = ois.readObject();
+                }
+            }
+        }
+    }
+
+    public void encodeResponse(ClassLoader loader, Class<?> type, Object value, Throwable error, DataByteArrayOutputStream target) throws IOException {
+        if (error != null) {
+            target.writeByte(ERROR);
+            List<Object> objects = new ArrayList<Object>(1);
+            objects.add(error);
+            writeObjects(objects, target);
+        } else {
+            writeObjects(writeValue(value, target, null), target);
+        }
+    }
+
+    public void decodeResponse(ClassLoader loader, Class<?> type, DataByteArrayInputStream source, AsyncCallback result) throws IOException, ClassNotFoundException {
+        byte tag = source.readByte();
+        if (tag == ERROR) {
+            result.onFailure((Throwable) createObjectInputStream(loader, source).readObject());
+            return;
+        }
+        Object value = readValue(tag, source);
+        if (value == DEFERRED) {
+            value = createObjectInputStream(loader, source).readObject();
+        }
+        result.onSuccess(value);
+    }
+
+    /**
+     * Writes the value as a tagged value if possible, otherwise writes an {@link #OBJECT} tag and adds
+     * the value to the objects to write with Java serialization once all the tagged values are written.
+     */
+    private List<Object> writeValue(Object value, DataByteArrayOutputStream target, List<Object> objects) throws IOException {
+        if (!writeTagged(value, target)) {
+            target.writeByte(OBJECT);
+            if (objects == null) {
+                objects = new ArrayList<Object>(2);
+            }
+            objects.add(value);
+        }
+        return objects;
+    }
+
+    private boolean writeTagged(Object value, DataByteArrayOutputStream target) throws IOException {
+        if (value == null) {
+            target.writeByte(NULL);
+            return true;
+        }
+        // exact class checks so the decoded value always has the same class as the encoded one
+        Class<?> clazz = value.getClass();
+        if (clazz == String.class) {
+            target.writeByte(STRING);
+            writeString((String) value, target);
+        } else if (clazz == Integer.class) {
+            target.writeByte(INT);
+            target.writeVarInt(encodeZigZag((Integer) value));
+        } else if (clazz == Long.class) {
+            target.writeByte(LONG);
+            target.writeVarLong(encodeZigZag((Long) value));
+        } else if (clazz == Boolean.class) {
+            target.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (clazz == Double.class) {
+            target.writeByte(DOUBLE);
+            target.writeDouble((Double) value);
+        } else if (clazz == Float.class) {
+            target.writeByte(FLOAT);
+            target.writeFloat((Float) value);
+        } else if (clazz == Byte.class) {
+            target.writeByte(BYTE);
+            target.writeByte((Byte) value);
+        } else if (clazz == Short.class) {
+            target.writeByte(SHORT);
+            target.writeShort((Short) value);
+        } else if (clazz == Character.class) {
+            target.writeByte(CHAR);
+            target.writeChar((Character) value);
+        } else if (clazz == byte[].class) {
+            byte[] array = (byte[]) value;
+            target.writeByte(BYTE_ARRAY);
+            target.writeVarInt(array.length);
+            target.write(array);
+        } else if (clazz == int[].class) {
+            int[] array = (int[]) value;
+            target.writeByte(INT_ARRAY);
+            target.writeVarInt(array.length);
+            for (int element : array) {
+                target.writeVarInt(encodeZigZag(element));
+            }
+        } else if (clazz == long[].class) {
+            long[] array = (long[]) value;
+            target.writeByte(LONG_ARRAY);
+            target.writeVarInt(array.length);
+            for (long element : array) {
+                target.writeVarLong(encodeZigZag(element));
+            }
+        } else if (clazz == String[].class) {
+            String[] array = (String[]) value;
+            target.writeByte(STRING_ARRAY);
+            target.writeVarInt(array.length);
+            for (String element : array) {
+                writeNullableString(element, target);
+            }
+        } else if (clazz == ArrayList.class && isTagged((Collection<?>) value)) {
+            List<?> list = (List<?>) value;
+            target.writeByte(LIST);
+            target.writeVarInt(list.size());
+            for (Object element : list) {
+                writeTagged(element, target);
+            }
+        } else if (clazz == HashMap.class && isTagged(((Map<?, ?>) value).keySet()) && isTagged(((Map<?, ?>) value).values())) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            target.writeByte(MAP);
+            target.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeTagged(entry.getKey(), target);
+                writeTagged(entry.getValue(), target);
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Collections are only written as tagged values when all their elements are scalars, so that a collection
+     * is either entirely tagged or entirely written with Java serialization.
+     */
+    private boolean isTagged(Collection<?> values) {
+        for (Object value : values) {
+            if (value != null && !isScalar(value.getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isScalar(Class<?> clazz) {
+        return clazz == String.class || clazz == Integer.class || clazz == Long.class || clazz == Boolean.class
+                || clazz == Double.class || clazz == Float.class || clazz == Byte.class || clazz == Short.class
+                || clazz == Character.class;
+    }
+
+    private Object readValue(DataByteArrayInputStream source) throws IOException {
+        return readValue(source.readByte(), source);
+    }
+
+    private Object readValue(byte tag, DataByteArrayInputStream source) throws IOException {
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return source.readByte();
+            case SHORT:
+                return source.readShort();
+            case CHAR:
+                return source.readChar();
+            case INT:
+                return decodeZigZag(source.readVarInt());
+            case LONG:
+                return decodeZigZag(source.readVarLong());
+            case FLOAT:
+                return source.readFloat();
+            case DOUBLE:
+                return source.readDouble();
+            case STRING:
+                return readString(source);
+            case BYTE_ARRAY: {
+                byte[] array = new byte[source.readVarInt()];
+                source.readFully(array);
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[source.readVarInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = decodeZigZag(source.readVarInt());
+                }
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[source.readVarInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = decodeZigZag(source.readVarLong());
+                }
+                return array;
+            }
+            case STRING_ARRAY: {
+                String[] array = new String[source.readVarInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readNullableString(source);
+                }
+                return array;
+            }
+            case LIST: {
+                int size = source.readVarInt();
+                List<Object> list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(source));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = source.readVarInt();
+                Map<Object, Object> map = new HashMap<Object, Object>(Math.max(16, (int) (size / .75f) + 1));
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(source);
+                    map.put(key, readValue(source));
+                }
+                return map;
+            }
+            case OBJECT:
+                return DEFERRED;
+            default:
+                throw new IOException("Invalid " + name() + " serialization type tag: " + tag);
+        }
+    }
+
+    private void writeObjects(List<Object> objects, DataByteArrayOutputStream target) throws IOException {
+        if (objects != null) {
+            ObjectOutputStream oos = new ObjectOutputStream(target);
+            for (Object object : objects) {
+                oos.writeObject(object);
+            }
+            oos.flush();
+        }
+    }
+
+    private ClassLoaderObjectInputStream createObjectInputStream(ClassLoader loader, DataByteArrayInputStream source) throws IOException {
+        ClassLoaderObjectInputStream ois = new ClassLoaderObjectInputStream(source);
+        ois.setClassLoader(loader);
+        return ois;
+    }
+
+    private void writeString(String value, DataByteArrayOutputStream target) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        target.writeVarInt(bytes.length);
+        target.write(bytes);
+    }
+
+    private String readString(DataByteArrayInputStream source) throws IOException {
+        byte[] bytes = new byte[source.readVarInt()];
+        source.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private void writeNullableString(String value, DataByteArrayOutputStream target) throws IOException {
+        if (value == null) {
+            target.writeVarInt(0);
+        } else {
+            byte[] bytes = value.getBytes(UTF8);
+            target.writeVarInt(bytes.length + 1);
+            target.write(bytes);
+        }
+    }
+
+    private String readNullableString(DataByteArrayInputStream source) throws IOException {
+        int length = source.readVarInt();
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        source.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static int encodeZigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int decodeZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
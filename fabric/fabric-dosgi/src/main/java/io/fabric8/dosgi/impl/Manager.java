@@ -21,6 +21,7 @@ import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.curator.framework.recipes.cache.TreeCache;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import io.fabric8.dosgi.api.BinarySerializationStrategy;
 import io.fabric8.dosgi.api.Dispatched;
 import io.fabric8.dosgi.api.SerializationStrategy;
 import io.fabric8.dosgi.capset.CapabilitySet;
@@ -29,6 +30,7 @@ import io.fabric8.dosgi.io.ClientInvoker;
 import io.fabric8.dosgi.io.ServerInvoker;
 import io.fabric8.dosgi.tcp.ClientInvokerImpl;
 import io.fabric8.dosgi.tcp.ServerInvokerImpl;
+import io.fabric8.dosgi.tcp.TransportPool;
 import io.fabric8.dosgi.util.AriesFrameworkUtil;
 import io.fabric8.dosgi.util.Utils;
 import io.fabric8.dosgi.util.UuidGenerator;
@@ -121,6 +123,14 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
 
     private final long timeout;
 
+    private int serverThreads = ServerInvokerImpl.DEFAULT_THREADS;
+
+    private int serverQueueSize = ServerInvokerImpl.DEFAULT_QUEUE_SIZE;
+
+    private int poolSize = TransportPool.DEFAULT_POOL_SIZE;
+
+    private int maxPoolSize = TransportPool.DEFAULT_MAX_POOL_SIZE;
+
     private ClientInvoker client;
 
     private ServerInvoker server;
@@ -135,6 +145,7 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
         this.exportedServices = new ConcurrentHashMap<ServiceReference, ExportRegistration>();
         this.listeners = new ConcurrentHashMap<ListenerInfo, SimpleFilter>();
         this.serializationStrategies = new ConcurrentHashMap<String, SerializationStrategy>();
+        this.serializationStrategies.put(BinarySerializationStrategy.INSTANCE.name(), BinarySerializationStrategy.INSTANCE);
         this.remoteEndpoints = new CapabilitySet<EndpointDescription>(
                 Arrays.asList(Constants.OBJECTCLASS, ENDPOINT_FRAMEWORK_UUID), false);
         this.bundleContext = context;
@@ -146,8 +157,11 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
 
     public void init() throws Exception {
         // Create client and server
-        this.client = new ClientInvokerImpl(queue, timeout, serializationStrategies);
-        this.server = new ServerInvokerImpl(uri, queue, serializationStrategies);
+        ClientInvokerImpl invoker = new ClientInvokerImpl(queue, timeout, serializationStrategies);
+        invoker.setPoolSize(poolSize);
+        invoker.setMaxPoolSize(maxPoolSize);
+        this.client = invoker;
+        this.server = new ServerInvokerImpl(uri, queue, serializationStrategies, serverThreads, serverQueueSize);
         this.client.start();
         this.server.start();
         // ZooKeeper tracking
@@ -176,6 +190,22 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
         }
     }
 
+    public void setServerThreads(int serverThreads) {
+        this.serverThreads = serverThreads;
+    }
+
+    public void setServerQueueSize(int serverQueueSize) {
+        this.serverQueueSize = serverQueueSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
     public void destroy() throws IOException {
         for (Map<Long, ImportRegistration> registrations : this.importedServices.values()) {
             for (ImportRegistration registration : registrations.values()) {
@@ -384,7 +414,7 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
             public void unget() {
                 reference.getBundle().getBundleContext().ungetService(reference);
             }
-        }, AriesFrameworkUtil.getClassLoader(reference.getBundle()));
+        }, AriesFrameworkUtil.getClassLoader(reference.getBundle()), properties);
 
         String descStr = Utils.getEndpointDescriptionXML(description);
         // Publish in ZooKeeper
@@ -15,12 +15,19 @@
  */
 package io.fabric8.dosgi.io;
 
+import java.util.Map;
+
 public interface ServerInvoker extends Service {
 
     String getConnectAddress();
 
     void registerService(String id, ServiceFactory service, ClassLoader classLoader);
 
+    /**
+     * Registers a service whose invocations may be tuned by the given endpoint properties.
+     */
+    void registerService(String id, ServiceFactory service, ClassLoader classLoader, Map<String, ?> properties);
+
     void unregisterService(String id);
 
 
@@ -20,7 +20,8 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -68,6 +69,8 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
     protected final Map<Long, ResponseFuture> requests = new HashMap<Long, ResponseFuture>();
     protected final long timeout;
     protected final Map<String, SerializationStrategy> serializationStrategies;
+    protected int poolSize = TransportPool.DEFAULT_POOL_SIZE;
+    protected int maxPoolSize = TransportPool.DEFAULT_MAX_POOL_SIZE;
 
     public ClientInvokerImpl(DispatchQueue queue, Map<String, SerializationStrategy> serializationStrategies) {
         this(queue, DEFAULT_TIMEOUT, serializationStrategies);
@@ -83,6 +86,28 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
         return queue;
     }
 
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @param poolSize the number of connections kept to each remote address
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize the number of connections to each remote address the pool may grow to under load
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
     public void start() throws Exception {
         start(null);
     }
@@ -150,8 +175,6 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
         }
     }
 
-    static final WeakHashMap<Method, MethodData> method_cache = new WeakHashMap<Method, MethodData>();
-
     static class MethodData {
         private final SerializationStrategy serializationStrategy;
         final Buffer signature;
@@ -164,11 +187,8 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
         }
     }
 
-    private MethodData getMethodData(Method method) throws IOException {
-        MethodData rc = null;
-        synchronized (method_cache) {
-            rc = method_cache.get(method);
-        }
+    private MethodData getMethodData(ProxyInvocationHandler handler, Method method) throws IOException {
+        MethodData rc = handler.method_cache.get(method);
         if( rc==null ) {
             StringBuilder sb = new StringBuilder();
             sb.append(method.getName());
@@ -201,8 +221,9 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
             }
 
             rc = new MethodData(strategy, serializationStrategy, signature);
-            synchronized (method_cache) {
-                method_cache.put(method, rc);
+            MethodData previous = handler.method_cache.putIfAbsent(method, rc);
+            if( previous!=null ) {
+                rc = previous;
             }
         }
         return rc;
@@ -236,7 +257,7 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
         baos.writeVarLong(correlation);
         writeBuffer(baos, service);
 
-        MethodData methodData = getMethodData(method);
+        MethodData methodData = getMethodData(handler, method);
         writeBuffer(baos, methodData.signature);
 
         final ResponseFuture future = methodData.invocationStrategy.request(methodData.serializationStrategy, classLoader, method, args, baos);
@@ -284,6 +305,8 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
         final UTF8Buffer service;
         final ClassLoader classLoader;
         int lastRequestSize = 250;
+        // kept per proxy rather than globally so the cached methods go away with the proxy and its class loader
+        final ConcurrentMap<Method, MethodData> method_cache = new ConcurrentHashMap<Method, MethodData>();
 
         public ProxyInvocationHandler(String address, String service, ClassLoader classLoader) {
             this.address = address;
@@ -300,7 +323,7 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
     protected class InvokerTransportPool extends TransportPool {
 
         public InvokerTransportPool(String uri, DispatchQueue queue) {
-            super(uri, queue, TransportPool.DEFAULT_POOL_SIZE, timeout << 1);
+            super(uri, queue, poolSize, maxPoolSize, timeout << 1);
         }
 
         @Override
@@ -23,12 +23,16 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 import java.util.Queue;
 
 import io.fabric8.dosgi.io.ProtocolCodec;
 import org.fusesource.hawtbuf.Buffer;
 
+/**
+ * Frames are queued by {@link #write(Object)} and coalesced into a single reusable direct buffer on {@link #flush()}
+ * so that the frames which pile up while the socket is busy are sent with one channel write rather than one each.
+ */
 public class LengthPrefixedCodec implements ProtocolCodec {
 
 
@@ -36,9 +40,12 @@ public class LengthPrefixedCodec implements ProtocolCodec {
     long write_counter = 0L;
     WritableByteChannel write_channel;
 
-    final Queue<ByteBuffer> next_write_buffers = new LinkedList<ByteBuffer>();
+    final Queue<ByteBuffer> next_write_buffers = new ArrayDeque<ByteBuffer>();
     int next_write_size = 0;
 
+    // frames copied out of next_write_buffers which have not been written to the channel yet, allocated on first flush
+    ByteBuffer write_buffer;
+
     public boolean full() {
         return false;
     }
@@ -82,16 +89,17 @@ public class LengthPrefixedCodec implements ProtocolCodec {
 
     public BufferState flush() throws IOException {
         final long writeCounterBeforeFlush = write_counter;
-        while(!next_write_buffers.isEmpty()) {
-            final ByteBuffer nextBuffer = next_write_buffers.peek();
-            if (nextBuffer.remaining() < 1) {
-                next_write_buffers.remove();
-                continue;
+        while (true) {
+            if (write_buffer == null || !write_buffer.hasRemaining()) {
+                if (!fillWriteBuffer()) {
+                    break;
+                }
             }
-            int bytesWritten = write_channel.write(nextBuffer);
+            int bytesWritten = write_channel.write(write_buffer);
             write_counter += bytesWritten;
             next_write_size -= bytesWritten;
-            if (nextBuffer.remaining() > 0) {
+            if (write_buffer.hasRemaining()) {
+                // the socket buffer is full, we will be called again once it is writable
                 break;
             }
         }
@@ -105,6 +113,31 @@ public class LengthPrefixedCodec implements ProtocolCodec {
         return BufferState.NOT_EMPTY;
     }
 
+    /**
+     * Copies as many of the queued frames as fit into the write buffer, splitting a frame which does not fit
+     * across several fills. Returns false if there was nothing left to copy.
+     */
+    private boolean fillWriteBuffer() {
+        if (write_buffer == null) {
+            write_buffer = ByteBuffer.allocateDirect(write_buffer_size);
+        }
+        write_buffer.clear();
+        while (write_buffer.hasRemaining() && !next_write_buffers.isEmpty()) {
+            ByteBuffer next = next_write_buffers.peek();
+            if (next.remaining() <= write_buffer.remaining()) {
+                write_buffer.put(next);
+                next_write_buffers.remove();
+            } else {
+                int limit = next.limit();
+                next.limit(next.position() + write_buffer.remaining());
+                write_buffer.put(next);
+                next.limit(limit);
+            }
+        }
+        write_buffer.flip();
+        return write_buffer.hasRemaining();
+    }
+
     public long getWriteCounter() {
         return write_counter;
     }
@@ -25,19 +25,39 @@ import org.fusesource.hawtdispatch.DispatchQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.EOFException;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class ServerInvokerImpl implements ServerInvoker, Dispatched {
 
+    /**
+     * Endpoint property giving an exported service its own pool of this many threads rather than
+     * sharing the default executor with the other exported services.
+     */
+    public static final String SERVICE_THREADS = "fabric.dosgi.threads";
+
+    /**
+     * Endpoint property bounding the number of invocations of an exported service waiting for a thread
+     * of its own pool. Invocations beyond it are rejected and fail on the client side.
+     */
+    public static final String SERVICE_QUEUE_SIZE = "fabric.dosgi.queue.size";
+
+    public static final int DEFAULT_THREADS = 8;
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
     protected static final Logger LOGGER = LoggerFactory.getLogger(ServerInvokerImpl.class);
     static private final HashMap<String, Class> PRIMITIVE_TO_CLASS = new HashMap<String, Class>(8, 1.0F);
     static {
@@ -51,7 +71,7 @@ public class ServerInvokerImpl implements ServerInvoker, Dispatched {
         PRIMITIVE_TO_CLASS.put("D", double.class);
     }
 
-    protected final ExecutorService blockingExecutor = Executors.newFixedThreadPool(8);
+    protected final ThreadPoolExecutor blockingExecutor;
     protected final DispatchQueue queue;
     private final Map<String, SerializationStrategy> serializationStrategies;
     protected final TransportServer server;
@@ -75,14 +95,32 @@ public class ServerInvokerImpl implements ServerInvoker, Dispatched {
         private final ServiceFactory factory;
         private final ClassLoader loader;
         private final Class clazz;
+        private final ThreadPoolExecutor executor;
+        private final ServiceStats stats;
+        private final ObjectName objectName;
         private HashMap<Buffer, MethodData> method_cache = new HashMap<Buffer, MethodData>();
 
-        public ServiceFactoryHolder(ServiceFactory factory, ClassLoader loader) {
+        public ServiceFactoryHolder(String id, ServiceFactory factory, ClassLoader loader, Map<String, ?> properties) {
             this.factory = factory;
             this.loader = loader;
             Object o = factory.get();
             clazz = o.getClass();
             factory.unget();
+            int threads = getInt(properties, SERVICE_THREADS, 0);
+            if (threads > 0) {
+                executor = createExecutor(threads, getInt(properties, SERVICE_QUEUE_SIZE, DEFAULT_QUEUE_SIZE));
+            } else {
+                executor = blockingExecutor;
+            }
+            stats = new ServiceStats(id, threads);
+            objectName = registerStats(stats);
+        }
+
+        void destroy() {
+            if (executor != blockingExecutor) {
+                executor.shutdown();
+            }
+            unregisterStats(objectName);
         }
 
         private MethodData getMethodData(Buffer data) throws IOException, NoSuchMethodException, ClassNotFoundException {
@@ -139,8 +177,17 @@ public class ServerInvokerImpl implements ServerInvoker, Dispatched {
 
 
     public ServerInvokerImpl(String address, DispatchQueue queue, Map<String, SerializationStrategy> serializationStrategies) throws Exception {
+        this(address, queue, serializationStrategies, DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param threads   the number of threads of the executor shared by the exported services without their own threads
+     * @param queueSize the number of invocations which may wait for a thread of the shared executor
+     */
+    public ServerInvokerImpl(String address, DispatchQueue queue, Map<String, SerializationStrategy> serializationStrategies, int threads, int queueSize) throws Exception {
         this.queue = queue;
         this.serializationStrategies = serializationStrategies;
+        this.blockingExecutor = createExecutor(threads, queueSize);
         this.server = new TcpTransportFactory().bind(address);
         this.server.setDispatchQueue(queue);
         this.server.setAcceptListener(new InvokerAcceptListener());
@@ -160,9 +207,19 @@ public class ServerInvokerImpl implements ServerInvoker, Dispatched {
     }
 
     public void registerService(final String id, final ServiceFactory service, final ClassLoader classLoader) {
+        registerService(id, service, classLoader, null);
+    }
+
+    public void registerService(final String id, final ServiceFactory service, final ClassLoader classLoader, final Map<String, ?> properties) {
         queue().execute(new Runnable() {
             public void run() {
-                holders.put(new UTF8Buffer(id), new ServiceFactoryHolder(service, classLoader));
+                UTF8Buffer key = new UTF8Buffer(id);
+                // destroy the previous holder first so its stats MBean is unregistered before ours is registered
+                ServiceFactoryHolder previous = holders.remove(key);
+                if (previous != null) {
+                    previous.destroy();
+                }
+                holders.put(key, new ServiceFactoryHolder(id, service, classLoader, properties));
             }
         });
     }
@@ -170,7 +227,10 @@ public class ServerInvokerImpl implements ServerInvoker, Dispatched {
     public void unregisterService(final String id) {
         queue().execute(new Runnable() {
             public void run() {
-                holders.remove(new UTF8Buffer(id));
+                ServiceFactoryHolder holder = holders.remove(new UTF8Buffer(id));
+                if (holder != null) {
+                    holder.destroy();
+                }
             }
         });
     }
@@ -190,6 +250,9 @@ public class ServerInvokerImpl implements ServerInvoker, Dispatched {
     public void stop(final Runnable onComplete) {
         this.server.stop(new Runnable() {
             public void run() {
+                for (ServiceFactoryHolder holder : holders.values()) {
+                    holder.destroy();
+                }
                 blockingExecutor.shutdown();
                 if (onComplete != null) {
                     onComplete.run();
@@ -214,52 +277,119 @@ public class ServerInvokerImpl implements ServerInvoker, Dispatched {
             final MethodData methodData = holder.getMethodData(encoded_method);
 
             final Object svc = holder.factory.get();
+            final boolean dispatched = svc instanceof Dispatched;
 
             Runnable task = new Runnable() {
                 public void run() {
+                    holder.stats.onStarted(!dispatched);
 
-                    final DataByteArrayOutputStream baos = new DataByteArrayOutputStream();
-                    try {
-                        baos.writeInt(0); // make space for the size field.
-                        baos.writeVarLong(correlation);
-                    } catch (IOException e) { // should not happen
-                        throw new RuntimeException(e);
-                    }
+                    final DataByteArrayOutputStream baos = createResponse(correlation);
 
                     // Lets decode the remaining args on the target's executor
                     // to take cpu load off the
                     methodData.invocationStrategy.service(methodData.serializationStrategy, holder.loader, methodData.method, svc, bais, baos, new Runnable() {
                         public void run() {
                             holder.factory.unget();
-                            final Buffer command = baos.toBuffer();
-
-                            // Update the size field.
-                            BufferEditor editor = command.buffer().bigEndianEditor();
-                            editor.writeInt(command.length);
-
-                            queue().execute(new Runnable() {
-                                public void run() {
-                                    transport.offer(command);
-                                }
-                            });
+                            holder.stats.onCompleted();
+                            sendResponse(transport, baos);
                         }
                     });
                 }
             };
 
-            Executor executor;
-            if( svc instanceof Dispatched ) {
-                executor = ((Dispatched)svc).queue();
+            if( dispatched ) {
+                ((Dispatched)svc).queue().execute(task);
             } else {
-                executor = blockingExecutor;
+                holder.stats.onQueued();
+                try {
+                    holder.executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // let the client know straight away rather than letting it time out
+                    holder.stats.onRejected();
+                    holder.factory.unget();
+                    DataByteArrayOutputStream baos = createResponse(correlation);
+                    methodData.serializationStrategy.encodeResponse(holder.loader, methodData.method.getReturnType(), null,
+                            new RejectedExecutionException("Too many pending invocations of service " + service), baos);
+                    sendResponse(transport, baos);
+                }
             }
-            executor.execute(task);
 
         } catch (Exception e) {
             LOGGER.info("Error while reading request", e);
         }
     }
 
+    private DataByteArrayOutputStream createResponse(long correlation) {
+        DataByteArrayOutputStream baos = new DataByteArrayOutputStream();
+        try {
+            baos.writeInt(0); // make space for the size field.
+            baos.writeVarLong(correlation);
+        } catch (IOException e) { // should not happen
+            throw new RuntimeException(e);
+        }
+        return baos;
+    }
+
+    private void sendResponse(final Transport transport, DataByteArrayOutputStream baos) {
+        final Buffer command = baos.toBuffer();
+
+        // Update the size field.
+        BufferEditor editor = command.buffer().bigEndianEditor();
+        editor.writeInt(command.length);
+
+        queue().execute(new Runnable() {
+            public void run() {
+                transport.offer(command);
+            }
+        });
+    }
+
+    /**
+     * Creates an executor with a bounded queue which rejects invocations once the queue is full.
+     */
+    protected ThreadPoolExecutor createExecutor(int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)));
+    }
+
+    private ObjectName registerStats(ServiceStats stats) {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("io.fabric8.dosgi:type=ExportedService,id=" + ObjectName.quote(stats.getServiceId()));
+            if (!mbeanServer.isRegistered(name)) {
+                mbeanServer.registerMBean(stats, name);
+                return name;
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to register statistics of service " + stats.getServiceId(), e);
+        }
+        return null;
+    }
+
+    private void unregisterStats(ObjectName name) {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to unregister " + name, e);
+            }
+        }
+    }
+
+    static int getInt(Map<String, ?> properties, String key, int defaultValue) {
+        Object value = properties != null ? properties.get(key) : null;
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid value " + value + " of endpoint property " + key + ", using " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
     private Buffer readBuffer(DataByteArrayInputStream bais) throws IOException {
         byte b[] = new byte[bais.readVarInt()];
         bais.readFully(b);
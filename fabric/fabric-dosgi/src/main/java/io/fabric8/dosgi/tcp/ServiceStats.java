@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi.tcp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the invocations of a service exported by the {@link ServerInvokerImpl}.
+ */
+public class ServiceStats implements ServiceStatsMBean {
+
+    private final String serviceId;
+    private final int threads;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ServiceStats(String serviceId, int threads) {
+        this.serviceId = serviceId;
+        this.threads = threads;
+    }
+
+    void onQueued() {
+        queued.incrementAndGet();
+    }
+
+    void onStarted(boolean wasQueued) {
+        if (wasQueued) {
+            queued.decrementAndGet();
+        }
+        inFlight.incrementAndGet();
+    }
+
+    void onCompleted() {
+        inFlight.decrementAndGet();
+        completed.incrementAndGet();
+    }
+
+    void onRejected() {
+        queued.decrementAndGet();
+        rejected.incrementAndGet();
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceStats{" +
+                "serviceId='" + serviceId + '\'' +
+                ", threads=" + threads +
+                ", queueDepth=" + queued +
+                ", inFlight=" + inFlight +
+                ", completed=" + completed +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi.tcp;
+
+/**
+ * JMX view of the invocations of a service exported by the {@link ServerInvokerImpl}.
+ */
+public interface ServiceStatsMBean {
+
+    String getServiceId();
+
+    /**
+     * @return the number of threads dedicated to the service, or zero if it uses the shared executor
+     */
+    int getThreads();
+
+    /**
+     * @return the number of invocations waiting for a thread
+     */
+    int getQueueDepth();
+
+    /**
+     * @return the number of invocations currently executing
+     */
+    int getInFlight();
+
+    long getCompleted();
+
+    /**
+     * @return the number of invocations refused because the queue of the executor was full
+     */
+    long getRejected();
+
+}
@@ -16,9 +16,9 @@
 package io.fabric8.dosgi.tcp;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -33,21 +33,29 @@ import org.fusesource.hawtdispatch.DispatchQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A pool of transports to a remote address. The pool keeps up to <code>poolSize</code> transports and,
+ * while requests are waiting for a transport which is not full, grows one transport at a time up to
+ * <code>maxPoolSize</code>. Transports which stay idle for the eviction delay are closed again.
+ */
 public abstract class TransportPool implements Service {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(TransportPool.class);
 
     public static final int DEFAULT_POOL_SIZE = 2;
 
+    public static final int DEFAULT_MAX_POOL_SIZE = 8;
+
     public static final long DEFAULT_EVICTION_DELAY = TimeUnit.MINUTES.toMillis(5);
 
     protected final String uri;
     protected final DispatchQueue queue;
-    protected final LinkedList<Pair> pending = new LinkedList<Pair>();
+    protected final ArrayDeque<Pair> pending = new ArrayDeque<Pair>();
     protected final Map<Transport, TransportState> transports = new HashMap<Transport, TransportState>();
     protected AtomicBoolean running = new AtomicBoolean(false);
 
     protected int poolSize;
+    protected int maxPoolSize;
     protected long evictionDelay;
 
     public TransportPool(String uri, DispatchQueue queue) {
@@ -55,9 +63,14 @@ public abstract class TransportPool implements Service {
     }
 
     public TransportPool(String uri, DispatchQueue queue, int poolSize, long evictionDelay) {
+        this(uri, queue, poolSize, poolSize, evictionDelay);
+    }
+
+    public TransportPool(String uri, DispatchQueue queue, int poolSize, int maxPoolSize, long evictionDelay) {
         this.uri = uri;
         this.queue = queue;
         this.poolSize = poolSize;
+        this.maxPoolSize = Math.max(poolSize, maxPoolSize);
         this.evictionDelay = evictionDelay;
     }
 
@@ -107,7 +120,7 @@ public abstract class TransportPool implements Service {
                 return entry.getKey();
             }
         }
-        if (transports.size() < poolSize) {
+        if (transports.size() < poolSize || (transports.size() < maxPoolSize && !pending.isEmpty() && !isConnecting())) {
             try {
                 startNewTransport();
             } catch (Exception e) {
@@ -117,6 +130,29 @@ public abstract class TransportPool implements Service {
         return null;
     }
 
+    private boolean isConnecting() {
+        for (TransportState state : transports.values()) {
+            if (!state.connected) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of requests waiting for a transport, must be called on the dispatch queue
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of open or connecting transports, must be called on the dispatch queue
+     */
+    public int getTransportCount() {
+        return transports.size();
+    }
+
     public void start() throws Exception {
         start(null);
     }
@@ -184,6 +220,7 @@ public abstract class TransportPool implements Service {
 
     protected static class TransportState {
         long time;
+        boolean connected;
         final Set<Object> inflight;
 
         public TransportState() {
@@ -245,6 +282,10 @@ public abstract class TransportPool implements Service {
         }
 
         public void onTransportConnected(Transport transport) {
+            TransportState state = transports.get(transport);
+            if (state != null) {
+                state.connected = true;
+            }
             transport.resumeRead();
             onRefill(transport);
         }
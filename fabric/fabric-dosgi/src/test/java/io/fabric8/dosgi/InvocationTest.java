@@ -15,14 +15,18 @@
  */
 package io.fabric8.dosgi;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -34,8 +38,12 @@ import org.fusesource.hawtdispatch.Dispatch;
 import org.fusesource.hawtdispatch.DispatchQueue;
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import static org.fusesource.hawtdispatch.Dispatch.createQueue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class InvocationTest {
     final static long MILLIS_IN_A_NANO = TimeUnit.MILLISECONDS.toNanos(1);
@@ -51,6 +59,7 @@ public class InvocationTest {
         DispatchQueue queue = Dispatch.createQueue();
         HashMap<String, SerializationStrategy> map = new HashMap<String, SerializationStrategy>();
         map.put("protobuf", new ProtobufSerializationStrategy());
+        map.put("binary", new BinarySerializationStrategy());
 
         ServerInvokerImpl server = new ServerInvokerImpl("tcp://localhost:0", queue, map);
         server.start();
@@ -93,6 +102,13 @@ public class InvocationTest {
             hello.protobuf(stringValue("Hiram Async"), future2);
             assertEquals("Hello Hiram Async!", future2.get(2, TimeUnit.SECONDS).getValue());
 
+            assertEquals("Hello Binary 2 [a, b]!", hello.binary("Binary", 2, new ArrayList<String>(Arrays.asList("a", "b"))));
+            assertEquals("Hello Binary 0 null!", hello.binary("Binary", 0, null));
+
+            AsyncCallbackFuture<String> future3 = new AsyncCallbackFuture<String>();
+            hello.binary("Binary Async", 1, Arrays.asList("c"), future3);
+            assertEquals("Hello Binary Async 1 [c]!", future3.get(2, TimeUnit.SECONDS));
+
         }
         finally {
             server.stop();
@@ -345,6 +361,73 @@ public class InvocationTest {
     }
 
 
+    @Test(timeout=30*1000)
+    public void testRejectedWhenServiceQueueIsFull() throws Exception {
+        HashMap<String, SerializationStrategy> map = new HashMap<String, SerializationStrategy>();
+
+        DispatchQueue queue = Dispatch.createQueue();
+        ServerInvokerImpl server = new ServerInvokerImpl("tcp://localhost:0", queue, map);
+        server.start();
+        ClientInvokerImpl client = new ClientInvokerImpl(queue, map);
+        client.start();
+
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put(ServerInvokerImpl.SERVICE_THREADS, 1);
+            properties.put(ServerInvokerImpl.SERVICE_QUEUE_SIZE, "1");
+            server.registerService("slow-id", new ServerInvoker.ServiceFactory() {
+                public Object get() {
+                    return new SlowImpl(release);
+                }
+                public void unget() {
+                }
+            }, SlowImpl.class.getClassLoader(), properties);
+
+            InvocationHandler handler = client.getProxy(server.getConnectAddress(), "slow-id", SlowImpl.class.getClassLoader());
+            final Slow slow = (Slow) Proxy.newProxyInstance(SlowImpl.class.getClassLoader(), new Class[] { Slow.class }, handler);
+
+            final AtomicInteger rejected = new AtomicInteger();
+            final CountDownLatch failed = new CountDownLatch(1);
+            Thread[] threads = new Thread[3];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread() {
+                    public void run() {
+                        try {
+                            slow.call();
+                        } catch (Throwable t) {
+                            while (t.getCause() != null && !(t instanceof RejectedExecutionException)) {
+                                t = t.getCause();
+                            }
+                            if (t instanceof RejectedExecutionException) {
+                                rejected.incrementAndGet();
+                            }
+                            failed.countDown();
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+
+            // one call executes, one waits in the queue and the last one is rejected
+            assertTrue(failed.await(10, TimeUnit.SECONDS));
+            release.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(1, rejected.get());
+
+            ObjectName name = new ObjectName("io.fabric8.dosgi:type=ExportedService,id=" + ObjectName.quote("slow-id"));
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, mbeanServer.getAttribute(name, "Rejected"));
+            assertEquals(2L, mbeanServer.getAttribute(name, "Completed"));
+        }
+        finally {
+            server.stop();
+            client.stop();
+        }
+    }
+
     class AsyncClient implements AsyncCallback<StringValue.Getter> {
 
         final int thread_idx;
@@ -494,6 +577,34 @@ public class InvocationTest {
         @Serialization("protobuf")
         void protobuf(StringValue.Getter name, AsyncCallback<StringValue.Getter> callback);
 
+        @Serialization("binary")
+        String binary(String name, int count, List<String> values);
+
+        @Serialization("binary")
+        void binary(String name, int count, List<String> values, AsyncCallback<String> callback);
+
+    }
+
+    public static interface Slow {
+        String call();
+    }
+
+    public static class SlowImpl implements Slow {
+
+        private final CountDownLatch release;
+
+        public SlowImpl(CountDownLatch release) {
+            this.release = release;
+        }
+
+        public String call() {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "done";
+        }
     }
 
     static private StringValue.Bean stringValue(String hello) {
@@ -540,6 +651,16 @@ public class InvocationTest {
             callback.onSuccess(hello(name));
         }
 
+        @Serialization("binary")
+        public String binary(String name, int count, List<String> values) {
+            return hello(name + " " + count + " " + values);
+        }
+
+        @Serialization("binary")
+        public void binary(String name, int count, List<String> values, AsyncCallback<String> callback) {
+            callback.onSuccess(binary(name, count, values));
+        }
+
         public char mix(int value) {
             queueCheck();
             return 'a';
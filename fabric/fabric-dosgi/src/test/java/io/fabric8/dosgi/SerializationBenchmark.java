@@ -0,0 +1,91 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.fabric8.dosgi.api.AsyncCallback;
+import io.fabric8.dosgi.api.BinarySerializationStrategy;
+import io.fabric8.dosgi.api.ObjectSerializationStrategy;
+import io.fabric8.dosgi.api.ProtobufSerializationStrategy;
+import io.fabric8.dosgi.api.SerializationStrategy;
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+
+/**
+ * A micro benchmark of a request and response round trip through the {@link SerializationStrategy}s,
+ * reporting the time and the encoded size of each. The object and binary strategies encode a typical
+ * chatty call of a string, an int and a small list of strings; the protobuf strategy, which only supports
+ * a single message argument, encodes a string message.
+ * <p/>
+ * This is not run as part of the test suite; run the {@link #main(String[])} method by hand.
+ */
+public class SerializationBenchmark {
+
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) throws Exception {
+        ClassLoader loader = SerializationBenchmark.class.getClassLoader();
+
+        Class<?>[] types = {String.class, int.class, List.class};
+        Object[] values = {"container1", 42, new ArrayList<String>(Arrays.asList("profile-a", "profile-b", "profile-c"))};
+        Class<?>[] protobufTypes = {StringValue.Getter.class};
+        StringValue.Bean message = new StringValue.Bean();
+        message.setValue("container1");
+        Object[] protobufValues = {message.freeze()};
+
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up
+            System.out.println(round == 0 ? "warm up:" : "results:");
+            run(ObjectSerializationStrategy.INSTANCE, loader, types, values, String.class, "Hello container1!");
+            run(BinarySerializationStrategy.INSTANCE, loader, types, values, String.class, "Hello container1!");
+            run(ProtobufSerializationStrategy.INSTANCE, loader, protobufTypes, protobufValues, StringValue.Getter.class, message.freeze());
+        }
+    }
+
+    protected static void run(SerializationStrategy strategy, ClassLoader loader, Class<?>[] types, Object[] args, Class<?> resultType, Object result) throws Exception {
+        Object[] decoded = new Object[types.length];
+        Callback callback = new Callback();
+        int size = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            DataByteArrayOutputStream request = new DataByteArrayOutputStream(256);
+            strategy.encodeRequest(loader, types, args, request);
+            strategy.decodeRequest(loader, types, new DataByteArrayInputStream(request.toBuffer()), decoded);
+
+            DataByteArrayOutputStream response = new DataByteArrayOutputStream(256);
+            strategy.encodeResponse(loader, resultType, result, null, response);
+            strategy.decodeResponse(loader, resultType, new DataByteArrayInputStream(response.toBuffer()), callback);
+            size = request.size() + response.size();
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println("  " + strategy.name() + ": " + (nanos / ITERATIONS) + " ns/call, " + size + " bytes/call (" + callback.calls + " responses)");
+    }
+
+    static class Callback implements AsyncCallback<Object> {
+        int calls;
+
+        public void onSuccess(Object result) {
+            calls++;
+        }
+
+        public void onFailure(Throwable failure) {
+            throw new IllegalStateException(failure);
+        }
+    }
+}
@@ -131,6 +131,40 @@ public class LengthPrefixedCodecTest {
 		assertEquals(bytesThatWillBeWritten, codec.getWriteCounter());
 	}
 
+	@Test
+	public void testFlush$Coalesced() throws Exception {
+		final Buffer value1 = Buffer.ascii("TESTDATA");
+		final Buffer value2 = Buffer.ascii("MOREDATA");
+		codec.write(value1);
+		codec.write(value2);
+		final int bytesThatWillBeWritten = value1.length() + value2.length();
+		expect(writableByteChannel.write((ByteBuffer) anyObject())).andAnswer(createWriteAnswer(bytesThatWillBeWritten)).once();
+		replay(writableByteChannel);
+
+		final BufferState state = codec.flush();
+
+		assertEquals(BufferState.EMPTY, state);
+		assertEquals(true, codec.empty());
+		assertEquals(bytesThatWillBeWritten, codec.getWriteCounter());
+		verify(writableByteChannel);
+	}
+
+	@Test
+	public void testFlush$LargerThanWriteBuffer() throws Exception {
+		final Buffer value = new Buffer(codec.write_buffer_size + 10);
+		codec.write(value);
+		expect(writableByteChannel.write((ByteBuffer) anyObject())).andAnswer(createWriteAnswer(codec.write_buffer_size));
+		expect(writableByteChannel.write((ByteBuffer) anyObject())).andAnswer(createWriteAnswer(10));
+		replay(writableByteChannel);
+
+		final BufferState state = codec.flush();
+
+		assertEquals(BufferState.EMPTY, state);
+		assertEquals(true, codec.empty());
+		assertEquals(value.length(), codec.getWriteCounter());
+		verify(writableByteChannel);
+	}
+
 	private IAnswer<Integer> createWriteAnswer(final int length) {
 		return new IAnswer<Integer>() {
 			@Override
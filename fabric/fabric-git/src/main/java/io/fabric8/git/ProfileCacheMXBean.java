@@ -0,0 +1,48 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git;
+
+/**
+ * Statistics of the cache of profiles which the git data store keys by the git tree of the profile directory
+ */
+public interface ProfileCacheMXBean {
+
+    /**
+     * The number of profiles which were reused when a version was loaded because their tree did not change
+     */
+    long getHitCount();
+
+    /**
+     * The number of profiles which had to be read from git when a version was loaded
+     */
+    long getMissCount();
+
+    double getHitRate();
+
+    /**
+     * The number of profiles currently held by the cache
+     */
+    long getSize();
+
+    /**
+     * The number of times a version was loaded from git
+     */
+    long getVersionLoadCount();
+
+    long getLastVersionLoadTimeMillis();
+
+    long getTotalVersionLoadTimeMillis();
+}
@@ -36,6 +36,7 @@ import io.fabric8.api.scr.Configurer;
 import io.fabric8.api.scr.ValidatingReference;
 import io.fabric8.api.visibility.VisibleForExternal;
 import io.fabric8.common.util.Files;
+import io.fabric8.common.util.JMXUtils;
 import io.fabric8.common.util.Strings;
 import io.fabric8.common.util.Zips;
 import io.fabric8.git.GitDataStore;
@@ -72,6 +73,8 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -79,6 +82,9 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.shared.SharedCount;
 import org.apache.curator.framework.recipes.shared.SharedCountListener;
@@ -90,19 +96,27 @@ import org.apache.felix.scr.annotations.ConfigurationPolicy;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.zookeeper.KeeperException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.gitective.core.RepositoryUtils;
 import io.fabric8.api.gravia.IllegalArgumentAssertion;
 import io.fabric8.api.gravia.IllegalStateAssertion;
@@ -138,6 +152,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     private static final int GIT_COMMIT_SHORT_LENGTH = 7;
     private static final int MAX_COMMITS_WITHOUT_GC = 40;
     private static final long AQUIRE_LOCK_TIMEOUT = 25 * 1000L;
+    private static final String PROFILE_CACHE_OBJECT_NAME = "io.fabric8:type=GitProfileCache";
 
     @Reference(referenceInterface = CuratorFramework.class)
     private final ValidatingReference<CuratorFramework> curator = new ValidatingReference<>();
@@ -154,6 +169,8 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
 
     @Reference
     private Configurer configurer;
+    @Reference(referenceInterface = MBeanServer.class, cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC, bind = "bindMBeanServer", unbind = "unbindMBeanServer")
+    private volatile MBeanServer mbeanServer;
     
     private final ScheduledExecutorService threadPool = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("git-ds"));
 
@@ -182,6 +199,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     private boolean gitGcOnLoad = false;
     
     private final LoadingCache<String, Version> versionCache = CacheBuilder.newBuilder().build(new VersionCacheLoader());
+    private final ProfileTreeCache profileCache = new ProfileTreeCache();
     private final Set<String> versions = new HashSet<String>();
 
     @Activate
@@ -492,36 +510,8 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     }
 
     private Version getVersionFromCache(String versionId, String profileId) {
-        Version result = getVersionFromCacheRO(versionId, profileId);
-        if (result == null) {
-            return getVersionFromCacheRW(versionId, profileId);
-        }
-        return result;
-    }
-    
-    private Version getVersionFromCacheRO(String versionId, String profileId){
+        // versions are loaded from the git object database so a read lock is enough
         LockHandle readLock = aquireReadLock();
-        try {
-            assertValid();
-            String branch = GitHelpers.getProfileBranch(versionId, profileId);
-            if (GitHelpers.localBranchExists(getGit(), branch)) {
-                if( versionCache.asMap().containsKey(versionId) ) {
-                    return versionCache.asMap().get(versionId);
-                } else {
-                    return null;
-                }
-            } else {
-                return null;
-            }
-        } catch (Exception e) {
-            throw FabricException.launderThrowable(e);
-        } finally {
-            readLock.unlock();
-        }
-    }
-
-    private Version getVersionFromCacheRW(String versionId, String profileId){
-        LockHandle writeLock = aquireWriteLock();
         try {
             assertValid();
             String branch = GitHelpers.getProfileBranch(versionId, profileId);
@@ -533,7 +523,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
         }
     }
 
@@ -1312,6 +1302,25 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         this.configurer = null;
     }
 
+    void bindMBeanServer(MBeanServer mbeanServer) {
+        try {
+            JMXUtils.registerMBean(profileCache, mbeanServer, new ObjectName(PROFILE_CACHE_OBJECT_NAME));
+            this.mbeanServer = mbeanServer;
+        } catch (Exception ex) {
+            LOGGER.warn("Cannot register the git profile cache MBean: " + ex, ex);
+        }
+    }
+    void unbindMBeanServer(MBeanServer mbeanServer) {
+        if (this.mbeanServer == mbeanServer) {
+            this.mbeanServer = null;
+            try {
+                JMXUtils.unregisterMBean(mbeanServer, new ObjectName(PROFILE_CACHE_OBJECT_NAME));
+            } catch (Exception ex) {
+                LOGGER.warn("Cannot unregister the git profile cache MBean: " + ex, ex);
+            }
+        }
+    }
+
     @VisibleForExternal public void bindCurator(CuratorFramework service) {
         this.curator.bind(service);
     }
@@ -1787,11 +1796,18 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         }
     }
     
+    /**
+     * Loads versions straight from the commit trees of the master and version branches so that only a read lock
+     * is needed, versions can be loaded concurrently and the working directory is never touched. Profiles are
+     * reused from the {@link ProfileTreeCache} when their profile directory tree did not change.
+     */
     class VersionCacheLoader extends CacheLoader<String, Version> {
-        
+
+        private final String profilesPath = GitHelpers.CONFIGS_PROFILES.replace(File.separatorChar, '/') + "/";
+
         @Override
         public Version load(final String versionId) {
-            assertWriteLock();
+            assertReadLock();
             GitOperation<Version> gitop = new GitOperation<Version>() {
                 public Version call(Git git, GitContext context) throws Exception {
                     String revision = git.getRepository().getRefDatabase().getRef(versionId).getObjectId().getName();
@@ -1803,92 +1819,62 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         }
         
         private Version loadVersion(Git git, GitContext context, String versionId, String revision) throws Exception {
+            long start = System.nanoTime();
             VersionBuilder vbuilder = VersionBuilder.Factory.create(versionId).setRevision(revision);
             vbuilder.setAttributes(getVersionAttributes(git, context, versionId));
-            populateVersionBuilder(git, context, vbuilder, GitHelpers.MASTER_BRANCH, versionId);
-            populateVersionBuilder(git, context, vbuilder, versionId, versionId);
-            return vbuilder.getVersion();
+            populateVersionBuilder(git, vbuilder, GitHelpers.MASTER_BRANCH, versionId);
+            populateVersionBuilder(git, vbuilder, versionId, versionId);
+            Version version = vbuilder.getVersion();
+            profileCache.versionLoaded(System.nanoTime() - start);
+            return version;
         }
 
-        private void populateVersionBuilder(Git git, GitContext context, VersionBuilder builder, String branch, String versionId) throws GitAPIException, IOException {
-            checkoutRequiredProfileBranch(git, context, branch, null);
-            File profilesDir = GitHelpers.getProfilesDirectory(git);
-            if (profilesDir.exists()) {
-                String[] files = profilesDir.list();
-                if (files != null) {
-                    for (String childName : files) {
-                        Path childPath = profilesDir.toPath().resolve(childName);
-                        if (childPath.toFile().isDirectory()) {
-                            populateProfile(git, builder, branch, versionId, childPath.toFile(), "");
-
-                        }
+        private void populateVersionBuilder(Git git, VersionBuilder builder, String branch, final String versionId) throws IOException, ExecutionException {
+            Repository repository = git.getRepository();
+            Ref ref = repository.getRef("refs/heads/" + branch);
+            IllegalStateAssertion.assertNotNull(ref, "Cannot find profile branch: " + branch);
+
+            try (final ObjectReader reader = repository.newObjectReader(); RevWalk revWalk = new RevWalk(reader); TreeWalk treeWalk = new TreeWalk(reader)) {
+                RevCommit commit = revWalk.parseCommit(ref.getObjectId());
+                treeWalk.addTree(commit.getTree());
+                treeWalk.setFilter(PathFilter.create(profilesPath.substring(0, profilesPath.length() - 1)));
+                while (treeWalk.next()) {
+                    if (!treeWalk.isSubtree()) {
+                        continue;
                     }
-                }
-            }
-        }
-
-        private void populateProfile(Git git, VersionBuilder versionBuilder, String branch, String versionId, File profileFile, String prefix) throws IOException {
-            String profileName = profileFile.getName();
-            String profileId = profileName;
-            if (profileId.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
-                profileId = prefix + profileId.substring(0, profileId.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
-            } else {
-                // lets recurse all children
-                File[] files = profileFile.listFiles();
-                if (files != null) {
-                    for (File childFile : files) {
-                        if (childFile.isDirectory()) {
-                            populateProfile(git, versionBuilder, branch, versionId, childFile, prefix + profileFile.getName() + "-");
-                        }
+                    String path = treeWalk.getPathString();
+                    if (!path.startsWith(profilesPath) || !path.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
+                        // directories above the profile directory are joined into the profile id
+                        treeWalk.enterSubtree();
+                        continue;
                     }
+                    String relativePath = path.substring(profilesPath.length(), path.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
+                    final String profileId = relativePath.replace('/', '-');
+                    final ObjectId treeId = treeWalk.getObjectId(0);
+                    // unchanged profile directories have the same tree id so lets reuse the profile
+                    Profile profile = profileCache.getProfile(versionId, profileId, treeId, new Callable<Profile>() {
+                        @Override
+                        public Profile call() throws Exception {
+                            ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
+                            profileBuilder.setFileConfigurations(loadFileConfigurations(reader, treeId));
+                            return profileBuilder.getProfile();
+                        }
+                    });
+                    builder.addProfile(profile);
                 }
-                return;
             }
-
-            Map<String, byte[]> fileConfigurations = doGetFileConfigurations(git, profileId);
-            
-            ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
-            profileBuilder.setFileConfigurations(fileConfigurations);
-            versionBuilder.addProfile(profileBuilder.getProfile());
         }
 
-        private Map<String, byte[]> doGetFileConfigurations(Git git, String profileId) throws IOException {
+        private Map<String, byte[]> loadFileConfigurations(ObjectReader reader, ObjectId profileTreeId) throws IOException {
             Map<String, byte[]> configurations = new HashMap<String, byte[]>();
-            File profileDirectory = GitHelpers.getProfileDirectory(git, profileId);
-            populateFileConfigurations(configurations, profileDirectory, profileDirectory);
-            return configurations;
-        }
-
-        private void populateFileConfigurations(Map<String, byte[]> configurations, File profileDirectory, File directory) throws IOException {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        String relativePath = getFilePattern(profileDirectory, file);
-                        configurations.put(relativePath, loadFileConfiguration(file));
-                    } else if (file.isDirectory()) {
-                        populateFileConfigurations(configurations, profileDirectory, file);
-                    }
+            try (TreeWalk treeWalk = new TreeWalk(reader)) {
+                treeWalk.addTree(profileTreeId);
+                treeWalk.setRecursive(true);
+                while (treeWalk.next()) {
+                    configurations.put(treeWalk.getPathString(), reader.open(treeWalk.getObjectId(0)).getBytes());
                 }
             }
-        }
-
-        private byte[] loadFileConfiguration(File file) throws IOException {
-            if (file.isDirectory()) {
-                // Not sure why we do this, but for directory pids, lets recurse...
-                StringBuilder buf = new StringBuilder();
-                File[] files = file.listFiles();
-                if (files != null) {
-                    for (File child : files) {
-                        String value = Files.toString(child);
-                        buf.append(String.format("%s = %s\n", child.getName(), value));
-                    }
-                }
-                return buf.toString().getBytes();
-            } else if (file.exists() && file.isFile()) {
-                return Files.readBytes(file);
-            }
-            return null;
+            return configurations;
         }
     }
 
@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import io.fabric8.api.Profile;
+import io.fabric8.git.ProfileCacheMXBean;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches profiles by the id of the git tree of their profile directory, so that when a version is reloaded
+ * after a commit or pull only the profiles whose tree changed are read from git again.
+ * <p/>
+ * Values are softly referenced so profiles which no loaded version refers to any more are only kept while there
+ * is enough memory to spare.
+ */
+final class ProfileTreeCache implements ProfileCacheMXBean {
+
+    private final Cache<Key, Profile> profiles = CacheBuilder.newBuilder().softValues().recordStats().build();
+    private final AtomicLong versionLoads = new AtomicLong();
+    private final AtomicLong totalVersionLoadNanos = new AtomicLong();
+    private volatile long lastVersionLoadNanos;
+
+    /**
+     * Returns the cached profile for the given tree or loads it
+     */
+    Profile getProfile(String versionId, String profileId, ObjectId treeId, Callable<Profile> loader) throws ExecutionException {
+        return profiles.get(new Key(versionId, profileId, treeId.copy()), loader);
+    }
+
+    void versionLoaded(long nanos) {
+        versionLoads.incrementAndGet();
+        totalVersionLoadNanos.addAndGet(nanos);
+        lastVersionLoadNanos = nanos;
+    }
+
+    @Override
+    public long getHitCount() {
+        return profiles.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return profiles.stats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return profiles.stats().hitRate();
+    }
+
+    @Override
+    public long getSize() {
+        return profiles.size();
+    }
+
+    @Override
+    public long getVersionLoadCount() {
+        return versionLoads.get();
+    }
+
+    @Override
+    public long getLastVersionLoadTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastVersionLoadNanos);
+    }
+
+    @Override
+    public long getTotalVersionLoadTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalVersionLoadNanos.get());
+    }
+
+    static final class Key {
+        private final String versionId;
+        private final String profileId;
+        private final ObjectId treeId;
+
+        Key(String versionId, String profileId, ObjectId treeId) {
+            this.versionId = versionId;
+            this.profileId = profileId;
+            this.treeId = treeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return treeId.equals(key.treeId) && profileId.equals(key.profileId) && versionId.equals(key.versionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * treeId.hashCode() + profileId.hashCode()) + versionId.hashCode();
+        }
+    }
+}
@@ -50,7 +50,9 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -143,6 +145,47 @@ public class GitDataStoreImplProfilesTest {
         profileRegistry.updateProfile(builder.getProfile());
     }
 
+    @Test
+    public void readVersionWithoutCheckout() throws Exception {
+        gdsi.importFromFileSystem("src/test/resources/distros/distro1/fabric/import");
+        Profile profile = ProfileBuilder.Factory.create("1.0", "foo-bar")
+                .addConfiguration("my.pid", "key", "value")
+                .getProfile();
+        profileRegistry.createProfile(profile);
+
+        // versions are read from the commit trees so the working directory must neither matter nor change
+        git.checkout().setName(GitHelpers.MASTER_BRANCH).call();
+        Version version = profileRegistry.getVersion("1.0");
+        assertThat(GitHelpers.currentBranch(git), equalTo(GitHelpers.MASTER_BRANCH));
+
+        assertNotNull(version.getProfile("default"));
+        Profile nested = version.getProfile("foo-bar");
+        assertNotNull(nested);
+        assertThat(nested.getConfiguration("my.pid").get("key"), equalTo("value"));
+    }
+
+    @Test
+    public void reuseUnchangedProfiles() throws Exception {
+        gdsi.importFromFileSystem("src/test/resources/distros/distro1/fabric/import");
+        ProfileTreeCache profileCache = getField(gdsi, "profileCache", ProfileTreeCache.class);
+        Version version = profileRegistry.getVersion("1.0");
+        Profile defaultProfile = version.getProfile("default");
+        assertNotNull(defaultProfile);
+        long misses = profileCache.getMissCount();
+        long hits = profileCache.getHitCount();
+
+        profileRegistry.createProfile(ProfileBuilder.Factory.create("1.0", "foo-bar")
+                .addConfiguration("my.pid", "key", "value")
+                .getProfile());
+
+        // only the new profile has to be read from git again
+        version = profileRegistry.getVersion("1.0");
+        assertNotNull(version.getProfile("foo-bar"));
+        assertSame(defaultProfile, version.getProfile("default"));
+        assertThat(profileCache.getMissCount() - misses, equalTo(1L));
+        assertTrue(profileCache.getHitCount() > hits);
+    }
+
     private Field findField(Object object, String name, Class clazz) {
         Field f = null;
         Class<?> clz = object.getClass();
@@ -27,6 +27,8 @@ import com.google.common.collect.Sets;
 import io.fabric8.utils.NamedThreadFactory;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.listen.ListenerContainer;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
@@ -49,14 +51,20 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>A utility that attempts to keep all data from all children of a ZK path locally cached. This class
@@ -66,6 +74,17 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <p><b>IMPORTANT</b> - it's not possible to stay transactionally in sync. Users of this class must
  * be prepared for false-positives and false-negatives. Additionally, always use the version number
  * when updating data to avoid overwriting another process' change.</p>
+ * <p/>
+ * <p>By default membership changes are applied incrementally: the child list is diffed against the
+ * cached data and only new members are read, while data changes of existing members are picked up by
+ * their data watchers. Set the <code>fabric.groups.incrementalRefresh</code> system property to
+ * <code>false</code> to re-read all members whenever our own state is updated.</p>
+ * <p/>
+ * <p>Data changes of members are read asynchronously as soon as they are notified rather than being queued
+ * behind other operations; a read is only applied if it is newer than the cached data of that member so the
+ * changes of each member are seen in order. Listeners are called on a separate dispatcher thread so a slow
+ * listener does not delay the tracking of the group. The dispatcher has a bounded queue, sized by the
+ * <code>fabric.groups.eventQueueSize</code> system property, which blocks the group when it is full.</p>
  */
 public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
@@ -73,10 +92,15 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     static private final Logger LOG = LoggerFactory.getLogger(ZooKeeperGroup.class);
 
+    static final String INCREMENTAL_REFRESH_PROPERTY = "fabric.groups.incrementalRefresh";
+    static final String EVENT_QUEUE_SIZE_PROPERTY = "fabric.groups.eventQueueSize";
+    static final int DEFAULT_EVENT_QUEUE_SIZE = 256;
+
     private final Class<T> clazz;
     private final CuratorFramework client;
     private final String path;
     private final ExecutorService executorService;
+    private final ThreadPoolExecutor eventDispatcher;
     private final EnsurePath ensurePath;
     private final BlockingQueue<Operation> operations = new LinkedBlockingQueue<Operation>();
     private final ListenerContainer<GroupListener<T>> listeners = new ListenerContainer<GroupListener<T>>();
@@ -88,6 +112,22 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     private volatile String id;
     private volatile T state;
+    private volatile boolean incrementalRefresh = Boolean.parseBoolean(System.getProperty(INCREMENTAL_REFRESH_PROPERTY, "true"));
+
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshNanos = new AtomicLong();
+    private final AtomicLong childrenReadCount = new AtomicLong();
+    private final AtomicLong dataReadCount = new AtomicLong();
+    private final AtomicLong staleReadCount = new AtomicLong();
+    private final AtomicLong eventsDispatched = new AtomicLong();
+    private final AtomicLong eventsCoalesced = new AtomicLong();
+    private final AtomicLong eventsBlocked = new AtomicLong();
+    // the changed event waiting in the dispatcher queue, if any
+    private final AtomicReference<Runnable> pendingChangedEvent = new AtomicReference<Runnable>();
+    // bumped whenever the data is cleared so that reads issued before are not applied after
+    private final Object epochLock = new Object();
+    private long epoch;
+    private volatile long lastRefreshNanos;
 
     private final Watcher childrenWatcher = new Watcher() {
         @Override
@@ -103,7 +143,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
                 if (event.getType() == Event.EventType.NodeDeleted) {
                     remove(event.getPath());
                 } else if (event.getType() == Event.EventType.NodeDataChanged) {
-                    offerOperation(new GetDataOperation(ZooKeeperGroup.this, event.getPath()));
+                    getDataInBackground(event.getPath(), null);
                 }
             } catch (Exception e) {
                 handleException(e);
@@ -123,8 +163,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      * @param path   path to watch
      */
     public ZooKeeperGroup(CuratorFramework client, String path, Class<T> clazz) {
-        this(client, path, clazz,
-                Executors.newSingleThreadExecutor(new NamedThreadFactory("ZKGroup")));
+        this(client, path, clazz, new NamedThreadFactory("ZKGroup"));
     }
 
     /**
@@ -133,7 +172,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      * @param threadFactory factory to use when creating internal threads
      */
     public ZooKeeperGroup(CuratorFramework client, String path, Class<T> clazz, ThreadFactory threadFactory) {
-        this(client, path, clazz, Executors.newSingleThreadExecutor(threadFactory));
+        this(client, path, clazz, Executors.newSingleThreadExecutor(threadFactory), threadFactory);
     }
 
     /**
@@ -142,14 +181,44 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      * @param executorService ExecutorService to use for the ZooKeeperGroup's background thread
      */
     public ZooKeeperGroup(CuratorFramework client, String path, Class<T> clazz, final ExecutorService executorService) {
+        this(client, path, clazz, executorService, new NamedThreadFactory("ZKGroupEvents"));
+    }
+
+    private ZooKeeperGroup(CuratorFramework client, String path, Class<T> clazz, ExecutorService executorService, ThreadFactory eventThreadFactory) {
         LOG.info("Creating ZK Group for path \"" + path + "\"");
         this.client = client;
         this.path = path;
         this.clazz = clazz;
         this.executorService = executorService;
+        this.eventDispatcher = createEventDispatcher(eventThreadFactory);
         ensurePath = client.newNamespaceAwareEnsurePath(path);
     }
 
+    /**
+     * Creates the single threaded dispatcher for listener events. When its queue is full the
+     * thread dispatching an event waits for space so a slow listener pushes back on the group
+     * rather than letting events pile up without bound.
+     */
+    private ThreadPoolExecutor createEventDispatcher(ThreadFactory threadFactory) {
+        int queueSize = Integer.getInteger(EVENT_QUEUE_SIZE_PROPERTY, DEFAULT_EVENT_QUEUE_SIZE);
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), threadFactory,
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                        if (executor.isShutdown()) {
+                            return;
+                        }
+                        eventsBlocked.incrementAndGet();
+                        try {
+                            executor.getQueue().put(task);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+    }
+
     /**
      * Start the cache. The cache is not started automatically. You must call this method.
      */
@@ -183,8 +252,10 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         if (started.compareAndSet(true, false)) {
             client.getConnectionStateListenable().removeListener(connectionStateListener);
             executorService.shutdownNow();
+            eventDispatcher.shutdownNow();
             try {
                 executorService.awaitTermination(5, TimeUnit.SECONDS);
+                eventDispatcher.awaitTermination(5, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 throw (IOException) new InterruptedIOException().initCause(e);
             }
@@ -225,8 +296,10 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
                         ||   state != null && oldState == null
                         || !Arrays.equals(encode(state), encode(oldState));
             if (update) {
+                // the data watchers keep existing members up to date so only an incremental refresh is needed
+                RefreshMode mode = incrementalRefresh ? RefreshMode.STANDARD : RefreshMode.FORCE_GET_DATA_AND_STAT;
                 offerOperation(new CompositeOperation(
-                        new RefreshOperation(this, RefreshMode.FORCE_GET_DATA_AND_STAT),
+                        new RefreshOperation(this, mode),
                         new UpdateOperation<T>(this, state)
                 ));
             }
@@ -403,7 +476,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      */
     public void clearAndRefresh(boolean force, boolean sync) throws Exception {
         RefreshMode mode = force ? RefreshMode.FORCE_GET_DATA_AND_STAT : RefreshMode.STANDARD;
-        currentData.clear();
+        clear();
         if (sync) {
             this.refresh(mode);
         } else {
@@ -416,7 +489,16 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      * for listeners.
      */
     public void clear() {
-        currentData.clear();
+        synchronized (epochLock) {
+            epoch++;
+            currentData.clear();
+        }
+    }
+
+    private long currentEpoch() {
+        synchronized (epochLock) {
+            return epoch;
+        }
     }
 
     enum RefreshMode {
@@ -425,8 +507,10 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     }
 
     void refresh(final RefreshMode mode) throws Exception {
+        long start = System.nanoTime();
         try {
             ensurePath.ensure(client.getZookeeperClient());
+            childrenReadCount.incrementAndGet();
             List<String> children = client.getChildren().usingWatcher(childrenWatcher).forPath(path);
             Collections.sort(children, new Comparator<String>() {
                 @Override
@@ -437,9 +521,43 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
             processChildren(children, mode);
         } catch (Exception e) {
             handleException(e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            lastRefreshNanos = nanos;
+            refreshNanos.addAndGet(nanos);
+            refreshCount.incrementAndGet();
+            LOG.trace(this + " refresh, mode:" + mode + " took " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
         }
     }
 
+    /**
+     * Hands the event to the dispatcher thread. A changed event which has not been delivered yet
+     * already covers any later change, as listeners read the current state of the group, unless
+     * another event was queued after it.
+     */
+    void dispatchEvent(final GroupListener.GroupEvent event) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (event == GroupListener.GroupEvent.CHANGED) {
+                    pendingChangedEvent.compareAndSet(this, null);
+                }
+                eventsDispatched.incrementAndGet();
+                callListeners(event);
+            }
+        };
+        if (event == GroupListener.GroupEvent.CHANGED) {
+            if (!pendingChangedEvent.compareAndSet(null, task)) {
+                eventsCoalesced.incrementAndGet();
+                return;
+            }
+        } else {
+            // listeners must see a change which happens after this event
+            pendingChangedEvent.set(null);
+        }
+        eventDispatcher.execute(task);
+    }
+
     void callListeners(final GroupListener.GroupEvent event) {
         listeners.forEach
                 (
@@ -458,9 +576,11 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     }
 
     void getDataAndStat(final String fullPath) throws Exception {
+        dataReadCount.incrementAndGet();
+        long readEpoch = currentEpoch();
         Stat stat = new Stat();
         byte[] data = client.getData().storingStatIn(stat).usingWatcher(dataWatcher).forPath(fullPath);
-        applyNewData(fullPath, KeeperException.Code.OK.intValue(), stat, data);
+        applyNewData(readEpoch, fullPath, KeeperException.Code.OK.intValue(), stat, data);
     }
 
     /**
@@ -485,6 +605,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     private void internalRebuildNode(String fullPath) throws Exception {
         try {
+            dataReadCount.incrementAndGet();
             Stat stat = new Stat();
             byte[] bytes = client.getData().storingStatIn(stat).forPath(fullPath);
             currentData.put(fullPath, new ChildData<T>(fullPath, stat, bytes, decode(bytes)));
@@ -535,14 +656,98 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
             remove(fullPath);
         }
 
-        for (String name : children) {
-            String fullPath = ZKPaths.makePath(path, name);
-
+        List<String> pending = new ArrayList<String>();
+        for (String fullPath : fullPaths) {
             if ((mode == RefreshMode.FORCE_GET_DATA_AND_STAT) || !currentData.containsKey(fullPath)) {
+                pending.add(fullPath);
+            }
+        }
+        if (pending.size() == 1) {
+            try {
+                getDataAndStat(pending.get(0));
+            } catch (KeeperException.NoNodeException ignore) {}
+        } else if (!pending.isEmpty()) {
+            getDataAndStat(pending);
+        }
+    }
+
+    /**
+     * Reads the data of all the given nodes in the background and waits for the results,
+     * so a refresh costs a single round trip rather than one per node.
+     */
+    private void getDataAndStat(List<String> fullPaths) throws Exception {
+        PendingReads reads = new PendingReads(fullPaths.size());
+        for (String fullPath : fullPaths) {
+            getDataInBackground(fullPath, reads);
+        }
+        long timeout = client.getZookeeperClient().getConnectionTimeoutMs();
+        if (!reads.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+            // results arriving from now on would race with the next refresh, so drop them and read again
+            synchronized (reads) {
+                reads.cancelled = true;
+            }
+            LOG.warn(this + " timed out after " + timeout + " ms waiting for the data of " + reads.latch.getCount() + " nodes, refreshing again");
+            offerOperation(new RefreshOperation(this, RefreshMode.STANDARD));
+        }
+    }
+
+    /**
+     * Reads the data of the node without going through the operation queue. When the read is part
+     * of a refresh, the result is only applied if the refresh is still waiting for it.
+     */
+    private void getDataInBackground(String fullPath, final PendingReads reads) throws Exception {
+        dataReadCount.incrementAndGet();
+        final long readEpoch = currentEpoch();
+        client.getData().usingWatcher(dataWatcher).inBackground(new BackgroundCallback() {
+            @Override
+            public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
                 try {
-                    getDataAndStat(fullPath);
-                } catch (KeeperException.NoNodeException ignore) {}
+                    // a node which has gone away will be removed by its delete or the next children event
+                    if (event.getResultCode() != KeeperException.Code.NONODE.intValue()) {
+                        if (reads == null) {
+                            applyNewData(readEpoch, event.getPath(), event.getResultCode(), event.getStat(), event.getData());
+                        } else {
+                            synchronized (reads) {
+                                if (!reads.cancelled) {
+                                    applyNewData(readEpoch, event.getPath(), event.getResultCode(), event.getStat(), event.getData());
+                                }
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    handleException(e);
+                } finally {
+                    if (reads != null) {
+                        reads.latch.countDown();
+                    }
+                }
+            }
+        }).forPath(fullPath);
+    }
+
+    /**
+     * The outstanding background reads of a refresh
+     */
+    private static final class PendingReads {
+        final CountDownLatch latch;
+        boolean cancelled;
+
+        PendingReads(int count) {
+            this.latch = new CountDownLatch(count);
+        }
+    }
+
+    /**
+     * Applies the result of a read issued in the given epoch, dropping it if the data was cleared since,
+     * for instance because the connection was lost, so that it does not bring back former members.
+     */
+    private void applyNewData(long readEpoch, String fullPath, int resultCode, Stat stat, byte[] bytes) {
+        synchronized (epochLock) {
+            if (readEpoch != epoch) {
+                staleReadCount.incrementAndGet();
+                return;
             }
+            applyNewData(fullPath, resultCode, stat, bytes);
         }
     }
 
@@ -550,9 +755,23 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         if (resultCode == KeeperException.Code.OK.intValue()) {
             // otherwise - node must have dropped or something - we should be getting another event
             ChildData<T> data = new ChildData<T>(fullPath, stat, bytes, decode(bytes));
-            ChildData<T> previousData = currentData.put(fullPath, data);
-            if (previousData == null || previousData.getStat().getVersion() != stat.getVersion()) {
-                offerOperation(new EventOperation(this, GroupListener.GroupEvent.CHANGED));
+            // reads of the same node may complete out of order, so never replace newer data with older data
+            while (true) {
+                ChildData<T> previousData = currentData.get(fullPath);
+                if (previousData == null) {
+                    if (currentData.putIfAbsent(fullPath, data) == null) {
+                        offerOperation(new EventOperation(this, GroupListener.GroupEvent.CHANGED));
+                        return;
+                    }
+                } else if (previousData.getStat().getMzxid() > stat.getMzxid()) {
+                    staleReadCount.incrementAndGet();
+                    return;
+                } else if (currentData.replace(fullPath, previousData, data)) {
+                    if (previousData.getStat().getVersion() != stat.getVersion()) {
+                        offerOperation(new EventOperation(this, GroupListener.GroupEvent.CHANGED));
+                    }
+                    return;
+                }
             }
         }
     }
@@ -610,6 +829,88 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         return id;
     }
 
+    public boolean isIncrementalRefresh() {
+        return incrementalRefresh;
+    }
+
+    /**
+     * @param incrementalRefresh whether updates of our own state only read the data of new members
+     *                           rather than re-reading the data of all members
+     */
+    public void setIncrementalRefresh(boolean incrementalRefresh) {
+        this.incrementalRefresh = incrementalRefresh;
+    }
+
+    /**
+     * @return the number of times the members of this group have been refreshed
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return the time in milliseconds the last refresh of the members took
+     */
+    public long getLastRefreshTime() {
+        return TimeUnit.NANOSECONDS.toMillis(lastRefreshNanos);
+    }
+
+    /**
+     * @return the total time in milliseconds spent refreshing the members
+     */
+    public long getTotalRefreshTime() {
+        return TimeUnit.NANOSECONDS.toMillis(refreshNanos.get());
+    }
+
+    /**
+     * @return the number of times the children of the group path have been read
+     */
+    public long getChildrenReadCount() {
+        return childrenReadCount.get();
+    }
+
+    /**
+     * @return the number of times the data of a member has been read
+     */
+    public long getDataReadCount() {
+        return dataReadCount.get();
+    }
+
+    /**
+     * @return the number of reads which completed after a newer read of the same member and were discarded
+     */
+    public long getStaleReadCount() {
+        return staleReadCount.get();
+    }
+
+    /**
+     * @return the number of events waiting to be delivered to the listeners
+     */
+    public int getEventQueueSize() {
+        return eventDispatcher.getQueue().size();
+    }
+
+    /**
+     * @return the number of events delivered to the listeners
+     */
+    public long getEventsDispatched() {
+        return eventsDispatched.get();
+    }
+
+    /**
+     * @return the number of changed events which were merged into a changed event not delivered yet
+     */
+    public long getEventsCoalesced() {
+        return eventsCoalesced.get();
+    }
+
+    /**
+     * @return the number of times the group had to wait because the event queue was full
+     */
+    public long getEventsBlocked() {
+        return eventsBlocked.get();
+    }
+
     @VisibleForTesting
     void setId(String id) {
         this.id = id;
@@ -34,6 +34,7 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
@@ -340,6 +341,104 @@ public class GroupTest {
         cnxnFactory.join();
     }
 
+    @Test
+    public void testIncrementalRefreshOnlyReadsNewMembers() throws Exception {
+        int port = findFreePort();
+        NIOServerCnxnFactory cnxnFactory = startZooKeeper(port);
+
+        CuratorFramework curator = CuratorFrameworkFactory.builder()
+                .connectString("localhost:" + port)
+                .retryPolicy(new RetryNTimes(10, 100))
+                .build();
+        curator.start();
+        curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+        String groupNode =  "/singletons/test" + System.currentTimeMillis();
+        curator.create().creatingParentsIfNeeded().forPath(groupNode);
+        for (int i = 0; i < 20; i++) {
+            curator.create().forPath(groupNode + "/member" + i, ZooKeeperGroup.MAPPER.writeValueAsBytes(new NodeState("test", "container" + i)));
+        }
+
+        ZooKeeperGroup<NodeState> group = new ZooKeeperGroup<NodeState>(curator, groupNode, NodeState.class);
+        group.add(listener);
+        group.start();
+        waitForMembers(group, 20);
+        long dataReads = group.getDataReadCount();
+
+        curator.create().forPath(groupNode + "/member20", ZooKeeperGroup.MAPPER.writeValueAsBytes(new NodeState("test", "container20")));
+        waitForMembers(group, 21);
+        assertEquals("only the new member is read", dataReads + 1, group.getDataReadCount());
+
+        curator.delete().forPath(groupNode + "/member0");
+        waitForMembers(group, 20);
+        assertEquals("removed members are not read", dataReads + 1, group.getDataReadCount());
+        assertTrue(group.getRefreshCount() >= 3);
+
+        // joining and updating our own state must not read all the members again
+        group.update(new NodeState("test", "self"));
+        waitForMembers(group, 21);
+        group.update(new NodeState("test", "self-updated"));
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertTrue("updates only read our own member, reads: " + (group.getDataReadCount() - dataReads),
+                group.getDataReadCount() <= dataReads + 3);
+
+        group.close();
+        curator.close();
+        cnxnFactory.shutdown();
+        cnxnFactory.join();
+    }
+
+    @Test
+    public void testSlowListenerDoesNotDelayMembership() throws Exception {
+        int port = findFreePort();
+        NIOServerCnxnFactory cnxnFactory = startZooKeeper(port);
+
+        CuratorFramework curator = CuratorFrameworkFactory.builder()
+                .connectString("localhost:" + port)
+                .retryPolicy(new RetryNTimes(10, 100))
+                .build();
+        curator.start();
+        curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+        String groupNode =  "/singletons/test" + System.currentTimeMillis();
+        curator.create().creatingParentsIfNeeded().forPath(groupNode);
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ZooKeeperGroup<NodeState> group = new ZooKeeperGroup<NodeState>(curator, groupNode, NodeState.class);
+        group.add(new GroupListener<NodeState>() {
+            @Override
+            public void groupEvent(Group<NodeState> group, GroupEvent event) {
+                blocked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        group.start();
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            curator.create().forPath(groupNode + "/member" + i, ZooKeeperGroup.MAPPER.writeValueAsBytes(new NodeState("test", "container" + i)));
+        }
+        waitForMembers(group, 10);
+        assertTrue("changed events are coalesced while the listener is busy", group.getEventQueueSize() <= 1);
+
+        release.countDown();
+        group.close();
+        curator.close();
+        cnxnFactory.shutdown();
+        cnxnFactory.join();
+    }
+
+    private void waitForMembers(ZooKeeperGroup<NodeState> group, int count) throws InterruptedException {
+        int attempts = 0;
+        while (attempts++ < 50 && group.members().size() != count) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        assertEquals(count, group.members().size());
+    }
+
     private class GroupCondition implements GroupListener<NodeState> {
         private CountDownLatch connected = new CountDownLatch(1);
         private CountDownLatch master = new CountDownLatch(1);
@@ -420,6 +420,9 @@ public class TreeCache implements Closeable
      */
     public TreeData getCurrentData(String fullPath)
     {
+        if (isKnownMissing(fullPath)) {
+            return null;
+        }
         try {
             while (true) {
                 TreeData data = currentData.get(fullPath);
@@ -739,6 +742,32 @@ public class TreeCache implements Closeable
         }
     }
 
+    /**
+     * Returns true if an up to date cached ancestor shows that the node does not exist. The loader cannot
+     * cache a missing node, so this is what keeps repeated lookups of it from going to the server; the
+     * child watch on the parent invalidates the parent as soon as the node is created.
+     * <p/>
+     * Cached nodes are checked without locking so that cache hits do not contend on the cache.
+     */
+    private boolean isKnownMissing(String fullPath) {
+        if (currentData.getIfPresent(fullPath) != null) {
+            return false;
+        }
+        Optional<String> parent = getParentOf(fullPath);
+        if (!parent.isPresent() || parent.get().isEmpty()) {
+            return false;
+        }
+        TreeData parentData = currentData.getIfPresent(parent.get());
+        if (parentData == null) {
+            return isKnownMissing(parent.get());
+        }
+        return isMissingFrom(parentData, fullPath);
+    }
+
+    private synchronized boolean isMissingFrom(TreeData parentData, String fullPath) {
+        return !parentData.isInvalidated() && !parentData.getChildren().contains(ZKPaths.getNodeFromPath(fullPath));
+    }
+
     private synchronized void removeFromParent(String fullPath) {
         Optional<String> parent = getParentOf(fullPath);
         if (parent.isPresent()) {
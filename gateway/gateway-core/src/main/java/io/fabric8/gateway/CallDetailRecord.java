@@ -25,11 +25,26 @@ public class CallDetailRecord {
 	private final long callTimeNanos;
 	private final String error;
 	private final Date callDate;
+	private final String pathPrefix;
+	private final String serviceUrl;
+
 	public CallDetailRecord(long callTimeNanos, String error) {
+		this(new Date(), callTimeNanos, error, null, null);
+	}
+
+	public CallDetailRecord(Date callDate, long callTimeNanos, String error, String pathPrefix, String serviceUrl) {
 		super();
-		this.callDate = new Date();
+		this.callDate = callDate;
 		this.callTimeNanos = callTimeNanos;
 		this.error = error;
+		this.pathPrefix = pathPrefix;
+		this.serviceUrl = serviceUrl;
+	}
+
+	@Override
+	public String toString() {
+		return callDate + " " + (pathPrefix != null ? pathPrefix : "-") + " -> " + (serviceUrl != null ? serviceUrl : "-")
+				+ " " + (callTimeNanos / 1000) + " us" + (error != null ? " error: " + error : "");
 	}
 
 	public long getCallTimeNanos() {
@@ -43,4 +58,18 @@ public class CallDetailRecord {
 	public Date getCallDate() {
 		return callDate;
 	}
+
+	/**
+	 * Returns the mapped URI prefix of the call or null if the request did not match a mapping rule
+	 */
+	public String getPathPrefix() {
+		return pathPrefix;
+	}
+
+	/**
+	 * Returns the URL of the back end service the call was proxied to or null if it was not proxied
+	 */
+	public String getServiceUrl() {
+		return serviceUrl;
+	}
 }
@@ -0,0 +1,258 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import io.fabric8.gateway.support.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recent gateway calls in a preallocated ring buffer along with latency histograms
+ * for all calls, per mapped URI prefix and per back end service.
+ * <p/>
+ * Recording a call does not take a lock or allocate once the histogram of its prefix and service exist,
+ * so it can be done on the event loop for every request. Readers copy the records out of the ring buffer;
+ * a record which is overwritten while it is being copied is skipped.
+ * <p/>
+ * At most {@link #getMaxHistograms()} prefixes and services get a histogram of their own; the histograms of
+ * prefixes and services which are no longer mapped are dropped by {@link #retain(Collection, Collection)}.
+ */
+public class CallDetailRecords {
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_HISTOGRAMS = 1024;
+
+    private final Slot[] slots;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalCallTimeNanos = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentMap<String, LatencyHistogram> prefixLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, LatencyHistogram> serviceLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final int maxHistograms;
+    private volatile long resetSequence;
+    private volatile CallDetailRecord lastError;
+
+    public CallDetailRecords() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of recent calls to keep
+     */
+    public CallDetailRecords(int capacity) {
+        this(capacity, DEFAULT_MAX_HISTOGRAMS);
+    }
+
+    /**
+     * @param capacity      the number of recent calls to keep
+     * @param maxHistograms the maximum number of prefixes and of services to keep a latency histogram for
+     */
+    public CallDetailRecords(int capacity, int maxHistograms) {
+        this.maxHistograms = maxHistograms;
+        slots = new Slot[Math.max(capacity, 1)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Records a completed call
+     *
+     * @param pathPrefix    the mapped URI prefix of the request or null if it did not match a mapping rule
+     * @param serviceUrl    the back end service the request was proxied to or null if it was not proxied
+     * @param callTimeNanos the time from receiving the request to completing the response
+     * @param error         the reason the call failed or null if it succeeded
+     */
+    public void record(String pathPrefix, String serviceUrl, long callTimeNanos, String error) {
+        long seq = sequence.getAndIncrement();
+        Slot slot = slots[(int) (seq % slots.length)];
+        long timestamp = System.currentTimeMillis();
+        slot.sequence = -1;
+        slot.timestamp = timestamp;
+        slot.callTimeNanos = callTimeNanos;
+        slot.pathPrefix = pathPrefix;
+        slot.serviceUrl = serviceUrl;
+        slot.error = error;
+        slot.sequence = seq;
+
+        latency.record(callTimeNanos);
+        totalCallTimeNanos.addAndGet(callTimeNanos);
+        if (pathPrefix != null) {
+            LatencyHistogram histogram = histogram(prefixLatencies, pathPrefix);
+            if (histogram != null) {
+                histogram.record(callTimeNanos);
+            }
+        }
+        if (serviceUrl != null) {
+            LatencyHistogram histogram = histogram(serviceLatencies, serviceUrl);
+            if (histogram != null) {
+                histogram.record(callTimeNanos);
+            }
+        }
+        if (error != null) {
+            errors.incrementAndGet();
+            lastError = new CallDetailRecord(new Date(timestamp), callTimeNanos, error, pathPrefix, serviceUrl);
+        }
+    }
+
+    /**
+     * Returns the histogram for the given key or null if there are already too many histograms
+     */
+    private LatencyHistogram histogram(ConcurrentMap<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram answer = histograms.get(key);
+        if (answer == null) {
+            if (histograms.size() >= maxHistograms) {
+                return null;
+            }
+            answer = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent(key, answer);
+            if (existing != null) {
+                answer = existing;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the most recent calls, newest first
+     */
+    public List<CallDetailRecord> getRecentCalls() {
+        long end = sequence.get();
+        long start = Math.max(Math.max(end - slots.length, 0), resetSequence);
+        List<CallDetailRecord> answer = new ArrayList<CallDetailRecord>((int) (end - start));
+        for (long seq = end - 1; seq >= start; seq--) {
+            CallDetailRecord record = copy(seq);
+            if (record != null) {
+                answer.add(record);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the most recent call or null if there has not been one since the statistics were reset
+     */
+    public CallDetailRecord getLastCall() {
+        long end = sequence.get();
+        long start = Math.max(Math.max(end - slots.length, 0), resetSequence);
+        // the newest slots may still be being written, in which case the one before is the last complete call
+        for (long seq = end - 1; seq >= start; seq--) {
+            CallDetailRecord record = copy(seq);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the call recorded with the given sequence or null if its slot is being written or has been reused
+     */
+    private CallDetailRecord copy(long seq) {
+        Slot slot = slots[(int) (seq % slots.length)];
+        if (slot.sequence != seq) {
+            return null;
+        }
+        CallDetailRecord record = new CallDetailRecord(new Date(slot.timestamp), slot.callTimeNanos, slot.error, slot.pathPrefix, slot.serviceUrl);
+        // lets make sure the slot was not overwritten while we copied it
+        return slot.sequence == seq ? record : null;
+    }
+
+    /**
+     * Returns the most recent call which failed, even if it is no longer one of the recent calls, or null if
+     * no call has failed since the statistics were reset
+     */
+    public CallDetailRecord getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Drops the histograms of the prefixes and services which are not in the given collections
+     */
+    public void retain(Collection<String> pathPrefixes, Collection<String> serviceUrls) {
+        prefixLatencies.keySet().retainAll(pathPrefixes);
+        serviceLatencies.keySet().retainAll(serviceUrls);
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public int getMaxHistograms() {
+        return maxHistograms;
+    }
+
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    public long getAverageCallTimeNanos() {
+        long count = getCount();
+        return count > 0 ? totalCallTimeNanos.get() / count : 0;
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the latency histograms keyed by mapped URI prefix
+     */
+    public Map<String, LatencyHistogram> getPrefixLatencies() {
+        return new TreeMap<String, LatencyHistogram>(prefixLatencies);
+    }
+
+    /**
+     * Returns the latency histograms keyed by back end service URL
+     */
+    public Map<String, LatencyHistogram> getServiceLatencies() {
+        return new TreeMap<String, LatencyHistogram>(serviceLatencies);
+    }
+
+    /**
+     * Clears the histograms and forgets the recent calls
+     */
+    public void reset() {
+        resetSequence = sequence.get();
+        latency.reset();
+        prefixLatencies.clear();
+        serviceLatencies.clear();
+        errors.set(0);
+        totalCallTimeNanos.set(0);
+        lastError = null;
+    }
+
+    static final class Slot {
+        volatile long sequence = -1;
+        long timestamp;
+        long callTimeNanos;
+        String pathPrefix;
+        String serviceUrl;
+        String error;
+    }
+}
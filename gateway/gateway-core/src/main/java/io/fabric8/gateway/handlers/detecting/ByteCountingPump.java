@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.ReadStream;
+import org.vertx.java.core.streams.WriteStream;
+
+/**
+ * Pumps data from a {@link ReadStream} to a {@link WriteStream} with flow control like
+ * {@link org.vertx.java.core.streams.Pump} but keeps a long count of the bytes pumped so it does
+ * not overflow on long lived, high throughput connections.
+ * <p/>
+ * The buffers read are handed to the write stream as they are so no intermediate copies are made.
+ */
+public class ByteCountingPump {
+    private final ReadStream<?> readStream;
+    private final WriteStream<?> writeStream;
+    private volatile long bytesPumped;
+
+    private final Handler<Void> drainHandler = new Handler<Void>() {
+        public void handle(Void event) {
+            readStream.resume();
+        }
+    };
+
+    private final Handler<Buffer> dataHandler = new Handler<Buffer>() {
+        public void handle(Buffer buffer) {
+            writeStream.write(buffer);
+            // only ever updated from the event loop of the read stream
+            bytesPumped += buffer.length();
+            if (writeStream.writeQueueFull()) {
+                readStream.pause();
+                writeStream.drainHandler(drainHandler);
+            }
+        }
+    };
+
+    public ByteCountingPump(ReadStream<?> readStream, WriteStream<?> writeStream) {
+        this.readStream = readStream;
+        this.writeStream = writeStream;
+    }
+
+    public ByteCountingPump start() {
+        readStream.dataHandler(dataHandler);
+        return this;
+    }
+
+    public ByteCountingPump stop() {
+        writeStream.drainHandler(null);
+        readStream.dataHandler(null);
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes pumped so far
+     */
+    public long getBytesPumped() {
+        return bytesPumped;
+    }
+
+    /**
+     * Adds bytes which were written to the write stream directly rather than pumped, such as the bytes read while
+     * detecting the protocol
+     */
+    void addBytes(long count) {
+        bytesPumped += count;
+    }
+}
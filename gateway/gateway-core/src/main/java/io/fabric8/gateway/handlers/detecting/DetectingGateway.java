@@ -26,23 +26,27 @@ import io.fabric8.gateway.handlers.loadbalancer.ClientRequestFacadeFactory;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.LoadBalancers;
+import io.fabric8.gateway.support.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.net.NetClient;
 import org.vertx.java.core.net.NetServer;
 import org.vertx.java.core.net.NetSocket;
-import org.vertx.java.core.streams.Pump;
 import org.vertx.java.core.streams.ReadStream;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -61,14 +65,20 @@ public class DetectingGateway implements DetectingGatewayMBean {
     String defaultVirtualHost;
     ArrayList<Protocol> protocols;
     int maxProtocolIdentificationLength;
+    volatile Map<String, LatencyHistogram> detectionLatencies = Collections.emptyMap();
     ClientRequestFacadeFactory clientRequestFacadeFactory = new ClientRequestFacadeFactory("PROTOCOL_SESSION_ID, PROTOCOL_CLIENT_ID, REMOTE_ADDRESS");
     final AtomicReference<InetSocketAddress> httpGateway = new AtomicReference<InetSocketAddress>();
     SslConfig sslConfig;
     long connectionTimeout = 5000;
+    boolean tcpNoDelay = true;
+    int sendBufferSize = -1;
+    int receiveBufferSize = -1;
 
     final AtomicLong receivedConnectionAttempts = new AtomicLong();
     final AtomicLong successfulConnectionAttempts = new AtomicLong();
     final AtomicLong failedConnectionAttempts = new AtomicLong();
+    final AtomicLong closedBytesFromClients = new AtomicLong();
+    final AtomicLong closedBytesToClients = new AtomicLong();
     Set<SocketWrapper> socketsConnecting = Collections.synchronizedSet(new HashSet<SocketWrapper>());
     Set<ConnectedSocketInfo> socketsConnected = Collections.synchronizedSet(new HashSet<ConnectedSocketInfo>());
     private ShutdownTracker shutdownTacker = new ShutdownTracker();
@@ -76,6 +86,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
     private int port;
     private String host;
     private NetServer server;
+    private final ConcurrentHashMap<Object, NetClient> netClients = new ConcurrentHashMap<Object, NetClient>();
 
     private FutureHandler<AsyncResult<NetServer>> listenFuture = new FutureHandler<AsyncResult<NetServer>>() {
         @Override
@@ -99,6 +110,13 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
     public void init() {
         server = vertx.createNetServer().connectHandler(new DetectingGatewayNetSocketHandler(this));
+        server.setTCPNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) {
+            server.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            server.setReceiveBufferSize(receiveBufferSize);
+        }
         if (host != null) {
             server = server.listen(port, host, listenFuture);
         } else {
@@ -114,6 +132,10 @@ public class DetectingGateway implements DetectingGatewayMBean {
         for (ConnectedSocketInfo socket : new ArrayList<>(socketsConnected)) {
             handleShutdown(socket);
         }
+        for (NetClient client : netClients.values()) {
+            client.close();
+        }
+        netClients.clear();
     }
 
     public String getHost() {
@@ -169,6 +191,11 @@ public class DetectingGateway implements DetectingGatewayMBean {
             }
         }
         maxProtocolIdentificationLength = max;
+        Map<String, LatencyHistogram> latencies = new LinkedHashMap<String, LatencyHistogram>();
+        for (Protocol protocol : protocols) {
+            latencies.put(protocol.getProtocolName(), new LatencyHistogram());
+        }
+        detectionLatencies = latencies;
     }
 
     public Collection<String> getProtocolNames() {
@@ -180,6 +207,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
     }
 
     SSLContext sslContext;
+    SSLParameters sslParameters;
     SslSocketWrapper.ClientAuth clientAuth = SslSocketWrapper.ClientAuth.WANT;
 
     public void setShutdownTacker(ShutdownTracker shutdownTacker) {
@@ -192,13 +220,41 @@ public class DetectingGateway implements DetectingGatewayMBean {
         private final ConnectionParameters params;
         private final URI url;
         private final SocketWrapper from;
-        private final NetClient to;
+        private final NetSocket to;
+        private final ServiceDetails service;
+        private final long connectedTime = System.currentTimeMillis();
+        private ByteCountingPump fromClient;
+        private ByteCountingPump toClient;
 
-        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetClient to) {
+        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetSocket to, ServiceDetails service) {
             this.params = params;
             this.url = url;
             this.from = from;
             this.to = to;
+            this.service = service;
+        }
+
+        long getBytesFromClient() {
+            ByteCountingPump pump = fromClient;
+            return pump != null ? pump.getBytesPumped() : 0;
+        }
+
+        long getBytesToClient() {
+            ByteCountingPump pump = toClient;
+            return pump != null ? pump.getBytesPumped() : 0;
+        }
+
+        @Override
+        public String toString() {
+            long duration = Math.max(System.currentTimeMillis() - connectedTime, 1);
+            long bytesFromClient = getBytesFromClient();
+            long bytesToClient = getBytesToClient();
+            return from.remoteAddress() + " -> " + url
+                    + " protocol: " + params.protocol
+                    + " bytesFromClient: " + bytesFromClient
+                    + " bytesToClient: " + bytesToClient
+                    + " durationMs: " + duration
+                    + " bytesPerSecond: " + ((bytesFromClient + bytesToClient) * 1000 / duration);
         }
     }
 
@@ -238,24 +294,34 @@ public class DetectingGateway implements DetectingGatewayMBean {
                 handleConnectFailure(socket, String.format("Gateway client '%s' closed the connection before it could be routed.", socket.remoteAddress()));
             }
         });
+        final long detectionStart = System.nanoTime();
         readStream.dataHandler(new Handler<Buffer>() {
             Buffer received = new Buffer();
+            // the protocols which could still match and the number of bytes they have all examined
+            final ArrayList<Protocol> candidates = new ArrayList<Protocol>(protocols);
+            int scanned;
 
             @Override
             public void handle(Buffer event) {
                 received.appendBuffer(event);
-                for (final Protocol protocol : protocols) {
-                    if (protocol.matches(received)) {
+                for (Iterator<Protocol> iter = candidates.iterator(); iter.hasNext(); ) {
+                    final Protocol protocol = iter.next();
+                    ProtocolDetection detection = protocol.detect(received, scanned);
+                    if (detection == ProtocolDetection.NO_MATCH) {
+                        iter.remove();
+                    } else if (detection == ProtocolDetection.MATCH) {
+                        recordDetectionLatency(protocol, System.nanoTime() - detectionStart);
                         if ("ssl".equals(protocol.getProtocolName())) {
 
                             LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
-                            String disabledCypherSuites=null;
-                            String enabledCipherSuites=null;
-                            if (sslConfig != null) {
-                                disabledCypherSuites = sslConfig.getDisabledCypherSuites();
-                                enabledCipherSuites = sslConfig.getEnabledCipherSuites();
-                            }
-                            if (sslContext == null) {
+                            if (sslParameters == null) {
+                                // the context and engine parameters are created once and shared by all connections
+                                String disabledCypherSuites=null;
+                                String enabledCipherSuites=null;
+                                if (sslConfig != null) {
+                                    disabledCypherSuites = sslConfig.getDisabledCypherSuites();
+                                    enabledCipherSuites = sslConfig.getEnabledCipherSuites();
+                                }
                                 try {
                                     if (sslConfig != null) {
                                         sslContext = SSLContext.getInstance(sslConfig.getProtocol());
@@ -263,6 +329,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
                                     } else {
                                         sslContext = SSLContext.getDefault();
                                     }
+                                    sslParameters = SslSocketWrapper.createSSLParameters(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
                                 } catch (Exception e) {
                                     handleConnectFailure(socket, "Could initialize SSL: " + e);
                                     return;
@@ -271,8 +338,9 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
                             // lets wrap it up in a SslSocketWrapper.
                             SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
+                            sslSocketWrapper.setUseDirectBuffers(sslConfig != null && sslConfig.isUseDirectBuffers());
                             sslSocketWrapper.putBackHeader(received);
-                            sslSocketWrapper.initServer(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
+                            sslSocketWrapper.initServer(sslContext, sslParameters);
 
                             // Undo initial connection accounting since we will be redoing @ the SSL level.
                             boolean removed = socketsConnecting.remove(socket);
@@ -291,7 +359,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
                                             socket.remoteAddress(), url.getHost(), url.getPort()));
                                     ConnectionParameters params = new ConnectionParameters();
                                     params.protocol = "http";
-                                    createClient(params, socket, url, received);
+                                    createClient(params, socket, url, received, null);
                                     return;
                                 } catch (URISyntaxException e) {
                                     handleConnectFailure(socket, "Could not build valid connect URI: "+e);
@@ -317,13 +385,21 @@ public class DetectingGateway implements DetectingGatewayMBean {
                         }
                     }
                 }
-                if (received.length() >= maxProtocolIdentificationLength) {
+                scanned = received.length();
+                if (candidates.isEmpty() || received.length() >= maxProtocolIdentificationLength) {
                     handleConnectFailure(socket, "Connection did not use one of the enabled protocols " + getProtocolNames());
                 }
             }
         });
     }
 
+    private void recordDetectionLatency(Protocol protocol, long nanos) {
+        LatencyHistogram histogram = detectionLatencies.get(protocol.getProtocolName());
+        if (histogram != null) {
+            histogram.record(nanos);
+        }
+    }
+
     private void handleConnectFailure(SocketWrapper socket, String reason) {
         if( socketsConnecting.remove(socket) ) {
             if( reason!=null ) {
@@ -376,7 +452,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
                                           ));
                                     }
 
-                                    client = createClient(params, socket, uri, received);
+                                    client = createClient(params, socket, uri, received, serviceDetails);
                                     break;
                                 }
                             } catch (URISyntaxException e) {
@@ -396,22 +472,34 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
     /**
      * Creates a new client for the given URL and handler
+     *
+     * @param service the service chosen by the load balancer or null if the connection was not load balanced
      */
-    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received) {
-        final NetClient netClient = vertx.createNetClient();
+    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received, final ServiceDetails service) {
+        final NetClient netClient = getNetClient();
+        final long connectStart = System.nanoTime();
+        if (service != null) {
+            LoadBalancers.requestStarted(serviceLoadBalancer, service);
+        }
         return netClient.connect(url.getPort(), url.getHost(), new Handler<AsyncResult<NetSocket>>() {
             public void handle(final AsyncResult<NetSocket> asyncSocket) {
 
                 if( !asyncSocket.succeeded() ) {
+                    if (service != null) {
+                        LoadBalancers.requestCompleted(serviceLoadBalancer, service);
+                    }
                     handleConnectFailure(socketFromClient, String.format("Could not connect to '%s'", url));
                 } else {
                     final NetSocket socketToServer = asyncSocket.result();
+                    if (service != null) {
+                        LoadBalancers.recordLatency(serviceLoadBalancer, service, System.nanoTime() - connectStart);
+                    }
 
                     successfulConnectionAttempts.incrementAndGet();
                     boolean removed = socketsConnecting.remove(socketFromClient);
                     assert removed;
 
-                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, netClient);
+                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, socketToServer, service);
                     boolean added = socketsConnected.add(connectedInfo);
                     assert added;
 
@@ -433,17 +521,50 @@ public class DetectingGateway implements DetectingGatewayMBean {
                     socketToServer.exceptionHandler(exceptionHandler);
 
                     socketToServer.write(received);
-                    Pump.createPump(socketToServer, socketFromClient.writeStream()).start();
-                    Pump.createPump(socketFromClient.readStream(), socketToServer).start();
+                    connectedInfo.toClient = new ByteCountingPump(socketToServer, socketFromClient.writeStream()).start();
+                    connectedInfo.fromClient = new ByteCountingPump(socketFromClient.readStream(), socketToServer);
+                    connectedInfo.fromClient.addBytes(received.length());
+                    connectedInfo.fromClient.start();
                 }
             }
         });
     }
 
+    /**
+     * Returns the client used to connect to the services from the current event loop; the clients are shared by
+     * all the connections handled by an event loop rather than creating a client per connection
+     */
+    protected NetClient getNetClient() {
+        Context context = vertx.currentContext();
+        Object key = context != null ? context : this;
+        NetClient answer = netClients.get(key);
+        if (answer == null) {
+            answer = vertx.createNetClient();
+            answer.setTCPNoDelay(tcpNoDelay);
+            if (sendBufferSize > 0) {
+                answer.setSendBufferSize(sendBufferSize);
+            }
+            if (receiveBufferSize > 0) {
+                answer.setReceiveBufferSize(receiveBufferSize);
+            }
+            NetClient existing = netClients.putIfAbsent(key, answer);
+            if (existing != null) {
+                answer.close();
+                answer = existing;
+            }
+        }
+        return answer;
+    }
+
     private void handleShutdown(ConnectedSocketInfo connectedInfo) {
         if( socketsConnected.remove(connectedInfo) ) {
             connectedInfo.from.close();
             connectedInfo.to.close();
+            closedBytesFromClients.addAndGet(connectedInfo.getBytesFromClient());
+            closedBytesToClients.addAndGet(connectedInfo.getBytesToClient());
+            if (connectedInfo.service != null) {
+                LoadBalancers.requestCompleted(serviceLoadBalancer, connectedInfo.service);
+            }
             shutdownTacker.release();
         }
     }
@@ -494,6 +615,44 @@ public class DetectingGateway implements DetectingGatewayMBean {
         return rc.toArray(new String[rc.size()]);
     }
 
+    public long getBytesFromClients() {
+        long answer = closedBytesFromClients.get();
+        for (ConnectedSocketInfo info : connectedSocketInfos()) {
+            answer += info.getBytesFromClient();
+        }
+        return answer;
+    }
+
+    public long getBytesToClients() {
+        long answer = closedBytesToClients.get();
+        for (ConnectedSocketInfo info : connectedSocketInfos()) {
+            answer += info.getBytesToClient();
+        }
+        return answer;
+    }
+
+    public String[] getProtocolDetectionLatencies() {
+        ArrayList<String> rc = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : detectionLatencies.entrySet()) {
+            rc.add(entry.getKey() + " " + entry.getValue());
+        }
+        return rc.toArray(new String[rc.size()]);
+    }
+
+    public String[] getConnectedClientStatistics() {
+        ArrayList<String> rc = new ArrayList<>();
+        for (ConnectedSocketInfo info : connectedSocketInfos()) {
+            rc.add(info.toString());
+        }
+        return rc.toArray(new String[rc.size()]);
+    }
+
+    private List<ConnectedSocketInfo> connectedSocketInfos() {
+        synchronized (socketsConnected) {
+            return new ArrayList<>(socketsConnected);
+        }
+    }
+
     public long getConnectionTimeout() {
         return connectionTimeout;
     }
@@ -502,6 +661,30 @@ public class DetectingGateway implements DetectingGatewayMBean {
         this.connectionTimeout = connectionTimeout;
     }
 
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
     public int getPort() {
         return port;
     }
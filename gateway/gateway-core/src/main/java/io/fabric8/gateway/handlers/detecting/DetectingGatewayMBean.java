@@ -32,6 +32,10 @@ public interface DetectingGatewayMBean {
     public long getFailedConnectionAttempts();
     public String[] getConnectingClients();
     public String[] getConnectedClients();
+    public String[] getConnectedClientStatistics();
+    public String[] getProtocolDetectionLatencies();
+    public long getBytesFromClients();
+    public long getBytesToClients();
     public long getConnectionTimeout();
     public void setConnectionTimeout(long connectionTimeout);
 
@@ -29,6 +29,16 @@ public interface Protocol {
     public String getProtocolName();
     public int getMaxIdentificationLength();
     public boolean matches(Buffer buffer);
+
+    /**
+     * Examines the bytes received from a client so far to decide if the client is using this protocol.
+     * Protocols which answer {@link ProtocolDetection#NO_MATCH} are not asked again for the connection.
+     *
+     * @param received the bytes received so far
+     * @param scanned the number of leading bytes which were already examined by a previous call
+     *                which answered {@link ProtocolDetection#NEED_MORE}
+     */
+    public ProtocolDetection detect(Buffer received, int scanned);
     public void snoopConnectionParameters(final SocketWrapper socket, Buffer received, Handler<ConnectionParameters> handler);
 
 }
@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * The outcome of a {@link Protocol} examining the bytes received from a client.
+ */
+public enum ProtocolDetection {
+
+    /**
+     * The client is using the protocol
+     */
+    MATCH,
+
+    /**
+     * The client cannot be using the protocol no matter what else it sends
+     */
+    NO_MATCH,
+
+    /**
+     * More bytes are needed to decide
+     */
+    NEED_MORE;
+
+    /**
+     * Checks if the received bytes starting at the given offset begin with one of the given magic byte sequences,
+     * only looking at the bytes from the given scanned position as the earlier ones have already been checked.
+     *
+     * @param received the bytes received so far
+     * @param offset   the position the magic is expected at
+     * @param scanned  the number of bytes examined by a previous call which returned {@link #NEED_MORE}
+     * @param magics   the magic byte sequences the protocol may start with
+     */
+    public static ProtocolDetection startsWith(Buffer received, int offset, int scanned, Buffer... magics) {
+        int length = received.length();
+        boolean needMore = false;
+        for (Buffer magic : magics) {
+            int end = Math.min(length, offset + magic.length());
+            // when there are several magics we cannot tell which ones the earlier bytes matched
+            int i = magics.length == 1 ? Math.max(scanned, offset) : offset;
+            while (i < end && received.getByte(i) == magic.getByte(i - offset)) {
+                i++;
+            }
+            if (i == end) {
+                if (end == offset + magic.length()) {
+                    return MATCH;
+                }
+                needMore = true;
+            }
+        }
+        return needMore ? NEED_MORE : NO_MATCH;
+    }
+}
@@ -151,6 +151,22 @@ public class BufferSupport {
     }
 
 
+    /**
+     * Returns a {@link ByteBuffer} view of the contents of the buffer which shares its storage where
+     * possible rather than copying it like {@link Buffer#getBytes()} does.
+     */
+    static public ByteBuffer toByteBuffer(Buffer self) {
+        return getNettyByteBuf(self).nioBuffer();
+    }
+
+    /**
+     * Appends the remaining bytes of the {@link ByteBuffer} to the buffer.
+     */
+    static public Buffer append(Buffer self, ByteBuffer buff) {
+        getNettyByteBuf(self).writeBytes(buff);
+        return self;
+    }
+
     public static Buffer toBuffer(ByteBuffer buff) {
         Buffer self = new Buffer(buff.remaining());
         while( buff.hasRemaining() ) {
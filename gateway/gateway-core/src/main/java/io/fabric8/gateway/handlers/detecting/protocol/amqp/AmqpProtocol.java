@@ -17,6 +17,7 @@ package io.fabric8.gateway.handlers.detecting.protocol.amqp;
 
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.handlers.detecting.Protocol;
+import io.fabric8.gateway.handlers.detecting.ProtocolDetection;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.engine.impl.EngineFactoryImpl;
@@ -56,11 +57,12 @@ public class AmqpProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer header) {
-      if (header.length() < PROTOCOL_MAGIC.length()) {
-        return false;
-      } else {
-        return startsWith(header ,PROTOCOL_MAGIC);
-      }
+        return detect(header, 0) == ProtocolDetection.MATCH;
+    }
+
+    @Override
+    public ProtocolDetection detect(Buffer received, int scanned) {
+        return ProtocolDetection.startsWith(received, 0, scanned, PROTOCOL_MAGIC);
     }
 
     @Override
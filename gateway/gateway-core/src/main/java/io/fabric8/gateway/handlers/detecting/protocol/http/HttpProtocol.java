@@ -16,6 +16,7 @@
 package io.fabric8.gateway.handlers.detecting.protocol.http;
 
 import io.fabric8.gateway.handlers.detecting.Protocol;
+import io.fabric8.gateway.handlers.detecting.ProtocolDetection;
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.handlers.detecting.protocol.Ascii;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
@@ -25,7 +26,6 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
 import static io.fabric8.gateway.handlers.detecting.protocol.Ascii.ascii;
-import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.startsWith;
 
 /**
  */
@@ -40,6 +40,10 @@ public class HttpProtocol implements Protocol {
     final Ascii OPTIONS = ascii("OPTIONS ");
     final Ascii HEAD = ascii("HEAD ");
     final Ascii TRACE = ascii("TRACE ");
+    final Buffer[] METHODS = {
+            GET.toBuffer(), HEAD.toBuffer(), POST.toBuffer(), PUT.toBuffer(),
+            DELETE.toBuffer(), OPTIONS.toBuffer(), TRACE.toBuffer(), CONNECT.toBuffer()
+    };
 
     @Override
     public String getProtocolName() {
@@ -60,15 +64,12 @@ public class HttpProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer header) {
-        return
-            startsWith(header, 0, GET.toBuffer()) ||
-            startsWith(header, 0, HEAD.toBuffer()) ||
-            startsWith(header, 0, POST.toBuffer()) ||
-            startsWith(header, 0, PUT.toBuffer()) ||
-            startsWith(header, 0, DELETE.toBuffer()) ||
-            startsWith(header, 0, OPTIONS.toBuffer()) ||
-            startsWith(header, 0, TRACE.toBuffer()) ||
-            startsWith(header, 0, CONNECT.toBuffer());
+        return detect(header, 0) == ProtocolDetection.MATCH;
+    }
+
+    @Override
+    public ProtocolDetection detect(Buffer received, int scanned) {
+        return ProtocolDetection.startsWith(received, 0, scanned, METHODS);
     }
 
     @Override
@@ -17,6 +17,7 @@ package io.fabric8.gateway.handlers.detecting.protocol.mqtt;
 
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.handlers.detecting.Protocol;
+import io.fabric8.gateway.handlers.detecting.ProtocolDetection;
 import io.fabric8.gateway.handlers.detecting.protocol.BufferSupport;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import org.fusesource.hawtbuf.UTF8Buffer;
@@ -58,15 +59,32 @@ public class MqttProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer header) {
-        if (header.length() < 10) {
-          return false;
-        } else {
-          return BufferSupport.startsWith(header, HEAD_MAGIC) && (
-              BufferSupport.indexOf(header, 2, MQTT31_TAIL_MAGIC)< 6
-              ||
-              BufferSupport.indexOf(header, 2, MQTT311_TAIL_MAGIC) < 6
-          );
+        return detect(header, 0) == ProtocolDetection.MATCH;
+    }
+
+    @Override
+    public ProtocolDetection detect(Buffer received, int scanned) {
+        int length = received.length();
+        if (length == 0) {
+            return ProtocolDetection.NEED_MORE;
+        }
+        if (received.getByte(0) != HEAD_MAGIC.getByte(0)) {
+            return ProtocolDetection.NO_MATCH;
+        }
+        // the CONNECT header is followed by a remaining length of one to four bytes and then the protocol name
+        int offset = 1;
+        while (true) {
+            if (offset >= length) {
+                return ProtocolDetection.NEED_MORE;
+            }
+            if ((received.getByte(offset) & 0x80) == 0) {
+                break;
+            }
+            if (++offset > 4) {
+                return ProtocolDetection.NO_MATCH;
+            }
         }
+        return ProtocolDetection.startsWith(received, offset + 1, scanned, MQTT31_TAIL_MAGIC, MQTT311_TAIL_MAGIC);
     }
 
     static void append(Buffer self, MQTTFrame value) {
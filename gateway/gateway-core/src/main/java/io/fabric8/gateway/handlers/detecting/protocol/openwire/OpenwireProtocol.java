@@ -16,8 +16,7 @@
 package io.fabric8.gateway.handlers.detecting.protocol.openwire;
 
 import io.fabric8.gateway.handlers.detecting.Protocol;
-import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.Command;
-import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
+import io.fabric8.gateway.handlers.detecting.ProtocolDetection;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import io.fabric8.gateway.SocketWrapper;
 import org.slf4j.Logger;
@@ -27,7 +26,6 @@ import org.vertx.java.core.buffer.Buffer;
 
 import java.io.IOException;
 
-import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.indexOf;
 
 /**
  */
@@ -57,7 +55,13 @@ public class OpenwireProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer buffer) {
-        return buffer.length() >= 4 + MAGIC.length() && indexOf(buffer, 5, MAGIC) >= 0;
+        return detect(buffer, 0) == ProtocolDetection.MATCH;
+    }
+
+    @Override
+    public ProtocolDetection detect(Buffer received, int scanned) {
+        // the magic follows the size prefix and the type of the WireFormatInfo command
+        return ProtocolDetection.startsWith(received, 5, scanned, MAGIC);
     }
 
     @Override
@@ -71,16 +75,15 @@ public class OpenwireProtocol implements Protocol {
                 socket.close();
             }
         });
-        h.codecHandler(new Handler<Command>() {
+        h.codecHandler(new Handler<Buffer>() {
             @Override
-            public void handle(Command event) {
-                if( event instanceof WireFormatInfo){
-                    WireFormatInfo info = (WireFormatInfo) event;
+            public void handle(Buffer frame) {
+                if( WireFormatInfoPeek.isWireFormatInfo(frame) ){
                     ConnectionParameters parameters = new ConnectionParameters();
                     try {
-                        parameters.protocolVirtualHost = info.getHost();
+                        parameters.protocolVirtualHost = WireFormatInfoPeek.getHost(frame);
                     } catch (IOException e) {
-                        e.printStackTrace();
+                        LOG.info("Could not read the host of the WireFormatInfo frame: " + e);
                     }
                     handler.handle(parameters);
                 } else {
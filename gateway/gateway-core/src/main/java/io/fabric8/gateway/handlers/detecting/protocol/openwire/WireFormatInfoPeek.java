@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire;
+
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.support.MarshallingSupport;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the fields the gateway needs from a size prefixed, loosely encoded {@link WireFormatInfo} frame
+ * in place, without unmarshalling the command or its property map.
+ */
+public final class WireFormatInfoPeek {
+
+    private static final int TYPE_OFFSET = 4;
+    // size prefix, type and magic
+    private static final int VERSION_OFFSET = TYPE_OFFSET + 1 + 8;
+    private static final int PROPERTIES_OFFSET = VERSION_OFFSET + 4;
+    private static final byte[] HOST = {'H', 'o', 's', 't'};
+    private static final int MAX_PROPERTY_SIZE = 1024 * 4;
+
+    private final Buffer frame;
+    private int pos;
+    private int end;
+
+    private WireFormatInfoPeek(Buffer frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * Returns true if the given frame holds a {@link WireFormatInfo} command
+     */
+    public static boolean isWireFormatInfo(Buffer frame) {
+        return frame.length() > TYPE_OFFSET && frame.getByte(TYPE_OFFSET) == WireFormatInfo.DATA_STRUCTURE_TYPE;
+    }
+
+    /**
+     * Returns the openwire version announced by the given {@link WireFormatInfo} frame
+     */
+    public static int getVersion(Buffer frame) throws IOException {
+        if (!isWireFormatInfo(frame)) {
+            throw new IOException("Expected a WireFormatInfo frame");
+        }
+        WireFormatInfoPeek peek = new WireFormatInfoPeek(frame);
+        peek.end = frame.length();
+        peek.pos = VERSION_OFFSET;
+        return peek.readInt();
+    }
+
+    /**
+     * Returns the value of the Host property of the given {@link WireFormatInfo} frame or null if it is not set
+     */
+    public static String getHost(Buffer frame) throws IOException {
+        if (!isWireFormatInfo(frame)) {
+            throw new IOException("Expected a WireFormatInfo frame");
+        }
+        WireFormatInfoPeek peek = new WireFormatInfoPeek(frame);
+        peek.end = frame.length();
+        peek.pos = PROPERTIES_OFFSET;
+        if (!peek.readBoolean()) {
+            return null;
+        }
+        int length = peek.readInt();
+        peek.require(length);
+        peek.end = peek.pos + length;
+        return peek.findStringProperty(HOST);
+    }
+
+    private String findStringProperty(byte[] name) throws IOException {
+        int size = readInt();
+        if (size > MAX_PROPERTY_SIZE) {
+            throw new IOException("Primitive map is larger than the allowed size: " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            int nameLength = readUnsignedShort();
+            require(nameLength);
+            boolean found = nameLength == name.length && regionMatches(pos, name);
+            pos += nameLength;
+            if (found) {
+                return readString();
+            }
+            skipPrimitive();
+        }
+        return null;
+    }
+
+    private String readString() throws IOException {
+        byte type = readByte();
+        int start = pos;
+        switch (type) {
+            case MarshallingSupport.NULL:
+                return null;
+            case MarshallingSupport.STRING_TYPE:
+                skip(readUnsignedShort());
+                return new DataInputStream(new ByteArrayInputStream(frame.getBytes(start, pos))).readUTF();
+            case MarshallingSupport.BIG_STRING_TYPE:
+                skip(readInt());
+                return MarshallingSupport.readUTF8(new DataInputStream(new ByteArrayInputStream(frame.getBytes(start, pos))));
+            default:
+                throw new IOException("Expected a string property but got primitive type: " + type);
+        }
+    }
+
+    private void skipPrimitive() throws IOException {
+        byte type = readByte();
+        switch (type) {
+            case MarshallingSupport.NULL:
+                break;
+            case MarshallingSupport.BOOLEAN_TYPE:
+            case MarshallingSupport.BYTE_TYPE:
+                skip(1);
+                break;
+            case MarshallingSupport.CHAR_TYPE:
+            case MarshallingSupport.SHORT_TYPE:
+                skip(2);
+                break;
+            case MarshallingSupport.INTEGER_TYPE:
+            case MarshallingSupport.FLOAT_TYPE:
+                skip(4);
+                break;
+            case MarshallingSupport.LONG_TYPE:
+            case MarshallingSupport.DOUBLE_TYPE:
+                skip(8);
+                break;
+            case MarshallingSupport.STRING_TYPE:
+                skip(readUnsignedShort());
+                break;
+            case MarshallingSupport.BYTE_ARRAY_TYPE:
+            case MarshallingSupport.BIG_STRING_TYPE:
+                skip(readInt());
+                break;
+            case MarshallingSupport.MAP_TYPE:
+                int entries = readInt();
+                for (int i = 0; i < entries; i++) {
+                    skip(readUnsignedShort());
+                    skipPrimitive();
+                }
+                break;
+            case MarshallingSupport.LIST_TYPE:
+                int elements = readInt();
+                for (int i = 0; i < elements; i++) {
+                    skipPrimitive();
+                }
+                break;
+            default:
+                throw new IOException("Unknown primitive type: " + type);
+        }
+    }
+
+    private boolean regionMatches(int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (frame.getByte(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void require(int length) throws IOException {
+        if (length < 0 || pos + length > end) {
+            throw new IOException("Truncated WireFormatInfo frame");
+        }
+    }
+
+    private void skip(int length) throws IOException {
+        require(length);
+        pos += length;
+    }
+
+    private boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    private byte readByte() throws IOException {
+        require(1);
+        return frame.getByte(pos++);
+    }
+
+    private int readUnsignedShort() throws IOException {
+        require(2);
+        int value = ((frame.getByte(pos) & 0xFF) << 8) | (frame.getByte(pos + 1) & 0xFF);
+        pos += 2;
+        return value;
+    }
+
+    private int readInt() throws IOException {
+        require(4);
+        int value = frame.getInt(pos);
+        pos += 4;
+        return value;
+    }
+}
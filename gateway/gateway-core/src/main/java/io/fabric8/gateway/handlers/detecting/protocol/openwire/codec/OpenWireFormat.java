@@ -31,10 +31,12 @@ import java.nio.channels.ReadableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * 
+ * Marshals openwire commands.
+ * <p/>
+ * Instances are not thread safe as they reuse their scratch buffers and value caches between commands;
+ * use one instance per connection rather than sharing one between connections.
  */
 public final class OpenWireFormat {
 
@@ -64,8 +66,6 @@ public final class OpenWireFormat {
     private DataByteArrayOutputStream bytesOut = new DataByteArrayOutputStream();
     private DataByteArrayInputStream bytesIn = new DataByteArrayInputStream();
 
-    private AtomicBoolean receivingMessage = new AtomicBoolean(false);
-
     public OpenWireFormat() {
         this(DEFAULT_VERSION);
     }
@@ -114,7 +114,7 @@ public final class OpenWireFormat {
         return WIREFORMAT_NAME;
     }
 
-    public synchronized Buffer marshal(Object command) throws IOException {
+    public Buffer marshal(Object command) throws IOException {
 
         if (cacheEnabled) {
             runMarshallCacheEvictionSweep();
@@ -192,7 +192,7 @@ public final class OpenWireFormat {
         return sequence;
     }
 
-    public synchronized Object unmarshal(Buffer sequence) throws IOException {
+    public Object unmarshal(Buffer sequence) throws IOException {
         bytesIn.restart(sequence);
         // DataByteArrayInputStreamStream dis = new DataByteArrayInputStreamStream(new
         // ByteArrayInputStream(sequence));
@@ -219,7 +219,7 @@ public final class OpenWireFormat {
         return command;
     }
 
-    public synchronized void marshal(Object o, DataByteArrayOutputStream dataOut) throws IOException {
+    public void marshal(Object o, DataByteArrayOutputStream dataOut) throws IOException {
 
         if (cacheEnabled) {
             runMarshallCacheEvictionSweep();
@@ -366,7 +366,6 @@ public final class OpenWireFormat {
 
     public Object doUnmarshal(DataByteArrayInputStream dis) throws IOException {
         byte dataType = dis.readByte();
-        receivingMessage.set(true);
         if (dataType != NULL_TYPE) {
             DataStreamMarshaller dsm = (DataStreamMarshaller) dataMarshallers[dataType & 0xFF];
             if (dsm == null) {
@@ -380,10 +379,8 @@ public final class OpenWireFormat {
             } else {
                 dsm.looseUnmarshal(this, data, dis);
             }
-            receivingMessage.set(false);
             return data;
         } else {
-            receivingMessage.set(false);
             return null;
         }
     }
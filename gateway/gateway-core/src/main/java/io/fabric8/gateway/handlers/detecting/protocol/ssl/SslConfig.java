@@ -52,6 +52,7 @@ public class SslConfig {
 
     String disabledCypherSuites;
     String enabledCipherSuites;
+    boolean useDirectBuffers;
 
     public SslConfig() {
     }
@@ -305,4 +306,16 @@ public class SslConfig {
         this.enabledCipherSuites = enabledCipherSuites;
     }
 
+    /**
+     * Returns true if the buffers used to encrypt and decrypt the TLS records of each connection are allocated
+     * outside of the heap
+     */
+    public boolean isUseDirectBuffers() {
+        return useDirectBuffers;
+    }
+
+    public void setUseDirectBuffers(boolean useDirectBuffers) {
+        this.useDirectBuffers = useDirectBuffers;
+    }
+
 }
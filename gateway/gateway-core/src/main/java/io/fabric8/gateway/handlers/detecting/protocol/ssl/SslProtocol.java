@@ -17,6 +17,7 @@ package io.fabric8.gateway.handlers.detecting.protocol.ssl;
 
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.handlers.detecting.Protocol;
+import io.fabric8.gateway.handlers.detecting.ProtocolDetection;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,7 +25,6 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
 import static io.fabric8.gateway.handlers.detecting.protocol.Ascii.ascii;
-import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.startsWith;
 
 /**
  */
@@ -75,6 +75,21 @@ public class SslProtocol implements Protocol {
         }
     }
 
+    @Override
+    public ProtocolDetection detect(Buffer received, int scanned) {
+        if( received.length() > 0 ) {
+            byte first = received.getByte(0);
+            // either a TLS handshake record or a SSLv2 style record header
+            if( first != 0x16 && (first & 0xC0) != 0x80 ) {
+                return ProtocolDetection.NO_MATCH;
+            }
+        }
+        if( received.length() < 6 ) {
+            return ProtocolDetection.NEED_MORE;
+        }
+        return matches(received) ? ProtocolDetection.MATCH : ProtocolDetection.NO_MATCH;
+    }
+
     private boolean isSSLVerions(byte ver) {
         switch (ver) {  // Minor version
             case 0: // SSLv3
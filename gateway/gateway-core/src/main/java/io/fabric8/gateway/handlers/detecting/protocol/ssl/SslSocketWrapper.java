@@ -16,6 +16,7 @@
 package io.fabric8.gateway.handlers.detecting.protocol.ssl;
 
 import io.fabric8.gateway.SocketWrapper;
+import io.fabric8.gateway.handlers.detecting.protocol.BufferSupport;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.streams.ReadStream;
@@ -25,6 +26,7 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -35,6 +37,12 @@ import static javax.net.ssl.SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING;
  */
 public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSocketWrapper>, WriteStream<SslSocketWrapper> {
 
+    /**
+     * The number of TLS records the wrap and unwrap buffers hold so that several records are
+     * processed before their output is copied out to a vertx buffer.
+     */
+    static final int RECORDS_PER_BUFFER = 2;
+
     private Handler<Void> plainDrainHandler;
 
     public enum ClientAuth {
@@ -46,6 +54,9 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
     private SSLEngine engine;
     private Handler<Throwable> plainExceptionHandler;
     private boolean failed = false;
+    private boolean useDirectBuffers;
+    private ByteBuffer unwrapBuffer;
+    private ByteBuffer wrapBuffer;
 
     //////////////////////////////////////////////////////////////////////////
     //
@@ -81,13 +92,17 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
             }
 
             if( encryptedReadBuffer!=null && plainReadBuffer==null && !encryptedReadBufferUnderflow ) {
-                ByteBuffer input = ByteBuffer.wrap(encryptedReadBuffer.getBytes());
-                ByteBuffer output = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+                ByteBuffer input = BufferSupport.toByteBuffer(encryptedReadBuffer);
+                if( unwrapBuffer==null ) {
+                    unwrapBuffer = allocate(RECORDS_PER_BUFFER * engine.getSession().getApplicationBufferSize());
+                }
+                ByteBuffer output = unwrapBuffer;
 
                 try {
                     boolean done = false;
                     while( !done ) {
                         done = true;
+                        boolean overflow = false;
 
                         SSLEngineResult result = engine.unwrap(input, output);
                         switch( result.getStatus() ) {
@@ -107,21 +122,25 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                                 }
                                 break;
                             case BUFFER_OVERFLOW:
-                                throw new SSLException("BUFFER_OVERFLOW");
+                                if( output.position()==0 ) {
+                                    // the session needs a larger buffer than it did when we allocated ours
+                                    output = unwrapBuffer = allocate(RECORDS_PER_BUFFER * engine.getSession().getApplicationBufferSize());
+                                }
+                                overflow = true;
+                                done = false;
+                                break;
                         }
 
-                        // Lets fill the plain buffer..
-                        output.flip();
-                        if( output.remaining() > 0 ) {
+                        // Lets fill the plain buffer once we are done or another record may not fit..
+                        if( output.position() > 0 && (done || overflow || output.remaining() < engine.getSession().getApplicationBufferSize()) ) {
                             pump = true;
-                            int len = output.remaining();
+                            output.flip();
                             if( plainReadBuffer == null ) {
-                                plainReadBuffer = new Buffer(len);
+                                plainReadBuffer = new Buffer(output.remaining());
                             }
-                            plainReadBuffer.appendBytes(output.array(), output.arrayOffset()+ output.position(), len);
+                            BufferSupport.append(plainReadBuffer, output);
+                            output.clear();
                         }
-                        output.clear();
-
                     }
                 } catch (SSLException e) {
                     onFailure(e);
@@ -131,8 +150,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                     if( len > 0 ) {
                         // we need to compact the encryptedReadBuffer
                         if( input.position()!=0  ) {
-                            encryptedReadBuffer = new Buffer(len);
-                            encryptedReadBuffer.appendBytes(input.array(), input.arrayOffset()+ input.position(), len);
+                            encryptedReadBuffer = BufferSupport.append(new Buffer(len), input);
                         }
                     } else {
                         // everything was consumed.
@@ -272,13 +290,17 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
             }
 
             if( plainWriteBuffer!=null ) {
-                ByteBuffer input = ByteBuffer.wrap(plainWriteBuffer.getBytes());
-                ByteBuffer output = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+                ByteBuffer input = BufferSupport.toByteBuffer(plainWriteBuffer);
+                if( wrapBuffer==null ) {
+                    wrapBuffer = allocate(RECORDS_PER_BUFFER * engine.getSession().getPacketBufferSize());
+                }
+                ByteBuffer output = wrapBuffer;
 
                 try {
                     boolean done = false;
                     while( !done ) {
                         done = true;
+                        boolean overflow = false;
                         SSLEngineResult result = engine.wrap(input, output);
                         switch( result.getStatus() ) {
                             case OK:
@@ -295,20 +317,24 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                             case BUFFER_UNDERFLOW:
                                 break;
                             case BUFFER_OVERFLOW:
+                                if( output.position()==0 ) {
+                                    // the session needs a larger buffer than it did when we allocated ours
+                                    output = wrapBuffer = allocate(RECORDS_PER_BUFFER * engine.getSession().getPacketBufferSize());
+                                }
+                                overflow = true;
                                 done = false;
                         }
 
-                        // Lets fill the plain buffer..
-                        output.flip();
-                        int len = output.remaining();
-                        if( len > 0 ) {
+                        // Lets fill the encrypted buffer once we are done or another record may not fit..
+                        if( output.position() > 0 && (done || overflow || output.remaining() < engine.getSession().getPacketBufferSize()) ) {
                             pump = true;
+                            output.flip();
                             if( encryptedWriteBuffer == null ) {
-                                encryptedWriteBuffer = new Buffer(len);
+                                encryptedWriteBuffer = new Buffer(output.remaining());
                             }
-                            encryptedWriteBuffer.appendBytes(output.array(), output.arrayOffset()+ output.position(), len);
+                            BufferSupport.append(encryptedWriteBuffer, output);
+                            output.clear();
                         }
-                        output.clear();
                     }
                 } catch (SSLException e) {
                    onFailure(e);
@@ -318,8 +344,7 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
                     if( len > 0 ) {
                         // we need to compact the plainWriteBuffer
                         if( input.position()!=0  ) {
-                            plainWriteBuffer = new Buffer(len);
-                            plainWriteBuffer.appendBytes(input.array(), input.arrayOffset()+ input.position(), len);
+                            plainWriteBuffer = BufferSupport.append(new Buffer(len), input);
                         }
                     } else {
                         // everything was consumed.
@@ -403,6 +428,63 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
         init();
     }
 
+    /**
+     * Initializes the wrapper as a client using parameters created once with
+     * {@link #createSSLParameters(SSLContext, ClientAuth, String, String)} and shared by all the connections.
+     */
+    public void initClient(SSLContext sslContext, String host, int port, SSLParameters sslParameters) {
+        assert engine == null;
+        engine = sslContext.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        engine.setSSLParameters(sslParameters);
+        init();
+    }
+
+    /**
+     * Initializes the wrapper as a server using parameters created once with
+     * {@link #createSSLParameters(SSLContext, ClientAuth, String, String)} and shared by all the connections.
+     */
+    public void initServer(SSLContext sslContext, SSLParameters sslParameters) {
+        assert engine == null;
+        engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setSSLParameters(sslParameters);
+        init();
+    }
+
+    /**
+     * Creates the engine parameters for the given client authentication and cipher suite configuration so that
+     * the enabled cipher suites do not have to be worked out again for every connection.
+     */
+    public static SSLParameters createSSLParameters(SSLContext sslContext, ClientAuth clientAuth, String disabledCypherSuites, String enabledCipherSuites) {
+        SSLParameters answer = sslContext.getDefaultSSLParameters();
+        String[] cipherSuites;
+        if (enabledCipherSuites != null) {
+            cipherSuites = splitOnCommas(enabledCipherSuites);
+        } else {
+            cipherSuites = sslContext.getSupportedSSLParameters().getCipherSuites();
+        }
+        answer.setCipherSuites(filterCipherSuites(cipherSuites, disabledCypherSuites));
+        switch (clientAuth) {
+            case WANT: answer.setWantClientAuth(true); break;
+            case NEED: answer.setNeedClientAuth(true); break;
+            case NONE: answer.setWantClientAuth(false); break;
+        }
+        return answer;
+    }
+
+    /**
+     * Sets whether the buffers used to wrap and unwrap TLS records are allocated outside of the heap;
+     * must be called before the wrapper is initialized.
+     */
+    public void setUseDirectBuffers(boolean useDirectBuffers) {
+        this.useDirectBuffers = useDirectBuffers;
+    }
+
+    public boolean isUseDirectBuffers() {
+        return useDirectBuffers;
+    }
+
     public void initServer(SSLContext sslContext, ClientAuth clientAuth, String disabledCypherSuites, String enabledCipherSuites) {
         assert engine == null;
         engine = sslContext.createSSLEngine();
@@ -424,22 +506,33 @@ public class SslSocketWrapper extends SocketWrapper implements ReadStream<SslSoc
         }
 
         if( disabledCypherSuites!=null ) {
-            String[] disabledList = splitOnCommas(disabledCypherSuites);
-            ArrayList<String> enabled = new ArrayList<String>();
-            for (String suite : engine.getEnabledCipherSuites()) {
-                boolean add = true;
-                for (String disabled : disabledList) {
-                    if( suite.contains(disabled) ) {
-                        add = false;
-                        break;
-                    }
-                }
-                if( add ) {
-                    enabled.add(suite);
+            engine.setEnabledCipherSuites(filterCipherSuites(engine.getEnabledCipherSuites(), disabledCypherSuites));
+        }
+    }
+
+    static private String[] filterCipherSuites(String[] cipherSuites, String disabledCypherSuites) {
+        if( disabledCypherSuites==null ) {
+            return cipherSuites;
+        }
+        String[] disabledList = splitOnCommas(disabledCypherSuites);
+        ArrayList<String> enabled = new ArrayList<String>();
+        for (String suite : cipherSuites) {
+            boolean add = true;
+            for (String disabled : disabledList) {
+                if( suite.contains(disabled) ) {
+                    add = false;
+                    break;
                 }
             }
-            engine.setEnabledCipherSuites(enabled.toArray(new String[enabled.size()]));
+            if( add ) {
+                enabled.add(suite);
+            }
         }
+        return enabled.toArray(new String[enabled.size()]);
+    }
+
+    private ByteBuffer allocate(int size) {
+        return useDirectBuffers ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
     }
 
     private void init() {
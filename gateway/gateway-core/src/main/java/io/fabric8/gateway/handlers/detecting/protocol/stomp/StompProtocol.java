@@ -16,6 +16,7 @@
 package io.fabric8.gateway.handlers.detecting.protocol.stomp;
 
 import io.fabric8.gateway.handlers.detecting.Protocol;
+import io.fabric8.gateway.handlers.detecting.ProtocolDetection;
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import org.slf4j.Logger;
@@ -23,7 +24,6 @@ import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
-import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.startsWith;
 import static io.fabric8.gateway.handlers.detecting.protocol.stomp.Constants.*;
 
 /**
@@ -55,8 +55,12 @@ public class StompProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer header) {
-        return startsWith(header, 0, CONNECT.toBuffer()) ||
-               startsWith(header, 0, STOMP.toBuffer());
+        return detect(header, 0) == ProtocolDetection.MATCH;
+    }
+
+    @Override
+    public ProtocolDetection detect(Buffer received, int scanned) {
+        return ProtocolDetection.startsWith(received, 0, scanned, CONNECT.toBuffer(), STOMP.toBuffer());
     }
 
     @Override
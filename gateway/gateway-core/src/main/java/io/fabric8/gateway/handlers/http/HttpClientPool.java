@@ -0,0 +1,286 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.HttpClient;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of keep alive {@link HttpClient} instances, one per back end <code>host:port</code>, so that
+ * proxied requests reuse existing connections to the back end services rather than connecting for each request.
+ * <p/>
+ * Each client keeps at most {@link #getMaxConnections()} connections open; a client which has had no requests in
+ * flight for longer than {@link #getIdleTimeout()} milliseconds is closed and removed from the pool.
+ */
+public class HttpClientPool {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HttpClientPool.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 16;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000L;
+
+    private final Vertx vertx;
+    private final ConcurrentMap<String, Backend> backends = new ConcurrentHashMap<String, Backend>();
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private long evictionTimerId = -1;
+
+    private final AtomicLong clientsCreated = new AtomicLong();
+    private final AtomicLong clientsEvicted = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    public HttpClientPool(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientPool{" +
+                "backends=" + backends.keySet() +
+                ", maxConnections=" + maxConnections +
+                ", idleTimeout=" + idleTimeout +
+                '}';
+    }
+
+    /**
+     * Starts the periodic eviction of idle clients
+     */
+    public synchronized void start() {
+        if (evictionTimerId == -1 && idleTimeout > 0) {
+            long period = Math.max(1000L, idleTimeout / 2);
+            evictionTimerId = vertx.setPeriodic(period, new Handler<Long>() {
+                @Override
+                public void handle(Long timerId) {
+                    evictIdleClients();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the eviction timer and closes all the pooled clients
+     */
+    public synchronized void stop() {
+        if (evictionTimerId != -1) {
+            vertx.cancelTimer(evictionTimerId);
+            evictionTimerId = -1;
+        }
+        for (Backend backend : backends.values()) {
+            backend.close();
+        }
+        backends.clear();
+    }
+
+    /**
+     * Leases the pooled client for the host and port of the given URL; the returned lease must be
+     * {@link Lease#release()}d once the proxied exchange has completed.
+     */
+    public Lease acquire(URL url) {
+        String key = url.getHost() + ":" + getPort(url);
+        requests.incrementAndGet();
+        while (true) {
+            Backend backend = backends.get(key);
+            if (backend == null) {
+                Backend created = new Backend(key, createClient(url));
+                backend = backends.putIfAbsent(key, created);
+                if (backend == null) {
+                    backend = created;
+                } else {
+                    created.close();
+                }
+            }
+            if (backend.lease()) {
+                return new Lease(backend);
+            }
+            // the backend was evicted concurrently so lets remove it and try again
+            backends.remove(key, backend);
+        }
+    }
+
+    /**
+     * Closes any clients which have had no requests in flight for longer than the idle timeout
+     */
+    public void evictIdleClients() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Backend> entry : backends.entrySet()) {
+            Backend backend = entry.getValue();
+            if (backend.closeIfIdle(now, idleTimeout)) {
+                backends.remove(entry.getKey(), backend);
+                clientsEvicted.incrementAndGet();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Evicted idle HTTP client for " + entry.getKey());
+                }
+            }
+        }
+    }
+
+    protected HttpClient createClient(URL url) {
+        HttpClient client = vertx.createHttpClient();
+        client.setHost(url.getHost());
+        client.setPort(getPort(url));
+        client.setKeepAlive(true);
+        client.setMaxPoolSize(maxConnections);
+        clientsCreated.incrementAndGet();
+        return client;
+    }
+
+    protected static int getPort(URL url) {
+        int port = url.getPort();
+        return port != -1 ? port : url.getDefaultPort();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the number of back ends which currently have a pooled client
+     */
+    public int getBackendCount() {
+        return backends.size();
+    }
+
+    /**
+     * Returns the number of requests currently in flight across all the back ends
+     */
+    public int getRequestsInFlight() {
+        int answer = 0;
+        for (Backend backend : backends.values()) {
+            answer += backend.getInFlight();
+        }
+        return answer;
+    }
+
+    public long getClientsCreated() {
+        return clientsCreated.get();
+    }
+
+    public long getClientsEvicted() {
+        return clientsEvicted.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * A lease of a pooled client for a single proxied exchange
+     */
+    public static class Lease {
+        private final Backend backend;
+        private boolean released;
+
+        Lease(Backend backend) {
+            this.backend = backend;
+        }
+
+        public HttpClient getClient() {
+            return backend.client;
+        }
+
+        /**
+         * Returns the client to the pool; calling this method more than once has no effect
+         *
+         * @return true if this call released the lease or false if it had already been released
+         */
+        public synchronized boolean release() {
+            if (!released) {
+                released = true;
+                backend.release();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static class Backend {
+        private final String key;
+        private final HttpClient client;
+        private int inFlight;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean closed;
+
+        Backend(String key, HttpClient client) {
+            this.key = key;
+            this.client = client;
+        }
+
+        @Override
+        public String toString() {
+            return "Backend{" + key + "}";
+        }
+
+        synchronized boolean lease() {
+            if (closed) {
+                return false;
+            }
+            inFlight++;
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized void release() {
+            inFlight--;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        synchronized boolean closeIfIdle(long now, long idleTimeout) {
+            if (!closed && inFlight <= 0 && now - lastUsed > idleTimeout) {
+                close();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    client.close();
+                } catch (Exception e) {
+                    LOG.debug("Failed to close HTTP client for " + key + ". " + e, e);
+                }
+            }
+        }
+    }
+}
@@ -15,7 +15,8 @@
  */
 package io.fabric8.gateway.handlers.http;
 
-import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.CallDetailRecords;
+import io.fabric8.gateway.support.PathPrefixIndex;
 
 import java.net.InetSocketAddress;
 import java.util.Map;
@@ -43,6 +44,12 @@ public interface HttpGateway {
      */
     Map<String, MappedServices> getMappedServices();
 
+    /**
+     * Returns an index of the currently mapped services so that the services for a request URI can be found
+     * by longest URI prefix match
+     */
+    PathPrefixIndex<MappedServices> getMappedServicesIndex();
+
     /**
      * Returns true if the mapping index is enabled which by default
      * returns a JSON document describing the mapping of URI prefixes to services
@@ -55,7 +62,12 @@ public interface HttpGateway {
     public InetSocketAddress getLocalAddress();
     
     /**
-     * Adds a CallDetailRecord for reporting purposes
+     * Returns the recent calls and latency histograms which each request is recorded in for reporting purposes
+     */
+    public CallDetailRecords getCallDetailRecords();
+
+    /**
+     * Returns the pool of keep alive clients used to proxy requests to the back end services
      */
-    public void addCallDetailRecord(CallDetailRecord cdr);
+    public HttpClientPool getHttpClientPool();
 }
@@ -23,13 +23,13 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.VoidHandler;
 import org.vertx.java.core.buffer.Buffer;
-import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.HttpClientRequest;
 import org.vertx.java.core.http.HttpClientResponse;
 import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.HttpServerResponse;
 
-import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.CallDetailRecords;
+import io.fabric8.gateway.support.PathPrefixIndex;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -38,9 +38,10 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -61,7 +62,7 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
 
     @Override
     public void handle(final HttpServerRequest request) {
-    	long callStart = System.nanoTime();
+    	final long callStart = System.nanoTime();
         String uri = request.uri();
         String uri2 = normalizeUri(uri);
 
@@ -71,12 +72,16 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
 
         // lets map the request URI to map to the service URI and then the renaming URI
         // using mapping rules...
-        HttpClient client = null;
+        HttpClientPool.Lease lease = null;
+        MappedServices mappedServices = null;
         String remaining = null;
         String prefix = null;
+        String matchedPathPrefix = null;
         String proxyServiceUrl = null;
         String reverseServiceUrl = null;
-        Map<String, MappedServices> mappingRules = httpGateway.getMappedServices();
+        PathPrefixIndex<MappedServices> mappingIndex = httpGateway.getMappedServicesIndex();
+        Map<String, MappedServices> mappingRules = mappingIndex.getPrefixes();
+        final CallDetailRecords callDetailRecords = httpGateway.getCallDetailRecords();
         try {
             if (isMappingIndexRequest(request)) {
                 // lets return the JSON of all the results
@@ -85,15 +90,12 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                 response.headers().set("ContentType", "application/json");
                 response.end(json);
                 response.setStatusCode(200);
+                callDetailRecords.record(null, null, System.nanoTime() - callStart, null);
             } else {
-                MappedServices mappedServices = null;
                 URL clientURL = null;
-                Set<Map.Entry<String, MappedServices>> entries = mappingRules.entrySet();
-                for (Map.Entry<String, MappedServices> entry : entries) {
-                    String path = entry.getKey();
-                    mappedServices = entry.getValue();
+                for (String pathPrefix : findPathPrefixes(mappingIndex, uri, uri2)) {
+                    mappedServices = mappingIndex.get(pathPrefix);
 
-                    String pathPrefix = path;
                     boolean uriMatches = uri.startsWith(pathPrefix);
                     boolean uri2Matches = uri2 != null && uri2.startsWith(pathPrefix);
                     if (uriMatches || uri2Matches) {
@@ -112,7 +114,9 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                             // lets create a client for this request...
                             try {
                                 clientURL = new URL(proxyServiceUrl);
-                                client = createClient(clientURL);
+                                lease = httpGateway.getHttpClientPool().acquire(clientURL);
+                                mappedServices.requestStarted(proxyServiceUrl);
+                                matchedPathPrefix = pathPrefix;
                                 prefix = clientURL.getPath();
                                 reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
                                 if (reverseServiceUrl.endsWith("/")) {
@@ -126,7 +130,7 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     }
                 }
 
-                if (client != null) {
+                if (lease != null) {
                     String servicePath = prefix != null ? prefix : "";
                     // we should usually end the prefix path with a slash for web apps at least
                     if (servicePath.length() > 0 && !servicePath.endsWith("/")) {
@@ -137,9 +141,20 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     }
 
                     LOG.info("Proxying request " + uri + " to service path: " + servicePath + " on service: " + proxyServiceUrl + " reverseServiceUrl: " + reverseServiceUrl);
-                    final HttpClient finalClient = client;
+                    final HttpClientPool.Lease finalLease = lease;
+                    final MappedServices finalMappedServices = mappedServices;
+                    final String finalProxyServiceUrl = proxyServiceUrl;
+                    final ProxyCompletion completion = new ProxyCompletion(lease, mappedServices, proxyServiceUrl, matchedPathPrefix, callDetailRecords, callStart);
+                    final long proxyStart = System.nanoTime();
+                    request.response().closeHandler(new VoidHandler() {
+                        public void handle() {
+                            completion.complete("Client connection closed");
+                        }
+                    });
                     Handler<HttpClientResponse> responseHandler = new Handler<HttpClientResponse>() {
                         public void handle(HttpClientResponse clientResponse) {
+                            completion.setResponseProxied();
+                            finalMappedServices.recordLatency(finalProxyServiceUrl, System.nanoTime() - proxyStart);
                             if (LOG.isDebugEnabled()) {
                                 LOG.debug("Proxying response: " + clientResponse.statusCode());
                             }
@@ -157,18 +172,45 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                             clientResponse.endHandler(new VoidHandler() {
                                 public void handle() {
                                     request.response().end();
-                                    finalClient.close();
+                                    completion.complete(null);
+                                }
+                            });
+                            clientResponse.exceptionHandler(new Handler<Throwable>() {
+                                public void handle(Throwable e) {
+                                    LOG.warn("Failed to proxy response from " + finalLease.getClient().getHost() + ":" + finalLease.getClient().getPort() + ". " + e, e);
+                                    completion.complete(e.toString());
+                                    request.response().close();
                                 }
                             });
                         }
                     };
                     if (mappedServices != null) {
                         ProxyMappingDetails proxyMappingDetails = new ProxyMappingDetails(proxyServiceUrl, reverseServiceUrl, servicePath);
-                        responseHandler = mappedServices.wrapResponseHandlerInPolicies(request, responseHandler, proxyMappingDetails);
+                        final Handler<HttpClientResponse> policyHandler = mappedServices.wrapResponseHandlerInPolicies(request, responseHandler, proxyMappingDetails);
+                        responseHandler = new Handler<HttpClientResponse>() {
+                            public void handle(HttpClientResponse clientResponse) {
+                                try {
+                                    policyHandler.handle(clientResponse);
+                                } finally {
+                                    if (!completion.isResponseProxied()) {
+                                        // a policy answered the request itself so the proxied exchange is over
+                                        completion.complete(null);
+                                    }
+                                }
+                            }
+                        };
                     }
-                    final HttpClientRequest clientRequest = client.request(request.method(), servicePath, responseHandler);
+                    final HttpClientRequest clientRequest = lease.getClient().request(request.method(), servicePath, responseHandler);
                     clientRequest.headers().set(request.headers());
                     clientRequest.setChunked(true);
+                    clientRequest.exceptionHandler(new Handler<Throwable>() {
+                        public void handle(Throwable e) {
+                            LOG.warn("Failed to proxy request to " + finalLease.getClient().getHost() + ":" + finalLease.getClient().getPort() + ". " + e, e);
+                            completion.complete(e.toString());
+                            request.response().setStatusCode(502);
+                            request.response().close();
+                        }
+                    });
                     request.dataHandler(new Handler<Buffer>() {
                         public void handle(Buffer data) {
                             if (LOG.isDebugEnabled()) {
@@ -191,14 +233,15 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     LOG.info("Could not find matching proxy path for " + uri + " from paths: " + mappingRules.keySet());
                     request.response().setStatusCode(404);
                     request.response().close();
+                    callDetailRecords.record(null, null, System.nanoTime() - callStart, null);
                 }
             }
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, null);
-            httpGateway.addCallDetailRecord(cdr);
         } catch (Throwable e) {
             LOG.error("Caught: " + e, e);
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, new Date() + ":" + e.getMessage());
-            httpGateway.addCallDetailRecord(cdr);
+            if (lease != null && lease.release() && mappedServices != null) {
+                mappedServices.requestCompleted(proxyServiceUrl);
+            }
+            callDetailRecords.record(matchedPathPrefix, proxyServiceUrl, System.nanoTime() - callStart, e.toString());
             request.response().setStatusCode(404);
             StringWriter buffer = new StringWriter();
             e.printStackTrace(new PrintWriter(buffer));
@@ -207,6 +250,47 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         }
     }
 
+    /**
+     * Releases the pooled client, notifies the load balancer and records the call exactly once however the
+     * proxied exchange finishes; the response may end, either connection may fail or a policy may answer itself.
+     */
+    static class ProxyCompletion {
+        private final HttpClientPool.Lease lease;
+        private final MappedServices mappedServices;
+        private final String serviceUrl;
+        private final String pathPrefix;
+        private final CallDetailRecords callDetailRecords;
+        private final long callStart;
+        private volatile boolean responseProxied;
+
+        ProxyCompletion(HttpClientPool.Lease lease, MappedServices mappedServices, String serviceUrl, String pathPrefix, CallDetailRecords callDetailRecords, long callStart) {
+            this.lease = lease;
+            this.mappedServices = mappedServices;
+            this.serviceUrl = serviceUrl;
+            this.pathPrefix = pathPrefix;
+            this.callDetailRecords = callDetailRecords;
+            this.callStart = callStart;
+        }
+
+        /**
+         * Completes the exchange with the given error or null if it succeeded; only the first call has any effect
+         */
+        void complete(String error) {
+            if (lease.release()) {
+                mappedServices.requestCompleted(serviceUrl);
+                callDetailRecords.record(pathPrefix, serviceUrl, System.nanoTime() - callStart, error);
+            }
+        }
+
+        void setResponseProxied() {
+            responseProxied = true;
+        }
+
+        boolean isResponseProxied() {
+            return responseProxied;
+        }
+    }
+
     protected String mappingRulesToJson(Map<String, MappedServices> rules) throws IOException {
         Map<String, Collection<String>> data = new HashMap<String, Collection<String>>();
 
@@ -220,6 +304,34 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         return mapper.writeValueAsString(data);
     }
 
+    /**
+     * Returns the mapped URI prefixes matching either the request URI or its normalized form, longest prefix first
+     */
+    protected static List<String> findPathPrefixes(PathPrefixIndex<MappedServices> mappingIndex, String uri, String uri2) {
+        List<String> answer = mappingIndex.findPrefixes(uri);
+        if (uri2 != null) {
+            List<String> normalized = mappingIndex.findPrefixes(uri2);
+            if (!normalized.isEmpty()) {
+                List<String> merged = new ArrayList<String>(answer.size() + normalized.size());
+                int i = 0;
+                int j = 0;
+                while (i < answer.size() || j < normalized.size()) {
+                    String next;
+                    if (j >= normalized.size() || (i < answer.size() && answer.get(i).length() >= normalized.get(j).length())) {
+                        next = answer.get(i++);
+                    } else {
+                        next = normalized.get(j++);
+                    }
+                    if (!merged.contains(next)) {
+                        merged.add(next);
+                    }
+                }
+                answer = merged;
+            }
+        }
+        return answer;
+    }
+
     protected boolean isMappingIndexRequest(HttpServerRequest request) {
         if (httpGateway == null || !httpGateway.isEnableIndex()) {
             return false;
@@ -228,15 +340,6 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         return uri == null || uri.length() == 0 || uri.equals("/");
     }
 
-    protected HttpClient createClient(URL url) throws MalformedURLException {
-        // lets create a client
-        HttpClient client = vertx.createHttpClient();
-        client.setHost(url.getHost());
-        client.setPort(url.getPort());
-        return client;
-
-    }
-
     /**
      * Normalizes the passed in URI value by appending a '/' to the path if necessary.
      *
@@ -18,6 +18,7 @@ package io.fabric8.gateway.handlers.http;
 import io.fabric8.gateway.ServiceDetails;
 import io.fabric8.gateway.handlers.http.policy.ReverseUriPolicy;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.LoadBalancers;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.http.HttpClientResponse;
 import org.vertx.java.core.http.HttpServerRequest;
@@ -56,6 +57,27 @@ public class MappedServices {
         return loadBalancer.choose(serviceUrls, new HttpClientRequestFacade(request));
     }
 
+    /**
+     * Notifies the load balancer that a request has been proxied to the chosen service URL
+     */
+    public void requestStarted(String serviceUrl) {
+        LoadBalancers.requestStarted(loadBalancer, serviceUrl);
+    }
+
+    /**
+     * Notifies the load balancer that the service URL has started to respond to a request
+     */
+    public void recordLatency(String serviceUrl, long latencyNanos) {
+        LoadBalancers.recordLatency(loadBalancer, serviceUrl, latencyNanos);
+    }
+
+    /**
+     * Notifies the load balancer that a request proxied to the service URL has completed or failed
+     */
+    public void requestCompleted(String serviceUrl) {
+        LoadBalancers.requestCompleted(loadBalancer, serviceUrl);
+    }
+
     /**
      * Provides a hook so we can wrap a client response handler in a policy such
      * as to reverse the URIs {@link io.fabric8.gateway.handlers.http.policy.ReverseUriPolicy} or
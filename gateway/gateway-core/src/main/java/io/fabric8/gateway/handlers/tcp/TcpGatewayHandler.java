@@ -19,6 +19,7 @@ import io.fabric8.common.util.Objects;
 import io.fabric8.common.util.Strings;
 import io.fabric8.gateway.ServiceDetails;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.LoadBalancers;
 import io.fabric8.gateway.ServiceMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +34,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A TCP gateway implementation
@@ -63,7 +65,7 @@ public class TcpGatewayHandler implements Handler<NetSocket> {
         if (path != null) {
             List<ServiceDetails> services = serviceMap.getServices(path);
             if (!services.isEmpty()) {
-                ServiceDetails serviceDetails = serviceLoadBalancer.choose(services, requestFacade);
+                final ServiceDetails serviceDetails = serviceLoadBalancer.choose(services, requestFacade);
                 if (serviceDetails != null) {
                     List<String> urlStrings = serviceDetails.getServices();
                     for (String urlString : urlStrings) {
@@ -74,17 +76,37 @@ public class TcpGatewayHandler implements Handler<NetSocket> {
                                 //URL url = new URL(urlString);
                                 String urlProtocol = uri.getScheme();
                                 if (Objects.equal(protocol, urlProtocol)) {
+                                    final long connectStart = System.nanoTime();
                                     Handler<AsyncResult<NetSocket>> handler = new Handler<AsyncResult<NetSocket>>() {
                                         public void handle(final AsyncResult<NetSocket> asyncSocket) {
+                                            if (!asyncSocket.succeeded()) {
+                                                LoadBalancers.requestCompleted(serviceLoadBalancer, serviceDetails);
+                                                socket.close();
+                                                return;
+                                            }
+                                            LoadBalancers.recordLatency(serviceLoadBalancer, serviceDetails, System.nanoTime() - connectStart);
                                             NetSocket clientSocket = asyncSocket.result();
+                                            final AtomicBoolean closed = new AtomicBoolean();
+                                            Handler<Void> closeHandler = new Handler<Void>() {
+                                                @Override
+                                                public void handle(Void event) {
+                                                    if (closed.compareAndSet(false, true)) {
+                                                        LoadBalancers.requestCompleted(serviceLoadBalancer, serviceDetails);
+                                                    }
+                                                }
+                                            };
+                                            clientSocket.closeHandler(closeHandler);
+                                            socket.closeHandler(closeHandler);
                                             Pump.createPump(clientSocket, socket).start();
                                             Pump.createPump(socket, clientSocket).start();
                                         }
                                     };
+                                    LoadBalancers.requestStarted(serviceLoadBalancer, serviceDetails);
                                     client = createClient(socket, uri, handler);
                                     break;
                                 }
                             } catch (MalformedURLException e) {
+                                LoadBalancers.requestCompleted(serviceLoadBalancer, serviceDetails);
                                 LOG.warn("Failed to parse URL: " + urlString + ". " + e, e);
                             } catch (URISyntaxException e) {
                                 LOG.warn("Failed to parse URI: " + urlString + ". " + e, e);
@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import io.fabric8.gateway.support.LatencyHistogram;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CallDetailRecordsTest {
+
+    @Test
+    public void testRecentCallsAreBounded() {
+        CallDetailRecords records = new CallDetailRecords(6);
+        for (int i = 0; i < 20; i++) {
+            records.record("/foo", "http://localhost:8181/foo", i, null);
+        }
+        List<CallDetailRecord> calls = records.getRecentCalls();
+        assertEquals(6, calls.size());
+        assertEquals(19, calls.get(0).getCallTimeNanos());
+        assertEquals(14, calls.get(5).getCallTimeNanos());
+        assertEquals("/foo", calls.get(0).getPathPrefix());
+        assertEquals(20, records.getCount());
+        assertEquals(9, records.getAverageCallTimeNanos());
+        assertNull(records.getLastError());
+    }
+
+    @Test
+    public void testLatenciesPerPrefixAndService() {
+        CallDetailRecords records = new CallDetailRecords();
+        for (int i = 1; i <= 100; i++) {
+            records.record("/foo", "http://localhost:8181/foo", i * 1000, null);
+            records.record("/bar", "http://localhost:8182/bar", i * 1000000, null);
+        }
+        records.record(null, null, 5000, null);
+        records.record("/bar", "http://localhost:8182/bar", 1000, "java.net.ConnectException: refused");
+
+        Map<String, LatencyHistogram> prefixes = records.getPrefixLatencies();
+        assertEquals(2, prefixes.size());
+        assertEquals(100, prefixes.get("/foo").getCount());
+        assertEquals(101, prefixes.get("/bar").getCount());
+        long p99 = prefixes.get("/bar").getValueAtPercentile(99);
+        assertTrue("p99 " + p99, p99 >= 99000000 && p99 <= 102000000);
+        assertEquals(101, records.getServiceLatencies().get("http://localhost:8182/bar").getCount());
+
+        assertEquals(202, records.getCount());
+        assertEquals(1, records.getErrorCount());
+        assertEquals("java.net.ConnectException: refused", records.getLastError().getError());
+        assertEquals("http://localhost:8182/bar", records.getLastCall().getServiceUrl());
+
+        records.reset();
+        assertEquals(0, records.getCount());
+        assertEquals(0, records.getRecentCalls().size());
+        assertTrue(records.getPrefixLatencies().isEmpty());
+    }
+
+    @Test
+    public void testHistogramsAreBoundedAndPruned() {
+        CallDetailRecords records = new CallDetailRecords(16, 3);
+        for (int i = 0; i < 10; i++) {
+            records.record("/foo" + i, "http://localhost:818" + i + "/foo", 1000, null);
+        }
+        assertEquals(3, records.getPrefixLatencies().size());
+        assertEquals(3, records.getServiceLatencies().size());
+        assertEquals(10, records.getCount());
+
+        records.retain(Arrays.asList("/foo1"), Arrays.asList("http://localhost:8181/foo"));
+        assertEquals(Collections.singleton("/foo1"), records.getPrefixLatencies().keySet());
+        assertEquals(Collections.singleton("http://localhost:8181/foo"), records.getServiceLatencies().keySet());
+    }
+
+    @Test
+    public void testLastErrorOutlivesRecentCalls() {
+        CallDetailRecords records = new CallDetailRecords(4);
+        records.record("/foo", "http://localhost:8181/foo", 1000, "java.net.ConnectException: refused");
+        for (int i = 0; i < 10; i++) {
+            records.record("/foo", "http://localhost:8181/foo", 1000, null);
+        }
+        assertEquals("java.net.ConnectException: refused", records.getLastError().getError());
+
+        records.reset();
+        assertNull(records.getLastError());
+    }
+}
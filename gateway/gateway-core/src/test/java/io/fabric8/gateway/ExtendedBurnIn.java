@@ -32,6 +32,7 @@ import io.fabric8.gateway.handlers.http.*;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.loadbalancer.LoadBalancers;
 import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
+import io.fabric8.gateway.support.PathPrefixIndex;
 import org.apache.activemq.apollo.broker.Broker;
 import org.apache.activemq.apollo.dto.AcceptingConnectorDTO;
 import org.apache.activemq.apollo.dto.BrokerDTO;
@@ -200,6 +201,8 @@ public class ExtendedBurnIn {
     final HashMap<String, MappedServices> mappedServices = new HashMap<String, MappedServices>();
 
     HttpGatewayServer httpGatewayServer;
+    HttpClientPool httpClientPool;
+    CallDetailRecords callDetailRecords = new CallDetailRecords();
     public HttpGatewayServer startHttpGateway() {
 
 
@@ -214,6 +217,8 @@ public class ExtendedBurnIn {
         }
 
         DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
+        httpClientPool = new HttpClientPool(vertx);
+        httpClientPool.start();
         HttpGatewayHandler handler = new HttpGatewayHandler(vertx, new HttpGateway(){
             @Override
             public void addMappingRuleConfiguration(HttpMappingRule mappingRule) {
@@ -228,6 +233,11 @@ public class ExtendedBurnIn {
                 return mappedServices;
             }
 
+            @Override
+            public PathPrefixIndex<MappedServices> getMappedServicesIndex() {
+                return new PathPrefixIndex<MappedServices>(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -238,9 +248,15 @@ public class ExtendedBurnIn {
                 return new InetSocketAddress("0.0.0.0", 8080);
             }
 
-			@Override
-			public void addCallDetailRecord(CallDetailRecord cdr) {
-			}
+            @Override
+            public CallDetailRecords getCallDetailRecords() {
+                return callDetailRecords;
+            }
+
+            @Override
+            public HttpClientPool getHttpClientPool() {
+                return httpClientPool;
+            }
         });
         websocketHandler.setPathPrefix("");
         httpGatewayServer = new HttpGatewayServer(vertx, handler, websocketHandler, 8080);
@@ -255,6 +271,10 @@ public class ExtendedBurnIn {
             httpGatewayServer.destroy();
             httpGatewayServer = null;
         }
+        if( httpClientPool!=null ) {
+            httpClientPool.stop();
+            httpClientPool = null;
+        }
     }
 
     public DetectingGateway startDetectingGateway() {
@@ -17,13 +17,16 @@ package io.fabric8.gateway;
 
 
 import io.fabric8.gateway.handlers.detecting.FutureHandler;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
 import io.fabric8.gateway.handlers.http.HttpGateway;
 import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
 import io.fabric8.gateway.handlers.http.HttpMappingRule;
 import io.fabric8.gateway.handlers.http.MappedServices;
+import io.fabric8.gateway.loadbalancer.LeastConnectionsLoadBalancer;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
+import io.fabric8.gateway.support.PathPrefixIndex;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -42,8 +45,10 @@ import java.io.File;
 import java.net.InetSocketAddress;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  */
@@ -99,6 +104,8 @@ public class HttpGatewayTest {
     final HashMap<String, MappedServices> mappedServices = new HashMap<String, MappedServices>();
 
     HttpGatewayServer httpGatewayServer;
+    HttpClientPool httpClientPool;
+    CallDetailRecords callDetailRecords = new CallDetailRecords();
     public HttpGatewayServer startHttpGateway() {
 
 
@@ -112,6 +119,8 @@ public class HttpGatewayTest {
             mappedServices.put("/hello/world", new MappedServices("http://localhost:8181", serviceDetails, loadBalancer, false));
         }
 
+        httpClientPool = new HttpClientPool(vertx);
+        httpClientPool.start();
         HttpGatewayHandler handler = new HttpGatewayHandler(vertx, new HttpGateway(){
             @Override
             public void addMappingRuleConfiguration(HttpMappingRule mappingRule) {
@@ -126,6 +135,11 @@ public class HttpGatewayTest {
                 return mappedServices;
             }
 
+            @Override
+            public PathPrefixIndex<MappedServices> getMappedServicesIndex() {
+                return new PathPrefixIndex<MappedServices>(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -136,9 +150,15 @@ public class HttpGatewayTest {
                 return new InetSocketAddress("0.0.0.0", 8080);
             }
 
-			@Override
-			public void addCallDetailRecord(CallDetailRecord cdr) {
-			}
+            @Override
+            public CallDetailRecords getCallDetailRecords() {
+                return callDetailRecords;
+            }
+
+            @Override
+            public HttpClientPool getHttpClientPool() {
+                return httpClientPool;
+            }
         });
         httpGatewayServer = new HttpGatewayServer(vertx, handler, null, 8080);
         httpGatewayServer.setHost("localhost");
@@ -152,6 +172,10 @@ public class HttpGatewayTest {
             httpGatewayServer.destroy();
             httpGatewayServer = null;
         }
+        if( httpClientPool!=null ) {
+            httpClientPool.stop();
+            httpClientPool = null;
+        }
     }
 
     protected File basedir() {
@@ -200,4 +224,54 @@ public class HttpGatewayTest {
         stopVertx();
     }
 
+    /**
+     * Validates that the pooled client is given back when the back end fails part way through a response
+     */
+    @Test
+    public void testLeaseReleasedWhenResponseBreaksMidStream() throws Exception {
+        HttpServer brokenServer = vertx.createHttpServer();
+        brokenServer.requestHandler(new Handler<HttpServerRequest>() {
+            @Override
+            public void handle(HttpServerRequest request) {
+                request.response().setChunked(true);
+                request.response().write("partial");
+                request.response().close();
+            }
+        });
+        FutureHandler<AsyncResult<HttpServer>> listening = new FutureHandler<>();
+        brokenServer.listen(8182, "0.0.0.0", listening);
+        listening.await();
+        try {
+            ServiceDTO serviceDetails = new ServiceDTO();
+            serviceDetails.setContainer("local");
+            serviceDetails.setVersion("1");
+            LeastConnectionsLoadBalancer loadBalancer = new LeastConnectionsLoadBalancer();
+            mappedServices.put("/broken", new MappedServices("http://localhost:8182", serviceDetails, loadBalancer, false));
+            startHttpGateway();
+
+            vertx.createHttpClient().setHost("localhost").setPort(8080).get("/broken", new Handler<HttpClientResponse>() {
+                @Override
+                public void handle(HttpClientResponse event) {
+                }
+            }).end();
+
+            assertTrue("the lease was not released", waitForLeasesReleased(1));
+            assertEquals(0, httpClientPool.getRequestsInFlight());
+            assertEquals(0, loadBalancer.getServiceLoad("http://localhost:8182").getOutstanding());
+        } finally {
+            brokenServer.close();
+        }
+    }
+
+    protected boolean waitForLeasesReleased(long requests) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (System.currentTimeMillis() < deadline) {
+            if (httpClientPool.getRequests() >= requests && httpClientPool.getRequestsInFlight() == 0) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
 }
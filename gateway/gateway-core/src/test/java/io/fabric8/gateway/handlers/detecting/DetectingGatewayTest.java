@@ -244,6 +244,9 @@ public class DetectingGatewayTest {
         assertConnectedToBroker(0);
         assertEquals(1, gateway.getSuccessfulConnectionAttempts());
         assertEquals(1, gateway.getConnectedClients().length);
+        assertEquals(1, gateway.getConnectedClientStatistics().length);
+        assertTrue("Should have counted the bytes sent by the client", gateway.getBytesFromClients() > 0);
+        assertTrue("Should have counted the bytes sent by the broker", gateway.getBytesToClients() > 0);
 
         connection.close();
     }
@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.handlers.detecting.protocol.mqtt.MqttProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.OpenwireProtocol;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+import static io.fabric8.gateway.handlers.detecting.ProtocolDetection.MATCH;
+import static io.fabric8.gateway.handlers.detecting.ProtocolDetection.NEED_MORE;
+import static io.fabric8.gateway.handlers.detecting.ProtocolDetection.NO_MATCH;
+import static org.junit.Assert.assertEquals;
+
+public class ProtocolDetectionTest {
+
+    @Test
+    public void testStartsWithIsIncremental() {
+        Buffer magic = new Buffer("ActiveMQ");
+        Buffer received = new Buffer(new byte[]{0, 0, 0, 0, 1});
+        assertEquals(NEED_MORE, ProtocolDetection.startsWith(received, 5, 0, magic));
+        received.appendString("Activ");
+        assertEquals(NEED_MORE, ProtocolDetection.startsWith(received, 5, 5, magic));
+        received.appendString("eMQ");
+        assertEquals(MATCH, ProtocolDetection.startsWith(received, 5, 10, magic));
+        assertEquals(NO_MATCH, ProtocolDetection.startsWith(new Buffer("\0\0\0\0\1Stomp"), 5, 0, magic));
+    }
+
+    @Test
+    public void testStartsWithSeveralMagics() {
+        Buffer connect = new Buffer("CONNECT");
+        Buffer stomp = new Buffer("STOMP");
+        assertEquals(NEED_MORE, ProtocolDetection.startsWith(new Buffer("S"), 0, 0, connect, stomp));
+        assertEquals(MATCH, ProtocolDetection.startsWith(new Buffer("STOMP\n"), 0, 1, connect, stomp));
+        assertEquals(NO_MATCH, ProtocolDetection.startsWith(new Buffer("SEND"), 0, 1, connect, stomp));
+    }
+
+    @Test
+    public void testOpenwireDetection() {
+        OpenwireProtocol protocol = new OpenwireProtocol();
+        Buffer received = new Buffer(new byte[]{0, 0, 0, 0, 1, 'A', 'c'});
+        assertEquals(NEED_MORE, protocol.detect(received, 0));
+        received.appendString("tiveMQ");
+        assertEquals(MATCH, protocol.detect(received, 7));
+        assertEquals(NO_MATCH, protocol.detect(new Buffer("GET / HTTP/1.1\r\n"), 0));
+    }
+
+    @Test
+    public void testMqttDetection() {
+        MqttProtocol protocol = new MqttProtocol();
+        // a CONNECT packet with a two byte remaining length
+        Buffer received = new Buffer(new byte[]{0x10, (byte) 0x80});
+        assertEquals(NEED_MORE, protocol.detect(received, 0));
+        received.appendBytes(new byte[]{0x01, 0x00, 0x04, 'M', 'Q', 'T', 'T', 0x04});
+        assertEquals(MATCH, protocol.detect(received, 2));
+        assertEquals(NO_MATCH, protocol.detect(new Buffer(new byte[]{0x20, 0x02, 0x00, 0x00}), 0));
+        assertEquals(NO_MATCH, protocol.detect(new Buffer(new byte[]{0x10, 0x0c, 0x00, 0x04, 'A', 'M', 'Q', 'P'}), 0));
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire;
+
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.codec.OpenWireFormat;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.ActiveMQQueue;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WireFormatInfoPeekTest {
+
+    @Test
+    public void testPeekHost() throws Exception {
+        WireFormatInfo info = new WireFormatInfo();
+        info.setVersion(10);
+        info.setProperty("CacheSize", 1024);
+        info.setProperty("TightEncodingEnabled", Boolean.TRUE);
+        info.setProperty("MaxInactivityDuration", 30000L);
+        info.setHost("broker.example.com");
+        info.setProperty("StackTraceEnabled", Boolean.TRUE);
+        Buffer frame = marshal(info);
+
+        assertTrue(WireFormatInfoPeek.isWireFormatInfo(frame));
+        assertEquals(10, WireFormatInfoPeek.getVersion(frame));
+        assertEquals("broker.example.com", WireFormatInfoPeek.getHost(frame));
+    }
+
+    @Test
+    public void testPeekWithoutHost() throws Exception {
+        WireFormatInfo info = new WireFormatInfo();
+        info.setVersion(1);
+        info.setProperty("CacheEnabled", Boolean.FALSE);
+        assertNull(WireFormatInfoPeek.getHost(marshal(info)));
+        assertNull(WireFormatInfoPeek.getHost(marshal(new WireFormatInfo())));
+    }
+
+    @Test
+    public void testPeekRejectsOtherFrames() throws Exception {
+        Buffer frame = marshal(new ActiveMQQueue("TEST"));
+        assertFalse(WireFormatInfoPeek.isWireFormatInfo(frame));
+        try {
+            WireFormatInfoPeek.getHost(frame);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testPeekRejectsTruncatedFrames() throws Exception {
+        WireFormatInfo info = new WireFormatInfo();
+        info.setHost("broker.example.com");
+        Buffer frame = marshal(info);
+        try {
+            WireFormatInfoPeek.getHost(frame.getBuffer(0, frame.length() - 4));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static Buffer marshal(Object command) throws IOException {
+        return new Buffer(new OpenWireFormat(1).marshal(command).toByteArray());
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.openwire.codec;
+
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.WireFormatInfoPeek;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.ActiveMQQueue;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.ActiveMQTextMessage;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.ConnectionId;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.ConnectionInfo;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.ConsumerId;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.MessageAck;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.MessageId;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.ProducerId;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.SessionId;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
+import org.fusesource.hawtbuf.Buffer;
+import org.fusesource.hawtbuf.UTF8Buffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the v1 marshallers by round tripping typical commands through {@link OpenWireFormat} in both the
+ * loose and tight encodings, with one format per thread as each connection has its own format. Also compares
+ * peeking at the host of a WireFormatInfo frame with unmarshalling the whole command.
+ * <p/>
+ * This is not run as part of the build as its name does not end in Test; run it by hand.
+ */
+public class OpenWireFormatBenchmark {
+
+    private static final int ITERATIONS = 200000;
+    private static final int THREADS = 4;
+
+    @Test
+    public void testLooseEncoding() throws Exception {
+        run(false);
+    }
+
+    @Test
+    public void testTightEncoding() throws Exception {
+        run(true);
+    }
+
+    @Test
+    public void testPeekHost() throws Exception {
+        WireFormatInfo info = createWireFormatInfo();
+        OpenWireFormat format = new OpenWireFormat(1);
+        Buffer marshalled = format.marshal(info);
+        org.vertx.java.core.buffer.Buffer frame = new org.vertx.java.core.buffer.Buffer(marshalled.toByteArray());
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                WireFormatInfo unmarshalled = (WireFormatInfo) format.unmarshal(marshalled);
+                assertEquals("broker.example.com", unmarshalled.getHost());
+            }
+            long unmarshalNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertEquals("broker.example.com", WireFormatInfoPeek.getHost(frame));
+            }
+            long peekNanos = System.nanoTime() - start;
+            if (round > 0) {
+                System.out.println(String.format("WireFormatInfo host: unmarshal %d ns/op, peek %d ns/op",
+                        unmarshalNanos / ITERATIONS, peekNanos / ITERATIONS));
+            }
+        }
+    }
+
+    protected void run(final boolean tightEncoding) throws Exception {
+        Map<String, Object> commands = createCommands();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Map.Entry<String, Object> entry : commands.entrySet()) {
+                final Object command = entry.getValue();
+                // warm up
+                roundTrip(command, tightEncoding, ITERATIONS / 10);
+
+                List<Future<Long>> futures = new ArrayList<Future<Long>>();
+                long start = System.nanoTime();
+                for (int i = 0; i < THREADS; i++) {
+                    futures.add(executor.submit(new Callable<Long>() {
+                        @Override
+                        public Long call() throws Exception {
+                            return roundTrip(command, tightEncoding, ITERATIONS);
+                        }
+                    }));
+                }
+                long bytes = 0;
+                for (Future<Long> future : futures) {
+                    bytes += future.get();
+                }
+                long nanos = System.nanoTime() - start;
+                long operations = (long) ITERATIONS * THREADS;
+                System.out.println(String.format("%s %s: %d bytes, %.0f round trips/s",
+                        tightEncoding ? "tight" : "loose", entry.getKey(), bytes / operations,
+                        operations / (nanos / 1000000000.0)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected long roundTrip(Object command, boolean tightEncoding, int iterations) throws Exception {
+        OpenWireFormat format = new OpenWireFormat(1);
+        format.setTightEncodingEnabled(tightEncoding);
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            Buffer buffer = format.marshal(command);
+            bytes += buffer.length();
+            format.unmarshal(buffer);
+        }
+        return bytes;
+    }
+
+    protected Map<String, Object> createCommands() throws Exception {
+        ConnectionId connectionId = new ConnectionId(new UTF8Buffer("ID:localhost-61616-1400000000000-0:1"));
+        SessionId sessionId = new SessionId(connectionId, 1);
+        ProducerId producerId = new ProducerId(sessionId, 1);
+        ActiveMQQueue queue = new ActiveMQQueue("TEST.QUEUE");
+
+        ConnectionInfo connectionInfo = new ConnectionInfo(connectionId);
+        connectionInfo.setClientId(new UTF8Buffer("client-1"));
+        connectionInfo.setUserName(new UTF8Buffer("admin"));
+
+        ActiveMQTextMessage message = new ActiveMQTextMessage();
+        message.setMessageId(new MessageId(producerId, 1));
+        message.setProducerId(producerId);
+        message.setDestination(queue);
+        message.setPersistent(true);
+        message.setTimestamp(System.currentTimeMillis());
+        message.setProperty("region", "emea");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            text.append("0123456789abcdef");
+        }
+        message.setText(text.toString());
+
+        MessageAck ack = new MessageAck();
+        ack.setDestination(queue);
+        ack.setConsumerId(new ConsumerId(sessionId, 1));
+        ack.setFirstMessageId(new MessageId(producerId, 1));
+        ack.setLastMessageId(new MessageId(producerId, 10));
+        ack.setMessageCount(10);
+
+        Map<String, Object> commands = new LinkedHashMap<String, Object>();
+        commands.put("WireFormatInfo", createWireFormatInfo());
+        commands.put("ConnectionInfo", connectionInfo);
+        commands.put("TextMessage", message);
+        commands.put("MessageAck", ack);
+        return commands;
+    }
+
+    protected WireFormatInfo createWireFormatInfo() throws Exception {
+        WireFormatInfo info = new WireFormatInfo();
+        info.setVersion(1);
+        info.setProperty("CacheEnabled", Boolean.FALSE);
+        info.setProperty("TightEncodingEnabled", Boolean.TRUE);
+        info.setProperty("MaxInactivityDuration", 30000L);
+        info.setHost("broker.example.com");
+        return info;
+    }
+}
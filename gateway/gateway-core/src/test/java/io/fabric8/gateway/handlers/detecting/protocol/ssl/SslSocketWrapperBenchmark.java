@@ -0,0 +1,291 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting.protocol.ssl;
+
+import io.fabric8.gateway.SocketWrapper;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.ReadStream;
+import org.vertx.java.core.streams.WriteStream;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the throughput and the bytes allocated per connection of {@link SslSocketWrapper} by pushing data
+ * through pairs of client and server wrappers which are connected back to back in memory, so that only the
+ * TLS processing is measured.
+ * <p/>
+ * This is not run as part of the build as its name does not end in Test; run it by hand.
+ */
+public class SslSocketWrapperBenchmark {
+
+    private static final int CONNECTIONS = 20;
+    private static final int MESSAGE_SIZE = 64 * 1024;
+    private static final int MESSAGES_PER_CONNECTION = 200;
+
+    @Test
+    public void testHeapBuffers() throws Exception {
+        run(false);
+    }
+
+    @Test
+    public void testDirectBuffers() throws Exception {
+        run(true);
+    }
+
+    protected void run(boolean useDirectBuffers) throws Exception {
+        SslConfig serverConfig = new SslConfig(new File(basedir(), "src/test/resources/server.ks"), "password");
+        serverConfig.setKeyPassword("password");
+        SSLContext serverContext = SSLContext.getInstance(serverConfig.getProtocol());
+        serverContext.init(serverConfig.getKeyManagers(), serverConfig.getTrustManagers(), null);
+        SslConfig clientConfig = new SslConfig(new File(basedir(), "src/test/resources/client.ks"), "password");
+        SSLContext clientContext = SSLContext.getInstance(clientConfig.getProtocol());
+        clientContext.init(null, clientConfig.getTrustManagers(), null);
+
+        SSLParameters serverParameters = SslSocketWrapper.createSSLParameters(serverContext, SslSocketWrapper.ClientAuth.NONE, null, null);
+        SSLParameters clientParameters = SslSocketWrapper.createSSLParameters(clientContext, SslSocketWrapper.ClientAuth.NONE, null, null);
+
+        // warm up
+        transfer(serverContext, serverParameters, clientContext, clientParameters, useDirectBuffers);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long bytes = transfer(serverContext, serverParameters, clientContext, clientParameters, useDirectBuffers);
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        double megabytes = bytes / (1024.0 * 1024.0);
+        System.out.println(String.format("%s buffers: %.1f MB/s, %d KB allocated per connection, %.1f KB allocated per MB",
+                useDirectBuffers ? "direct" : "heap",
+                megabytes / (nanos / 1000000000.0),
+                allocated / CONNECTIONS / 1024,
+                allocated / 1024.0 / megabytes));
+    }
+
+    protected long transfer(SSLContext serverContext, SSLParameters serverParameters, SSLContext clientContext, SSLParameters clientParameters, boolean useDirectBuffers) {
+        EventLoop loop = new EventLoop();
+        final long[] received = new long[1];
+        Handler<Buffer> counter = new Handler<Buffer>() {
+            @Override
+            public void handle(Buffer buffer) {
+                received[0] += buffer.length();
+            }
+        };
+
+        List<SslSocketWrapper> clients = new ArrayList<SslSocketWrapper>();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            LoopbackSocket clientSocket = new LoopbackSocket(loop);
+            LoopbackSocket serverSocket = new LoopbackSocket(loop);
+            clientSocket.peer = serverSocket;
+            serverSocket.peer = clientSocket;
+
+            SslSocketWrapper server = new SslSocketWrapper(serverSocket);
+            server.setUseDirectBuffers(useDirectBuffers);
+            server.initServer(serverContext, serverParameters);
+            server.dataHandler(counter);
+
+            SslSocketWrapper client = new SslSocketWrapper(clientSocket);
+            client.setUseDirectBuffers(useDirectBuffers);
+            client.initClient(clientContext, "localhost", 0, clientParameters);
+            client.dataHandler(counter);
+            clients.add(client);
+        }
+
+        byte[] payload = new byte[MESSAGE_SIZE];
+        int[] sent = new int[CONNECTIONS];
+        long expected = (long) CONNECTIONS * MESSAGES_PER_CONNECTION * MESSAGE_SIZE;
+        while (received[0] < expected) {
+            boolean progress = false;
+            for (int i = 0; i < CONNECTIONS; i++) {
+                SslSocketWrapper client = clients.get(i);
+                if (sent[i] < MESSAGES_PER_CONNECTION && !client.writeQueueFull()) {
+                    // wrap the payload rather than copying it so we only measure the wrapper's allocations
+                    client.write(new Buffer(Unpooled.wrappedBuffer(payload)));
+                    sent[i]++;
+                    progress = true;
+                }
+            }
+            progress |= loop.run();
+            if (!progress) {
+                throw new IllegalStateException("No progress after receiving " + received[0] + " of " + expected + " bytes");
+            }
+        }
+        assertEquals(expected, received[0]);
+        return received[0];
+    }
+
+    protected File basedir() {
+        try {
+          File file = new File(getClass().getProtectionDomain().getCodeSource().getLocation().getFile());
+          file = file.getParentFile().getParentFile().getCanonicalFile();
+          if( file.isDirectory() ) {
+              return file.getCanonicalFile();
+          } else {
+              return new File(".").getCanonicalFile();
+          }
+        } catch (Throwable e){
+            return new File(".");
+        }
+    }
+
+    /**
+     * Runs the deliveries between the loopback sockets on the benchmark thread like a vertx event loop would.
+     */
+    static class EventLoop {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+        void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        boolean run() {
+            boolean ran = false;
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+                ran = true;
+            }
+            return ran;
+        }
+    }
+
+    /**
+     * One end of an in memory connection whose writes are delivered to its peer by the event loop.
+     */
+    static class LoopbackSocket extends SocketWrapper implements ReadStream<LoopbackSocket>, WriteStream<LoopbackSocket> {
+        private static final InetSocketAddress ADDRESS = new InetSocketAddress("localhost", 0);
+
+        private final EventLoop loop;
+        private final ArrayDeque<Buffer> pending = new ArrayDeque<Buffer>();
+        private LoopbackSocket peer;
+        private Handler<Buffer> dataHandler;
+        private boolean paused;
+
+        LoopbackSocket(EventLoop loop) {
+            this.loop = loop;
+        }
+
+        void receive(Buffer buffer) {
+            pending.add(buffer);
+            deliver();
+        }
+
+        private void deliver() {
+            Buffer buffer;
+            while (!paused && dataHandler != null && (buffer = pending.poll()) != null) {
+                dataHandler.handle(buffer);
+            }
+        }
+
+        @Override
+        public LoopbackSocket write(final Buffer buffer) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    peer.receive(buffer);
+                }
+            });
+            return this;
+        }
+
+        @Override
+        public LoopbackSocket dataHandler(Handler<Buffer> handler) {
+            dataHandler = handler;
+            deliver();
+            return this;
+        }
+
+        @Override
+        public LoopbackSocket pause() {
+            paused = true;
+            return this;
+        }
+
+        @Override
+        public LoopbackSocket resume() {
+            paused = false;
+            deliver();
+            return this;
+        }
+
+        @Override
+        public LoopbackSocket endHandler(Handler<Void> handler) {
+            return this;
+        }
+
+        @Override
+        public LoopbackSocket exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public LoopbackSocket setWriteQueueMaxSize(int maxSize) {
+            return this;
+        }
+
+        @Override
+        public boolean writeQueueFull() {
+            return false;
+        }
+
+        @Override
+        public LoopbackSocket drainHandler(Handler<Void> handler) {
+            return this;
+        }
+
+        @Override
+        public ReadStream readStream() {
+            return this;
+        }
+
+        @Override
+        public WriteStream writeStream() {
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Object stream() {
+            return this;
+        }
+
+        @Override
+        public InetSocketAddress localAddress() {
+            return ADDRESS;
+        }
+
+        @Override
+        public InetSocketAddress remoteAddress() {
+            return ADDRESS;
+        }
+    }
+}
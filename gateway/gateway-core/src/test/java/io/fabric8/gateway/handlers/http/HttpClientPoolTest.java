@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class HttpClientPoolTest {
+
+    private Vertx vertx;
+    private HttpClientPool pool;
+
+    @Before
+    public void setUp() {
+        vertx = VertxFactory.newVertx();
+        pool = new HttpClientPool(vertx);
+        pool.setIdleTimeout(0);
+    }
+
+    @After
+    public void tearDown() {
+        pool.stop();
+        vertx.stop();
+    }
+
+    @Test
+    public void testClientsArePooledPerBackend() throws Exception {
+        HttpClientPool.Lease a = pool.acquire(new URL("http://localhost:8181/foo"));
+        HttpClientPool.Lease b = pool.acquire(new URL("http://localhost:8181/bar"));
+        HttpClientPool.Lease c = pool.acquire(new URL("http://localhost:8182/foo"));
+
+        assertSame(a.getClient(), b.getClient());
+        assertNotSame(a.getClient(), c.getClient());
+        assertEquals(2, pool.getBackendCount());
+        assertEquals(2, pool.getClientsCreated());
+        assertEquals(3, pool.getRequestsInFlight());
+
+        a.release();
+        a.release();
+        assertEquals(2, pool.getRequestsInFlight());
+    }
+
+    @Test
+    public void testIdleClientsAreEvicted() throws Exception {
+        URL url = new URL("http://localhost:8181/foo");
+        HttpClientPool.Lease busy = pool.acquire(url);
+        Thread.sleep(10);
+
+        pool.evictIdleClients();
+        assertEquals("busy clients must not be evicted", 0, pool.getClientsEvicted());
+
+        busy.release();
+        Thread.sleep(10);
+        pool.evictIdleClients();
+        assertEquals(1, pool.getClientsEvicted());
+        assertEquals(0, pool.getBackendCount());
+
+        HttpClientPool.Lease lease = pool.acquire(url);
+        assertNotSame(busy.getClient(), lease.getClient());
+        assertEquals(2, pool.getClientsCreated());
+    }
+}
@@ -28,9 +28,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -103,6 +106,129 @@ public class LoadBalancerTest {
 
     }
 
+    @Test
+    public void testStickyLoadBalancerRebindsWhenServiceGoesAway() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer();
+        String first = loadBalancer.choose(services, clientRequestFacade);
+
+        List<String> remaining = new ArrayList<String>(services);
+        remaining.remove(first);
+        String second = loadBalancer.choose(remaining, clientRequestFacade);
+        assertNotNull(second);
+        assertTrue("Should have picked another service than " + first, !first.equals(second));
+        assertEquals(second, loadBalancer.choose(services, clientRequestFacade));
+    }
+
+    @Test
+    public void testStickyLoadBalancerCacheIsBounded() throws Exception {
+        int cacheSize = 100;
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(cacheSize);
+        for (int i = 0; i < cacheSize * 10; i++) {
+            clientRequestKey = "client:" + i;
+            assertNotNull(loadBalancer.choose(services, clientRequestFacade));
+        }
+        StickySessionCache cache = loadBalancer.getRequestCache();
+        assertTrue("Cache should be bounded but was: " + cache, cache.size() <= cacheSize);
+        assertTrue("Should have evicted entries: " + cache, cache.getEvictions() > 0);
+        assertEquals(cacheSize * 10, cache.getMisses());
+    }
+
+    @Test
+    public void testStickyLoadBalancerTimeToLive() throws Exception {
+        final AtomicLong clock = new AtomicLong(1000);
+        StickySessionCache cache = new StickySessionCache(100, 10) {
+            @Override
+            protected long currentTimeMillis() {
+                return clock.get();
+            }
+        };
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(cache, new RoundRobinLoadBalancer());
+        loadBalancer.choose(services, clientRequestFacade);
+        clock.addAndGet(5);
+        loadBalancer.choose(services, clientRequestFacade);
+        assertEquals(1, loadBalancer.getRequestCache().getHits());
+
+        clock.addAndGet(20);
+        loadBalancer.choose(services, clientRequestFacade);
+        assertEquals(1, loadBalancer.getRequestCache().getHits());
+        assertEquals(1, loadBalancer.getRequestCache().getEvictions());
+    }
+
+    @Test
+    public void testStickyLoadBalancerWithoutClientKey() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer();
+        clientRequestKey = null;
+        assertTrue("Should use all the services", asSet(performRequests(loadBalancer)).size() > 1);
+        assertEquals(0, loadBalancer.getRequestCache().size());
+    }
+
+    @Test
+    public void testLeastConnectionsLoadBalancer() throws Exception {
+        LeastConnectionsLoadBalancer loadBalancer = new LeastConnectionsLoadBalancer();
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(loadBalancer);
+        assertTrue("Should use all the services", asSet(performRequests(loadBalancer)).size() > 1);
+
+        String busy = services.get(0);
+        for (int i = 0; i < 5; i++) {
+            LoadBalancers.requestStarted(loadBalancer, busy);
+        }
+        assertEquals(5, loadBalancer.getServiceLoad(busy).getOutstanding());
+        for (int i = 0; i < 100; i++) {
+            assertNotSame("Should never choose the busiest service", busy, loadBalancer.choose(services, clientRequestFacade));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            LoadBalancers.requestCompleted(loadBalancer, busy);
+        }
+        assertEquals("Completions should not go negative", 0, loadBalancer.getServiceLoad(busy).getOutstanding());
+    }
+
+    @Test
+    public void testPeakEwmaLoadBalancer() throws Exception {
+        PeakEwmaLoadBalancer loadBalancer = new PeakEwmaLoadBalancer();
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(loadBalancer);
+        assertTrue("Should use all the services", asSet(performRequests(loadBalancer)).size() > 1);
+
+        String slow = services.get(0);
+        for (String service : services) {
+            LoadBalancers.recordLatency(loadBalancer, service, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        LoadBalancers.recordLatency(loadBalancer, slow, TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue("Peak latency should be used straight away", loadBalancer.getServiceLoad(slow).getLatencyEwma() > TimeUnit.MILLISECONDS.toNanos(50));
+        for (int i = 0; i < 100; i++) {
+            assertNotSame("Should never choose the slowest service", slow, loadBalancer.choose(services, clientRequestFacade));
+        }
+    }
+
+    @Test
+    public void testServiceLoadDecaysHistoryOnce() throws Exception {
+        final AtomicLong clock = new AtomicLong(1000);
+        long decay = TimeUnit.MILLISECONDS.toNanos(10);
+        ServiceLoad load = new ServiceLoad(decay) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+        load.recordLatency(TimeUnit.MILLISECONDS.toNanos(100));
+        clock.addAndGet(decay);
+        load.recordLatency(TimeUnit.MILLISECONDS.toNanos(50));
+
+        double weight = Math.exp(-1);
+        double expected = TimeUnit.MILLISECONDS.toNanos(100) * weight + TimeUnit.MILLISECONDS.toNanos(50) * (1 - weight);
+        assertEquals(expected, load.getLatencyEwma(), 1.0);
+    }
+
+    @Test
+    public void testPeakEwmaLoadBalancerAvoidsServicesWithOutstandingRequestsAndNoLatency() throws Exception {
+        PeakEwmaLoadBalancer loadBalancer = new PeakEwmaLoadBalancer();
+        String pending = services.get(0);
+        LoadBalancers.requestStarted(loadBalancer, pending);
+        for (int i = 0; i < 100; i++) {
+            assertNotSame(pending, loadBalancer.choose(services, clientRequestFacade));
+        }
+    }
+
     protected List<String> performRequests(LoadBalancer loadBalancer) {
         List<String> answer = new ArrayList<String>();
         for (int i = 0; i < requestCount; i++) {
@@ -118,7 +118,9 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             options = {
                     @PropertyOption(name = LoadBalancers.RANDOM_LOAD_BALANCER, value = "Random"),
                     @PropertyOption(name = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER, value = "Round Robin"),
-                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky")
+                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky"),
+                    @PropertyOption(name = LoadBalancers.LEAST_CONNECTIONS_LOAD_BALANCER, value = "Least Connections"),
+                    @PropertyOption(name = LoadBalancers.PEAK_EWMA_LOAD_BALANCER, value = "Peak EWMA Latency")
             },
             label = "Load Balancer", description = "The kind of load balancing strategy to use when multiple endpoints can service the client conneciton")
     private String loadBalancerType;
@@ -127,6 +129,22 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             label = "Sticky Load Balancer Cache Size", description = "The number of unique client keys to cache for the sticky load balancer (using an LRU caching algorithm)")
     private int stickyLoadBalancerCacheSize = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
 
+    @Property(name = "stickyLoadBalancerTimeToLive", longValue = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE,
+            label = "Sticky Load Balancer Time To Live", description = "The number of milliseconds after which an unused client key is removed from the sticky load balancer cache (0 to keep keys until they are evicted)")
+    private long stickyLoadBalancerTimeToLive = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE;
+
+    @Property(name = "tcpNoDelay", boolValue = true,
+            label = "TCP No Delay", description = "Disables Nagle's algorithm on the client and service connections so small frames are forwarded straight away")
+    private boolean tcpNoDelay = true;
+
+    @Property(name = "sendBufferSize", intValue = -1,
+            label = "Socket Send Buffer Size", description = "The socket send buffer size in bytes of the client and service connections (-1 to use the operating system default)")
+    private int sendBufferSize = -1;
+
+    @Property(name = "receiveBufferSize", intValue = -1,
+            label = "Socket Receive Buffer Size", description = "The socket receive buffer size in bytes of the client and service connections (-1 to use the operating system default)")
+    private int receiveBufferSize = -1;
+
     @Property(name = "sslProtocol", value="TLS",
             label = "SSL Protocol", description = "Example: SSL, TLS, TLSv1, TLSv2 etc.")
     private String sslProtocol;
@@ -168,6 +186,9 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
     @Property(name = "disabledCypherSuites",
             label = "SSL Cipher Suites Disabled", description = "Comma separated list of cipher suites to disable on the SSL sessions.")
     String disabledCypherSuites;
+    @Property(name = "sslUseDirectBuffers", boolValue = false,
+            label = "SSL Direct Buffers", description = "Allocate the buffers used to encrypt and decrypt the SSL records of each connection outside of the Java heap")
+    boolean sslUseDirectBuffers;
 
     private DetectingGateway detectingGateway;
     private GatewayServiceTreeCache cache;
@@ -257,6 +278,7 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             if( Strings.isNotBlank(disabledCypherSuites) ) {
                 sslConfig.setDisabledCypherSuites(disabledCypherSuites);
             }
+            sslConfig.setUseDirectBuffers(sslUseDirectBuffers);
             gateway.setSslConfig(sslConfig);
             protocols.add(new SslProtocol());
         }
@@ -266,7 +288,7 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         }
 
         VertxService vertxService = getVertxService();
-        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
+        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive);
         gateway.setVertx(vertxService.getVertx());
         gateway.setPort(port);
         gateway.setServiceMap(serviceMap);
@@ -274,6 +296,9 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         gateway.setShutdownTacker(shutdownTacker);
         gateway.setServiceLoadBalancer(serviceLoadBalancer);
         gateway.setDefaultVirtualHost(defaultVirtualHost);
+        gateway.setTcpNoDelay(tcpNoDelay);
+        gateway.setSendBufferSize(sendBufferSize);
+        gateway.setReceiveBufferSize(receiveBufferSize);
         return gateway;
     }
 
@@ -386,6 +411,30 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         }
     }
 
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
     public boolean isSslEnabled() {
         return sslEnabled;
     }
@@ -446,6 +495,14 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         this.disabledCypherSuites = disabledCypherSuites;
     }
 
+    public boolean isSslUseDirectBuffers() {
+        return sslUseDirectBuffers;
+    }
+
+    public void setSslUseDirectBuffers(boolean sslUseDirectBuffers) {
+        this.sslUseDirectBuffers = sslUseDirectBuffers;
+    }
+
     void bindMbeanServer(MBeanServer mbeanServer) {
         this.mbeanServer = mbeanServer;
     }
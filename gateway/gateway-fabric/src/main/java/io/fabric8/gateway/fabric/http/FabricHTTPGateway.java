@@ -24,14 +24,16 @@ import io.fabric8.api.scr.ValidatingReference;
 import io.fabric8.common.util.ShutdownTracker;
 
 import java.net.InetSocketAddress;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import javax.management.MBeanServer;
 
-import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.CallDetailRecords;
 import io.fabric8.gateway.fabric.detecting.FabricDetectingGatewayService;
 
 import org.apache.curator.framework.CuratorFramework;
@@ -48,11 +50,13 @@ import org.apache.felix.scr.annotations.Service;
 
 import io.fabric8.gateway.fabric.support.vertx.VertxService;
 import io.fabric8.gateway.handlers.detecting.DetectingGatewayWebSocketHandler;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
 import io.fabric8.gateway.handlers.http.HttpGateway;
 import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
 import io.fabric8.gateway.handlers.http.HttpMappingRule;
 import io.fabric8.gateway.handlers.http.MappedServices;
+import io.fabric8.gateway.support.PathPrefixIndex;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,6 +88,15 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     @Property(name = "websocketGatewayPrefix", label = "Web Socket Path Prefix", description = "The prefix a websocket requests must have")
     private String websocketGatewayPrefix = "";
 
+    @Property(name = "maxConnectionsPerBackend", intValue = HttpClientPool.DEFAULT_MAX_CONNECTIONS, label = "Max connections per backend", description = "The maximum number of keep alive connections pooled for each back end host and port")
+    private int maxConnectionsPerBackend = HttpClientPool.DEFAULT_MAX_CONNECTIONS;
+
+    @Property(name = "connectionIdleTimeout", longValue = HttpClientPool.DEFAULT_IDLE_TIMEOUT, label = "Connection idle timeout", description = "The number of milliseconds a back end client can be idle before its pooled connections are closed")
+    private long connectionIdleTimeout = HttpClientPool.DEFAULT_IDLE_TIMEOUT;
+
+    @Property(name = "callDetailRecordCapacity", intValue = CallDetailRecords.DEFAULT_CAPACITY, label = "Call detail record capacity", description = "The number of recent calls to keep for reporting via JMX")
+    private int callDetailRecordCapacity = CallDetailRecords.DEFAULT_CAPACITY;
+
     @Reference
     private Configurer configurer;
 
@@ -100,9 +113,18 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     
     private HttpGatewayServer server;
     private HttpGatewayHandler handler;
+    private HttpClientPool httpClientPool;
+    private volatile CallDetailRecords callDetailRecords = new CallDetailRecords(CallDetailRecords.DEFAULT_CAPACITY);
     private DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
 
     private Set<HttpMappingRule> mappingRuleConfigurations = new CopyOnWriteArraySet<HttpMappingRule>();
+    private volatile PathPrefixIndex<MappedServices> mappedServicesIndex = new PathPrefixIndex<MappedServices>(Collections.<String, MappedServices>emptyMap());
+    private final Runnable mappingRulesChangeListener = new Runnable() {
+        @Override
+        public void run() {
+            rebuildMappedServicesIndex();
+        }
+    };
 
     ShutdownTracker shutdownTracker = new ShutdownTracker();
     private FabricHTTPGatewayInfo fabricHTTPGatewayInfoMBean;
@@ -131,6 +153,13 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         configurer.configure(configuration, this);
 
         Vertx vertx = getVertx();
+        httpClientPool = new HttpClientPool(vertx);
+        httpClientPool.setMaxConnections(maxConnectionsPerBackend);
+        httpClientPool.setIdleTimeout(connectionIdleTimeout);
+        httpClientPool.start();
+        if (callDetailRecords.getCapacity() != callDetailRecordCapacity) {
+            callDetailRecords = new CallDetailRecords(callDetailRecordCapacity);
+        }
         handler = new HttpGatewayHandler(vertx, this);
         websocketHandler.setPathPrefix(websocketGatewayPrefix);
         server = new HttpGatewayServer(vertx, handler, enableWebSocketGateway ? websocketHandler : null, port);
@@ -141,37 +170,66 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         if (server != null) {
             server.destroy();
         }
+        if (httpClientPool != null) {
+            httpClientPool.stop();
+        }
     }
     
     @Override
-    public void addCallDetailRecord(CallDetailRecord cdr) {
-    	fabricHTTPGatewayInfoMBean.setLastCallDate(cdr.getCallDate().toString());
-    	fabricHTTPGatewayInfoMBean.registerCall(cdr.getCallTimeNanos());
-    	if (cdr.getError()!=null) {
-    		fabricHTTPGatewayInfoMBean.setLastError(cdr.getError());
-    	}
+    public CallDetailRecords getCallDetailRecords() {
+        return callDetailRecords;
+    }
+
+    @Override
+    public HttpClientPool getHttpClientPool() {
+        return httpClientPool;
     }
 
     @Override
     public void addMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
-        mappingRuleConfigurations.add(mappingRuleConfiguration);
+        if (mappingRuleConfigurations.add(mappingRuleConfiguration)) {
+            mappingRuleConfiguration.addChangeListener(mappingRulesChangeListener);
+        }
+        rebuildMappedServicesIndex();
     }
 
     @Override
     public void removeMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
-        mappingRuleConfigurations.remove(mappingRuleConfiguration);
+        if (mappingRuleConfigurations.remove(mappingRuleConfiguration)) {
+            mappingRuleConfiguration.removeChangeListener(mappingRulesChangeListener);
+        }
+        rebuildMappedServicesIndex();
     }
 
     @Override
     public Map<String, MappedServices> getMappedServices() {
+        return getMappedServicesIndex().getPrefixes();
+    }
+
+    @Override
+    public PathPrefixIndex<MappedServices> getMappedServicesIndex() {
         assertValid();
+        return mappedServicesIndex;
+    }
+
+    /**
+     * Rebuilds the index of mapped services from the current mapping rules and atomically swaps it in
+     */
+    private synchronized void rebuildMappedServicesIndex() {
         Map<String, MappedServices> answer = new HashMap<String, MappedServices>();
         for (HttpMappingRule mappingRuleConfiguration : mappingRuleConfigurations) {
             mappingRuleConfiguration.appendMappedServices(answer);
         }
-        return answer;
+        mappedServicesIndex = new PathPrefixIndex<MappedServices>(answer);
+
+        // lets forget the latencies of the prefixes and services which are no longer mapped
+        Set<String> serviceUrls = new HashSet<String>();
+        for (MappedServices mappedServices : answer.values()) {
+            serviceUrls.addAll(mappedServices.getServiceUrls());
+        }
+        callDetailRecords.retain(answer.keySet(), serviceUrls);
     }
 
     @Override
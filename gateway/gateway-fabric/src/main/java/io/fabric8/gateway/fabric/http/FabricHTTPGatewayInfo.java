@@ -16,13 +16,21 @@
 package io.fabric8.gateway.fabric.http;
 
 import io.fabric8.common.util.ShutdownTracker;
+import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.CallDetailRecords;
 import io.fabric8.gateway.fabric.jmx.FabricGatewayInfoMBean;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
+import io.fabric8.gateway.support.LatencyHistogram;
 
 import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.management.StandardMBean;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,10 +42,6 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     private final FabricHTTPGateway fabricHTTPGateway;
     private ObjectName objectName;
-    private long numberOfInvocations = 0l;
-    private long averageCallTimeNanos = 0l;
-    private String lastError;
-    private String lastCallDate;
     
     public FabricHTTPGatewayInfo(FabricHTTPGateway fabricHTTPGateway) {
 		super();
@@ -86,45 +90,101 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     @Override
 	public long getNumberOfInvocations() {
-		return numberOfInvocations;
+		return getCallDetailRecords().getCount();
 	}
     
-    public void registerCall(long callTimeNanos) {
-    	averageCallTimeNanos = (averageCallTimeNanos * numberOfInvocations + callTimeNanos)/++numberOfInvocations;
-    }
-    
-    public void setLastError(String error) {
-    	lastError = error;
-    }
-    
     @Override
     public String getLastError() {
-    	return lastError;
-    }
-    
-    public void setLastCallDate(String callDate) {
-    	lastCallDate = callDate;
+        CallDetailRecord call = getCallDetailRecords().getLastError();
+        return call != null ? call.getError() : null;
     }
     
     @Override
     public String getLastCallDate() {
-    	if (lastCallDate!=null)
-    		return lastCallDate.toString();
-    	else
-    		return null;
+        CallDetailRecord call = getCallDetailRecords().getLastCall();
+        return call != null ? call.getCallDate().toString() : null;
     }
     
     @Override 
     public long getAvarageCallTimeNanos() {
-    	return averageCallTimeNanos;
+    	return getCallDetailRecords().getAverageCallTimeNanos();
+    }
+
+    @Override
+    public long getNumberOfErrors() {
+        return getCallDetailRecords().getErrorCount();
+    }
+
+    @Override
+    public String getCallLatency() {
+        return getCallDetailRecords().getLatency().toString();
+    }
+
+    @Override
+    public String[] getPrefixLatencies() {
+        return toStrings(getCallDetailRecords().getPrefixLatencies());
+    }
+
+    @Override
+    public String[] getServiceLatencies() {
+        return toStrings(getCallDetailRecords().getServiceLatencies());
+    }
+
+    @Override
+    public String[] getRecentCalls() {
+        List<CallDetailRecord> calls = getCallDetailRecords().getRecentCalls();
+        String[] answer = new String[calls.size()];
+        for (int i = 0; i < answer.length; i++) {
+            answer[i] = calls.get(i).toString();
+        }
+        return answer;
+    }
+
+    protected CallDetailRecords getCallDetailRecords() {
+        return getFabricHTTPGateway().getCallDetailRecords();
+    }
+
+    private static String[] toStrings(Map<String, LatencyHistogram> histograms) {
+        List<String> answer = new ArrayList<String>(histograms.size());
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            answer.add(entry.getKey() + " " + entry.getValue());
+        }
+        return answer.toArray(new String[answer.size()]);
     }
     
+    @Override
+    public int getPooledBackends() {
+        HttpClientPool pool = getFabricHTTPGateway().getHttpClientPool();
+        return pool != null ? pool.getBackendCount() : 0;
+    }
+
+    @Override
+    public int getPooledRequestsInFlight() {
+        HttpClientPool pool = getFabricHTTPGateway().getHttpClientPool();
+        return pool != null ? pool.getRequestsInFlight() : 0;
+    }
+
+    @Override
+    public long getPooledClientsCreated() {
+        HttpClientPool pool = getFabricHTTPGateway().getHttpClientPool();
+        return pool != null ? pool.getClientsCreated() : 0;
+    }
+
+    @Override
+    public long getPooledClientsEvicted() {
+        HttpClientPool pool = getFabricHTTPGateway().getHttpClientPool();
+        return pool != null ? pool.getClientsEvicted() : 0;
+    }
+
+    @Override
+    public int getMaxConnectionsPerBackend() {
+        HttpClientPool pool = getFabricHTTPGateway().getHttpClientPool();
+        return pool != null ? pool.getMaxConnections() : 0;
+    }
+
     @Override
     public void resetStatistics() {
-    	averageCallTimeNanos = 0l;
-    	numberOfInvocations = 0l;
-    	lastCallDate = null;
-    	lastError = null;
+        getCallDetailRecords().reset();
     }
    
     public ObjectName getObjectName() throws MalformedObjectNameException {
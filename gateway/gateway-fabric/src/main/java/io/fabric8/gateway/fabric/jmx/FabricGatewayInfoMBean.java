@@ -30,5 +30,31 @@ public interface FabricGatewayInfoMBean {
     String getLastError();
     String getLastCallDate();
     long getAvarageCallTimeNanos();
+    long getNumberOfErrors();
+
+    /**
+     * Returns the count and percentiles of the latency of all calls
+     */
+    String getCallLatency();
+
+    /**
+     * Returns the count and percentiles of the call latency for each mapped URI prefix
+     */
+    String[] getPrefixLatencies();
+
+    /**
+     * Returns the count and percentiles of the call latency for each back end service
+     */
+    String[] getServiceLatencies();
+
+    /**
+     * Returns the most recent calls, newest first
+     */
+    String[] getRecentCalls();
+    int getPooledBackends();
+    int getPooledRequestsInFlight();
+    long getPooledClientsCreated();
+    long getPooledClientsEvicted();
+    int getMaxConnectionsPerBackend();
     void resetStatistics();
 }
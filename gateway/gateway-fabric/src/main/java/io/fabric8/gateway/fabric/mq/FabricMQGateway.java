@@ -111,7 +111,9 @@ public class FabricMQGateway extends AbstractComponent {
             options = {
                     @PropertyOption(name = LoadBalancers.RANDOM_LOAD_BALANCER, value = "Random"),
                     @PropertyOption(name = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER, value = "Round Robin"),
-                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky")
+                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky"),
+                    @PropertyOption(name = LoadBalancers.LEAST_CONNECTIONS_LOAD_BALANCER, value = "Least Connections"),
+                    @PropertyOption(name = LoadBalancers.PEAK_EWMA_LOAD_BALANCER, value = "Peak EWMA Latency")
             },
             label = "Load Balancer", description = "The kind of load balancing strategy used")
     private String loadBalancerType;
@@ -120,6 +122,10 @@ public class FabricMQGateway extends AbstractComponent {
             label = "Sticky Load Balancer Cache Size", description = "The number of unique client keys to cache for the sticky load balancer (using an LRU caching algorithm)")
     private int stickyLoadBalancerCacheSize = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
 
+    @Property(name = "stickyLoadBalancerTimeToLive", longValue = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE,
+            label = "Sticky Load Balancer Time To Live", description = "The number of milliseconds after which an unused client key is removed from the sticky load balancer cache (0 to keep keys until they are evicted)")
+    private long stickyLoadBalancerTimeToLive = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE;
+
     private GatewayServiceTreeCache gatewayServiceTreeCache;
 
     @Activate
@@ -155,8 +161,8 @@ public class FabricMQGateway extends AbstractComponent {
         Vertx vertx = vertxService.getVertx();
         CuratorFramework curator = getCurator();
 
-        LoadBalancer pathLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
-        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
+        LoadBalancer pathLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive);
+        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive);
 
         LOG.info("activating MQ mapping ZooKeeper path: " + zkPath + " host: " + host
                 + " with load balancer: " + pathLoadBalancer);
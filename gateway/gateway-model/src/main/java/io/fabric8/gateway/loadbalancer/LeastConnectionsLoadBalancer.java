@@ -0,0 +1,33 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+/**
+ * A load balancer which picks the service with the fewest outstanding requests or connections
+ * out of two randomly chosen services.
+ */
+public class LeastConnectionsLoadBalancer extends LoadTrackingLoadBalancer {
+
+    @Override
+    public String toString() {
+        return "LeastConnectionsLoadBalancer";
+    }
+
+    @Override
+    protected double cost(ServiceLoad load) {
+        return load != null ? load.getOutstanding() : 0;
+    }
+}
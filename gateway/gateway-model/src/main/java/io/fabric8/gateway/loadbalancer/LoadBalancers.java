@@ -28,16 +28,28 @@ public class LoadBalancers {
     public static final String RANDOM_LOAD_BALANCER = "random";
     public static final String ROUND_ROBIN_LOAD_BALANCER = "roundrobin";
     public static final String STICKY_LOAD_BALANCER = "sticky";
+    public static final String LEAST_CONNECTIONS_LOAD_BALANCER = "leastconnections";
+    public static final String PEAK_EWMA_LOAD_BALANCER = "peakewma";
 
     public static final int STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE = 10000;
+    public static final long STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE = 0;
+    public static final long PEAK_EWMA_LOAD_BALANCER_DEFAULT_DECAY_TIME = LoadTrackingLoadBalancer.DEFAULT_DECAY_TIME;
 
     public static LoadBalancer createLoadBalancer(String loadBalancerType, int stickyLoadBalancerCacheSize) {
+        return createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE);
+    }
+
+    public static LoadBalancer createLoadBalancer(String loadBalancerType, int stickyLoadBalancerCacheSize, long stickyLoadBalancerTimeToLive) {
         if (RANDOM_LOAD_BALANCER.equals(loadBalancerType)) {
             return new RandomLoadBalancer();
         } else if (ROUND_ROBIN_LOAD_BALANCER.equals(loadBalancerType)) {
             return new RoundRobinLoadBalancer();
         } else if (STICKY_LOAD_BALANCER.equals(loadBalancerType)) {
-            return new StickyLoadBalancer(stickyLoadBalancerCacheSize);
+            return new StickyLoadBalancer(stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive, new RoundRobinLoadBalancer());
+        } else if (LEAST_CONNECTIONS_LOAD_BALANCER.equals(loadBalancerType)) {
+            return new LeastConnectionsLoadBalancer();
+        } else if (PEAK_EWMA_LOAD_BALANCER.equals(loadBalancerType)) {
+            return new PeakEwmaLoadBalancer();
         } else {
             if (Strings.isNotBlank(loadBalancerType)) {
                 LOG.warn("Ignored invalid load balancer type: " + loadBalancerType);
@@ -47,4 +59,33 @@ public class LoadBalancers {
             return new RoundRobinLoadBalancer();
         }
     }
+
+    /**
+     * Notifies the load balancer that a request or connection has been dispatched to the given service
+     * if it is a {@link LoadTracker}
+     */
+    public static void requestStarted(LoadBalancer loadBalancer, Object service) {
+        if (loadBalancer instanceof LoadTracker) {
+            ((LoadTracker) loadBalancer).requestStarted(service);
+        }
+    }
+
+    /**
+     * Notifies the load balancer that a request or connection to the given service has completed
+     * if it is a {@link LoadTracker}
+     */
+    public static void requestCompleted(LoadBalancer loadBalancer, Object service) {
+        if (loadBalancer instanceof LoadTracker) {
+            ((LoadTracker) loadBalancer).requestCompleted(service);
+        }
+    }
+
+    /**
+     * Records the latency of the given service if the load balancer is a {@link LoadTracker}
+     */
+    public static void recordLatency(LoadBalancer loadBalancer, Object service, long latencyNanos) {
+        if (loadBalancer instanceof LoadTracker) {
+            ((LoadTracker) loadBalancer).recordLatency(service, latencyNanos);
+        }
+    }
 }
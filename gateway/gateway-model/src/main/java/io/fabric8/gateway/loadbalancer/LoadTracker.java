@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+/**
+ * Implemented by load balancers which take the current load of each service into account when choosing a service.
+ * <p/>
+ * Gateways report the lifecycle of each request or connection they dispatch to the chosen service; use the helper
+ * methods on {@link LoadBalancers} which only report to load balancers that implement this interface.
+ */
+public interface LoadTracker {
+
+    /**
+     * A request or connection has been dispatched to the given service
+     */
+    void requestStarted(Object service);
+
+    /**
+     * A request or connection previously reported to {@link #requestStarted(Object)} has completed or been closed
+     */
+    void requestCompleted(Object service);
+
+    /**
+     * Records the time taken for the given service to respond to a request or accept a connection
+     */
+    void recordLatency(Object service, long latencyNanos);
+}
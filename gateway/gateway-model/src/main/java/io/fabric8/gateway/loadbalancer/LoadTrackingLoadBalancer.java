@@ -0,0 +1,137 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A base class for load balancers which use the live {@link ServiceLoad} of each service to pick the least loaded
+ * of two randomly chosen services (the "power of two choices"), which avoids the herding onto a single service
+ * that always picking the least loaded service causes when the statistics lag behind.
+ */
+public abstract class LoadTrackingLoadBalancer implements LoadBalancer, LoadTracker {
+    public static final long DEFAULT_DECAY_TIME = TimeUnit.SECONDS.toMillis(10);
+
+    private static final long IDLE_STATISTICS_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int PRUNE_INTERVAL = 1024;
+
+    private final ConcurrentHashMap<Object, ServiceLoad> loads = new ConcurrentHashMap<Object, ServiceLoad>();
+    private final AtomicInteger chooseCounter = new AtomicInteger();
+    private final long decayNanos;
+
+    protected LoadTrackingLoadBalancer() {
+        this(DEFAULT_DECAY_TIME);
+    }
+
+    /**
+     * @param decayTime the number of milliseconds over which old latency samples lose their influence
+     */
+    protected LoadTrackingLoadBalancer(long decayTime) {
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(decayTime, 1));
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        if ((chooseCounter.incrementAndGet() % PRUNE_INTERVAL) == 0) {
+            pruneIdleStatistics();
+        }
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        T a = services.get(first);
+        T b = services.get(second);
+        return cost(loads.get(a)) <= cost(loads.get(b)) ? a : b;
+    }
+
+    /**
+     * Returns the cost of dispatching another request to a service with the given load; lower is better.
+     *
+     * @param load the load of the service or null if nothing has been dispatched to the service yet
+     */
+    protected abstract double cost(ServiceLoad load);
+
+    @Override
+    public void requestStarted(Object service) {
+        if (service != null) {
+            getOrCreateServiceLoad(service).started();
+        }
+    }
+
+    @Override
+    public void requestCompleted(Object service) {
+        if (service != null) {
+            ServiceLoad load = loads.get(service);
+            if (load != null) {
+                load.completed();
+            }
+        }
+    }
+
+    @Override
+    public void recordLatency(Object service, long latencyNanos) {
+        if (service != null && latencyNanos >= 0) {
+            getOrCreateServiceLoad(service).recordLatency(latencyNanos);
+        }
+    }
+
+    /**
+     * Returns the load statistics of the given service or null if nothing has been dispatched to it
+     */
+    public ServiceLoad getServiceLoad(Object service) {
+        return loads.get(service);
+    }
+
+    protected ServiceLoad getOrCreateServiceLoad(Object service) {
+        ServiceLoad answer = loads.get(service);
+        if (answer == null) {
+            ServiceLoad created = new ServiceLoad(decayNanos);
+            answer = loads.putIfAbsent(service, created);
+            if (answer == null) {
+                answer = created;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Removes the statistics of services which have been idle for a long time so that services which
+     * have gone away do not leak
+     */
+    protected void pruneIdleStatistics() {
+        Iterator<ServiceLoad> iter = loads.values().iterator();
+        while (iter.hasNext()) {
+            ServiceLoad load = iter.next();
+            // ask the load itself so the same clock is used as when it was last used
+            if (load.getOutstanding() == 0 && load.getIdleTime() > IDLE_STATISTICS_NANOS) {
+                iter.remove();
+            }
+        }
+    }
+}
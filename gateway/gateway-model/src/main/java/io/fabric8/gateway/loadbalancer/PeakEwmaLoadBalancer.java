@@ -0,0 +1,59 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+/**
+ * A load balancer which picks the service with the lowest peak EWMA latency weighted by its outstanding
+ * requests or connections, out of two randomly chosen services, so that slow services receive less traffic.
+ */
+public class PeakEwmaLoadBalancer extends LoadTrackingLoadBalancer {
+    /**
+     * The cost of a service which has requests outstanding but no latency samples yet, so that new
+     * services are not flooded before we know how fast they are
+     */
+    private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    private final long decayTime;
+
+    public PeakEwmaLoadBalancer() {
+        this(DEFAULT_DECAY_TIME);
+    }
+
+    public PeakEwmaLoadBalancer(long decayTime) {
+        super(decayTime);
+        this.decayTime = decayTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PeakEwmaLoadBalancer{" +
+                "decayTime=" + decayTime +
+                '}';
+    }
+
+    @Override
+    protected double cost(ServiceLoad load) {
+        if (load == null) {
+            return 0;
+        }
+        int outstanding = load.getOutstanding();
+        double latency = load.getLatencyEwma();
+        if (latency == 0 && outstanding != 0) {
+            return PENALTY + outstanding;
+        }
+        return latency * (outstanding + 1);
+    }
+}
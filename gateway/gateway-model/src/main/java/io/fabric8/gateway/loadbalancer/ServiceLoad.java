@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The live load statistics of a single service used by the {@link LoadTrackingLoadBalancer} implementations.
+ * <p/>
+ * The latency is tracked as a peak sensitive exponentially weighted moving average; a sample slower than the current
+ * average replaces it immediately while faster samples are blended in based on the time since the last sample, so a
+ * service which slows down is penalised straight away but has to prove it has recovered.
+ */
+public class ServiceLoad {
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final long decayNanos;
+    private volatile double latencyEwma;
+    private volatile long lastSampleTime;
+    private volatile long lastUsedTime;
+
+    public ServiceLoad(long decayNanos) {
+        this.decayNanos = decayNanos;
+        this.lastSampleTime = nanoTime();
+        this.lastUsedTime = lastSampleTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceLoad{" +
+                "outstanding=" + outstanding +
+                ", latencyEwma=" + latencyEwma +
+                '}';
+    }
+
+    public void started() {
+        outstanding.incrementAndGet();
+        lastUsedTime = nanoTime();
+    }
+
+    public void completed() {
+        if (outstanding.decrementAndGet() < 0) {
+            // lets not go negative if a completion is reported twice
+            outstanding.incrementAndGet();
+        }
+        lastUsedTime = nanoTime();
+    }
+
+    public synchronized void recordLatency(long latencyNanos) {
+        long now = nanoTime();
+        if (latencyNanos > latencyEwma) {
+            latencyEwma = latencyNanos;
+        } else {
+            // the weight already decays the history by the time since the last sample
+            double weight = Math.exp(-(double) Math.max(now - lastSampleTime, 0) / decayNanos);
+            latencyEwma = latencyEwma * weight + latencyNanos * (1 - weight);
+        }
+        lastSampleTime = now;
+        lastUsedTime = now;
+    }
+
+    /**
+     * Returns the number of requests or connections currently dispatched to the service
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Returns the moving average latency in nanoseconds, decayed by the time since the last sample
+     */
+    public double getLatencyEwma() {
+        return decayedLatency(nanoTime());
+    }
+
+    public long getLastUsedTime() {
+        return lastUsedTime;
+    }
+
+    /**
+     * Returns the number of nanoseconds since a request was last started or completed or a latency was recorded
+     */
+    public long getIdleTime() {
+        return nanoTime() - lastUsedTime;
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    protected double decayedLatency(long now) {
+        double answer = latencyEwma;
+        if (answer > 0) {
+            answer *= Math.exp(-(double) Math.max(now - lastSampleTime, 0) / decayNanos);
+        }
+        return answer;
+    }
+}
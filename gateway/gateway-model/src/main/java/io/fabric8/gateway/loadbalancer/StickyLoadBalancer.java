@@ -15,19 +15,20 @@
  */
 package io.fabric8.gateway.loadbalancer;
 
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Implements a sticky load balancer where a unique client ID String is requested from the
  * {@link ClientRequestFacade} and used to keep track of which
  * service was used last time and to use that if its possible and keep a cache of requests to
+ * <p/>
+ * The cache of client IDs is a {@link StickySessionCache} so lookups from many threads do not contend on a lock;
+ * a client whose service is no longer in the list of available services is rebound to a new service.
  */
 public class StickyLoadBalancer implements LoadBalancer {
     private final LoadBalancer firstRequestLoadBalancer;
     private final int maximumCacheSize;
-    private final Map<String, Object> requestCache;
+    private final StickySessionCache requestCache;
 
     public StickyLoadBalancer() {
         this(LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE);
@@ -38,34 +39,54 @@ public class StickyLoadBalancer implements LoadBalancer {
     }
 
     public StickyLoadBalancer(int maximumCacheSize, LoadBalancer firstRequestLoadBalancer) {
+        this(maximumCacheSize, 0, firstRequestLoadBalancer);
+    }
+
+    /**
+     * @param maximumCacheSize the maximum number of client IDs to remember
+     * @param timeToLive the number of milliseconds after which an unused client ID is forgotten, or zero to keep it
+     *                   until it is evicted to make space for other clients
+     * @param firstRequestLoadBalancer the load balancer used to choose the service for a new client
+     */
+    public StickyLoadBalancer(int maximumCacheSize, long timeToLive, LoadBalancer firstRequestLoadBalancer) {
+        this(new StickySessionCache(maximumCacheSize, timeToLive), firstRequestLoadBalancer);
+    }
+
+    /**
+     * @param requestCache the cache of client IDs to the service they are bound to
+     * @param firstRequestLoadBalancer the load balancer used to choose the service for a new client
+     */
+    public StickyLoadBalancer(StickySessionCache requestCache, LoadBalancer firstRequestLoadBalancer) {
         this.firstRequestLoadBalancer = firstRequestLoadBalancer;
-        this.maximumCacheSize = maximumCacheSize;
-        this.requestCache = new LinkedHashMap(maximumCacheSize + 1, .75F, true) {
-            // This method is called just after a new entry has been added
-            public boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > StickyLoadBalancer.this.maximumCacheSize;
-            }
-        };
+        this.maximumCacheSize = requestCache.getMaximumSize();
+        this.requestCache = requestCache;
     }
 
     @Override
     public String toString() {
         return "StickyLoadBalancer{" +
                 "maximumCacheSize=" + maximumCacheSize +
+                ", requestCache=" + requestCache +
                 '}';
     }
 
     @Override
     public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
         String clientKey = requestFacade.getClientRequestKey();
-        T answer;
-        synchronized (requestCache) {
-            answer = (T) requestCache.get(clientKey);
-            if (answer == null) {
-                answer = firstRequestLoadBalancer.choose(services, requestFacade);
-                if (answer != null) {
-                    requestCache.put(clientKey, answer);
-                }
+        if (clientKey == null) {
+            // there is nothing to stick to so lets not cache the choice
+            return firstRequestLoadBalancer.choose(services, requestFacade);
+        }
+        T answer = (T) requestCache.get(clientKey);
+        if (answer != null && !services.contains(answer)) {
+            // the service has gone away so lets bind the client to another one
+            requestCache.remove(clientKey, answer);
+            answer = null;
+        }
+        if (answer == null) {
+            answer = firstRequestLoadBalancer.choose(services, requestFacade);
+            if (answer != null) {
+                requestCache.put(clientKey, answer);
             }
         }
         return answer;
@@ -75,8 +96,13 @@ public class StickyLoadBalancer implements LoadBalancer {
      * Clears the cache of request client IDs to the bound service
      */
     public void flush() {
-        synchronized (requestCache) {
-            requestCache.clear();
-        }
+        requestCache.clear();
+    }
+
+    /**
+     * Returns the cache of client IDs to services so that its statistics can be inspected
+     */
+    public StickySessionCache getRequestCache() {
+        return requestCache;
     }
 }
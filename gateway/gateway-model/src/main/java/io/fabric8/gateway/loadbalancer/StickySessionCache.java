@@ -0,0 +1,192 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of client keys to the service they were bound to which is used by the {@link StickyLoadBalancer}.
+ * <p/>
+ * Lookups never take a lock; each entry has a reference bit which is set when it is read and the cache is kept
+ * within its maximum size using the CLOCK algorithm, which removes entries that have not been referenced since
+ * the clock hand last passed them. Entries can also expire after a time to live since they were last used.
+ */
+public class StickySessionCache {
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final int maximumSize;
+    private final long timeToLive;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private Iterator<Map.Entry<String, Entry>> clockHand;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maximumSize the maximum number of client keys to keep
+     * @param timeToLive  the number of milliseconds after its last use an entry expires, or zero for no expiry
+     */
+    public StickySessionCache(int maximumSize, long timeToLive) {
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.entries = new ConcurrentHashMap<String, Entry>(Math.min(maximumSize, 1024) * 4 / 3 + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "StickySessionCache{" +
+                "size=" + entries.size() +
+                ", maximumSize=" + maximumSize +
+                ", timeToLive=" + timeToLive +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    /**
+     * Returns the value bound to the given key or null if there is no value or it has expired
+     */
+    public Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (timeToLive > 0) {
+                long now = currentTimeMillis();
+                if (now - entry.lastAccess > timeToLive) {
+                    if (entries.remove(key, entry)) {
+                        evictions.incrementAndGet();
+                    }
+                    misses.incrementAndGet();
+                    return null;
+                }
+                entry.lastAccess = now;
+            }
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Binds the value to the given key, evicting other entries if the cache is full
+     */
+    public void put(String key, Object value) {
+        entries.put(key, new Entry(value, timeToLive > 0 ? currentTimeMillis() : 0));
+        if (entries.size() > maximumSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes the key if it is still bound to the given value
+     */
+    public boolean remove(String key, Object value) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.value == value && entries.remove(key, entry)) {
+            evictions.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Advances the clock hand removing expired entries and entries which have not been referenced since the
+     * hand last passed them until the cache is back within its maximum size. If another thread is already
+     * evicting then this thread does not wait for it.
+     */
+    protected void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = timeToLive > 0 ? currentTimeMillis() : 0;
+            // each entry is visited at most twice; once to clear its reference bit and once to evict it
+            int steps = 2 * entries.size() + 1;
+            while (entries.size() > maximumSize && steps-- > 0) {
+                if (clockHand == null || !clockHand.hasNext()) {
+                    clockHand = entries.entrySet().iterator();
+                    if (!clockHand.hasNext()) {
+                        break;
+                    }
+                }
+                Map.Entry<String, Entry> mapEntry = clockHand.next();
+                Entry entry = mapEntry.getValue();
+                boolean expired = timeToLive > 0 && now - entry.lastAccess > timeToLive;
+                if (entry.referenced && !expired) {
+                    entry.referenced = false;
+                } else if (entries.remove(mapEntry.getKey(), entry)) {
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current time in milliseconds used to expire entries
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    static final class Entry {
+        final Object value;
+        volatile boolean referenced;
+        volatile long lastAccess;
+
+        Entry(Object value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.util.Map;
  */
 public class HttpProxyRuleBase {
     private Map<String, HttpProxyRule> mappingRules = new HashMap<String, HttpProxyRule>();
+    private volatile int modificationCount;
 
     public Map<String, HttpProxyRule> getMappingRules() {
         return mappingRules;
@@ -32,6 +33,7 @@ public class HttpProxyRuleBase {
 
     public void setMappingRules(Map<String, HttpProxyRule> mappingRules) {
         this.mappingRules = mappingRules;
+        modified();
     }
 
     /**
@@ -42,7 +44,23 @@ public class HttpProxyRuleBase {
         if (answer == null) {
             answer = new HttpProxyRule(uriTemplate);
             getMappingRules().put(uriTemplate, answer);
+            modified();
         }
         return answer;
     }
+
+    /**
+     * Notifies the rule base that its rules have been changed directly so that any
+     * index built from the rules is rebuilt
+     */
+    public void modified() {
+        modificationCount++;
+    }
+
+    /**
+     * Returns a counter which changes whenever the rules are modified
+     */
+    public int modificationCount() {
+        return modificationCount;
+    }
 }
@@ -16,6 +16,7 @@
 package io.fabric8.gateway.model.loadbalancer;
 
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
 import io.fabric8.gateway.loadbalancer.StickyLoadBalancer;
 import io.fabric8.gateway.support.Constants;
 
@@ -23,6 +24,7 @@ import io.fabric8.gateway.support.Constants;
  */
 public class StickyLoadBalanceDefinition extends LoadBalancerDefinition {
     private int cacheSize = Constants.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
+    private long timeToLive = Constants.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE;
 
     public int getCacheSize() {
         return cacheSize;
@@ -32,8 +34,20 @@ public class StickyLoadBalanceDefinition extends LoadBalancerDefinition {
         this.cacheSize = cacheSize;
     }
 
+    /**
+     * Returns the number of milliseconds after which an unused client key is forgotten, or zero if they are kept
+     * until evicted to make room for other clients
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
     @Override
     protected LoadBalancer createLoadBalancer() {
-        return new StickyLoadBalancer(cacheSize);
+        return new StickyLoadBalancer(cacheSize, timeToLive, new RoundRobinLoadBalancer());
     }
 }
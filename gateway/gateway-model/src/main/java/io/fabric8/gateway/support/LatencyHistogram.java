@@ -0,0 +1,160 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of latencies in nanoseconds which can be recorded from many threads without locking.
+ * <p/>
+ * Like an HDR histogram the buckets are log-linear; every power of two range is split into
+ * {@link #SUB_BUCKETS} equal buckets so values are recorded with a relative error of about 3%.
+ * Values beyond {@link #MAXIMUM_VALUE} are recorded in the last bucket.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAXIMUM_EXPONENT = 40;
+    public static final long MAXIMUM_VALUE = (1L << MAXIMUM_EXPONENT) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final AtomicLong maximum = new AtomicLong();
+
+    @Override
+    public String toString() {
+        return toString(TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Returns a summary of the count and the main percentiles in the given time unit
+     */
+    public String toString(TimeUnit unit) {
+        Snapshot snapshot = snapshot();
+        return "count: " + snapshot.getCount()
+                + " p50: " + unit.convert(snapshot.getValueAtPercentile(50), TimeUnit.NANOSECONDS)
+                + " p99: " + unit.convert(snapshot.getValueAtPercentile(99), TimeUnit.NANOSECONDS)
+                + " p999: " + unit.convert(snapshot.getValueAtPercentile(99.9), TimeUnit.NANOSECONDS)
+                + " max: " + unit.convert(snapshot.getMaximum(), TimeUnit.NANOSECONDS)
+                + " " + unit.name().toLowerCase();
+    }
+
+    /**
+     * Records a latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAXIMUM_VALUE);
+        counts.incrementAndGet(bucket(value));
+        long current = maximum.get();
+        while (value > current && !maximum.compareAndSet(current, value)) {
+            current = maximum.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        maximum.set(0);
+    }
+
+    /**
+     * Returns a copy of the current counts so that percentiles can be read consistently while
+     * other threads keep recording
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, maximum.get());
+    }
+
+    public long getCount() {
+        return snapshot().getCount();
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest value which is recorded in the given bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        long subBucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * A point in time copy of the histogram
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long maximum;
+
+        Snapshot(long[] counts, long count, long maximum) {
+            this.counts = counts;
+            this.count = count;
+            this.maximum = maximum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaximum() {
+            return maximum;
+        }
+
+        /**
+         * Returns the latency in nanoseconds which the given percentage of the recorded latencies do not exceed,
+         * or zero if nothing has been recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max((long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count), 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(highestValue(i), maximum);
+                }
+            }
+            return maximum;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import io.fabric8.gateway.model.HttpProxyRule;
+import io.fabric8.gateway.model.HttpProxyRuleBase;
+import io.fabric8.gateway.model.UriTemplateDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable tree of the path segments of the URI templates of a {@link HttpProxyRuleBase} so that
+ * the matching rule for a request can be found by walking the request path rather than trying every rule.
+ * <p/>
+ * Literal segments are preferred over wildcard segments so the most specific rule wins.
+ */
+public class MappingRuleIndex {
+    private final Map<String, HttpProxyRule> mappingRules;
+    private final int modificationCount;
+    private final int size;
+    private final Node root = new Node();
+
+    public MappingRuleIndex(HttpProxyRuleBase ruleBase) {
+        this.mappingRules = ruleBase.getMappingRules();
+        this.modificationCount = ruleBase.modificationCount();
+        this.size = mappingRules.size();
+        for (HttpProxyRule rule : mappingRules.values()) {
+            UriTemplateDefinition definition = rule.getUriTemplate();
+            if (definition != null && definition.getUriTemplate() != null) {
+                root.add(Paths.splitPaths(definition.getUriTemplate()), 0, rule);
+            }
+        }
+    }
+
+    /**
+     * Returns true if this index no longer reflects the rules of the given rule base
+     */
+    public boolean isStale(HttpProxyRuleBase ruleBase) {
+        return ruleBase.getMappingRules() != mappingRules
+                || ruleBase.modificationCount() != modificationCount
+                || mappingRules.size() != size;
+    }
+
+    /**
+     * Returns the result of the most specific rule matching the given request paths or null if no rule matches
+     */
+    public MappingResult findMappingRule(String[] paths) {
+        return find(root, paths, 0);
+    }
+
+    protected MappingResult find(Node node, String[] paths, int index) {
+        if (index == paths.length) {
+            return matches(node.rules, paths);
+        }
+        Node literal = node.literals.get(paths[index]);
+        if (literal != null) {
+            MappingResult answer = find(literal, paths, index + 1);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        Node wildcard = node.wildcard;
+        if (wildcard != null) {
+            MappingResult answer = find(wildcard, paths, index + 1);
+            if (answer != null) {
+                return answer;
+            }
+            if (index + 1 < paths.length) {
+                // templates ending with a wildcard consume the rest of the path
+                return matches(wildcard.rules, paths);
+            }
+        }
+        return null;
+    }
+
+    protected MappingResult matches(Collection<HttpProxyRule> rules, String[] paths) {
+        for (HttpProxyRule rule : rules) {
+            MappingResult answer = rule.matches(paths);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        return null;
+    }
+
+    static boolean isWildcard(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}");
+    }
+
+    static final class Node {
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private final List<HttpProxyRule> rules = new ArrayList<HttpProxyRule>(1);
+        private Node wildcard;
+
+        void add(String[] segments, int index, HttpProxyRule rule) {
+            if (index == segments.length) {
+                rules.add(rule);
+                return;
+            }
+            String segment = segments[index];
+            Node child;
+            if (isWildcard(segment)) {
+                if (wildcard == null) {
+                    wildcard = new Node();
+                }
+                child = wildcard;
+            } else {
+                child = literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    literals.put(segment, child);
+                }
+            }
+            child.add(segments, index + 1, rule);
+        }
+    }
+}
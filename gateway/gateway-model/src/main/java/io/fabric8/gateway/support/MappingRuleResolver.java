@@ -15,7 +15,6 @@
  */
 package io.fabric8.gateway.support;
 
-import io.fabric8.gateway.model.HttpProxyRule;
 import io.fabric8.gateway.model.HttpProxyRuleBase;
 
 /**
@@ -23,16 +22,22 @@ import io.fabric8.gateway.model.HttpProxyRuleBase;
  */
 public class MappingRuleResolver {
     private HttpProxyRuleBase mappingRules = new HttpProxyRuleBase();
+    private volatile MappingRuleIndex index;
 
     public MappingResult findMappingRule(String requestURI) {
         String[] paths = Paths.splitPaths(requestURI);
-        MappingResult answer = null;
-        // TODO we could build a path based tree to do more efficient matching?
-        for (HttpProxyRule mappingRule : mappingRules.getMappingRules().values()) {
-            answer = mappingRule.matches(paths);
-            if (answer != null) {
-                break;
-            }
+        return getIndex().findMappingRule(paths);
+    }
+
+    /**
+     * Returns the index of the current mapping rules, lazily rebuilding it if the rules have changed
+     */
+    protected MappingRuleIndex getIndex() {
+        HttpProxyRuleBase ruleBase = mappingRules;
+        MappingRuleIndex answer = index;
+        if (answer == null || answer.isStale(ruleBase)) {
+            answer = new MappingRuleIndex(ruleBase);
+            index = answer;
         }
         return answer;
     }
@@ -43,6 +48,7 @@ public class MappingRuleResolver {
 
     public void setMappingRules(HttpProxyRuleBase mappingRules) {
         this.mappingRules = mappingRules;
+        this.index = null;
     }
 
 }
@@ -0,0 +1,177 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable character trie over a set of URI prefixes so that all the prefixes of a request URI
+ * can be found in a single pass over the URI rather than by testing every prefix with {@link String#startsWith(String)}.
+ * <p/>
+ * Instances are never modified once created; when the prefixes change create a new index and swap it in.
+ */
+public class PathPrefixIndex<T> {
+    private final Map<String, T> prefixes;
+    private final Node root;
+
+    public PathPrefixIndex(Map<String, T> prefixes) {
+        this.prefixes = Collections.unmodifiableMap(new HashMap<String, T>(prefixes));
+        Builder builder = new Builder();
+        for (String prefix : this.prefixes.keySet()) {
+            builder.add(prefix, 0);
+        }
+        this.root = builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "PathPrefixIndex{" +
+                "prefixes=" + prefixes.keySet() +
+                '}';
+    }
+
+    /**
+     * Returns the prefixes which the given text starts with, longest prefix first.
+     */
+    public List<String> findPrefixes(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<String> answer = new ArrayList<String>();
+        Node node = root;
+        int length = text.length();
+        for (int i = 0; node != null; i++) {
+            if (node.prefix != null) {
+                answer.add(node.prefix);
+            }
+            if (i >= length) {
+                break;
+            }
+            node = node.child(text.charAt(i));
+        }
+        Collections.reverse(answer);
+        return answer;
+    }
+
+    /**
+     * Returns the longest prefix the given text starts with or null if none of the prefixes match.
+     */
+    public String findLongestPrefix(String text) {
+        if (text == null) {
+            return null;
+        }
+        String answer = null;
+        Node node = root;
+        int length = text.length();
+        for (int i = 0; node != null; i++) {
+            if (node.prefix != null) {
+                answer = node.prefix;
+            }
+            if (i >= length) {
+                break;
+            }
+            node = node.child(text.charAt(i));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the value for the given prefix
+     */
+    public T get(String prefix) {
+        return prefixes.get(prefix);
+    }
+
+    /**
+     * Returns an unmodifiable map of all the indexed prefixes and their values
+     */
+    public Map<String, T> getPrefixes() {
+        return prefixes;
+    }
+
+    public boolean isEmpty() {
+        return prefixes.isEmpty();
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final String prefix;
+        private final char[] keys;
+        private final Node[] children;
+
+        Node(String prefix, char[] keys, Node[] children) {
+            this.prefix = prefix;
+            this.keys = keys.length > 0 ? keys : NO_KEYS;
+            this.children = children.length > 0 ? children : NO_CHILDREN;
+        }
+
+        Node child(char c) {
+            // the keys are sorted so lets use a binary search
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char key = keys[mid];
+                if (key < c) {
+                    low = mid + 1;
+                } else if (key > c) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Builder {
+        private String prefix;
+        private final TreeMap<Character, Builder> children = new TreeMap<Character, Builder>();
+
+        void add(String value, int index) {
+            if (index == value.length()) {
+                prefix = value;
+            } else {
+                Character c = value.charAt(index);
+                Builder child = children.get(c);
+                if (child == null) {
+                    child = new Builder();
+                    children.put(c, child);
+                }
+                child.add(value, index + 1);
+            }
+        }
+
+        Node build() {
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            return new Node(prefix, keys, nodes);
+        }
+    }
+}
@@ -20,8 +20,10 @@ import io.fabric8.gateway.model.HttpProxyRule;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,49 +36,112 @@ public class UriTemplate {
     private List<String> parameters = new ArrayList<String>();
     private String path;
 
+    /**
+     * The parameter name of each path segment which is a wildcard, or null if the segment is a literal
+     */
+    private final String[] wildcardNames;
+    /**
+     * The literal text between each parameter expression of the template; there is one more literal than there are
+     * {@link #bindNames} so the template is bound as <code>literal[0] value[0] literal[1] ... literal[n]</code>
+     */
+    private final String[] bindLiterals;
+    private final String[] bindNames;
+    private final Set<String> parameterSet;
+
     public UriTemplate(String path) {
         this.path = path;
         this.paths = Paths.splitPaths(path);
-        Matcher matcher = PATTERN.matcher(path);
 
+        List<String> literals = new ArrayList<String>();
+        int last = 0;
+        Matcher matcher = PATTERN.matcher(path);
         while (matcher.find()) {
             parameters.add(matcher.group(1));
+            literals.add(path.substring(last, matcher.start()));
+            last = matcher.end();
+        }
+        literals.add(path.substring(last));
+        this.bindLiterals = literals.toArray(new String[literals.size()]);
+        this.bindNames = parameters.toArray(new String[parameters.size()]);
+        this.parameterSet = new HashSet<String>(parameters);
+
+        this.wildcardNames = new String[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            String pathSegment = paths[i];
+            if (pathSegment != null && pathSegment.startsWith("{") && pathSegment.endsWith("}")) {
+                wildcardNames[i] = pathSegment.substring(1, pathSegment.length() - 1);
+            }
         }
     }
 
     public MappingResult matches(String[] requestUriPaths, HttpProxyRule proxyRule) {
-        int actualLength = requestUriPaths.length;
-        int processedPaths = 0;
-        boolean joinedPath = false;
+        if (!isMatch(requestUriPaths)) {
+            return null;
+        }
         Map<String, String> parameterNameValues = new HashMap<String, String>();
-        for (int lastIndex = paths.length - 1; processedPaths <= lastIndex; processedPaths++) {
-            String actualSegment = null;
-            if (processedPaths < actualLength) {
-                actualSegment = requestUriPaths[processedPaths];
+        for (int i = 0, lastIndex = paths.length - 1; i <= lastIndex; i++) {
+            String parameterName = wildcardNames[i];
+            if (parameterName != null) {
+                parameterNameValues.put(parameterName, i == lastIndex ? joinPath(i, requestUriPaths) : requestUriPaths[i]);
             }
+        }
+        return new MappingResult(parameterNameValues, requestUriPaths, proxyRule);
+    }
+
+    /**
+     * Returns true if the given request paths match this template; no objects are created so
+     * rules which do not match a request cost nothing but the segment comparisons.
+     */
+    public boolean isMatch(String[] requestUriPaths) {
+        int length = paths.length;
+        int actualLength = requestUriPaths.length;
+        if (actualLength < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            String actualSegment = requestUriPaths[i];
             if (actualSegment == null) {
-                return null;
+                return false;
             }
-            String parameterName = getWildcardParameterName(processedPaths);
-            if (parameterName != null) {
-                if (processedPaths == lastIndex) {
-                    actualSegment = joinPath(processedPaths, requestUriPaths);
-                    joinedPath = true;
-                }
-                parameterNameValues.put(parameterName, actualSegment);
-            } else {
-                String pathSegment = paths[processedPaths];
-                if (pathSegment == null || !actualSegment.equals(pathSegment)) {
-                    return null;
-                }
+            if (wildcardNames[i] == null && !actualSegment.equals(paths[i])) {
+                return false;
             }
         }
-        if (!joinedPath && processedPaths < actualLength) {
-            return null;
+        // a trailing wildcard consumes the rest of the request path
+        return actualLength == length || (length > 0 && wildcardNames[length - 1] != null);
+    }
+
+    /**
+     * Matches the request paths against this template populating the given array with the value of each wildcard
+     * segment in the order of {@link #getWildcardNames()}, so that callers can reuse the array across requests.
+     *
+     * @return true if the paths matched, otherwise false in which case the contents of the array are undefined
+     */
+    public boolean match(String[] requestUriPaths, String[] wildcardValues) {
+        if (!isMatch(requestUriPaths)) {
+            return false;
         }
-        return new MappingResult(parameterNameValues, requestUriPaths, proxyRule);
+        int index = 0;
+        for (int i = 0, lastIndex = paths.length - 1; i <= lastIndex; i++) {
+            if (wildcardNames[i] != null) {
+                wildcardValues[index++] = i == lastIndex ? joinPath(i, requestUriPaths) : requestUriPaths[i];
+            }
+        }
+        return true;
     }
 
+    /**
+     * Returns the names of the wildcard path segments in path order
+     */
+    public List<String> getWildcardNames() {
+        List<String> answer = new ArrayList<String>();
+        for (String name : wildcardNames) {
+            if (name != null) {
+                answer.add(name);
+            }
+        }
+        return answer;
+    }
 
     public List<String> getParameterNames() {
         return Collections.unmodifiableList(parameters);
@@ -114,32 +179,44 @@ public class UriTemplate {
             throw new IllegalArgumentException("Parameters mismatch. Path template contains " + parameters.size()
                     + " parameters, " + params.size() + " was given");
         }
-
-        String localPath = path;
-
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            if (!parameters.contains(key)) {
+        for (String key : params.keySet()) {
+            if (!parameterSet.contains(key)) {
                 throw new IllegalArgumentException("Unknown parameter " + key);
             }
-            localPath = replace(localPath, key, value);
         }
-        return localPath;
+        return bind(params, true);
     }
 
     /**
      * Like {@link #bindByName(java.util.Map)} but this method silently ignores any unnecessary parameters that are passed in.
      */
     public String bindByNameNonStrict(Map<String, String> params) {
-        String localPath = path;
-        for (String key : parameters) {
+        return bind(params, false);
+    }
+
+    /**
+     * Binds the parameter values into the template in a single pass; parameters which have no value
+     * are left in the result as a <code>{name}</code> expression.
+     */
+    protected String bind(Map<String, String> params, boolean strict) {
+        if (bindNames.length == 0) {
+            return path;
+        }
+        StringBuilder builder = new StringBuilder(path.length() + 16 * bindNames.length);
+        builder.append(bindLiterals[0]);
+        for (int i = 0; i < bindNames.length; i++) {
+            String key = bindNames[i];
             String value = params.get(key);
             if (value != null) {
-                localPath = replace(localPath, key, value);
+                builder.append(value);
+            } else if (strict && params.containsKey(key)) {
+                throw new IllegalStateException("Parameter " + key + " is null.");
+            } else {
+                builder.append('{').append(key).append('}');
             }
+            builder.append(bindLiterals[i + 1]);
         }
-        return localPath;
+        return builder.toString();
     }
 
 
@@ -147,15 +224,10 @@ public class UriTemplate {
      * Returns the wildcard parameter name for the given path index if its a wildcard otherwise return null if it is not a wildcard
      */
     protected String getWildcardParameterName(int pathIndex) {
-        String parameterName = null;
-        if (pathIndex >= 0 && pathIndex < paths.length) {
-            String pathSegment = paths[pathIndex];
-            if (pathSegment != null && pathSegment.startsWith("{") && pathSegment.endsWith("}")) {
-                // we are a wildcard so lets expose the parameter value
-                parameterName = pathSegment.substring(1, pathSegment.length() - 1);
-            }
+        if (pathIndex >= 0 && pathIndex < wildcardNames.length) {
+            return wildcardNames[pathIndex];
         }
-        return parameterName;
+        return null;
     }
 
     /**
@@ -181,11 +253,4 @@ public class UriTemplate {
         }
     }
 
-    protected String replace(String text, String key, String value) {
-        if (value == null) {
-            throw new IllegalStateException("Parameter " + key + " is null.");
-        }
-        return text.replace("{" + key + "}", value);
-    }
-
 }
@@ -0,0 +1,63 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverAllValues() throws Exception {
+        long previous = -1;
+        for (int bucket = 0; bucket <= LatencyHistogram.bucket(LatencyHistogram.MAXIMUM_VALUE); bucket++) {
+            long highest = LatencyHistogram.highestValue(bucket);
+            assertEquals("bucket of the lowest value of bucket " + bucket, bucket, LatencyHistogram.bucket(previous + 1));
+            assertEquals("bucket of the highest value of bucket " + bucket, bucket, LatencyHistogram.bucket(highest));
+            previous = highest;
+        }
+        assertEquals(LatencyHistogram.MAXIMUM_VALUE, previous);
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000000, snapshot.getMaximum());
+        assertWithinError(500000, snapshot.getValueAtPercentile(50));
+        assertWithinError(990000, snapshot.getValueAtPercentile(99));
+        assertEquals(1000000, snapshot.getValueAtPercentile(100));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAXIMUM_VALUE, histogram.snapshot().getMaximum());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    protected void assertWithinError(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(expected - actual) <= expected * 0.04);
+    }
+}
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  */
@@ -44,10 +45,25 @@ public class MappingRuleResolverTest extends MappingRuleTestSupport {
         assertRuleMatch("/customers/c123/address/abc", "http://another.com/addresses/abc/customerThingy/c123");
     }
 
+    @Test
+    public void testLiteralPathsArePreferredOverWildcards() throws Exception {
+        assertRuleMatch("/members/special", "http://bar.com/special");
+        assertRuleMatch("/foo/a/b/c", "http://foo.com/cheese/a/b/c");
+        assertNull(getResolver().findMappingRule("/unknown/path"));
+    }
+
+    @Test
+    public void testIndexIsRebuiltWhenRulesChange() throws Exception {
+        assertNull(getResolver().findMappingRule("/bar/123"));
+        getResolver().getMappingRules().rule("/bar/{id}").to("http://bar.com/{id}");
+        assertRuleMatch("/bar/123", "http://bar.com/123");
+    }
+
     @Override
     protected void loadMappingRules(HttpProxyRuleBase ruleBase) {
         ruleBase.rule("/members").to("http://foo.com/rest/members");
         ruleBase.rule("/members/{id}").to("http://foo.com/rest/members/{id}");
+        ruleBase.rule("/members/special").to("http://bar.com/special");
         ruleBase.rule("/foo/{path}").to("http://foo.com/cheese/{path}");
         ruleBase.rule("/customers/{customerId}/address/{addressId}").to("http://another.com/addresses/{addressId}/customerThingy/{customerId}");
     }
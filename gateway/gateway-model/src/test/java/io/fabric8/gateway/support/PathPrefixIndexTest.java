@@ -0,0 +1,48 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PathPrefixIndexTest {
+
+    @Test
+    public void testFindPrefixes() throws Exception {
+        Map<String, String> prefixes = new HashMap<String, String>();
+        prefixes.put("/cxf/", "cxf");
+        prefixes.put("/cxf/crm/", "crm");
+        prefixes.put("/cxf/crm/customers", "customers");
+        prefixes.put("/hello", "hello");
+        PathPrefixIndex<String> index = new PathPrefixIndex<String>(prefixes);
+
+        assertEquals(Arrays.asList("/cxf/crm/customers", "/cxf/crm/", "/cxf/"), index.findPrefixes("/cxf/crm/customers/123"));
+        assertEquals(Arrays.asList("/cxf/"), index.findPrefixes("/cxf/HelloWorld?wsdl"));
+        assertEquals(Arrays.asList("/hello"), index.findPrefixes("/hello"));
+        assertEquals(Collections.<String>emptyList(), index.findPrefixes("/cx"));
+
+        assertEquals("/cxf/crm/", index.findLongestPrefix("/cxf/crm/"));
+        assertNull(index.findLongestPrefix("/other"));
+        assertEquals("crm", index.get("/cxf/crm/"));
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A micro benchmark comparing the precompiled {@link UriTemplate} against the previous
+ * implementation which allocated a map per attempted match and bound values with repeated
+ * {@link String#replace(CharSequence, CharSequence)} calls.
+ * <p/>
+ * This is not run as part of the test suite; run the {@link #main(String[])} method by hand.
+ */
+public class UriTemplateBenchmark {
+
+    private static final int[] RULE_BASE_SIZES = {10, 100, 1000};
+    private static final int ITERATIONS = 2000;
+
+    public static void main(String[] args) {
+        for (int size : RULE_BASE_SIZES) {
+            List<UriTemplate> templates = new ArrayList<UriTemplate>();
+            List<LegacyUriTemplate> legacyTemplates = new ArrayList<LegacyUriTemplate>();
+            List<String[]> requests = new ArrayList<String[]>();
+            for (int i = 0; i < size; i++) {
+                String template = "/service" + i + "/{version}/customers/{id}";
+                templates.add(new UriTemplate(template));
+                legacyTemplates.add(new LegacyUriTemplate(template));
+                requests.add(Paths.splitPaths("/service" + i + "/1.0/customers/c" + i));
+            }
+            UriTemplate destination = new UriTemplate("http://localhost:8181/cxf/{version}/customers/{id}");
+            LegacyUriTemplate legacyDestination = new LegacyUriTemplate("http://localhost:8181/cxf/{version}/customers/{id}");
+
+            // warm up
+            runLegacy(legacyTemplates, legacyDestination, requests, ITERATIONS / 10);
+            run(templates, destination, requests, ITERATIONS / 10);
+
+            long start = System.nanoTime();
+            int legacyMatches = runLegacy(legacyTemplates, legacyDestination, requests, ITERATIONS);
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int matches = run(templates, destination, requests, ITERATIONS);
+            long nanos = System.nanoTime() - start;
+
+            long lookups = (long) ITERATIONS * requests.size();
+            System.out.println("rules: " + size
+                    + " legacy: " + (legacyNanos / lookups) + " ns/request (" + legacyMatches + " matches)"
+                    + " precompiled: " + (nanos / lookups) + " ns/request (" + matches + " matches)");
+        }
+    }
+
+    protected static int run(List<UriTemplate> templates, UriTemplate destination, List<String[]> requests, int iterations) {
+        int matches = 0;
+        for (int n = 0; n < iterations; n++) {
+            for (String[] request : requests) {
+                for (UriTemplate template : templates) {
+                    MappingResult result = template.matches(request, null);
+                    if (result != null) {
+                        if (destination.bindByName(result.getParameterNameValues()) != null) {
+                            matches++;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    protected static int runLegacy(List<LegacyUriTemplate> templates, LegacyUriTemplate destination, List<String[]> requests, int iterations) {
+        int matches = 0;
+        for (int n = 0; n < iterations; n++) {
+            for (String[] request : requests) {
+                for (LegacyUriTemplate template : templates) {
+                    Map<String, String> result = template.matches(request);
+                    if (result != null) {
+                        if (destination.bindByName(result) != null) {
+                            matches++;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * The matching and binding algorithm of the original {@link UriTemplate}
+     */
+    static class LegacyUriTemplate {
+        private static final Pattern PATTERN = Pattern.compile("\\{([^/]+?)\\}");
+        private final String[] paths;
+        private final List<String> parameters = new ArrayList<String>();
+        private final String path;
+
+        LegacyUriTemplate(String path) {
+            this.path = path;
+            this.paths = Paths.splitPaths(path);
+            Matcher matcher = PATTERN.matcher(path);
+            while (matcher.find()) {
+                parameters.add(matcher.group(1));
+            }
+        }
+
+        Map<String, String> matches(String[] requestUriPaths) {
+            int actualLength = requestUriPaths.length;
+            int processedPaths = 0;
+            boolean joinedPath = false;
+            Map<String, String> parameterNameValues = new HashMap<String, String>();
+            for (int lastIndex = paths.length - 1; processedPaths <= lastIndex; processedPaths++) {
+                String actualSegment = null;
+                if (processedPaths < actualLength) {
+                    actualSegment = requestUriPaths[processedPaths];
+                }
+                if (actualSegment == null) {
+                    return null;
+                }
+                String parameterName = getWildcardParameterName(processedPaths);
+                if (parameterName != null) {
+                    if (processedPaths == lastIndex) {
+                        joinedPath = true;
+                    }
+                    parameterNameValues.put(parameterName, actualSegment);
+                } else if (!actualSegment.equals(paths[processedPaths])) {
+                    return null;
+                }
+            }
+            if (!joinedPath && processedPaths < actualLength) {
+                return null;
+            }
+            return new HashMap<String, String>(parameterNameValues);
+        }
+
+        String bindByName(Map<String, String> params) {
+            String localPath = path;
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (!parameters.contains(entry.getKey())) {
+                    throw new IllegalArgumentException("Unknown parameter " + entry.getKey());
+                }
+                localPath = localPath.replace("{" + entry.getKey() + "}", entry.getValue());
+            }
+            return localPath;
+        }
+
+        String getWildcardParameterName(int pathIndex) {
+            String pathSegment = paths[pathIndex];
+            if (pathSegment.startsWith("{") && pathSegment.endsWith("}")) {
+                return pathSegment.substring(1, pathSegment.length() - 1);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.support;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UriTemplateTest {
+
+    @Test
+    public void testMatch() throws Exception {
+        UriTemplate template = new UriTemplate("/customers/{customerId}/address/{path}");
+        String[] values = new String[2];
+
+        assertTrue(template.match(Paths.splitPaths("/customers/c123/address/a/b"), values));
+        assertEquals(Arrays.asList("customerId", "path"), template.getWildcardNames());
+        assertEquals("c123", values[0]);
+        assertEquals("a/b", values[1]);
+
+        assertFalse(template.isMatch(Paths.splitPaths("/customers/c123/other/a")));
+        assertFalse(template.isMatch(Paths.splitPaths("/customers/c123/address")));
+        assertNull(template.matches(Paths.splitPaths("/customers"), null));
+
+        UriTemplate literal = new UriTemplate("/members");
+        assertTrue(literal.isMatch(Paths.splitPaths("/members/")));
+        assertFalse(literal.isMatch(Paths.splitPaths("/members/123")));
+    }
+
+    @Test
+    public void testBind() throws Exception {
+        UriTemplate template = new UriTemplate("http://another.com/addresses/{addressId}/customerThingy/{customerId}");
+        assertEquals("http://another.com/addresses/abc/customerThingy/c123", template.bindByName("customerId", "c123", "addressId", "abc"));
+        assertEquals("http://another.com/addresses/abc/customerThingy/c123", template.bindByPosition("abc ", "c123"));
+
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("addressId", "abc");
+        params.put("other", "ignored");
+        assertEquals("http://another.com/addresses/abc/customerThingy/{customerId}", template.bindByNameNonStrict(params));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBindUnknownParameter() throws Exception {
+        new UriTemplate("/foo/{id}").bindByName("bar", "1");
+    }
+}